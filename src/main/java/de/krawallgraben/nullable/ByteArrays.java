@@ -0,0 +1,30 @@
+package de.krawallgraben.nullable;
+
+/**
+ * Unsigned lexicographic comparison of byte arrays.
+ *
+ * <p>Java 11+ runtimes load an overlay from {@code META-INF/versions} that delegates to the
+ * vectorized {@code Arrays.compareUnsigned}.
+ */
+final class ByteArrays {
+
+    private ByteArrays() {}
+
+    /**
+     * Compares two byte arrays lexicographically, treating elements as unsigned. A proper prefix is
+     * less than the longer array.
+     *
+     * @param a the first array
+     * @param b the second array
+     * @return a negative value, zero, or a positive value
+     */
+    static int compareUnsigned(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xFF) - (b[i] & 0xFF);
+            }
+        }
+        return a.length - b.length;
+    }
+}
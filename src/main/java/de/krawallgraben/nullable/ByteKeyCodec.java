@@ -0,0 +1,64 @@
+package de.krawallgraben.nullable;
+
+/**
+ * Encodes keys into order-preserving byte sequences and decodes them again.
+ *
+ * <p>A codec is needed wherever encoded keys are stored instead of the keys themselves, for example
+ * by {@link NullableSortedFileMap}. Codecs are also used for values there; the order of value
+ * encodings is irrelevant.
+ *
+ * <p>As with {@link ByteKeyEncoder}, `null` is never passed to the codec. The empty byte sequence
+ * is reserved for the `null` key, so {@link #encode} must never return it for a key.
+ *
+ * @param <K> the type of keys
+ */
+public interface ByteKeyCodec<K> extends ByteKeyEncoder<K> {
+
+    /**
+     * Decodes a key.
+     *
+     * @param bytes an encoding returned by {@link #encode}
+     * @return the key, never `null`
+     */
+    K decode(byte[] bytes);
+
+    /**
+     * Returns a codec for {@link String} keys in {@link String#compareTo natural order}, using the
+     * encoding of {@link ByteKeyEncoder#strings()}.
+     *
+     * @return the codec
+     */
+    static ByteKeyCodec<String> strings() {
+        return StringKeyCodec.INSTANCE;
+    }
+
+    /**
+     * Returns a codec for {@link Long} keys in natural order, using the encoding of {@link
+     * ByteKeyEncoder#longs()}.
+     *
+     * @return the codec
+     */
+    static ByteKeyCodec<Long> longs() {
+        return LongKeyCodec.INSTANCE;
+    }
+
+    /**
+     * Returns a codec for {@link Integer} keys in natural order, using the encoding of {@link
+     * ByteKeyEncoder#ints()}.
+     *
+     * @return the codec
+     */
+    static ByteKeyCodec<Integer> ints() {
+        return IntKeyCodec.INSTANCE;
+    }
+
+    /**
+     * Returns a codec for {@link Double} keys in the order of {@link Double#compare}, using the
+     * encoding of {@link ByteKeyEncoder#doubles()}.
+     *
+     * @return the codec
+     */
+    static ByteKeyCodec<Double> doubles() {
+        return DoubleKeyCodec.INSTANCE;
+    }
+}
@@ -0,0 +1,205 @@
+package de.krawallgraben.nullable;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Encodes keys into order-preserving byte sequences.
+ *
+ * <p>Two keys must compare in the same order as their encodings compared lexicographically as
+ * unsigned bytes. A {@link NullableSortedConcurrentMap} created with an encoder encodes each key
+ * once and afterwards compares only bytes.
+ *
+ * <p>The `null` key is never passed to the encoder. It is encoded as the empty byte sequence and
+ * therefore sorted to the beginning. Encodings of non-null keys must not be empty. Encodings built
+ * with {@link Builder} always start with a non-zero component marker.
+ *
+ * <p>Encoders are serializable because maps hold them; an encoder given as a lambda expression is
+ * serializable if everything it captures is.
+ *
+ * @param <K> the type of keys
+ */
+@FunctionalInterface
+public interface ByteKeyEncoder<K> extends Serializable {
+
+    /**
+     * Encodes a non-null key.
+     *
+     * @param key the key, never `null`
+     * @return the order-preserving encoding, never empty
+     */
+    byte[] encode(K key);
+
+    /**
+     * Returns an encoder for {@link String} keys in {@link String#compareTo natural order}.
+     *
+     * @return the encoder
+     */
+    static ByteKeyEncoder<String> strings() {
+        return StringKeyCodec.INSTANCE;
+    }
+
+    /**
+     * Returns an encoder for {@link Long} keys in natural order.
+     *
+     * @return the encoder
+     */
+    static ByteKeyEncoder<Long> longs() {
+        return LongKeyCodec.INSTANCE;
+    }
+
+    /**
+     * Returns an encoder for {@link Integer} keys in natural order.
+     *
+     * @return the encoder
+     */
+    static ByteKeyEncoder<Integer> ints() {
+        return IntKeyCodec.INSTANCE;
+    }
+
+    /**
+     * Returns an encoder for {@link Double} keys in the order of {@link Double#compare}.
+     *
+     * @return the encoder
+     */
+    static ByteKeyEncoder<Double> doubles() {
+        return DoubleKeyCodec.INSTANCE;
+    }
+
+    /**
+     * Builds order-preserving encodings of composite keys.
+     *
+     * <p>Each component starts with a marker byte: {@code 0x00} for a `null` component and {@code
+     * 0x01} otherwise, so `null` components sort first. Numbers have a fixed width. Strings are
+     * self-delimiting, so a shorter string sorts before every string it is a prefix of, regardless
+     * of the following components.
+     */
+    final class Builder {
+
+        private static final byte NULL_COMPONENT = 0x00;
+        private static final byte VALUE_COMPONENT = 0x01;
+
+        /** First code point of the two-byte string encoding. */
+        private static final int TWO_BYTE_START = 0x7F;
+
+        /** First code point of the three-byte string encoding. */
+        private static final int THREE_BYTE_START = TWO_BYTE_START + 64 * 255;
+
+        private byte[] buffer;
+        private int length;
+
+        /** Creates an empty builder. */
+        public Builder() {
+            this(16);
+        }
+
+        Builder(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        /**
+         * Appends a `null` component.
+         *
+         * @return this builder
+         */
+        public Builder addNull() {
+            ensureCapacity(1);
+            buffer[length++] = NULL_COMPONENT;
+            return this;
+        }
+
+        /**
+         * Appends a string component. `null` is appended as a `null` component.
+         *
+         * <p>Each UTF-16 code unit is written as one to three bytes, none of them zero, and the
+         * string is terminated by a zero byte. ASCII characters take a single byte.
+         *
+         * @param value the string, may be `null`
+         * @return this builder
+         */
+        public Builder add(String value) {
+            if (value == null) {
+                return addNull();
+            }
+            ensureCapacity(value.length() + 2);
+            buffer[length++] = VALUE_COMPONENT;
+            for (int i = 0; i < value.length(); i++) {
+                int c = value.charAt(i);
+                if (c < TWO_BYTE_START) {
+                    buffer[length++] = (byte) (c + 1);
+                } else if (c < THREE_BYTE_START) {
+                    int d = c - TWO_BYTE_START;
+                    ensureCapacity(value.length() - i + 2);
+                    buffer[length++] = (byte) (0x80 + d / 255);
+                    buffer[length++] = (byte) (d % 255 + 1);
+                } else {
+                    int d = c - THREE_BYTE_START;
+                    ensureCapacity(value.length() - i + 3);
+                    buffer[length++] = (byte) 0xC0;
+                    buffer[length++] = (byte) (d / 255 + 1);
+                    buffer[length++] = (byte) (d % 255 + 1);
+                }
+            }
+            buffer[length++] = 0x00;
+            return this;
+        }
+
+        /**
+         * Appends a {@code long} component.
+         *
+         * @param value the value
+         * @return this builder
+         */
+        public Builder add(long value) {
+            ensureCapacity(9);
+            buffer[length++] = VALUE_COMPONENT;
+            long v = value ^ Long.MIN_VALUE;
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (v >>> shift);
+            }
+            return this;
+        }
+
+        /**
+         * Appends an {@code int} component.
+         *
+         * @param value the value
+         * @return this builder
+         */
+        public Builder add(int value) {
+            ensureCapacity(5);
+            buffer[length++] = VALUE_COMPONENT;
+            int v = value ^ Integer.MIN_VALUE;
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (v >>> shift);
+            }
+            return this;
+        }
+
+        /**
+         * Appends a {@code double} component, ordered like {@link Double#compare}.
+         *
+         * @param value the value
+         * @return this builder
+         */
+        public Builder add(double value) {
+            long bits = Double.doubleToLongBits(value);
+            return add(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+        }
+
+        /**
+         * Returns the encoding built so far.
+         *
+         * @return a new byte array
+         */
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package de.krawallgraben.nullable;
+
+/** The codec returned by {@link ByteKeyEncoder#doubles()} and {@link ByteKeyCodec#doubles()}. */
+enum DoubleKeyCodec implements ByteKeyCodec<Double> {
+    INSTANCE;
+
+    @Override
+    public byte[] encode(Double key) {
+        return new ByteKeyEncoder.Builder(9).add(key.doubleValue()).toByteArray();
+    }
+
+    @Override
+    public Double decode(byte[] bytes) {
+        long v = 0;
+        for (int i = 1; i < 9; i++) {
+            v = (v << 8) | (bytes[i] & 0xFF);
+        }
+        v ^= Long.MIN_VALUE;
+        return Double.longBitsToDouble(v ^ ((v >> 63) & Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,20 @@
+package de.krawallgraben.nullable;
+
+/** The codec returned by {@link ByteKeyEncoder#ints()} and {@link ByteKeyCodec#ints()}. */
+enum IntKeyCodec implements ByteKeyCodec<Integer> {
+    INSTANCE;
+
+    @Override
+    public byte[] encode(Integer key) {
+        return new ByteKeyEncoder.Builder(5).add(key.intValue()).toByteArray();
+    }
+
+    @Override
+    public Integer decode(byte[] bytes) {
+        int v = 0;
+        for (int i = 1; i < 5; i++) {
+            v = (v << 8) | (bytes[i] & 0xFF);
+        }
+        return v ^ Integer.MIN_VALUE;
+    }
+}
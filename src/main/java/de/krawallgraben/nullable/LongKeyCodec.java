@@ -0,0 +1,20 @@
+package de.krawallgraben.nullable;
+
+/** The codec returned by {@link ByteKeyEncoder#longs()} and {@link ByteKeyCodec#longs()}. */
+enum LongKeyCodec implements ByteKeyCodec<Long> {
+    INSTANCE;
+
+    @Override
+    public byte[] encode(Long key) {
+        return new ByteKeyEncoder.Builder(9).add(key.longValue()).toByteArray();
+    }
+
+    @Override
+    public Long decode(byte[] bytes) {
+        long v = 0;
+        for (int i = 1; i < 9; i++) {
+            v = (v << 8) | (bytes[i] & 0xFF);
+        }
+        return v ^ Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,144 @@
+package de.krawallgraben.nullable;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+
+/**
+ * Navigable key set view of a concurrent sorted map, shared by the maps of this package that store
+ * masked keys.
+ *
+ * <p>Subclasses supply the iterators and the removal of a single key, which depend on how the map
+ * stores its keys and whether it counts its mappings. Everything else is delegated to the map, so
+ * ranges and descending sets are the key sets of the map's own views.
+ *
+ * @param <K> the type of keys
+ */
+abstract class NavigableKeySetView<K> extends AbstractSet<K> implements NavigableSet<K> {
+
+    private final ConcurrentNavigableMap<K, ?> map;
+
+    NavigableKeySetView(ConcurrentNavigableMap<K, ?> map) {
+        this.map = map;
+    }
+
+    @Override
+    public abstract Iterator<K> iterator();
+
+    @Override
+    public abstract Iterator<K> descendingIterator();
+
+    /**
+     * Removes the mapping for a key. Abstract because {@link Map#remove(Object)} does not tell a
+     * `null` value from a missing mapping.
+     */
+    @Override
+    public abstract boolean remove(Object o);
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public K lower(K k) {
+        return map.lowerKey(k);
+    }
+
+    @Override
+    public K floor(K k) {
+        return map.floorKey(k);
+    }
+
+    @Override
+    public K ceiling(K k) {
+        return map.ceilingKey(k);
+    }
+
+    @Override
+    public K higher(K k) {
+        return map.higherKey(k);
+    }
+
+    @Override
+    public K pollFirst() {
+        Map.Entry<K, ?> e = map.pollFirstEntry();
+        return e == null ? null : e.getKey();
+    }
+
+    @Override
+    public K pollLast() {
+        Map.Entry<K, ?> e = map.pollLastEntry();
+        return e == null ? null : e.getKey();
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return map.comparator();
+    }
+
+    @Override
+    public K first() {
+        return map.firstKey();
+    }
+
+    @Override
+    public K last() {
+        return map.lastKey();
+    }
+
+    @Override
+    public NavigableSet<K> descendingSet() {
+        return map.descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> subSet(
+            K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+        return map.subMap(fromElement, fromInclusive, toElement, toInclusive).navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+        return map.headMap(toElement, inclusive).navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+        return map.tailMap(fromElement, inclusive).navigableKeySet();
+    }
+
+    @Override
+    public SortedSet<K> subSet(K fromElement, K toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<K> headSet(K toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<K> tailSet(K fromElement) {
+        return tailSet(fromElement, true);
+    }
+}
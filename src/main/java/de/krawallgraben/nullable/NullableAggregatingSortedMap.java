@@ -0,0 +1,181 @@
+package de.krawallgraben.nullable;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+
+/**
+ * A sorted, thread-safe map that allows `null` as keys and values and maintains an aggregate of its
+ * values over any key range.
+ *
+ * <p>The aggregate is defined by an identity element and an associative combine function, for
+ * example {@code 0L} and {@link Long#sum} or {@link Long#MIN_VALUE} and {@link Math#max}. The
+ * function need not be commutative: values are combined in ascending key order. `null` values count
+ * as the identity element.
+ *
+ * <p>The map is backed by a persistent balanced tree in which every node caches the aggregate of
+ * its subtree. {@link #aggregate(Object, Object)} therefore costs O(log n) instead of a scan of the
+ * range. Aggregates can also be taken from a {@linkplain #snapshot() snapshot}, so several of them
+ * refer to the same state of the map. Concurrency and snapshot behavior are those of {@link
+ * NullableSnapshotSortedMap}.
+ *
+ * <p>`null` keys are sorted to the beginning. The map is serializable if its comparator and combine
+ * function are, for example {@code (BinaryOperator<Long> & Serializable) Long::sum}.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values and aggregates
+ */
+@SuppressWarnings("serial")
+public class NullableAggregatingSortedMap<K, V> extends NullableSnapshotSortedMap<K, V> {
+
+    /**
+     * Constructs a new, empty map, sorted according to the {@linkplain Comparable natural ordering}
+     * of the keys.
+     *
+     * @param identity the aggregate of an empty range, also used for `null` values
+     * @param combine the associative function that combines the aggregates of adjacent ranges
+     */
+    public NullableAggregatingSortedMap(V identity, BinaryOperator<V> combine) {
+        this(null, identity, combine);
+    }
+
+    /**
+     * Constructs a new, empty map, sorted according to the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order this map. If {@code null}, the
+     *     {@linkplain Comparable natural ordering} of the keys will be used.
+     * @param identity the aggregate of an empty range, also used for `null` values
+     * @param combine the associative function that combines the aggregates of adjacent ranges
+     */
+    public NullableAggregatingSortedMap(
+            Comparator<? super K> comparator, V identity, BinaryOperator<V> combine) {
+        super(
+                new PersistentSortedTree(
+                        PersistentSortedTree.nullsFirst(comparator),
+                        new ValueAggregator<>(identity, Objects.requireNonNull(combine))));
+    }
+
+    // Private constructor for snapshots
+    private NullableAggregatingSortedMap(PersistentSortedTree tree) {
+        super(tree);
+    }
+
+    // Aggregates
+
+    /**
+     * Returns the aggregate of all values.
+     *
+     * @return the aggregate, the identity element if this map is empty
+     */
+    public V aggregate() {
+        return aggregate(PersistentSortedTree.Range.ALL);
+    }
+
+    /**
+     * Returns the aggregate of the values whose keys range from {@code fromKey}, inclusive, to
+     * {@code toKey}, exclusive.
+     *
+     * @param fromKey low endpoint (inclusive), may be `null`
+     * @param toKey high endpoint (exclusive), may be `null`
+     * @return the aggregate, the identity element if the range is empty
+     */
+    public V aggregate(K fromKey, K toKey) {
+        return aggregate(fromKey, true, toKey, false);
+    }
+
+    /**
+     * Returns the aggregate of the values whose keys range from {@code fromKey} to {@code toKey}.
+     *
+     * @param fromKey low endpoint, may be `null`
+     * @param fromInclusive `true` if the low endpoint is to be included
+     * @param toKey high endpoint, may be `null`
+     * @param toInclusive `true` if the high endpoint is to be included
+     * @return the aggregate, the identity element if the range is empty
+     */
+    public V aggregate(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return aggregate(
+                new PersistentSortedTree.Range(
+                        true, fromKey, fromInclusive, true, toKey, toInclusive));
+    }
+
+    /**
+     * Returns the aggregate of the values whose keys are less than (or equal to, if {@code
+     * inclusive} is true) {@code toKey}, including the `null` key.
+     *
+     * @param toKey high endpoint, may be `null`
+     * @param inclusive `true` if the high endpoint is to be included
+     * @return the aggregate, the identity element if the range is empty
+     */
+    public V headAggregate(K toKey, boolean inclusive) {
+        return aggregate(
+                new PersistentSortedTree.Range(false, null, false, true, toKey, inclusive));
+    }
+
+    /**
+     * Returns the aggregate of the values whose keys are greater than (or equal to, if {@code
+     * inclusive} is true) {@code fromKey}.
+     *
+     * @param fromKey low endpoint, may be `null`
+     * @param inclusive `true` if the low endpoint is to be included
+     * @return the aggregate, the identity element if the range is empty
+     */
+    public V tailAggregate(K fromKey, boolean inclusive) {
+        return aggregate(
+                new PersistentSortedTree.Range(true, fromKey, inclusive, false, null, false));
+    }
+
+    @SuppressWarnings("unchecked")
+    private V aggregate(PersistentSortedTree.Range range) {
+        return (V) tree.aggregate(tree.root(), range);
+    }
+
+    // Snapshots
+
+    @Override
+    NullableAggregatingSortedMap<K, V> newMap(PersistentSortedTree tree) {
+        return new NullableAggregatingSortedMap<>(tree);
+    }
+
+    /**
+     * Returns an independent copy of the current state of this map in constant time. See {@link
+     * NullableSnapshotSortedMap#snapshot()}.
+     *
+     * @return the snapshot
+     */
+    @Override
+    public NullableAggregatingSortedMap<K, V> snapshot() {
+        return (NullableAggregatingSortedMap<K, V>) super.snapshot();
+    }
+
+    // Helper methods and classes
+
+    /** Aggregates values, treating `null` as the identity element. */
+    @SuppressWarnings("serial")
+    private static final class ValueAggregator<V>
+            implements PersistentSortedTree.Aggregator, Serializable {
+        private final V identity;
+        private final BinaryOperator<V> combine;
+
+        ValueAggregator(V identity, BinaryOperator<V> combine) {
+            this.identity = identity;
+            this.combine = combine;
+        }
+
+        @Override
+        public Object identity() {
+            return identity;
+        }
+
+        @Override
+        public Object lift(Object key, Object value) {
+            return value == null ? identity : value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object combine(Object lower, Object upper) {
+            return combine.apply((V) lower, (V) upper);
+        }
+    }
+}
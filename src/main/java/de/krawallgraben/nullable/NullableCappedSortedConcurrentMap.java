@@ -0,0 +1,699 @@
+package de.krawallgraben.nullable;
+
+import static de.krawallgraben.nullable.NullableSortedConcurrentMap.mask;
+import static de.krawallgraben.nullable.NullableSortedConcurrentMap.unmask;
+
+import de.krawallgraben.nullable.NullableSortedConcurrentMap.NullPlaceholder;
+import de.krawallgraben.nullable.NullableSortedConcurrentMap.NullSafeComparator;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A sorted, thread-safe map with a capacity limit that allows `null` as keys and values.
+ *
+ * <p>The map holds at most a maximum number of mappings, or only keys within a window relative to
+ * the newest key, or both. Whenever an insertion exceeds a limit, the inserting thread evicts
+ * mappings from the chosen end of the key order. Each eviction is an atomic removal from the
+ * backing {@link ConcurrentSkipListMap}, so concurrent readers never see a mapping twice or a
+ * half-removed one, and the cost of eviction is amortized over the insertions that caused it. While
+ * several threads insert at the same time, the size may briefly exceed the limit by the number of
+ * these threads.
+ *
+ * <p>The number of mappings is tracked in a counter, so {@link #size()} is a constant-time
+ * operation. Sub-map, key set, entry set and values views share the counter and the limits of this
+ * map: removals through a view are counted, and insertions through a view evict like insertions
+ * into this map. The size of a bounded range view is not constant-time.
+ *
+ * <p>`null` keys are sorted to the beginning and are therefore evicted first when evicting from the
+ * {@linkplain End#LOWEST lowest} end.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+@SuppressWarnings("serial")
+public class NullableCappedSortedConcurrentMap<K, V> extends AbstractMap<K, V>
+        implements ConcurrentNavigableMap<K, V>, Serializable {
+
+    /** The end of the key order from which mappings are evicted. */
+    public enum End {
+        /** Evict the mappings with the least keys, keeping the greatest. */
+        LOWEST,
+        /** Evict the mappings with the greatest keys, keeping the least. */
+        HIGHEST
+    }
+
+    /** Internal map that stores masked keys and values, or a range of it for views. */
+    private final ConcurrentNavigableMap<Object, Object> internalMap;
+
+    /** Whole internal map in eviction order, so that its first entries are evicted first. */
+    private final ConcurrentNavigableMap<Object, Object> evictionOrder;
+
+    /** Number of mappings of the whole map, shared with all views. */
+    private final AtomicLong size;
+
+    /** Whether this is a view of a key range, whose size the counter does not tell. */
+    private final boolean bounded;
+
+    /** The comparator given at construction, or `null` for natural ordering. */
+    private final Comparator<? super K> comparator;
+
+    private final long maxSize;
+
+    /** Maps the key at the retained end to the last key kept at the evicting end, or `null`. */
+    private final Function<? super K, ? extends K> window;
+
+    /**
+     * Constructs a new, empty map that holds at most {@code maxSize} mappings, sorted according to
+     * the {@linkplain Comparable natural ordering} of the keys.
+     *
+     * @param maxSize the maximum number of mappings
+     * @param evict the end from which mappings are evicted
+     */
+    public NullableCappedSortedConcurrentMap(int maxSize, End evict) {
+        this(null, maxSize, null, evict);
+    }
+
+    /**
+     * Constructs a new, empty map that holds at most {@code maxSize} mappings, sorted according to
+     * the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order this map. If {@code null}, the
+     *     {@linkplain Comparable natural ordering} of the keys will be used.
+     * @param maxSize the maximum number of mappings
+     * @param evict the end from which mappings are evicted
+     */
+    public NullableCappedSortedConcurrentMap(
+            Comparator<? super K> comparator, int maxSize, End evict) {
+        this(comparator, maxSize, null, evict);
+    }
+
+    /**
+     * Constructs a new, empty map that only holds keys within a window, sorted according to the
+     * {@linkplain Comparable natural ordering} of the keys.
+     *
+     * <p>The window function maps the key at the retained end to the last key kept at the evicting
+     * end. For a sliding window of one minute of millisecond timestamps, evicting the lowest keys,
+     * it is {@code newest -> newest - 60_000}.
+     *
+     * @param window the window function
+     * @param evict the end from which mappings are evicted
+     */
+    public NullableCappedSortedConcurrentMap(Function<? super K, ? extends K> window, End evict) {
+        this(null, Integer.MAX_VALUE, Objects.requireNonNull(window), evict);
+    }
+
+    /**
+     * Constructs a new, empty map that holds at most {@code maxSize} mappings and only keys within
+     * a window, sorted according to the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order this map. If {@code null}, the
+     *     {@linkplain Comparable natural ordering} of the keys will be used.
+     * @param maxSize the maximum number of mappings
+     * @param window the window function, or `null` for no window. See {@link
+     *     #NullableCappedSortedConcurrentMap(Function, End)}.
+     * @param evict the end from which mappings are evicted
+     */
+    public NullableCappedSortedConcurrentMap(
+            Comparator<? super K> comparator,
+            int maxSize,
+            Function<? super K, ? extends K> window,
+            End evict) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize < 1: " + maxSize);
+        }
+        this.internalMap = new ConcurrentSkipListMap<>(new NullSafeComparator<>(comparator));
+        this.evictionOrder = evict == End.LOWEST ? internalMap : internalMap.descendingMap();
+        this.size = new AtomicLong();
+        this.bounded = false;
+        this.comparator = comparator;
+        this.maxSize = maxSize;
+        this.window = window;
+    }
+
+    // Private constructor for views
+    private NullableCappedSortedConcurrentMap(
+            NullableCappedSortedConcurrentMap<K, V> map,
+            ConcurrentNavigableMap<Object, Object> internalMap,
+            boolean bounded) {
+        this.internalMap = internalMap;
+        this.evictionOrder = map.evictionOrder;
+        this.size = map.size;
+        this.bounded = bounded;
+        this.comparator = map.comparator;
+        this.maxSize = map.maxSize;
+        this.window = map.window;
+    }
+
+    // ConcurrentNavigableMap methods
+
+    @Override
+    public NullableCappedSortedConcurrentMap<K, V> subMap(
+            K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return new NullableCappedSortedConcurrentMap<>(
+                this,
+                internalMap.subMap(mask(fromKey), fromInclusive, mask(toKey), toInclusive),
+                true);
+    }
+
+    @Override
+    public NullableCappedSortedConcurrentMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new NullableCappedSortedConcurrentMap<>(
+                this, internalMap.headMap(mask(toKey), inclusive), true);
+    }
+
+    @Override
+    public NullableCappedSortedConcurrentMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new NullableCappedSortedConcurrentMap<>(
+                this, internalMap.tailMap(mask(fromKey), inclusive), true);
+    }
+
+    @Override
+    public NullableCappedSortedConcurrentMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public NullableCappedSortedConcurrentMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public NullableCappedSortedConcurrentMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public NullableCappedSortedConcurrentMap<K, V> descendingMap() {
+        return new NullableCappedSortedConcurrentMap<>(this, internalMap.descendingMap(), bounded);
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySetView();
+    }
+
+    @Override
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySetView();
+    }
+
+    // Map methods
+
+    @Override
+    public V get(Object key) {
+        return unmask(internalMap.get(mask(key)));
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Object value = internalMap.get(mask(key));
+        return value == null ? defaultValue : unmask(value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return internalMap.containsKey(mask(key));
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return internalMap.containsValue(mask(value));
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map and evicts mappings that
+     * exceed the limits. The new mapping itself may be evicted if it lies at the evicting end.
+     *
+     * @param key the key, may be `null`
+     * @param value the value, may be `null`
+     * @return the previous value, or `null` if there was no mapping
+     */
+    @Override
+    public V put(K key, V value) {
+        Object previous = internalMap.put(mask(key), mask(value));
+        if (previous == null) {
+            added();
+        }
+        return unmask(previous);
+    }
+
+    /**
+     * Associates the specified value with the specified key if the key is not already present, and
+     * evicts mappings that exceed the limits.
+     *
+     * @param key the key, may be `null`
+     * @param value the value, may be `null`
+     * @return the current value, or `null` if there was no mapping
+     */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Object current = internalMap.putIfAbsent(mask(key), mask(value));
+        if (current == null) {
+            added();
+        }
+        return unmask(current);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return unmask(removeMasked(mask(key)));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (internalMap.remove(mask(key), mask(value))) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return internalMap.replace(mask(key), mask(oldValue), mask(newValue));
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return unmask(internalMap.replace(mask(key), mask(value)));
+    }
+
+    /**
+     * Returns the number of mappings in this map. This is a constant-time operation, except for
+     * views of a key range.
+     *
+     * @return the number of mappings
+     */
+    @Override
+    public int size() {
+        if (bounded) {
+            return internalMap.size();
+        }
+        return (int) Math.max(0, Math.min(size.get(), Integer.MAX_VALUE));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return internalMap.isEmpty();
+    }
+
+    /** Removes all mappings from this map. */
+    @Override
+    public void clear() {
+        evictAll(internalMap);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        internalMap.forEach((k, v) -> action.accept(unmask(k), unmask(v)));
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        internalMap.replaceAll((k, v) -> mask(function.apply(unmask(k), unmask(v))));
+    }
+
+    // The compute methods are built on the counted operations above, so that every mapping they
+    // add or remove is reflected in the counter and insertions evict.
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Object current = internalMap.get(mask(key));
+        if (current != null) {
+            return unmask(current);
+        }
+        V value = mappingFunction.apply(key);
+        if (value == null) {
+            return null;
+        }
+        current = internalMap.putIfAbsent(mask(key), mask(value));
+        if (current != null) {
+            return unmask(current);
+        }
+        added();
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(
+            K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Object k = mask(key);
+        for (Object current; (current = internalMap.get(k)) != null; ) {
+            V value = remappingFunction.apply(key, unmask(current));
+            if (value == null) {
+                if (internalMap.remove(k, current)) {
+                    size.decrementAndGet();
+                    return null;
+                }
+            } else if (internalMap.replace(k, current, mask(value))) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Object k = mask(key);
+        for (; ; ) {
+            Object current = internalMap.get(k);
+            V value = remappingFunction.apply(key, unmask(current));
+            if (update(k, current, value)) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public V merge(
+            K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Object k = mask(key);
+        for (; ; ) {
+            Object current = internalMap.get(k);
+            V oldValue = unmask(current);
+            if (oldValue == null) {
+                // Absent or mapped to null: store the value, even if it is null
+                if (current == null) {
+                    if (internalMap.putIfAbsent(k, mask(value)) == null) {
+                        added();
+                        return value;
+                    }
+                } else if (internalMap.replace(k, current, mask(value))) {
+                    return value;
+                }
+            } else {
+                V newValue = remappingFunction.apply(oldValue, value);
+                if (update(k, current, newValue)) {
+                    return newValue;
+                }
+            }
+        }
+    }
+
+    // Navigation
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return unmaskEntry(internalMap.ceilingEntry(mask(key)));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return unmask(internalMap.ceilingKey(mask(key)));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return unmaskEntry(internalMap.floorEntry(mask(key)));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return unmask(internalMap.floorKey(mask(key)));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return unmaskEntry(internalMap.higherEntry(mask(key)));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return unmask(internalMap.higherKey(mask(key)));
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return unmaskEntry(internalMap.lowerEntry(mask(key)));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return unmask(internalMap.lowerKey(mask(key)));
+    }
+
+    /**
+     * Returns the entry with the least key, which is the `null` key if present.
+     *
+     * @return the entry, or `null` if this map is empty
+     */
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return unmaskEntry(internalMap.firstEntry());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return unmaskEntry(internalMap.lastEntry());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        return counted(internalMap.pollFirstEntry());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        return counted(internalMap.pollLastEntry());
+    }
+
+    @Override
+    public K firstKey() {
+        return unmask(internalMap.firstKey());
+    }
+
+    @Override
+    public K lastKey() {
+        return unmask(internalMap.lastKey());
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        if (internalMap.comparator() instanceof NullSafeComparator) {
+            return comparator;
+        }
+        // Descending view
+        return comparator == null
+                ? Collections.<K>reverseOrder()
+                : Collections.reverseOrder(comparator);
+    }
+
+    // Helper methods and classes
+
+    /** Counts a new mapping and evicts mappings that exceed the limits. */
+    private void added() {
+        size.incrementAndGet();
+        evict();
+    }
+
+    /** Removes the mapping for the masked key and returns the masked value, or `null`. */
+    private Object removeMasked(Object k) {
+        Object previous = internalMap.remove(k);
+        if (previous != null) {
+            size.decrementAndGet();
+        }
+        return previous;
+    }
+
+    /**
+     * Replaces the current masked value with the given value, removing the mapping if the value is
+     * `null`, and returns `false` if the mapping changed in the meantime.
+     */
+    private boolean update(Object k, Object current, V value) {
+        if (current == null) {
+            if (value == null) {
+                return true;
+            }
+            if (internalMap.putIfAbsent(k, mask(value)) == null) {
+                added();
+                return true;
+            }
+            return false;
+        }
+        if (value == null) {
+            if (internalMap.remove(k, current)) {
+                size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+        return internalMap.replace(k, current, mask(value));
+    }
+
+    /** Evicts mappings from the evicting end while a limit is exceeded. */
+    private void evict() {
+        while (size.get() > maxSize) {
+            if (counted(evictionOrder.pollFirstEntry()) == null) {
+                break;
+            }
+        }
+        if (window == null) {
+            return;
+        }
+        // The window is relative to the outermost non-null key at the retained end
+        Map.Entry<Object, Object> retained = evictionOrder.lastEntry();
+        if (retained != null && retained.getKey() == NullPlaceholder.INSTANCE) {
+            retained = evictionOrder.lowerEntry(NullPlaceholder.INSTANCE);
+        }
+        if (retained == null) {
+            return;
+        }
+        Object bound = mask(window.apply(unmask(retained.getKey())));
+        evictAll(evictionOrder.headMap(bound, false));
+    }
+
+    /** Evicts all mappings of the given range of the internal map. */
+    private void evictAll(ConcurrentNavigableMap<Object, Object> range) {
+        while (range.pollFirstEntry() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    private Map.Entry<K, V> counted(Map.Entry<Object, Object> removed) {
+        if (removed == null) {
+            return null;
+        }
+        size.decrementAndGet();
+        return unmaskEntry(removed);
+    }
+
+    private Map.Entry<K, V> unmaskEntry(Map.Entry<Object, Object> entry) {
+        if (entry == null) return null;
+        return new AbstractMap.SimpleImmutableEntry<>(
+                unmask(entry.getKey()), unmask(entry.getValue()));
+    }
+
+    private class EntrySetView extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            Iterator<Map.Entry<Object, Object>> it = internalMap.entrySet().iterator();
+            return new Iterator<Map.Entry<K, V>>() {
+                private Map.Entry<Object, Object> lastReturned;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Map.Entry<K, V> next() {
+                    lastReturned = it.next();
+                    return unmaskEntry(lastReturned);
+                }
+
+                @Override
+                public void remove() {
+                    if (lastReturned == null) {
+                        throw new IllegalStateException();
+                    }
+                    removeMasked(lastReturned.getKey());
+                    lastReturned = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return NullableCappedSortedConcurrentMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return internalMap.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object value = internalMap.get(mask(e.getKey()));
+            return value != null && value.equals(mask(e.getValue()));
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return NullableCappedSortedConcurrentMap.this.remove(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public void clear() {
+            NullableCappedSortedConcurrentMap.this.clear();
+        }
+    }
+
+    private class KeySetView extends NavigableKeySetView<K> {
+        private final NavigableSet<Object> base = internalMap.navigableKeySet();
+
+        KeySetView() {
+            super(NullableCappedSortedConcurrentMap.this);
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return keys(base.iterator());
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return keys(base.descendingIterator());
+        }
+
+        private Iterator<K> keys(Iterator<Object> it) {
+            return new Iterator<K>() {
+                private Object lastReturned;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    lastReturned = it.next();
+                    return unmask(lastReturned);
+                }
+
+                @Override
+                public void remove() {
+                    if (lastReturned == null) {
+                        throw new IllegalStateException();
+                    }
+                    removeMasked(lastReturned);
+                    lastReturned = null;
+                }
+            };
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return removeMasked(mask(o)) != null;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package de.krawallgraben.nullable;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A thread-safe queue that allows `null` elements and sheds load when elements wait too long.
+ *
+ * <p>Every element is stamped when it is inserted; the time it spent in the queue (its sojourn
+ * time) is measured when it is removed. Following CoDel (controlled delay), the queue watches the
+ * minimum sojourn time over consecutive intervals. If even the minimum exceeds the target during an
+ * interval, a standing queue has formed and the queue becomes <em>overloaded</em>; it recovers
+ * after the first interval whose minimum is below the target again. An empty queue counts as a
+ * sojourn time of zero.
+ *
+ * <p>While overloaded, {@link #poll} drops elements that have waited longer than twice the target
+ * instead of returning them, so the latency of the elements that are returned stays bounded. If
+ * configured, {@link #offer} also rejects new elements by returning `false`. Dropped elements and
+ * state changes are reported to a {@link Listener}, for example to open a circuit breaker.
+ *
+ * <p>Iterators are weakly consistent. `null` elements are passed to the listener as `null`.
+ *
+ * @param <E> the type of elements held in this queue
+ */
+public class NullableCoDelQueue<E> extends AbstractQueue<E> {
+
+    /**
+     * Receives the state changes of a {@link NullableCoDelQueue} and the elements it drops. Methods
+     * are called by the thread that triggered the event and must not block.
+     *
+     * @param <E> the type of elements
+     */
+    public interface Listener<E> {
+
+        /**
+         * Called when the queue becomes overloaded.
+         *
+         * @param minSojournNanos the minimum sojourn time of the last interval in nanoseconds
+         */
+        default void overloaded(long minSojournNanos) {}
+
+        /** Called when the queue is no longer overloaded. */
+        default void recovered() {}
+
+        /**
+         * Called when an overloaded queue drops an element.
+         *
+         * @param element the element, may be `null`
+         * @param sojournNanos the time the element spent in the queue in nanoseconds
+         */
+        default void dropped(E element, long sojournNanos) {}
+    }
+
+    /** Internal queue that stores stamped values. */
+    private final ConcurrentLinkedQueue<Stamped> internalQueue = new ConcurrentLinkedQueue<>();
+
+    private final long target;
+    private final long interval;
+    private final boolean rejectWhenOverloaded;
+    private final Listener<? super E> listener;
+    private final LongSupplier clock;
+
+    /** End of the current interval. */
+    private final AtomicLong intervalEnd;
+
+    /** Minimum sojourn time seen in the current interval, {@link Long#MAX_VALUE} if none. */
+    private final AtomicLong minSojourn = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicBoolean overloaded = new AtomicBoolean();
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /**
+     * Constructs an empty queue with the usual CoDel parameters: a target of 5 ms and an interval
+     * of 100 ms. Offers are never rejected.
+     */
+    public NullableCoDelQueue() {
+        this(5, 100, TimeUnit.MILLISECONDS, false, new Listener<E>() {});
+    }
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param target the acceptable sojourn time
+     * @param interval the time the sojourn time must exceed the target to signal overload, should
+     *     be in the order of the time a consumer needs to react
+     * @param unit the time unit of target and interval
+     * @param rejectWhenOverloaded `true` if {@link #offer} should reject elements while overloaded
+     * @param listener receives state changes and dropped elements
+     */
+    public NullableCoDelQueue(
+            long target,
+            long interval,
+            TimeUnit unit,
+            boolean rejectWhenOverloaded,
+            Listener<? super E> listener) {
+        this(target, interval, unit, rejectWhenOverloaded, listener, System::nanoTime);
+    }
+
+    // Package-private for tests with a fake clock
+    NullableCoDelQueue(
+            long target,
+            long interval,
+            TimeUnit unit,
+            boolean rejectWhenOverloaded,
+            Listener<? super E> listener,
+            LongSupplier clock) {
+        if (target <= 0 || interval <= 0) {
+            throw new IllegalArgumentException("target and interval must be positive");
+        }
+        if (listener == null) {
+            throw new NullPointerException("listener");
+        }
+        this.target = unit.toNanos(target);
+        this.interval = unit.toNanos(interval);
+        this.rejectWhenOverloaded = rejectWhenOverloaded;
+        this.listener = listener;
+        this.clock = clock;
+        this.intervalEnd = new AtomicLong(clock.getAsLong() + this.interval);
+    }
+
+    /**
+     * Returns `true` if the sojourn time exceeded the target during the last interval.
+     *
+     * @return `true` if overloaded
+     */
+    public boolean isOverloaded() {
+        return overloaded.get();
+    }
+
+    // Queue methods
+
+    /**
+     * Inserts the specified element, unless the queue is overloaded and configured to reject
+     * elements.
+     *
+     * <p>Unlike standard concurrent queues, this method accepts `null`.
+     *
+     * @return `false` if the element was rejected
+     */
+    @Override
+    public boolean offer(E e) {
+        long now = clock.getAsLong();
+        checkInterval(now);
+        if (rejectWhenOverloaded && overloaded.get()) {
+            return false;
+        }
+        return internalQueue.offer(new Stamped(mask(e), now));
+    }
+
+    /**
+     * Retrieves and removes the head of this queue. While the queue is overloaded, elements that
+     * have waited longer than twice the target are dropped instead.
+     */
+    @Override
+    public E poll() {
+        for (; ; ) {
+            Stamped s = internalQueue.poll();
+            long now = clock.getAsLong();
+            if (s == null) {
+                minSojourn.accumulateAndGet(0, Math::min);
+                checkInterval(now);
+                return null;
+            }
+            long sojourn = now - s.enqueued;
+            minSojourn.accumulateAndGet(sojourn, Math::min);
+            checkInterval(now);
+            if (overloaded.get() && sojourn > 2 * target) {
+                listener.dropped(unmask(s.element), sojourn);
+                continue;
+            }
+            return unmask(s.element);
+        }
+    }
+
+    @Override
+    public E peek() {
+        Stamped s = internalQueue.peek();
+        return s == null ? null : unmask(s.element);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return internalQueue.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return internalQueue.size();
+    }
+
+    @Override
+    public void clear() {
+        internalQueue.clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<Stamped> it = internalQueue.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return unmask(it.next().element);
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+            }
+        };
+    }
+
+    // Helper methods and classes
+
+    /** Evaluates the interval if it has ended; exactly one caller wins the evaluation. */
+    private void checkInterval(long now) {
+        long end = intervalEnd.get();
+        if (now - end < 0 || !intervalEnd.compareAndSet(end, now + interval)) {
+            return;
+        }
+        long min = minSojourn.getAndSet(Long.MAX_VALUE);
+        if (min == Long.MAX_VALUE) {
+            // Nothing was removed during the interval: the age of the head is the standing delay
+            Stamped head = internalQueue.peek();
+            min = head == null ? 0 : now - head.enqueued;
+        }
+        boolean overload = min > target;
+        if (overloaded.compareAndSet(!overload, overload)) {
+            if (overload) {
+                listener.overloaded(min);
+            } else {
+                listener.recovered();
+            }
+        }
+    }
+
+    /** An element with the time it was inserted. */
+    private static final class Stamped {
+        final Object element;
+        final long enqueued;
+
+        Stamped(Object element, long enqueued) {
+            this.element = element;
+            this.enqueued = enqueued;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package de.krawallgraben.nullable;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, thread-safe queue backed by a ring buffer that allows `null` elements.
+ *
+ * <p>Any number of producers and consumers may use the queue concurrently. Every slot of the ring
+ * carries a sequence number that tells producers and consumers whether the slot is free or holds an
+ * element of the current round. An operation claims its position with a single compare-and-set on
+ * the head or tail counter; no locks are taken and nothing is allocated per element. The counters
+ * are kept on separate cache lines so that producers and consumers do not slow each other down
+ * through false sharing.
+ *
+ * <p>The queue never blocks: {@link #offer} returns `false` if the queue is full, {@link #poll}
+ * returns `null` if it is empty. Use {@link #isEmpty()} to tell an empty queue from a `null`
+ * element. An element whose producer has claimed a slot but not yet filled it is not visible to
+ * consumers.
+ *
+ * <p>{@link #remove(Object)} and {@link Iterator#remove()} mark the slot of the element as removed
+ * in its sequence number; it stays occupied until the consumers reach it. {@link #isEmpty()} and
+ * {@link #size()} first consume removed slots at the head, so {@code size()} counts the occupied
+ * slots from the first element that is not removed. Iterators are weakly consistent.
+ *
+ * @param <E> the type of elements held in this queue
+ */
+public class NullableConcurrentArrayQueue<E> extends AbstractQueue<E> implements Queue<E> {
+
+    /** Distance between the counters in longs, two cache lines. */
+    private static final int PAD = 16;
+
+    private static final int HEAD = PAD;
+    private static final int TAIL = 2 * PAD;
+
+    /** Head and tail counters, padded against false sharing. */
+    private final AtomicLongArray counters = new AtomicLongArray(3 * PAD);
+
+    /**
+     * Per slot: the position it is free for, or that position + 1 once filled, with the {@link
+     * #REMOVED} bit set if the element has been removed.
+     */
+    private final AtomicLongArray sequences;
+
+    private final AtomicReferenceArray<Object> elements;
+    private final int mask;
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    /** Sequence bit that marks the slot of a removed element. */
+    private static final long REMOVED = 1L << 62;
+
+    /** Returned by {@link #pollMasked()} if the queue is empty. */
+    private static final Object EMPTY = new Object();
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param capacity the minimum capacity, rounded up to a power of two
+     */
+    public NullableConcurrentArrayQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.elements = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            sequences.lazySet(i, i);
+        }
+    }
+
+    /**
+     * Returns the capacity of this queue.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Queue methods
+
+    /**
+     * Inserts the specified element if there is a free slot.
+     *
+     * <p>Unlike standard concurrent queues, this method accepts `null`.
+     *
+     * @return `true` if the element was added, `false` if the queue is full
+     */
+    @Override
+    public boolean offer(E e) {
+        Object masked = mask(e);
+        long pos = counters.get(TAIL);
+        for (; ; ) {
+            int index = (int) pos & mask;
+            long diff = (sequences.get(index) & ~REMOVED) - pos;
+            if (diff == 0) {
+                if (counters.compareAndSet(TAIL, pos, pos + 1)) {
+                    elements.lazySet(index, masked);
+                    sequences.lazySet(index, pos + 1);
+                    return true;
+                }
+                pos = counters.get(TAIL);
+            } else if (diff < 0) {
+                return false; // the slot still holds the element of the previous round
+            } else {
+                pos = counters.get(TAIL);
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        Object e = pollMasked();
+        return e == EMPTY ? null : unmask(e);
+    }
+
+    @Override
+    public E peek() {
+        for (; ; ) {
+            long head = counters.get(HEAD);
+            long tail = counters.get(TAIL);
+            for (long pos = head; pos < tail; pos++) {
+                int index = (int) pos & mask;
+                long seq = sequences.get(index);
+                if (seq == ((pos + 1) | REMOVED)) {
+                    continue;
+                }
+                if (seq != pos + 1) {
+                    break; // not filled yet, or already consumed
+                }
+                Object e = elements.get(index);
+                if (sequences.get(index) == pos + 1) {
+                    return unmask(e);
+                }
+            }
+            if (counters.get(HEAD) == head) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns and removes the head of this queue.
+     *
+     * @return the head, may be `null`
+     * @throws NoSuchElementException if this queue is empty
+     */
+    @Override
+    public E remove() {
+        Object e = pollMasked();
+        if (e == EMPTY) {
+            throw new NoSuchElementException();
+        }
+        return unmask(e);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        discardRemoved();
+        for (; ; ) {
+            long head = counters.get(HEAD);
+            long tail = counters.get(TAIL);
+            if (counters.get(HEAD) == head) {
+                return (int) Math.max(0, Math.min(tail - head, mask + 1));
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        while (pollMasked() != EMPTY) {
+            // drain
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    // Helper methods and classes
+
+    /** Removes the head, skipping removed elements. Returns {@link #EMPTY} if empty. */
+    private Object pollMasked() {
+        long pos = counters.get(HEAD);
+        for (; ; ) {
+            int index = (int) pos & mask;
+            long diff = (sequences.get(index) & ~REMOVED) - (pos + 1);
+            if (diff == 0) {
+                if (counters.compareAndSet(HEAD, pos, pos + 1)) {
+                    Object e = elements.get(index);
+                    elements.lazySet(index, null);
+                    // Freeing the slot tells atomically whether an iterator removed the element
+                    if ((sequences.getAndSet(index, pos + mask + 1) & REMOVED) == 0) {
+                        return e;
+                    }
+                }
+                pos = counters.get(HEAD);
+            } else if (diff < 0) {
+                return EMPTY;
+            } else {
+                pos = counters.get(HEAD);
+            }
+        }
+    }
+
+    /** Consumes the slots of removed elements at the head. */
+    private void discardRemoved() {
+        for (; ; ) {
+            long pos = counters.get(HEAD);
+            int index = (int) pos & mask;
+            if (sequences.get(index) != ((pos + 1) | REMOVED)) {
+                return;
+            }
+            if (counters.compareAndSet(HEAD, pos, pos + 1)) {
+                elements.lazySet(index, null);
+                sequences.lazySet(index, pos + mask + 1);
+            }
+        }
+    }
+
+    /** Weakly consistent iterator over the filled slots between head and tail. */
+    private class Itr implements Iterator<E> {
+        private long pos = counters.get(HEAD);
+        private final long end = counters.get(TAIL);
+        private Object next;
+        private int nextIndex = -1;
+
+        /** Position of the last returned element, or -1. */
+        private long lastPos = -1;
+
+        Itr() {
+            advance();
+        }
+
+        private void advance() {
+            nextIndex = -1;
+            for (; pos < end; pos++) {
+                int index = (int) pos & mask;
+                if (sequences.get(index) == pos + 1) {
+                    Object e = elements.get(index);
+                    if (sequences.get(index) == pos + 1) {
+                        next = e;
+                        nextIndex = index;
+                        pos++;
+                        return;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex >= 0;
+        }
+
+        @Override
+        public E next() {
+            if (nextIndex < 0) {
+                throw new NoSuchElementException();
+            }
+            Object e = next;
+            lastPos = pos - 1;
+            advance();
+            return unmask(e);
+        }
+
+        /**
+         * Marks the slot as removed if it still holds the returned element. The sequence number
+         * identifies the round, so an equal element offered later into the same slot is not
+         * affected.
+         */
+        @Override
+        public void remove() {
+            if (lastPos < 0) {
+                throw new IllegalStateException();
+            }
+            sequences.compareAndSet((int) lastPos & mask, lastPos + 1, (lastPos + 1) | REMOVED);
+            lastPos = -1;
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package de.krawallgraben.nullable;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * A thread-safe deque that allows `null` elements.
@@ -21,6 +25,9 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
     /** Internal deque that stores masked values. */
     private final ConcurrentLinkedDeque<Object> internalDeque;
 
+    /** Number of elements in size tracking mode, otherwise `null`. */
+    private final LongAdder counter;
+
     /** Placeholder for `null`. */
     private enum NullPlaceholder {
         INSTANCE;
@@ -31,18 +38,54 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
         }
     }
 
+    /**
+     * Holder of an element in size tracking mode. Every insertion creates its own holder, and
+     * holders are compared by identity, so a removal can name the exact node it means and learn
+     * whether it was still there.
+     */
+    @SuppressWarnings("serial")
+    private static final class Slot implements Serializable {
+        final Object element;
+
+        Slot(Object element) {
+            this.element = element;
+        }
+    }
+
     private static Object mask(Object value) {
         return value == null ? NullPlaceholder.INSTANCE : value;
     }
 
     @SuppressWarnings("unchecked")
     private static <T> T unmask(Object value) {
+        if (value instanceof Slot) {
+            return (T) ((Slot) value).element;
+        }
         return value == NullPlaceholder.INSTANCE ? null : (T) value;
     }
 
+    /** Returns the object to store for a new element. */
+    private Object wrap(Object value) {
+        return counter == null ? mask(value) : new Slot(value);
+    }
+
     /** Constructs an empty deque. */
     public NullableConcurrentDeque() {
+        this(false);
+    }
+
+    /**
+     * Constructs an empty deque, optionally in size tracking mode.
+     *
+     * <p>In size tracking mode every insertion and removal updates a striped counter, so that
+     * {@link #size()} and {@link #depth()} take constant time instead of traversing the deque. Each
+     * element is then stored in a holder of its own, so that removals can be counted exactly.
+     *
+     * @param trackSize `true` to maintain a size counter
+     */
+    public NullableConcurrentDeque(boolean trackSize) {
         this.internalDeque = new ConcurrentLinkedDeque<>();
+        this.counter = trackSize ? new LongAdder() : null;
     }
 
     /**
@@ -52,7 +95,7 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
      * @param c the collection whose elements are to be placed into this deque
      */
     public NullableConcurrentDeque(Collection<? extends E> c) {
-        this.internalDeque = new ConcurrentLinkedDeque<>();
+        this(false);
         if (c != null) {
             for (E e : c) {
                 add(e);
@@ -69,7 +112,8 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
      */
     @Override
     public void addFirst(E e) {
-        internalDeque.addFirst(mask(e));
+        internalDeque.addFirst(wrap(e));
+        count(1);
     }
 
     /**
@@ -79,7 +123,8 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
      */
     @Override
     public void addLast(E e) {
-        internalDeque.addLast(mask(e));
+        internalDeque.addLast(wrap(e));
+        count(1);
     }
 
     /**
@@ -89,7 +134,9 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
      */
     @Override
     public boolean offerFirst(E e) {
-        return internalDeque.offerFirst(mask(e));
+        internalDeque.offerFirst(wrap(e));
+        count(1);
+        return true;
     }
 
     /**
@@ -99,27 +146,33 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
      */
     @Override
     public boolean offerLast(E e) {
-        return internalDeque.offerLast(mask(e));
+        internalDeque.offerLast(wrap(e));
+        count(1);
+        return true;
     }
 
     @Override
     public E removeFirst() {
-        return unmask(internalDeque.removeFirst());
+        Object e = internalDeque.removeFirst();
+        count(-1);
+        return unmask(e);
     }
 
     @Override
     public E removeLast() {
-        return unmask(internalDeque.removeLast());
+        Object e = internalDeque.removeLast();
+        count(-1);
+        return unmask(e);
     }
 
     @Override
     public E pollFirst() {
-        return unmask(internalDeque.pollFirst());
+        return unmask(counted(internalDeque.pollFirst()));
     }
 
     @Override
     public E pollLast() {
-        return unmask(internalDeque.pollLast());
+        return unmask(counted(internalDeque.pollLast()));
     }
 
     @Override
@@ -144,12 +197,18 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
 
     @Override
     public boolean removeFirstOccurrence(Object o) {
-        return internalDeque.removeFirstOccurrence(mask(o));
+        if (counter == null) {
+            return internalDeque.removeFirstOccurrence(mask(o));
+        }
+        return removeTracked(o, false);
     }
 
     @Override
     public boolean removeLastOccurrence(Object o) {
-        return internalDeque.removeLastOccurrence(mask(o));
+        if (counter == null) {
+            return internalDeque.removeLastOccurrence(mask(o));
+        }
+        return removeTracked(o, true);
     }
 
     // Queue Methods
@@ -161,7 +220,9 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
      */
     @Override
     public boolean add(E e) {
-        return internalDeque.add(mask(e));
+        internalDeque.add(wrap(e));
+        count(1);
+        return true;
     }
 
     /**
@@ -171,17 +232,21 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
      */
     @Override
     public boolean offer(E e) {
-        return internalDeque.offer(mask(e));
+        internalDeque.offer(wrap(e));
+        count(1);
+        return true;
     }
 
     @Override
     public E remove() {
-        return unmask(internalDeque.remove());
+        Object e = internalDeque.remove();
+        count(-1);
+        return unmask(e);
     }
 
     @Override
     public E poll() {
-        return unmask(internalDeque.poll());
+        return unmask(counted(internalDeque.poll()));
     }
 
     @Override
@@ -203,71 +268,63 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
      */
     @Override
     public void push(E e) {
-        internalDeque.push(mask(e));
+        internalDeque.push(wrap(e));
+        count(1);
     }
 
     @Override
     public E pop() {
-        return unmask(internalDeque.pop());
+        Object e = internalDeque.pop();
+        count(-1);
+        return unmask(e);
     }
 
     // Collection Methods
 
     @Override
     public boolean remove(Object o) {
-        return internalDeque.remove(mask(o));
+        return removeFirstOccurrence(o);
     }
 
     @Override
     public boolean contains(Object o) {
-        return internalDeque.contains(mask(o));
+        return counter == null ? internalDeque.contains(mask(o)) : find(o, false) != null;
     }
 
+    /**
+     * Returns the number of elements in this deque.
+     *
+     * <p>In size tracking mode this is a constant-time read of the counter, which may briefly
+     * deviate from the exact size while other threads are modifying the deque. Otherwise the whole
+     * deque is traversed.
+     */
     @Override
     public int size() {
-        return internalDeque.size();
+        if (counter == null) {
+            return internalDeque.size();
+        }
+        return (int) Math.max(0, Math.min(counter.sum(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the number of elements as a gauge for monitoring. In size tracking mode this is
+     * constant-time and not capped at {@link Integer#MAX_VALUE}; otherwise it equals {@link
+     * #size()}.
+     *
+     * @return the approximate number of elements
+     */
+    public long depth() {
+        return counter == null ? internalDeque.size() : Math.max(0, counter.sum());
     }
 
     @Override
     public Iterator<E> iterator() {
-        Iterator<Object> it = internalDeque.iterator();
-        return new Iterator<E>() {
-            @Override
-            public boolean hasNext() {
-                return it.hasNext();
-            }
-
-            @Override
-            public E next() {
-                return unmask(it.next());
-            }
-
-            @Override
-            public void remove() {
-                it.remove();
-            }
-        };
+        return new CountingIterator(internalDeque.iterator(), false);
     }
 
     @Override
     public Iterator<E> descendingIterator() {
-        Iterator<Object> it = internalDeque.descendingIterator();
-        return new Iterator<E>() {
-            @Override
-            public boolean hasNext() {
-                return it.hasNext();
-            }
-
-            @Override
-            public E next() {
-                return unmask(it.next());
-            }
-
-            @Override
-            public void remove() {
-                it.remove();
-            }
-        };
+        return new CountingIterator(internalDeque.descendingIterator(), true);
     }
 
     @Override
@@ -307,13 +364,14 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
         return true;
     }
 
+    /**
+     * Inserts all elements of the specified collection at the end of this deque in a single step.
+     *
+     * @see #offerAll(Collection)
+     */
     @Override
     public boolean addAll(Collection<? extends E> c) {
-        boolean modified = false;
-        for (E e : c) {
-            if (add(e)) modified = true;
-        }
-        return modified;
+        return offerAll(c);
     }
 
     @Override
@@ -343,6 +401,175 @@ public class NullableConcurrentDeque<E> implements Deque<E>, Serializable {
 
     @Override
     public void clear() {
-        internalDeque.clear();
+        if (counter == null) {
+            internalDeque.clear();
+        } else {
+            while (counted(internalDeque.pollFirst()) != null) {
+                // drain
+            }
+        }
+    }
+
+    // Batch methods
+
+    /**
+     * Inserts all elements of the specified collection at the end of this deque, in the order they
+     * are returned by its iterator. The elements are linked to each other first and then appended
+     * in a single step, so concurrent consumers see either none or all of them.
+     *
+     * @param c the elements, may contain `null`
+     * @return `true` if the deque changed
+     * @throws IllegalArgumentException if the collection is this deque
+     */
+    public boolean offerAll(Collection<? extends E> c) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        List<Object> masked = new ArrayList<>(c.size());
+        for (E e : c) {
+            masked.add(wrap(e));
+        }
+        if (!internalDeque.addAll(masked)) {
+            return false;
+        }
+        count(masked.size());
+        return true;
+    }
+
+    /**
+     * Removes up to {@code limit} elements from the head and passes them to the action.
+     *
+     * @param action the action, receives `null` elements as `null`
+     * @param limit the maximum number of elements
+     * @return the number of elements removed
+     */
+    public int drain(Consumer<? super E> action, int limit) {
+        int n = 0;
+        try {
+            Object e;
+            while (n < limit && (e = internalDeque.pollFirst()) != null) {
+                n++;
+                action.accept(unmask(e));
+            }
+        } finally {
+            count(-n); // once per batch
+        }
+        return n;
+    }
+
+    /**
+     * Removes up to {@code max} elements from the head and adds them to the given collection.
+     *
+     * @param c the collection to transfer elements into
+     * @param max the maximum number of elements
+     * @return the number of elements transferred
+     * @throws IllegalArgumentException if the collection is this deque
+     */
+    public int drainTo(Collection<? super E> c, int max) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        return drain(c::add, max);
+    }
+
+    // Helper methods and classes
+
+    private void count(long delta) {
+        if (counter != null) {
+            counter.add(delta);
+        }
+    }
+
+    /** Counts a removal if the element returned by a poll is not `null`. */
+    private Object counted(Object e) {
+        if (e != null) {
+            count(-1);
+        }
+        return e;
+    }
+
+    /**
+     * Returns the holder of the first element equal to the given one, searching from the head or
+     * the tail, in size tracking mode.
+     */
+    private Object find(Object o, boolean fromLast) {
+        Iterator<Object> it =
+                fromLast ? internalDeque.descendingIterator() : internalDeque.iterator();
+        while (it.hasNext()) {
+            Object slot = it.next();
+            if (Objects.equals(o, unmask(slot))) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes and counts the first or last element equal to the given one in size tracking mode.
+     */
+    private boolean removeTracked(Object o, boolean fromLast) {
+        for (; ; ) {
+            Object slot = find(o, fromLast);
+            if (slot == null) {
+                return false;
+            }
+            boolean removed =
+                    fromLast
+                            ? internalDeque.removeLastOccurrence(slot)
+                            : internalDeque.removeFirstOccurrence(slot);
+            if (countRemoval(removed)) {
+                return true;
+            }
+        }
+    }
+
+    /** Counts a removal if it succeeded. */
+    private boolean countRemoval(boolean removed) {
+        if (removed) {
+            count(-1);
+        }
+        return removed;
+    }
+
+    /** Unmasks the elements and keeps the counter up to date on removal. */
+    private class CountingIterator implements Iterator<E> {
+        private final Iterator<Object> it;
+        private final boolean descending;
+        private Object last;
+
+        CountingIterator(Iterator<Object> it, boolean descending) {
+            this.it = it;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public E next() {
+            last = it.next();
+            return unmask(last);
+        }
+
+        @Override
+        public void remove() {
+            if (counter == null) {
+                it.remove();
+                return;
+            }
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            // The iterator of ConcurrentLinkedDeque does not tell whether the element was still
+            // there, so the holder, which equals only itself, is removed in a way that does.
+            if (descending) {
+                countRemoval(internalDeque.removeLastOccurrence(last));
+            } else {
+                countRemoval(internalDeque.removeFirstOccurrence(last));
+            }
+            last = null;
+        }
     }
 }
@@ -0,0 +1,282 @@
+package de.krawallgraben.nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe collection of possibly overlapping, half-open key intervals with values that allows
+ * `null` values and intervals starting at the `null` key.
+ *
+ * <p>This is the interval-tree counterpart of {@link NullableConcurrentRangeMap}: intervals are
+ * never split or coalesced, and a stabbing query returns every interval that contains a point. The
+ * intervals are kept in a persistent balanced tree ordered by their lower bound, in which every
+ * node caches the greatest upper bound of its subtree. A query skips every subtree that ends before
+ * the point and costs O(log n + k) for k results.
+ *
+ * <p>Writers publish a new root with a single compare-and-set and never block readers. Every query
+ * and iterator works on one consistent state.
+ *
+ * <p>`null` keys are sorted to the beginning. {@link #size()} is a constant-time operation.
+ *
+ * <p>Like {@link NullableConcurrentRangeMap}, this class is deliberately not {@link
+ * java.io.Serializable}. Its intervals can be written out by iterating them and restored with
+ * {@link #add}.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class NullableConcurrentIntervalMap<K, V>
+        implements Iterable<NullableConcurrentRangeMap.RangeEntry<K, V>> {
+
+    /** Intervals by (lower bound, sequence number), aggregating the greatest upper bound. */
+    private final PersistentSortedTree tree;
+
+    /** Key order, `null` first. */
+    private final Comparator<Object> order;
+
+    /** Source of sequence numbers that tell intervals with equal lower bounds apart. */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** Aggregate of an empty subtree, less than every upper bound. */
+    private static final Object NO_END = new Object();
+
+    /** Tree key: a lower bound and a tiebreaker sequence number. */
+    private static final class Slot {
+        final Object from;
+        final long seq;
+
+        Slot(Object from, long seq) {
+            this.from = from;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * Constructs a new, empty interval map, sorted according to the {@linkplain Comparable natural
+     * ordering} of the keys.
+     */
+    public NullableConcurrentIntervalMap() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new, empty interval map, sorted according to the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order the keys. If {@code null}, the
+     *     {@linkplain Comparable natural ordering} of the keys will be used.
+     */
+    public NullableConcurrentIntervalMap(Comparator<? super K> comparator) {
+        this.order = PersistentSortedTree.nullsFirst(comparator);
+        Comparator<Object> slots =
+                (o1, o2) -> {
+                    Slot s1 = (Slot) o1;
+                    Slot s2 = (Slot) o2;
+                    int c = order.compare(s1.from, s2.from);
+                    return c != 0 ? c : Long.compare(s1.seq, s2.seq);
+                };
+        this.tree = new PersistentSortedTree(slots, new MaxEndAggregator(order));
+    }
+
+    // Updates
+
+    /**
+     * Adds the interval {@code [from, to)}. Existing intervals, including equal ones, are kept.
+     *
+     * @param from the lower bound (inclusive), may be `null`
+     * @param to the upper bound (exclusive), must be greater than {@code from}
+     * @param value the value, may be `null`
+     */
+    public void add(K from, K to, V value) {
+        if (order.compare(from, to) >= 0) {
+            throw new IllegalArgumentException("empty interval: [" + from + ", " + to + ")");
+        }
+        NullableConcurrentRangeMap.RangeEntry<K, V> interval =
+                new NullableConcurrentRangeMap.RangeEntry<>(from, to, value);
+        tree.update(new Slot(from, sequence.getAndIncrement()), n -> interval);
+    }
+
+    /**
+     * Removes the oldest interval {@code [from, to)} with the specified value.
+     *
+     * @param from the lower bound
+     * @param to the upper bound
+     * @param value the value
+     * @return `true` if an interval was removed
+     */
+    public boolean remove(K from, K to, V value) {
+        NullableConcurrentRangeMap.RangeEntry<K, V> wanted =
+                new NullableConcurrentRangeMap.RangeEntry<>(from, to, value);
+        PersistentSortedTree.Range sameStart =
+                new PersistentSortedTree.Range(
+                        true,
+                        new Slot(from, Long.MIN_VALUE),
+                        true,
+                        true,
+                        new Slot(from, Long.MAX_VALUE),
+                        true);
+        for (; ; ) {
+            PersistentSortedTree.Node match = null;
+            for (Iterator<PersistentSortedTree.Node> it = tree.iterator(tree.root(), sameStart);
+                    it.hasNext() && match == null; ) {
+                PersistentSortedTree.Node n = it.next();
+                if (wanted.equals(n.value)) {
+                    match = n;
+                }
+            }
+            if (match == null) {
+                return false;
+            }
+            if (tree.update(match.key, n -> PersistentSortedTree.REMOVE) != null) {
+                return true;
+            }
+            // Removed concurrently, look for another match
+        }
+    }
+
+    /** Removes all intervals. */
+    public void clear() {
+        tree.setRoot(null);
+    }
+
+    // Queries
+
+    /**
+     * Returns the intervals that contain the given point, in ascending order of their lower bounds
+     * and, for equal lower bounds, in insertion order.
+     *
+     * @param point the point, may be `null`
+     * @return a new list of the intervals, empty if there are none
+     */
+    public List<NullableConcurrentRangeMap.RangeEntry<K, V>> stab(K point) {
+        List<NullableConcurrentRangeMap.RangeEntry<K, V>> result = new ArrayList<>();
+        collect(tree.root(), point, point, true, result);
+        return result;
+    }
+
+    /**
+     * Returns the intervals that overlap the range {@code [from, to)}, in ascending order of their
+     * lower bounds and, for equal lower bounds, in insertion order.
+     *
+     * @param from the lower bound (inclusive), may be `null`
+     * @param to the upper bound (exclusive)
+     * @return a new list of the intervals, empty if there are none
+     */
+    public List<NullableConcurrentRangeMap.RangeEntry<K, V>> overlapping(K from, K to) {
+        List<NullableConcurrentRangeMap.RangeEntry<K, V>> result = new ArrayList<>();
+        if (order.compare(from, to) < 0) {
+            collect(tree.root(), from, to, false, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of intervals.
+     *
+     * @return the number of intervals
+     */
+    public int size() {
+        return PersistentSortedTree.size(tree.root());
+    }
+
+    /**
+     * Returns `true` if there are no intervals.
+     *
+     * @return `true` if empty
+     */
+    public boolean isEmpty() {
+        return tree.root() == null;
+    }
+
+    /**
+     * Returns an iterator over the intervals in ascending order of their lower bounds, as of the
+     * time of this call.
+     */
+    @Override
+    public Iterator<NullableConcurrentRangeMap.RangeEntry<K, V>> iterator() {
+        Iterator<PersistentSortedTree.Node> it =
+                tree.iterator(tree.root(), PersistentSortedTree.Range.ALL);
+        return new Iterator<NullableConcurrentRangeMap.RangeEntry<K, V>>() {
+            private PersistentSortedTree.Node lastReturned;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public NullableConcurrentRangeMap.RangeEntry<K, V> next() {
+                lastReturned = it.next();
+                return interval(lastReturned);
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+                tree.update(lastReturned.key, n -> PersistentSortedTree.REMOVE);
+                lastReturned = null;
+            }
+        };
+    }
+
+    // Helper methods and classes
+
+    /**
+     * Collects the intervals of a subtree that end after {@code low} and start before {@code high}
+     * (or at it, if {@code highInclusive} is true).
+     */
+    private void collect(
+            PersistentSortedTree.Node n,
+            Object low,
+            Object high,
+            boolean highInclusive,
+            List<NullableConcurrentRangeMap.RangeEntry<K, V>> result) {
+        while (n != null && n.aggregate != NO_END && order.compare(n.aggregate, low) > 0) {
+            collect(n.left, low, high, highInclusive, result);
+            NullableConcurrentRangeMap.RangeEntry<K, V> interval = interval(n);
+            int c = order.compare(interval.getFrom(), high);
+            if (c > 0 || (c == 0 && !highInclusive)) {
+                return; // this and all later intervals start too late
+            }
+            if (order.compare(interval.getTo(), low) > 0) {
+                result.add(interval);
+            }
+            n = n.right;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private NullableConcurrentRangeMap.RangeEntry<K, V> interval(PersistentSortedTree.Node n) {
+        return (NullableConcurrentRangeMap.RangeEntry<K, V>) n.value;
+    }
+
+    /** Aggregates the greatest upper bound of a subtree. */
+    private static final class MaxEndAggregator implements PersistentSortedTree.Aggregator {
+        private final Comparator<Object> order;
+
+        MaxEndAggregator(Comparator<Object> order) {
+            this.order = order;
+        }
+
+        @Override
+        public Object identity() {
+            return NO_END;
+        }
+
+        @Override
+        public Object lift(Object key, Object value) {
+            return ((NullableConcurrentRangeMap.RangeEntry<?, ?>) value).getTo();
+        }
+
+        @Override
+        public Object combine(Object lower, Object upper) {
+            if (lower == NO_END) return upper;
+            if (upper == NO_END) return lower;
+            return order.compare(lower, upper) >= 0 ? lower : upper;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package de.krawallgraben.nullable;
+
+import java.io.Serializable;
+import java.util.AbstractQueue;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free priority queue that allows `null` elements and duplicates.
+ *
+ * <p>Elements are ordered by their {@linkplain Comparable natural ordering} or by a comparator;
+ * `null` sorts first and is never passed to the comparator. Elements of equal priority are polled
+ * in the order they were inserted. The queue is backed by a {@link ConcurrentSkipListSet} of
+ * elements tagged with an insertion sequence number, so {@link #offer} and {@link #poll} take O(log
+ * n) time and never block.
+ *
+ * <p>When many consumers poll concurrently, they all contend for the head of the skip list. {@link
+ * #pollRelaxed()} spreads them out in the manner of a SprayList: every caller removes an element
+ * chosen at random among the first few instead of the very first one.
+ *
+ * <p>{@link #size()} is not a constant-time operation. Iterators return the elements in priority
+ * order and are weakly consistent.
+ *
+ * @param <E> the type of elements held in this queue
+ */
+@SuppressWarnings("serial")
+public class NullableConcurrentPriorityQueue<E> extends AbstractQueue<E> implements Serializable {
+
+    /** Internal set of elements tagged with a sequence number. */
+    private final ConcurrentSkipListSet<Node> internalSet;
+
+    private final Comparator<? super E> comparator;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** Number of head elements {@link #pollRelaxed()} chooses from. */
+    private final int sprayWidth;
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    // Comparator wrapper to handle NullPlaceholder and the sequence numbers
+    @SuppressWarnings("serial")
+    private static final class NodeComparator<E> implements Comparator<Node>, Serializable {
+        private final Comparator<? super E> delegate;
+
+        NodeComparator(Comparator<? super E> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compare(Node n1, Node n2) {
+            Object o1 = n1.element;
+            Object o2 = n2.element;
+            int cmp;
+            if (o1 == NullPlaceholder.INSTANCE) {
+                cmp = o2 == NullPlaceholder.INSTANCE ? 0 : -1;
+            } else if (o2 == NullPlaceholder.INSTANCE) {
+                cmp = 1;
+            } else if (delegate != null) {
+                cmp = delegate.compare((E) o1, (E) o2);
+            } else {
+                cmp = ((Comparable<? super E>) o1).compareTo((E) o2);
+            }
+            return cmp != 0 ? cmp : Long.compare(n1.seq, n2.seq);
+        }
+    }
+
+    /**
+     * Constructs an empty queue that orders its elements according to their {@linkplain Comparable
+     * natural ordering}.
+     */
+    public NullableConcurrentPriorityQueue() {
+        this(null);
+    }
+
+    /**
+     * Constructs an empty queue that orders its elements according to the specified comparator.
+     *
+     * @param comparator the comparator, or `null` for natural ordering
+     */
+    public NullableConcurrentPriorityQueue(Comparator<? super E> comparator) {
+        this(comparator, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty queue that orders its elements according to the specified comparator.
+     *
+     * @param comparator the comparator, or `null` for natural ordering
+     * @param sprayWidth the number of head elements {@link #pollRelaxed()} chooses from, typically
+     *     in the order of the number of consumer threads
+     */
+    public NullableConcurrentPriorityQueue(Comparator<? super E> comparator, int sprayWidth) {
+        if (sprayWidth < 1) {
+            throw new IllegalArgumentException("sprayWidth: " + sprayWidth);
+        }
+        this.comparator = comparator;
+        this.sprayWidth = sprayWidth;
+        this.internalSet = new ConcurrentSkipListSet<>(new NodeComparator<>(comparator));
+    }
+
+    /**
+     * Returns the comparator used to order the elements.
+     *
+     * @return the comparator, or `null` for natural ordering
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    // Queue methods
+
+    /**
+     * Inserts the specified element.
+     *
+     * <p>Unlike standard priority queues, this method accepts `null`.
+     *
+     * @return `true`
+     */
+    @Override
+    public boolean offer(E e) {
+        return internalSet.add(new Node(mask(e), sequence.getAndIncrement()));
+    }
+
+    /** Retrieves and removes the element with the highest priority, the least element. */
+    @Override
+    public E poll() {
+        Node n = internalSet.pollFirst();
+        return n == null ? null : unmask(n.element);
+    }
+
+    /**
+     * Retrieves and removes one of the elements with the highest priorities. The element is chosen
+     * at random among the first elements, so concurrent consumers rarely compete for the same one.
+     * Falls back to {@link #poll()} if the queue is too short.
+     *
+     * @return an element near the head, or `null` if the queue is empty
+     */
+    public E pollRelaxed() {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            int steps = ThreadLocalRandom.current().nextInt(sprayWidth);
+            Node candidate = null;
+            for (Node n : internalSet) {
+                candidate = n;
+                if (steps-- == 0) {
+                    break;
+                }
+            }
+            if (candidate == null) {
+                return null; // empty
+            }
+            if (steps >= 0) {
+                break; // fewer elements than the walk
+            }
+            if (internalSet.remove(candidate)) {
+                return unmask(candidate.element);
+            }
+        }
+        return poll();
+    }
+
+    @Override
+    public E peek() {
+        Iterator<Node> it = internalSet.iterator();
+        return it.hasNext() ? unmask(it.next().element) : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return internalSet.isEmpty();
+    }
+
+    /** Returns the number of elements. This is not a constant-time operation. */
+    @Override
+    public int size() {
+        return internalSet.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return find(o) != null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        for (; ; ) {
+            Node n = find(o);
+            if (n == null) {
+                return false;
+            }
+            if (internalSet.remove(n)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        internalSet.clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Iterator<Node> it = internalSet.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return unmask(it.next().element);
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+            }
+        };
+    }
+
+    // Helper methods and classes
+
+    /** Returns the first node with an element equal to the given one, or `null`. */
+    private Node find(Object o) {
+        Object masked = mask(o);
+        try {
+            // Only the elements of equal priority need to be compared
+            for (Node n :
+                    internalSet.subSet(
+                            new Node(masked, Long.MIN_VALUE), true,
+                            new Node(masked, Long.MAX_VALUE), true)) {
+                if (masked.equals(n.element)) {
+                    return n;
+                }
+            }
+        } catch (ClassCastException e) {
+            // not comparable with the elements, so not contained
+        }
+        return null;
+    }
+
+    /** An element with its insertion sequence number. */
+    @SuppressWarnings("serial")
+    private static final class Node implements Serializable {
+        final Object element;
+        final long seq;
+
+        Node(Object element, long seq) {
+            this.element = element;
+            this.seq = seq;
+        }
+    }
+}
@@ -2,10 +2,15 @@ package de.krawallgraben.nullable;
 
 import java.io.Serializable;
 import java.util.AbstractQueue;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * A thread-safe queue that allows `null` elements.
@@ -21,6 +26,9 @@ public class NullableConcurrentQueue<E> extends AbstractQueue<E> implements Queu
     /** Internal queue that stores masked values. */
     private final ConcurrentLinkedQueue<Object> internalQueue;
 
+    /** Number of elements in size tracking mode, otherwise `null`. */
+    private final LongAdder counter;
+
     /** Placeholder for `null`. */
     private enum NullPlaceholder {
         INSTANCE;
@@ -31,18 +39,54 @@ public class NullableConcurrentQueue<E> extends AbstractQueue<E> implements Queu
         }
     }
 
+    /**
+     * Holder of an element in size tracking mode. Every insertion creates its own holder, and
+     * holders are compared by identity, so a removal can name the exact node it means and learn
+     * whether it was still there.
+     */
+    @SuppressWarnings("serial")
+    private static final class Slot implements Serializable {
+        final Object element;
+
+        Slot(Object element) {
+            this.element = element;
+        }
+    }
+
     private static Object mask(Object value) {
         return value == null ? NullPlaceholder.INSTANCE : value;
     }
 
     @SuppressWarnings("unchecked")
     private static <T> T unmask(Object value) {
+        if (value instanceof Slot) {
+            return (T) ((Slot) value).element;
+        }
         return value == NullPlaceholder.INSTANCE ? null : (T) value;
     }
 
+    /** Returns the object to store for a new element. */
+    private Object wrap(Object value) {
+        return counter == null ? mask(value) : new Slot(value);
+    }
+
     /** Constructs an empty queue. */
     public NullableConcurrentQueue() {
+        this(false);
+    }
+
+    /**
+     * Constructs an empty queue, optionally in size tracking mode.
+     *
+     * <p>In size tracking mode every insertion and removal updates a striped counter, so that
+     * {@link #size()} and {@link #depth()} take constant time instead of traversing the queue. Each
+     * element is then stored in a holder of its own, so that removals can be counted exactly.
+     *
+     * @param trackSize `true` to maintain a size counter
+     */
+    public NullableConcurrentQueue(boolean trackSize) {
         this.internalQueue = new ConcurrentLinkedQueue<>();
+        this.counter = trackSize ? new LongAdder() : null;
     }
 
     /**
@@ -52,7 +96,7 @@ public class NullableConcurrentQueue<E> extends AbstractQueue<E> implements Queu
      * @param c the collection whose elements are to be placed into this queue
      */
     public NullableConcurrentQueue(Collection<? extends E> c) {
-        this.internalQueue = new ConcurrentLinkedQueue<>();
+        this(false);
         if (c != null) {
             for (E e : c) {
                 add(e);
@@ -62,28 +106,33 @@ public class NullableConcurrentQueue<E> extends AbstractQueue<E> implements Queu
 
     @Override
     public Iterator<E> iterator() {
-        Iterator<Object> it = internalQueue.iterator();
-        return new Iterator<E>() {
-            @Override
-            public boolean hasNext() {
-                return it.hasNext();
-            }
-
-            @Override
-            public E next() {
-                return unmask(it.next());
-            }
-
-            @Override
-            public void remove() {
-                it.remove();
-            }
-        };
+        return new CountingIterator(internalQueue.iterator());
     }
 
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * <p>In size tracking mode this is a constant-time read of the counter, which may briefly
+     * deviate from the exact size while other threads are modifying the queue. Otherwise the whole
+     * queue is traversed.
+     */
     @Override
     public int size() {
-        return internalQueue.size();
+        if (counter == null) {
+            return internalQueue.size();
+        }
+        return (int) Math.max(0, Math.min(counter.sum(), Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the number of elements as a gauge for monitoring. In size tracking mode this is
+     * constant-time and not capped at {@link Integer#MAX_VALUE}; otherwise it equals {@link
+     * #size()}.
+     *
+     * @return the approximate number of elements
+     */
+    public long depth() {
+        return counter == null ? internalQueue.size() : Math.max(0, counter.sum());
     }
 
     /**
@@ -93,12 +142,18 @@ public class NullableConcurrentQueue<E> extends AbstractQueue<E> implements Queu
      */
     @Override
     public boolean offer(E e) {
-        return internalQueue.offer(mask(e));
+        internalQueue.offer(wrap(e));
+        count(1);
+        return true;
     }
 
     @Override
     public E poll() {
-        return unmask(internalQueue.poll());
+        Object e = internalQueue.poll();
+        if (e != null) {
+            count(-1);
+        }
+        return unmask(e);
     }
 
     @Override
@@ -113,16 +168,165 @@ public class NullableConcurrentQueue<E> extends AbstractQueue<E> implements Queu
 
     @Override
     public boolean contains(Object o) {
-        return internalQueue.contains(mask(o));
+        return counter == null ? internalQueue.contains(mask(o)) : find(o) != null;
     }
 
     @Override
     public boolean remove(Object o) {
-        return internalQueue.remove(mask(o));
+        if (counter == null) {
+            return internalQueue.remove(mask(o));
+        }
+        for (; ; ) {
+            Object slot = find(o);
+            if (slot == null) {
+                return false;
+            }
+            if (countRemoval(internalQueue.remove(slot))) {
+                return true;
+            }
+        }
     }
 
     @Override
     public void clear() {
-        internalQueue.clear();
+        if (counter == null) {
+            internalQueue.clear();
+        } else {
+            drain(e -> {}, Integer.MAX_VALUE);
+        }
+    }
+
+    // Batch methods
+
+    /**
+     * Inserts all elements of the specified collection, in the order they are returned by its
+     * iterator. The elements are linked to each other first and then appended to the queue in a
+     * single step, so concurrent consumers see either none or all of them.
+     *
+     * @param c the elements, may contain `null`
+     * @return `true` if the queue changed
+     * @throws IllegalArgumentException if the collection is this queue
+     */
+    public boolean offerAll(Collection<? extends E> c) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        List<Object> masked = new ArrayList<>(c.size());
+        for (E e : c) {
+            masked.add(wrap(e));
+        }
+        if (!internalQueue.addAll(masked)) {
+            return false;
+        }
+        count(masked.size());
+        return true;
+    }
+
+    /**
+     * Inserts all elements of the specified collection in a single step.
+     *
+     * @see #offerAll(Collection)
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return offerAll(c);
+    }
+
+    /**
+     * Removes up to {@code limit} elements from the head and passes them to the action.
+     *
+     * @param action the action, receives `null` elements as `null`
+     * @param limit the maximum number of elements
+     * @return the number of elements removed
+     */
+    public int drain(Consumer<? super E> action, int limit) {
+        int n = 0;
+        try {
+            Object e;
+            while (n < limit && (e = internalQueue.poll()) != null) {
+                n++;
+                action.accept(unmask(e));
+            }
+        } finally {
+            count(-n); // once per batch
+        }
+        return n;
+    }
+
+    /**
+     * Removes up to {@code max} elements from the head and adds them to the given collection.
+     *
+     * @param c the collection to transfer elements into
+     * @param max the maximum number of elements
+     * @return the number of elements transferred
+     * @throws IllegalArgumentException if the collection is this queue
+     */
+    public int drainTo(Collection<? super E> c, int max) {
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        return drain(c::add, max);
+    }
+
+    // Helper methods and classes
+
+    private void count(long delta) {
+        if (counter != null) {
+            counter.add(delta);
+        }
+    }
+
+    /** Returns the holder of the first element equal to the given one in size tracking mode. */
+    private Object find(Object o) {
+        for (Object slot : internalQueue) {
+            if (Objects.equals(o, unmask(slot))) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /** Counts a removal if it succeeded. */
+    private boolean countRemoval(boolean removed) {
+        if (removed) {
+            count(-1);
+        }
+        return removed;
+    }
+
+    /** Unmasks the elements and keeps the counter up to date on removal. */
+    private class CountingIterator implements Iterator<E> {
+        private final Iterator<Object> it;
+        private Object last;
+
+        CountingIterator(Iterator<Object> it) {
+            this.it = it;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public E next() {
+            last = it.next();
+            return unmask(last);
+        }
+
+        @Override
+        public void remove() {
+            if (counter == null) {
+                it.remove();
+                return;
+            }
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            // The iterator of ConcurrentLinkedQueue does not tell whether the element was still
+            // there, so the holder, which equals only itself, is removed in a way that does.
+            countRemoval(internalQueue.remove(last));
+            last = null;
+        }
     }
 }
@@ -0,0 +1,297 @@
+package de.krawallgraben.nullable;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe map from non-overlapping, half-open key ranges to values that allows `null` values
+ * and ranges starting at the `null` key.
+ *
+ * <p>The ranges are stored in a {@link NullableSortedConcurrentMap} by their lower bound, so a
+ * point lookup is one {@code floorEntry} call and costs O(log n). Inserting a range replaces the
+ * overlapping parts of existing ranges and coalesces it with adjacent or overlapping ranges mapped
+ * to an equal value.
+ *
+ * <p>Readers never block. Writers are serialized by a lock and apply their changes in an order that
+ * never exposes a gap: while a range is being replaced, every point in it resolves to either the
+ * old or the new value.
+ *
+ * <p>`null` keys are sorted to the beginning, so a range starting at `null` also covers the `null`
+ * key.
+ *
+ * <p>This class is deliberately not {@link java.io.Serializable}. It is not a drop-in {@link
+ * java.util.Map}, and its ranges can be written out by {@linkplain #iterator() iterating} them and
+ * restored with {@link #put}.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class NullableConcurrentRangeMap<K, V>
+        implements Iterable<NullableConcurrentRangeMap.RangeEntry<K, V>> {
+
+    /** Ranges by their lower bound. */
+    private final NullableSortedConcurrentMap<K, RangeEntry<K, V>> ranges;
+
+    /** Key order, `null` first. */
+    private final Comparator<Object> order;
+
+    /** Serializes writers. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * A range {@code [from, to)} and its value.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    public static final class RangeEntry<K, V> {
+        private final K from;
+        private final K to;
+        private final V value;
+
+        RangeEntry(K from, K to, V value) {
+            this.from = from;
+            this.to = to;
+            this.value = value;
+        }
+
+        /**
+         * Returns the lower bound.
+         *
+         * @return the lower bound (inclusive), may be `null`
+         */
+        public K getFrom() {
+            return from;
+        }
+
+        /**
+         * Returns the upper bound.
+         *
+         * @return the upper bound (exclusive)
+         */
+        public K getTo() {
+            return to;
+        }
+
+        /**
+         * Returns the value.
+         *
+         * @return the value, may be `null`
+         */
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RangeEntry)) return false;
+            RangeEntry<?, ?> e = (RangeEntry<?, ?>) o;
+            return Objects.equals(from, e.from)
+                    && Objects.equals(to, e.to)
+                    && Objects.equals(value, e.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(from, to, value);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + from + ", " + to + ")=" + value;
+        }
+    }
+
+    /**
+     * Constructs a new, empty range map, sorted according to the {@linkplain Comparable natural
+     * ordering} of the keys.
+     */
+    public NullableConcurrentRangeMap() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new, empty range map, sorted according to the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order the keys. If {@code null}, the
+     *     {@linkplain Comparable natural ordering} of the keys will be used.
+     */
+    public NullableConcurrentRangeMap(Comparator<? super K> comparator) {
+        this.ranges = new NullableSortedConcurrentMap<>(comparator);
+        this.order = PersistentSortedTree.nullsFirst(comparator);
+    }
+
+    // Queries
+
+    /**
+     * Returns the value of the range containing the given point.
+     *
+     * @param point the point, may be `null`
+     * @return the value, or `null` if no range contains the point
+     */
+    public V get(K point) {
+        RangeEntry<K, V> range = getEntry(point);
+        return range == null ? null : range.value;
+    }
+
+    /**
+     * Returns the range containing the given point.
+     *
+     * @param point the point, may be `null`
+     * @return the range, or `null` if no range contains the point
+     */
+    public RangeEntry<K, V> getEntry(K point) {
+        // floorEntry may pass the position of a split point before the writer inserts it and then
+        // read the range below after the writer trimmed it. A miss is therefore only trusted if
+        // it is seen twice with the same range.
+        Object previous = ranges; // no range yet
+        for (; ; ) {
+            Map.Entry<K, RangeEntry<K, V>> e = ranges.floorEntry(point);
+            RangeEntry<K, V> range = e == null ? null : e.getValue();
+            if (range != null && order.compare(point, range.to) < 0) {
+                return range;
+            }
+            if (range == previous) {
+                return null;
+            }
+            previous = range;
+        }
+    }
+
+    /**
+     * Returns `true` if a range contains the given point.
+     *
+     * @param point the point, may be `null`
+     * @return `true` if the point is covered
+     */
+    public boolean contains(K point) {
+        return getEntry(point) != null;
+    }
+
+    // Updates
+
+    /**
+     * Maps the range {@code [from, to)} to the given value, replacing the overlapping parts of
+     * existing ranges. The range is coalesced with adjacent or overlapping ranges that are mapped
+     * to an equal value.
+     *
+     * @param from the lower bound (inclusive), may be `null`
+     * @param to the upper bound (exclusive), must be greater than {@code from}
+     * @param value the value, may be `null`
+     */
+    public void put(K from, K to, V value) {
+        checkRange(from, to);
+        writeLock.lock();
+        try {
+            K start = from;
+            K end = to;
+            Map.Entry<K, RangeEntry<K, V>> below = ranges.lowerEntry(from);
+            if (below != null) {
+                RangeEntry<K, V> left = below.getValue();
+                if (Objects.equals(left.value, value) && order.compare(left.to, from) >= 0) {
+                    start = left.from;
+                    end = max(end, left.to);
+                }
+            }
+            Map.Entry<K, RangeEntry<K, V>> atEnd = ranges.floorEntry(to);
+            if (atEnd != null) {
+                RangeEntry<K, V> right = atEnd.getValue();
+                if (Objects.equals(right.value, value) && order.compare(right.to, to) >= 0) {
+                    end = max(end, right.to);
+                }
+            }
+            splitAt(end);
+            ranges.put(start, new RangeEntry<>(start, end, value));
+            ranges.subMap(start, false, end, false).clear();
+            trimBelow(start);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the range {@code [from, to)}. Ranges that overlap it partially are shortened or
+     * split.
+     *
+     * @param from the lower bound (inclusive), may be `null`
+     * @param to the upper bound (exclusive), must be greater than {@code from}
+     */
+    public void remove(K from, K to) {
+        checkRange(from, to);
+        writeLock.lock();
+        try {
+            splitAt(to);
+            trimBelow(from);
+            ranges.subMap(from, true, to, false).clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Removes all ranges. */
+    public void clear() {
+        writeLock.lock();
+        try {
+            ranges.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of ranges. This is not a constant-time operation.
+     *
+     * @return the number of ranges
+     */
+    public int size() {
+        return ranges.size();
+    }
+
+    /**
+     * Returns `true` if there are no ranges.
+     *
+     * @return `true` if empty
+     */
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    /** Returns a weakly consistent iterator over the ranges in ascending order. */
+    @Override
+    public Iterator<RangeEntry<K, V>> iterator() {
+        return ranges.values().iterator();
+    }
+
+    // Helper methods
+
+    private void checkRange(K from, K to) {
+        if (order.compare(from, to) >= 0) {
+            throw new IllegalArgumentException("empty range: [" + from + ", " + to + ")");
+        }
+    }
+
+    private K max(K k1, K k2) {
+        return order.compare(k1, k2) >= 0 ? k1 : k2;
+    }
+
+    /** Splits the range containing {@code point} in its interior so that a range starts there. */
+    private void splitAt(K point) {
+        Map.Entry<K, RangeEntry<K, V>> e = ranges.lowerEntry(point);
+        if (e != null && order.compare(e.getValue().to, point) > 0) {
+            RangeEntry<K, V> range = e.getValue();
+            ranges.put(point, new RangeEntry<>(point, range.to, range.value));
+        }
+    }
+
+    /** Shortens the range starting below {@code point} so that it ends there. */
+    private void trimBelow(K point) {
+        Map.Entry<K, RangeEntry<K, V>> e = ranges.lowerEntry(point);
+        if (e != null && order.compare(e.getValue().to, point) > 0) {
+            RangeEntry<K, V> range = e.getValue();
+            ranges.put(range.from, new RangeEntry<>(range.from, point, range.value));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package de.krawallgraben.nullable;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free stack that allows `null` elements.
+ *
+ * <p>This is a Treiber stack, a linked list whose head is replaced by compare-and-set, with an
+ * elimination array in front of it. A thread whose compare-and-set on the head fails does not retry
+ * right away but visits a random slot of the array: a pushing thread leaves its element there for a
+ * short while, and a popping thread that finds an element takes it. Such a push and pop cancel each
+ * other out without touching the head, so the stack scales under contention where a plain Treiber
+ * stack or {@link NullableConcurrentDeque} serializes all threads on the head.
+ *
+ * <p>{@link #pop} returns `null` if the stack is empty. Use {@link #isEmpty()} to tell an empty
+ * stack from a `null` element. {@link #size()} is not a constant-time operation.
+ *
+ * @param <E> the type of elements held in this stack
+ */
+public class NullableConcurrentStack<E> {
+
+    /** Number of spins a pushing thread waits in the elimination array. */
+    private static final int SPINS = 64;
+
+    private final AtomicReference<Node> head = new AtomicReference<>();
+
+    /** Slots in which pushing threads offer their nodes to popping threads. */
+    private final AtomicReferenceArray<Node> elimination;
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /** Constructs an empty stack with an elimination array sized for the available processors. */
+    public NullableConcurrentStack() {
+        this(Math.min(Runtime.getRuntime().availableProcessors(), 32));
+    }
+
+    /**
+     * Constructs an empty stack.
+     *
+     * @param eliminationSlots the size of the elimination array, typically about half the number of
+     *     threads using the stack
+     */
+    public NullableConcurrentStack(int eliminationSlots) {
+        if (eliminationSlots < 1) {
+            throw new IllegalArgumentException("eliminationSlots: " + eliminationSlots);
+        }
+        this.elimination = new AtomicReferenceArray<>(eliminationSlots);
+    }
+
+    /**
+     * Pushes an element onto this stack.
+     *
+     * <p>Unlike standard concurrent stacks, this method accepts `null`.
+     *
+     * @param e the element
+     */
+    public void push(E e) {
+        Node node = new Node(mask(e));
+        for (; ; ) {
+            Node h = head.get();
+            node.next = h;
+            if (head.compareAndSet(h, node) || eliminatePush(node)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the top element.
+     *
+     * @return the element, or `null` if the stack is empty
+     */
+    public E pop() {
+        for (; ; ) {
+            Node h = head.get();
+            if (h == null) {
+                return null;
+            }
+            if (head.compareAndSet(h, h.next)) {
+                return unmask(h.item);
+            }
+            Node other = eliminatePop();
+            if (other != null) {
+                return unmask(other.item);
+            }
+        }
+    }
+
+    /**
+     * Returns the top element without removing it.
+     *
+     * @return the element, or `null` if the stack is empty
+     */
+    public E peek() {
+        Node h = head.get();
+        return h == null ? null : unmask(h.item);
+    }
+
+    /**
+     * Returns `true` if there are no elements.
+     *
+     * @return `true` if empty
+     */
+    public boolean isEmpty() {
+        return head.get() == null;
+    }
+
+    /**
+     * Returns the number of elements. This is not a constant-time operation.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        int n = 0;
+        for (Node p = head.get(); p != null && n < Integer.MAX_VALUE; p = p.next) {
+            n++;
+        }
+        return n;
+    }
+
+    /** Removes all elements. */
+    public void clear() {
+        head.set(null);
+    }
+
+    // Helper methods and classes
+
+    /** Offers the node in a random slot; returns `true` if a popping thread took it. */
+    private boolean eliminatePush(Node node) {
+        int slot = ThreadLocalRandom.current().nextInt(elimination.length());
+        if (!elimination.compareAndSet(slot, null, node)) {
+            return false; // occupied, retry on the head
+        }
+        for (int i = 0; i < SPINS; i++) {
+            if (elimination.get(slot) != node) {
+                return true;
+            }
+        }
+        // Withdraw the offer, unless a popping thread took it in the meantime
+        return !elimination.compareAndSet(slot, node, null);
+    }
+
+    /** Takes a node offered in a random slot, or returns `null`. */
+    private Node eliminatePop() {
+        int slot = ThreadLocalRandom.current().nextInt(elimination.length());
+        Node node = elimination.get(slot);
+        return node != null && elimination.compareAndSet(slot, node, null) ? node : null;
+    }
+
+    private static final class Node {
+        final Object item;
+        Node next;
+
+        Node(Object item) {
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package de.krawallgraben.nullable;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe queue of key-value pairs that keeps only the latest value per key and allows `null`
+ * keys and values.
+ *
+ * <p>{@link #offer} replaces the value of a pair that is still waiting for the same key instead of
+ * adding a new one; the pair keeps its position in the queue. Consumers that fall behind therefore
+ * see each key at most once with its latest value, and the queue never holds more pairs than there
+ * are distinct keys. A `null` value is a value like any other, for example to signal that a key was
+ * cleared.
+ *
+ * <p>The queue is a {@link ConcurrentLinkedQueue} of pairs indexed by a {@link ConcurrentHashMap};
+ * a pair is replaced with one compare-and-set on its value. Neither method blocks. {@link #poll()}
+ * returns `null` if the queue is empty, never a pair with `null` key or value.
+ *
+ * <p>The queue is deliberately not {@link java.io.Serializable}. It does not implement {@link
+ * java.util.Queue}, and it holds transient updates that a consumer is expected to drain, not state
+ * worth persisting.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class NullableConflatingQueue<K, V> {
+
+    /** Waiting pairs in queue order. */
+    private final ConcurrentLinkedQueue<Pair> order = new ConcurrentLinkedQueue<>();
+
+    /** Waiting pairs by masked key. */
+    private final ConcurrentHashMap<Object, Pair> pending = new ConcurrentHashMap<>();
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    /** Value of a pair that was polled and can no longer be replaced. */
+    private static final Object TAKEN = new Object();
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /** Constructs an empty queue. */
+    public NullableConflatingQueue() {}
+
+    /**
+     * Inserts the pair, or replaces the value of the waiting pair with the same key.
+     *
+     * <p>Unlike standard concurrent collections, this method accepts `null` keys and values.
+     *
+     * @param key the key
+     * @param value the value
+     * @return `true` if a new pair was added, `false` if a waiting value was replaced
+     */
+    public boolean offer(K key, V value) {
+        Object k = mask(key);
+        Object v = mask(value);
+        Pair fresh = null;
+        for (; ; ) {
+            Pair p = pending.get(k);
+            if (p != null) {
+                Object old = p.value.get();
+                if (old != TAKEN) {
+                    if (p.value.compareAndSet(old, v)) {
+                        return false;
+                    }
+                    continue;
+                }
+                pending.remove(k, p); // polled, help its consumer
+                continue;
+            }
+            if (fresh == null) {
+                fresh = new Pair(k, v);
+            }
+            if (pending.putIfAbsent(k, fresh) == null) {
+                order.offer(fresh);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Retrieves and removes the oldest pair, with the latest value offered for its key.
+     *
+     * @return the pair, or `null` if the queue is empty
+     */
+    public Map.Entry<K, V> poll() {
+        Pair p = order.poll();
+        return p == null ? null : take(p);
+    }
+
+    /**
+     * Removes up to {@code limit} pairs and passes them to the given action.
+     *
+     * @param action the action to perform on each pair
+     * @param limit the maximum number of pairs
+     * @return the number of pairs removed
+     */
+    public int drain(Consumer<? super Map.Entry<K, V>> action, int limit) {
+        int n = 0;
+        Pair p;
+        while (n < limit && (p = order.poll()) != null) {
+            n++;
+            action.accept(take(p));
+        }
+        return n;
+    }
+
+    /**
+     * Returns `true` if there are no waiting pairs.
+     *
+     * @return `true` if empty
+     */
+    public boolean isEmpty() {
+        return order.isEmpty();
+    }
+
+    /**
+     * Returns the number of waiting pairs, which is at most the number of distinct keys offered.
+     *
+     * @return the number of pairs
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /** Removes all waiting pairs. */
+    public void clear() {
+        while (poll() != null) {
+            // drain
+        }
+    }
+
+    // Helper methods and classes
+
+    /** Marks a pair as taken, so later offers for its key start a new pair. */
+    private Map.Entry<K, V> take(Pair p) {
+        Object v = p.value.getAndSet(TAKEN);
+        pending.remove(p.key, p);
+        return new AbstractMap.SimpleImmutableEntry<>(unmask(p.key), unmask(v));
+    }
+
+    /** A masked key with its replaceable masked value. */
+    private static final class Pair {
+        final Object key;
+        final AtomicReference<Object> value;
+
+        Pair(Object key, Object value) {
+            this.key = key;
+            this.value = new AtomicReference<>(value);
+        }
+    }
+}
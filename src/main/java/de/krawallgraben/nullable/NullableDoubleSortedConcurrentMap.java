@@ -0,0 +1,342 @@
+package de.krawallgraben.nullable;
+
+import de.krawallgraben.nullable.NullableLongSortedConcurrentMap.EntryFactory;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A sorted, thread-safe map with primitive {@code double} keys that allows a `null` key and `null`
+ * values.
+ *
+ * <p>This implementation is backed by a {@link NullableLongSortedConcurrentMap}. Keys are encoded
+ * into order-preserving {@code long} values and compared as primitives. The order matches {@link
+ * Double#compare}. The `null` key is held in a dedicated slot and sorted to the beginning.
+ *
+ * @param <V> the type of values
+ */
+@SuppressWarnings("serial")
+public class NullableDoubleSortedConcurrentMap<V>
+        implements Iterable<Map.Entry<Double, V>>, Serializable {
+
+    /** Backing map with encoded keys. */
+    private final NullableLongSortedConcurrentMap<V> map;
+
+    /** Constructs a new, empty map. */
+    public NullableDoubleSortedConcurrentMap() {
+        this.map = new NullableLongSortedConcurrentMap<>();
+    }
+
+    // Private constructor for views
+    private NullableDoubleSortedConcurrentMap(NullableLongSortedConcurrentMap<V> map) {
+        this.map = map;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped.
+     *
+     * @param key the key
+     * @return the mapped value, or `null`
+     */
+    public V get(double key) {
+        return map.get(encode(key));
+    }
+
+    /**
+     * Returns `true` if this map contains a mapping for the specified key.
+     *
+     * @param key the key
+     * @return `true` if a mapping exists
+     */
+    public boolean containsKey(double key) {
+        return map.containsKey(encode(key));
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     *
+     * @param key the key
+     * @param value the value, may be `null`
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V put(double key, V value) {
+        return map.put(encode(key), value);
+    }
+
+    /**
+     * Associates the specified value with the specified key if the key is not already present.
+     *
+     * @param key the key
+     * @param value the value, may be `null`
+     * @return the current value, or `null` if there was no mapping
+     */
+    public V putIfAbsent(double key, V value) {
+        return map.putIfAbsent(encode(key), value);
+    }
+
+    /**
+     * Removes the mapping for the specified key.
+     *
+     * @param key the key
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V remove(double key) {
+        return map.remove(encode(key));
+    }
+
+    /**
+     * Returns `true` if this map contains a mapping for the `null` key.
+     *
+     * @return `true` if the `null` key is mapped
+     */
+    public boolean containsNullKey() {
+        return map.containsNullKey();
+    }
+
+    /**
+     * Returns the value mapped to the `null` key.
+     *
+     * @return the mapped value, or `null`
+     */
+    public V getNullKey() {
+        return map.getNullKey();
+    }
+
+    /**
+     * Associates the specified value with the `null` key.
+     *
+     * @param value the value, may be `null`
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V putNullKey(V value) {
+        return map.putNullKey(value);
+    }
+
+    /**
+     * Removes the mapping for the `null` key.
+     *
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V removeNullKey() {
+        return map.removeNullKey();
+    }
+
+    /**
+     * Returns the entry with the greatest key less than or equal to the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Double, V> floorEntry(double key) {
+        return map.floorEntry(encode(key), entries());
+    }
+
+    /**
+     * Returns the entry with the greatest key strictly less than the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Double, V> lowerEntry(double key) {
+        return map.lowerEntry(encode(key), entries());
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Double, V> ceilingEntry(double key) {
+        return map.ceilingEntry(encode(key), entries());
+    }
+
+    /**
+     * Returns the entry with the least key strictly greater than the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Double, V> higherEntry(double key) {
+        return map.higherEntry(encode(key), entries());
+    }
+
+    /**
+     * Returns the entry with the least key, which is the `null` key if present.
+     *
+     * @return the entry, or `null` if this map is empty
+     */
+    public Map.Entry<Double, V> firstEntry() {
+        return map.firstEntry(entries());
+    }
+
+    /**
+     * Returns the entry with the greatest key.
+     *
+     * @return the entry, or `null` if this map is empty
+     */
+    public Map.Entry<Double, V> lastEntry() {
+        return map.lastEntry(entries());
+    }
+
+    /**
+     * Removes and returns the entry with the least key.
+     *
+     * @return the removed entry, or `null` if this map is empty
+     */
+    public Map.Entry<Double, V> pollFirstEntry() {
+        return map.pollFirstEntry(entries());
+    }
+
+    /**
+     * Removes and returns the entry with the greatest key.
+     *
+     * @return the removed entry, or `null` if this map is empty
+     */
+    public Map.Entry<Double, V> pollLastEntry() {
+        return map.pollLastEntry(entries());
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys range from {@code fromKey}, inclusive,
+     * to {@code toKey}, exclusive. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint (inclusive)
+     * @param toKey high endpoint (exclusive)
+     * @return the view
+     */
+    public NullableDoubleSortedConcurrentMap<V> subMap(double fromKey, double toKey) {
+        return new NullableDoubleSortedConcurrentMap<>(map.subMap(encode(fromKey), encode(toKey)));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys range from {@code fromKey} to {@code
+     * toKey}. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint
+     * @param fromInclusive `true` if the low endpoint is to be included
+     * @param toKey high endpoint
+     * @param toInclusive `true` if the high endpoint is to be included
+     * @return the view
+     */
+    public NullableDoubleSortedConcurrentMap<V> subMap(
+            double fromKey, boolean fromInclusive, double toKey, boolean toInclusive) {
+        return new NullableDoubleSortedConcurrentMap<>(
+                map.subMap(encode(fromKey), fromInclusive, encode(toKey), toInclusive));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are less than {@code toKey}, including
+     * the `null` key.
+     *
+     * @param toKey high endpoint (exclusive)
+     * @return the view
+     */
+    public NullableDoubleSortedConcurrentMap<V> headMap(double toKey) {
+        return new NullableDoubleSortedConcurrentMap<>(map.headMap(encode(toKey)));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are less than (or equal to, if {@code
+     * inclusive} is true) {@code toKey}, including the `null` key.
+     *
+     * @param toKey high endpoint
+     * @param inclusive `true` if the high endpoint is to be included
+     * @return the view
+     */
+    public NullableDoubleSortedConcurrentMap<V> headMap(double toKey, boolean inclusive) {
+        return new NullableDoubleSortedConcurrentMap<>(map.headMap(encode(toKey), inclusive));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater than or equal to {@code
+     * fromKey}. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint (inclusive)
+     * @return the view
+     */
+    public NullableDoubleSortedConcurrentMap<V> tailMap(double fromKey) {
+        return new NullableDoubleSortedConcurrentMap<>(map.tailMap(encode(fromKey)));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater than (or equal to, if {@code
+     * inclusive} is true) {@code fromKey}. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint
+     * @param inclusive `true` if the low endpoint is to be included
+     * @return the view
+     */
+    public NullableDoubleSortedConcurrentMap<V> tailMap(double fromKey, boolean inclusive) {
+        return new NullableDoubleSortedConcurrentMap<>(map.tailMap(encode(fromKey), inclusive));
+    }
+
+    /**
+     * Returns the number of mappings in this map. This is not a constant-time operation.
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns `true` if this map contains no mappings.
+     *
+     * @return `true` if empty
+     */
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    /** Removes all mappings from this map. */
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the entries in ascending key order, starting with
+     * the `null` key.
+     */
+    @Override
+    public Iterator<Map.Entry<Double, V>> iterator() {
+        return map.iterator(entries());
+    }
+
+    /** Creates the entries directly from the nodes of the backing map. */
+    private enum DoubleEntries implements EntryFactory<Object, Map.Entry<Double, Object>> {
+        INSTANCE;
+
+        @Override
+        public Map.Entry<Double, Object> entry(long key, Object value) {
+            return new AbstractMap.SimpleImmutableEntry<>(decode(key), value);
+        }
+
+        @Override
+        public Map.Entry<Double, Object> nullEntry(Object value) {
+            return new AbstractMap.SimpleImmutableEntry<>(null, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> EntryFactory<V, Map.Entry<Double, V>> entries() {
+        return (EntryFactory<V, Map.Entry<Double, V>>) (EntryFactory<?, ?>) DoubleEntries.INSTANCE;
+    }
+
+    /**
+     * Maps a {@code double} to a {@code long} with the same order as {@link Double#compare}.
+     * Negative values have their magnitude bits inverted, so the signed comparison of the result
+     * matches the numeric order, including {@code -0.0 < 0.0} and {@code NaN} as the greatest
+     * value.
+     */
+    private static long encode(double key) {
+        long bits = Double.doubleToLongBits(key);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /** Inverse of {@link #encode(double)}. */
+    private static double decode(long encoded) {
+        return Double.longBitsToDouble(encoded ^ ((encoded >> 63) & Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,326 @@
+package de.krawallgraben.nullable;
+
+import de.krawallgraben.nullable.NullableLongSortedConcurrentMap.EntryFactory;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A sorted, thread-safe map with primitive {@code int} keys that allows a `null` key and `null`
+ * values.
+ *
+ * <p>This implementation is backed by a {@link NullableLongSortedConcurrentMap}. Keys are widened
+ * to {@code long} and compared as primitives. The `null` key is held in a dedicated slot and sorted
+ * to the beginning.
+ *
+ * @param <V> the type of values
+ */
+@SuppressWarnings("serial")
+public class NullableIntSortedConcurrentMap<V>
+        implements Iterable<Map.Entry<Integer, V>>, Serializable {
+
+    /** Backing map with widened keys. */
+    private final NullableLongSortedConcurrentMap<V> map;
+
+    /** Constructs a new, empty map. */
+    public NullableIntSortedConcurrentMap() {
+        this.map = new NullableLongSortedConcurrentMap<>();
+    }
+
+    // Private constructor for views
+    private NullableIntSortedConcurrentMap(NullableLongSortedConcurrentMap<V> map) {
+        this.map = map;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped.
+     *
+     * @param key the key
+     * @return the mapped value, or `null`
+     */
+    public V get(int key) {
+        return map.get(key);
+    }
+
+    /**
+     * Returns `true` if this map contains a mapping for the specified key.
+     *
+     * @param key the key
+     * @return `true` if a mapping exists
+     */
+    public boolean containsKey(int key) {
+        return map.containsKey(key);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     *
+     * @param key the key
+     * @param value the value, may be `null`
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V put(int key, V value) {
+        return map.put(key, value);
+    }
+
+    /**
+     * Associates the specified value with the specified key if the key is not already present.
+     *
+     * @param key the key
+     * @param value the value, may be `null`
+     * @return the current value, or `null` if there was no mapping
+     */
+    public V putIfAbsent(int key, V value) {
+        return map.putIfAbsent(key, value);
+    }
+
+    /**
+     * Removes the mapping for the specified key.
+     *
+     * @param key the key
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V remove(int key) {
+        return map.remove(key);
+    }
+
+    /**
+     * Returns `true` if this map contains a mapping for the `null` key.
+     *
+     * @return `true` if the `null` key is mapped
+     */
+    public boolean containsNullKey() {
+        return map.containsNullKey();
+    }
+
+    /**
+     * Returns the value mapped to the `null` key.
+     *
+     * @return the mapped value, or `null`
+     */
+    public V getNullKey() {
+        return map.getNullKey();
+    }
+
+    /**
+     * Associates the specified value with the `null` key.
+     *
+     * @param value the value, may be `null`
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V putNullKey(V value) {
+        return map.putNullKey(value);
+    }
+
+    /**
+     * Removes the mapping for the `null` key.
+     *
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V removeNullKey() {
+        return map.removeNullKey();
+    }
+
+    /**
+     * Returns the entry with the greatest key less than or equal to the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Integer, V> floorEntry(int key) {
+        return map.floorEntry(key, entries());
+    }
+
+    /**
+     * Returns the entry with the greatest key strictly less than the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Integer, V> lowerEntry(int key) {
+        return map.lowerEntry(key, entries());
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Integer, V> ceilingEntry(int key) {
+        return map.ceilingEntry(key, entries());
+    }
+
+    /**
+     * Returns the entry with the least key strictly greater than the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Integer, V> higherEntry(int key) {
+        return map.higherEntry(key, entries());
+    }
+
+    /**
+     * Returns the entry with the least key, which is the `null` key if present.
+     *
+     * @return the entry, or `null` if this map is empty
+     */
+    public Map.Entry<Integer, V> firstEntry() {
+        return map.firstEntry(entries());
+    }
+
+    /**
+     * Returns the entry with the greatest key.
+     *
+     * @return the entry, or `null` if this map is empty
+     */
+    public Map.Entry<Integer, V> lastEntry() {
+        return map.lastEntry(entries());
+    }
+
+    /**
+     * Removes and returns the entry with the least key.
+     *
+     * @return the removed entry, or `null` if this map is empty
+     */
+    public Map.Entry<Integer, V> pollFirstEntry() {
+        return map.pollFirstEntry(entries());
+    }
+
+    /**
+     * Removes and returns the entry with the greatest key.
+     *
+     * @return the removed entry, or `null` if this map is empty
+     */
+    public Map.Entry<Integer, V> pollLastEntry() {
+        return map.pollLastEntry(entries());
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys range from {@code fromKey}, inclusive,
+     * to {@code toKey}, exclusive. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint (inclusive)
+     * @param toKey high endpoint (exclusive)
+     * @return the view
+     */
+    public NullableIntSortedConcurrentMap<V> subMap(int fromKey, int toKey) {
+        return new NullableIntSortedConcurrentMap<>(map.subMap(fromKey, toKey));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys range from {@code fromKey} to {@code
+     * toKey}. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint
+     * @param fromInclusive `true` if the low endpoint is to be included
+     * @param toKey high endpoint
+     * @param toInclusive `true` if the high endpoint is to be included
+     * @return the view
+     */
+    public NullableIntSortedConcurrentMap<V> subMap(
+            int fromKey, boolean fromInclusive, int toKey, boolean toInclusive) {
+        return new NullableIntSortedConcurrentMap<>(
+                map.subMap(fromKey, fromInclusive, toKey, toInclusive));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are less than {@code toKey}, including
+     * the `null` key.
+     *
+     * @param toKey high endpoint (exclusive)
+     * @return the view
+     */
+    public NullableIntSortedConcurrentMap<V> headMap(int toKey) {
+        return new NullableIntSortedConcurrentMap<>(map.headMap(toKey));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are less than (or equal to, if {@code
+     * inclusive} is true) {@code toKey}, including the `null` key.
+     *
+     * @param toKey high endpoint
+     * @param inclusive `true` if the high endpoint is to be included
+     * @return the view
+     */
+    public NullableIntSortedConcurrentMap<V> headMap(int toKey, boolean inclusive) {
+        return new NullableIntSortedConcurrentMap<>(map.headMap(toKey, inclusive));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater than or equal to {@code
+     * fromKey}. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint (inclusive)
+     * @return the view
+     */
+    public NullableIntSortedConcurrentMap<V> tailMap(int fromKey) {
+        return new NullableIntSortedConcurrentMap<>(map.tailMap(fromKey));
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater than (or equal to, if {@code
+     * inclusive} is true) {@code fromKey}. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint
+     * @param inclusive `true` if the low endpoint is to be included
+     * @return the view
+     */
+    public NullableIntSortedConcurrentMap<V> tailMap(int fromKey, boolean inclusive) {
+        return new NullableIntSortedConcurrentMap<>(map.tailMap(fromKey, inclusive));
+    }
+
+    /**
+     * Returns the number of mappings in this map. This is not a constant-time operation.
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns `true` if this map contains no mappings.
+     *
+     * @return `true` if empty
+     */
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    /** Removes all mappings from this map. */
+    public void clear() {
+        map.clear();
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the entries in ascending key order, starting with
+     * the `null` key.
+     */
+    @Override
+    public Iterator<Map.Entry<Integer, V>> iterator() {
+        return map.iterator(entries());
+    }
+
+    /** Creates the entries directly from the nodes of the backing map. */
+    private enum IntEntries implements EntryFactory<Object, Map.Entry<Integer, Object>> {
+        INSTANCE;
+
+        @Override
+        public Map.Entry<Integer, Object> entry(long key, Object value) {
+            return new AbstractMap.SimpleImmutableEntry<>((int) key, value);
+        }
+
+        @Override
+        public Map.Entry<Integer, Object> nullEntry(Object value) {
+            return new AbstractMap.SimpleImmutableEntry<>(null, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> EntryFactory<V, Map.Entry<Integer, V>> entries() {
+        return (EntryFactory<V, Map.Entry<Integer, V>>) (EntryFactory<?, ?>) IntEntries.INSTANCE;
+    }
+}
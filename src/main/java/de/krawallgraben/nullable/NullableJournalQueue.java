@@ -0,0 +1,395 @@
+package de.krawallgraben.nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A persistent queue of `null`-able elements in memory-mapped journal files, for passing elements
+ * between processes on the same host and across restarts.
+ *
+ * <p>Elements are encoded with a {@link ByteKeyCodec} and appended to segment files of fixed size
+ * in a directory; when a segment is full, the next one is created. Any number of named {@link
+ * Tailer}s read the journal from the start, each at its own position, which is itself kept in a
+ * memory-mapped file and therefore survives restarts. Both appending and reading work directly on
+ * the mapped segments; neither takes a lock or makes a system call except when moving to another
+ * segment.
+ *
+ * <p>Segment layout, all numbers big-endian:
+ *
+ * <pre>
+ * magic (int)
+ * records, each aligned to 4 bytes:
+ *   header (int): 0 = not yet written, -1 = end of segment, -2 = null element,
+ *                 otherwise the length of the encoded element + 1
+ *   encoded element bytes
+ * </pre>
+ *
+ * <p>The header of a record is written after its bytes with a release store and read with an
+ * acquire load, so a reader never sees a partial record. Writes reach the operating system's page
+ * cache at once and survive a crash of the process; call {@link #flush()} to also survive a crash
+ * of the host.
+ *
+ * <p>Only one process may append, and {@link #offer} must only be called by one thread at a time.
+ * Each tailer must be used by one thread at a time and, because its position is persisted, by one
+ * process at a time. Segments are never deleted by the queue.
+ *
+ * @param <E> the type of elements held in this queue
+ */
+public class NullableJournalQueue<E> implements Closeable {
+
+    /** Default size of the segment files, 64 MiB. */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final int MAGIC = 0x4E4A5131; // "NJQ1"
+    private static final int HEADER_SIZE = 4;
+    private static final int END_OF_SEGMENT = -1;
+    private static final int NULL_ELEMENT = -2;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String TAILER_SUFFIX = ".tailer";
+
+    private final Path directory;
+    private final ByteKeyCodec<E> codec;
+    private final int segmentSize;
+
+    /** Index of the first segment, where new tailers start. */
+    private final long firstSegment;
+
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private OrderedInts writeHeaders;
+    private int writeOffset;
+
+    /**
+     * Opens the journal in the given directory with segments of {@link #DEFAULT_SEGMENT_SIZE},
+     * creating it if necessary.
+     *
+     * @param directory the directory of the segment and tailer files
+     * @param codec the codec for the elements
+     * @throws IOException if the journal cannot be opened or has an invalid format
+     */
+    public NullableJournalQueue(Path directory, ByteKeyCodec<E> codec) throws IOException {
+        this(directory, codec, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the journal in the given directory, creating it if necessary.
+     *
+     * @param directory the directory of the segment and tailer files
+     * @param codec the codec for the elements
+     * @param segmentSize the size of the segment files in bytes; must match the existing segments
+     * @throws IOException if the journal cannot be opened or has an invalid format
+     */
+    public NullableJournalQueue(Path directory, ByteKeyCodec<E> codec, int segmentSize)
+            throws IOException {
+        if (segmentSize < 64 || segmentSize > 1 << 30) {
+            throw new IllegalArgumentException("segmentSize: " + segmentSize);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.codec = codec;
+        this.segmentSize = segmentSize & ~3;
+        long first = Long.MAX_VALUE;
+        long last = -1;
+        try (DirectoryStream<Path> files =
+                Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                long index = segmentIndex(file);
+                first = Math.min(first, index);
+                last = Math.max(last, index);
+            }
+        }
+        if (last < 0) {
+            this.firstSegment = 0;
+            openWriteSegment(0);
+        } else {
+            this.firstSegment = first;
+            if (last > first) {
+                closeSegment(last - 1);
+            }
+            openWriteSegment(last);
+            writeOffset = end(writeBuffer);
+            if (writeBuffer.getInt(writeOffset) == END_OF_SEGMENT) {
+                throw new IOException("segment is closed but has no successor: " + last);
+            }
+            clearTail(writeBuffer, writeOffset);
+        }
+    }
+
+    /**
+     * Returns the tailer with the given name. A new tailer starts at the first element of the
+     * journal; an existing one continues where it stopped.
+     *
+     * @param name the name of the tailer, used as a file name
+     * @return the tailer
+     * @throws IOException if the position file cannot be opened
+     */
+    public Tailer tailer(String name) throws IOException {
+        return new Tailer(directory.resolve(name + TAILER_SUFFIX));
+    }
+
+    // Producer methods
+
+    /**
+     * Appends the specified element. Must only be called by one thread at a time.
+     *
+     * <p>Unlike standard queues, this method accepts `null`.
+     *
+     * @param e the element
+     * @return `true`
+     * @throws IllegalArgumentException if the encoded element does not fit into a segment
+     * @throws UncheckedIOException if the next segment cannot be created
+     */
+    public boolean offer(E e) {
+        byte[] bytes = e == null ? null : codec.encode(e);
+        int length = bytes == null ? 0 : bytes.length;
+        int size = align(HEADER_SIZE + length);
+        if (size > segmentSize - 2 * HEADER_SIZE) {
+            throw new IllegalArgumentException("element exceeds segment: " + length + " bytes");
+        }
+        if (writeOffset + size > segmentSize - HEADER_SIZE) {
+            roll();
+        }
+        if (bytes != null) {
+            ((Buffer) writeBuffer).position(writeOffset + HEADER_SIZE);
+            writeBuffer.put(bytes);
+        }
+        writeHeaders.putRelease(writeOffset, bytes == null ? NULL_ELEMENT : length + 1);
+        writeOffset += size;
+        return true;
+    }
+
+    /** Forces the appended elements to the storage device. */
+    public void flush() {
+        writeBuffer.force();
+    }
+
+    /** Flushes the journal. The files stay mapped until the buffers are garbage collected. */
+    @Override
+    public void close() {
+        flush();
+    }
+
+    // Helper methods and classes
+
+    /**
+     * Creates the next segment, then marks the current one as closed. A crash in between is
+     * repaired by {@link #closeSegment} when the journal is opened again.
+     */
+    private void roll() {
+        MappedByteBuffer closed = writeBuffer;
+        OrderedInts closedHeaders = writeHeaders;
+        int end = writeOffset;
+        try {
+            openWriteSegment(writeSegment + 1);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        closedHeaders.putRelease(end, END_OF_SEGMENT);
+        closed.force();
+    }
+
+    /** Writes the end marker into a segment that has a successor, unless it is already there. */
+    private void closeSegment(long index) throws IOException {
+        MappedByteBuffer buffer = openReadSegment(index);
+        int end = end(buffer);
+        if (buffer.getInt(end) == 0) {
+            new OrderedInts(buffer).putRelease(end, END_OF_SEGMENT);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Returns the offset of the first header in the segment that is unwritten or the end marker.
+     */
+    private static int end(MappedByteBuffer buffer) {
+        int offset = HEADER_SIZE;
+        int header;
+        while ((header = buffer.getInt(offset)) != 0 && header != END_OF_SEGMENT) {
+            offset += recordSize(header);
+        }
+        return offset;
+    }
+
+    /**
+     * Zeroes the segment after the first unwritten header. A crash may have left the bytes of a
+     * record there without its header; a shorter record written in their place would otherwise put
+     * the header of its successor into these stale bytes, where readers would take it for written.
+     */
+    private static void clearTail(MappedByteBuffer buffer, int end) {
+        boolean cleared = false;
+        for (int offset = end + HEADER_SIZE; offset < buffer.capacity(); offset += 4) {
+            if (buffer.getInt(offset) != 0) {
+                buffer.putInt(offset, 0);
+                cleared = true;
+            }
+        }
+        if (cleared) {
+            buffer.force();
+        }
+    }
+
+    private void openWriteSegment(long index) throws IOException {
+        Path file = segmentFile(index);
+        if (Files.exists(file)) {
+            checkSize(file);
+        }
+        writeBuffer = map(file, segmentSize);
+        writeHeaders = new OrderedInts(writeBuffer);
+        int magic = writeBuffer.getInt(0);
+        if (magic == 0) {
+            writeBuffer.putInt(0, MAGIC);
+        } else if (magic != MAGIC) {
+            throw new IOException("not a journal segment: " + file);
+        }
+        writeSegment = index;
+        writeOffset = HEADER_SIZE;
+    }
+
+    private MappedByteBuffer openReadSegment(long index) throws IOException {
+        Path file = segmentFile(index);
+        checkSize(file);
+        MappedByteBuffer buffer = map(file, segmentSize);
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a journal segment: " + file);
+        }
+        return buffer;
+    }
+
+    private void checkSize(Path file) throws IOException {
+        if (Files.size(file) != segmentSize) {
+            throw new IOException("segment size differs from " + segmentSize + ": " + file);
+        }
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel =
+                FileChannel.open(
+                        file,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private Path segmentFile(long index) {
+        return directory.resolve(String.format("%020d", index) + SEGMENT_SUFFIX);
+    }
+
+    private static long segmentIndex(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            throw new IOException("not a journal segment: " + file, ex);
+        }
+    }
+
+    private long position(long segment, int offset) {
+        return segment * segmentSize + offset;
+    }
+
+    private static int recordSize(int header) {
+        return align(HEADER_SIZE + (header == NULL_ELEMENT ? 0 : header - 1));
+    }
+
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+
+    /**
+     * A reader of a {@link NullableJournalQueue} with a persistent position. Must be used by one
+     * thread at a time.
+     */
+    public final class Tailer {
+
+        /** Holds the position of the next record as a long. */
+        private final MappedByteBuffer positionBuffer;
+
+        private long segment;
+        private MappedByteBuffer buffer;
+        private OrderedInts headers;
+        private int offset;
+
+        private Tailer(Path file) throws IOException {
+            positionBuffer = map(file, 8);
+            long position = positionBuffer.getLong(0);
+            if (position == 0) {
+                segment = firstSegment;
+                offset = HEADER_SIZE;
+            } else {
+                segment = position / segmentSize;
+                offset = (int) (position % segmentSize);
+            }
+            buffer = openReadSegment(segment);
+            headers = new OrderedInts(buffer);
+        }
+
+        /**
+         * Retrieves and consumes the next element.
+         *
+         * @return the element, or `null` if there is none
+         * @throws UncheckedIOException if the next segment cannot be opened
+         */
+        public E poll() {
+            int header = nextHeader();
+            if (header == 0) {
+                return null;
+            }
+            E e = null;
+            if (header != NULL_ELEMENT) {
+                byte[] bytes = new byte[header - 1];
+                ((Buffer) buffer).position(offset + HEADER_SIZE);
+                buffer.get(bytes);
+                e = codec.decode(bytes);
+            }
+            offset += recordSize(header);
+            positionBuffer.putLong(0, position());
+            return e;
+        }
+
+        /**
+         * Returns `true` if there is no element to read.
+         *
+         * @return `true` if empty
+         * @throws UncheckedIOException if the next segment cannot be opened
+         */
+        public boolean isEmpty() {
+            return nextHeader() == 0;
+        }
+
+        /**
+         * Returns the position of the next element in the journal, a byte offset across all
+         * segments.
+         *
+         * @return the position
+         */
+        public long position() {
+            return NullableJournalQueue.this.position(segment, offset);
+        }
+
+        /** Moves to the next segment if needed and returns the header of the next record. */
+        private int nextHeader() {
+            int header = headers.getAcquire(offset);
+            while (header == END_OF_SEGMENT) {
+                try {
+                    buffer = openReadSegment(segment + 1);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                headers = new OrderedInts(buffer);
+                segment++;
+                offset = HEADER_SIZE;
+                header = headers.getAcquire(offset);
+            }
+            return header;
+        }
+    }
+}
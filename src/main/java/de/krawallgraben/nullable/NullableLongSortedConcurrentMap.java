@@ -0,0 +1,1142 @@
+package de.krawallgraben.nullable;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A sorted, thread-safe map with primitive {@code long} keys that allows a `null` key and `null`
+ * values.
+ *
+ * <p>This implementation is a lock-free skip list using the same algorithm as {@link
+ * java.util.concurrent.ConcurrentSkipListMap}, but keys are stored and compared as primitives. No
+ * key is boxed and no comparator is called on lookups. The `null` key is held in a dedicated slot
+ * and sorted to the beginning.
+ *
+ * <p>Views returned by {@link #subMap}, {@link #headMap} and {@link #tailMap} share the underlying
+ * skip list. Iterators are weakly consistent. Methods returning a {@link Map.Entry} report the
+ * `null` key as a `null` {@link Map.Entry#getKey() key}.
+ *
+ * @param <V> the type of values
+ */
+@SuppressWarnings("serial")
+public class NullableLongSortedConcurrentMap<V>
+        implements Iterable<Map.Entry<Long, V>>, Serializable {
+
+    /** Shared skip list and `null` key slot. */
+    private final SkipList core;
+
+    /** Lowest key of this view. */
+    private final long lo;
+
+    private final boolean loInclusive;
+
+    /** Highest key of this view. */
+    private final long hi;
+
+    private final boolean hiInclusive;
+
+    /** Whether the `null` key belongs to this view. */
+    private final boolean nullIncluded;
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /**
+     * Creates the entries returned by navigation methods and iterators, so that maps with other key
+     * types build their entries directly from a node.
+     *
+     * @param <V> the type of values
+     * @param <E> the type of entries
+     */
+    interface EntryFactory<V, E> {
+
+        /** Creates the entry of a {@code long} key. */
+        E entry(long key, V value);
+
+        /** Creates the entry of the `null` key. */
+        E nullEntry(V value);
+    }
+
+    /** Creates the {@code Map.Entry<Long, V>} of the public methods. */
+    private enum LongEntries implements EntryFactory<Object, Map.Entry<Long, Object>> {
+        INSTANCE;
+
+        @Override
+        public Map.Entry<Long, Object> entry(long key, Object value) {
+            return new AbstractMap.SimpleImmutableEntry<>(key, value);
+        }
+
+        @Override
+        public Map.Entry<Long, Object> nullEntry(Object value) {
+            return new AbstractMap.SimpleImmutableEntry<>(null, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> EntryFactory<V, Map.Entry<Long, V>> longEntries() {
+        return (EntryFactory<V, Map.Entry<Long, V>>) (EntryFactory<?, ?>) LongEntries.INSTANCE;
+    }
+
+    /** Constructs a new, empty map. */
+    public NullableLongSortedConcurrentMap() {
+        this(new SkipList(), Long.MIN_VALUE, true, Long.MAX_VALUE, true, true);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given map. A `null` key in the given
+     * map is placed into the `null` key slot.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     */
+    public NullableLongSortedConcurrentMap(Map<? extends Long, ? extends V> m) {
+        this();
+        for (Map.Entry<? extends Long, ? extends V> e : m.entrySet()) {
+            if (e.getKey() == null) {
+                putNullKey(e.getValue());
+            } else {
+                put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    // Private constructor for views
+    private NullableLongSortedConcurrentMap(
+            SkipList core,
+            long lo,
+            boolean loInclusive,
+            long hi,
+            boolean hiInclusive,
+            boolean nullIncluded) {
+        this.core = core;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.nullIncluded = nullIncluded;
+    }
+
+    // Range checks
+
+    private boolean tooLow(long key) {
+        return key < lo || (key == lo && !loInclusive);
+    }
+
+    private boolean tooHigh(long key) {
+        return key > hi || (key == hi && !hiInclusive);
+    }
+
+    private boolean inRange(long key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    private void checkKey(long key) {
+        if (!inRange(key)) {
+            throw new IllegalArgumentException("key out of range: " + key);
+        }
+    }
+
+    private void checkNullKey() {
+        if (!nullIncluded) {
+            throw new IllegalArgumentException("key out of range: null");
+        }
+    }
+
+    // Primitive key methods
+
+    /**
+     * Returns the value to which the specified key is mapped, or `null` if this map contains no
+     * mapping for the key.
+     *
+     * @param key the key
+     * @return the mapped value, or `null`
+     */
+    public V get(long key) {
+        return inRange(key) ? unmask(core.doGet(key)) : null;
+    }
+
+    /**
+     * Returns `true` if this map contains a mapping for the specified key.
+     *
+     * @param key the key
+     * @return `true` if a mapping exists
+     */
+    public boolean containsKey(long key) {
+        return inRange(key) && core.doGet(key) != null;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     *
+     * @param key the key
+     * @param value the value, may be `null`
+     * @return the previous value, or `null` if there was no mapping
+     * @throws IllegalArgumentException if the key is outside the range of this view
+     */
+    public V put(long key, V value) {
+        checkKey(key);
+        return unmask(core.doPut(key, mask(value), false));
+    }
+
+    /**
+     * Associates the specified value with the specified key if the key is not already present.
+     *
+     * @param key the key
+     * @param value the value, may be `null`
+     * @return the current value, or `null` if there was no mapping
+     * @throws IllegalArgumentException if the key is outside the range of this view
+     */
+    public V putIfAbsent(long key, V value) {
+        checkKey(key);
+        return unmask(core.doPut(key, mask(value), true));
+    }
+
+    /**
+     * Removes the mapping for the specified key.
+     *
+     * @param key the key
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V remove(long key) {
+        return inRange(key) ? unmask(core.doRemove(key, null)) : null;
+    }
+
+    /**
+     * Removes the mapping for the specified key only if it is currently mapped to the given value.
+     *
+     * @param key the key
+     * @param value the expected value, may be `null`
+     * @return `true` if the mapping was removed
+     */
+    public boolean remove(long key, Object value) {
+        return inRange(key) && core.doRemove(key, mask(value)) != null;
+    }
+
+    // Null key slot
+
+    /**
+     * Returns `true` if this map contains a mapping for the `null` key.
+     *
+     * @return `true` if the `null` key is mapped
+     */
+    public boolean containsNullKey() {
+        return nullIncluded && core.nullValue != null;
+    }
+
+    /**
+     * Returns the value mapped to the `null` key.
+     *
+     * @return the mapped value, or `null`
+     */
+    public V getNullKey() {
+        return nullIncluded ? unmask(core.nullValue) : null;
+    }
+
+    /**
+     * Associates the specified value with the `null` key.
+     *
+     * @param value the value, may be `null`
+     * @return the previous value, or `null` if there was no mapping
+     * @throws IllegalArgumentException if the `null` key is outside the range of this view
+     */
+    public V putNullKey(V value) {
+        checkNullKey();
+        return unmask(SkipList.NULL_VALUE.getAndSet(core, mask(value)));
+    }
+
+    /**
+     * Removes the mapping for the `null` key.
+     *
+     * @return the previous value, or `null` if there was no mapping
+     */
+    public V removeNullKey() {
+        return nullIncluded ? unmask(SkipList.NULL_VALUE.getAndSet(core, null)) : null;
+    }
+
+    // Navigation
+
+    /**
+     * Returns the entry with the greatest key less than or equal to the given key. The `null` key
+     * is lower than every {@code long} key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Long, V> floorEntry(long key) {
+        return floorEntry(key, longEntries());
+    }
+
+    /**
+     * Returns the entry with the greatest key strictly less than the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Long, V> lowerEntry(long key) {
+        return lowerEntry(key, longEntries());
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Long, V> ceilingEntry(long key) {
+        return ceilingEntry(key, longEntries());
+    }
+
+    /**
+     * Returns the entry with the least key strictly greater than the given key.
+     *
+     * @param key the key
+     * @return the entry, or `null` if there is no such key
+     */
+    public Map.Entry<Long, V> higherEntry(long key) {
+        return higherEntry(key, longEntries());
+    }
+
+    /**
+     * Returns the entry with the least key, which is the `null` key if present.
+     *
+     * @return the entry, or `null` if this map is empty
+     */
+    public Map.Entry<Long, V> firstEntry() {
+        return firstEntry(longEntries());
+    }
+
+    /**
+     * Returns the entry with the greatest key.
+     *
+     * @return the entry, or `null` if this map is empty
+     */
+    public Map.Entry<Long, V> lastEntry() {
+        return lastEntry(longEntries());
+    }
+
+    /**
+     * Removes and returns the entry with the least key.
+     *
+     * @return the removed entry, or `null` if this map is empty
+     */
+    public Map.Entry<Long, V> pollFirstEntry() {
+        return pollFirstEntry(longEntries());
+    }
+
+    /**
+     * Removes and returns the entry with the greatest key.
+     *
+     * @return the removed entry, or `null` if this map is empty
+     */
+    public Map.Entry<Long, V> pollLastEntry() {
+        return pollLastEntry(longEntries());
+    }
+
+    // Navigation with an entry factory
+
+    <E> E floorEntry(long key, EntryFactory<V, E> entries) {
+        return tooHigh(key)
+                ? lastEntry(entries)
+                : lowerOrNull(key, SkipList.LT | SkipList.EQ, entries);
+    }
+
+    <E> E lowerEntry(long key, EntryFactory<V, E> entries) {
+        return tooHigh(key) ? lastEntry(entries) : lowerOrNull(key, SkipList.LT, entries);
+    }
+
+    <E> E ceilingEntry(long key, EntryFactory<V, E> entries) {
+        return tooLow(key)
+                ? firstLongEntry(entries)
+                : higherInRange(key, SkipList.GT | SkipList.EQ, entries);
+    }
+
+    <E> E higherEntry(long key, EntryFactory<V, E> entries) {
+        return tooLow(key) ? firstLongEntry(entries) : higherInRange(key, SkipList.GT, entries);
+    }
+
+    <E> E firstEntry(EntryFactory<V, E> entries) {
+        E e = nullEntry(entries);
+        return e != null ? e : firstLongEntry(entries);
+    }
+
+    <E> E lastEntry(EntryFactory<V, E> entries) {
+        return lowerOrNull(hi, hiInclusive ? SkipList.LT | SkipList.EQ : SkipList.LT, entries);
+    }
+
+    <E> E pollFirstEntry(EntryFactory<V, E> entries) {
+        if (nullIncluded) {
+            Object v = SkipList.NULL_VALUE.getAndSet(core, null);
+            if (v != null) {
+                return entries.nullEntry(unmask(v));
+            }
+        }
+        for (SkipList.Node n; (n = firstNode()) != null; ) {
+            Object v = core.doRemove(n.key, null);
+            if (v != null) {
+                return entries.entry(n.key, unmask(v));
+            }
+        }
+        return null;
+    }
+
+    <E> E pollLastEntry(EntryFactory<V, E> entries) {
+        for (SkipList.Node n; (n = lastNode()) != null; ) {
+            Object v = core.doRemove(n.key, null);
+            if (v != null) {
+                return entries.entry(n.key, unmask(v));
+            }
+        }
+        Object v = nullIncluded ? SkipList.NULL_VALUE.getAndSet(core, null) : null;
+        return v == null ? null : entries.nullEntry(unmask(v));
+    }
+
+    // Views
+
+    /**
+     * Returns a view of the portion of this map whose keys range from {@code fromKey}, inclusive,
+     * to {@code toKey}, exclusive. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint (inclusive)
+     * @param toKey high endpoint (exclusive)
+     * @return the view
+     */
+    public NullableLongSortedConcurrentMap<V> subMap(long fromKey, long toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys range from {@code fromKey} to {@code
+     * toKey}. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint
+     * @param fromInclusive `true` if the low endpoint is to be included
+     * @param toKey high endpoint
+     * @param toInclusive `true` if the high endpoint is to be included
+     * @return the view
+     * @throws IllegalArgumentException if {@code fromKey} is greater than {@code toKey} or a bound
+     *     lies outside the range of this view
+     */
+    public NullableLongSortedConcurrentMap<V> subMap(
+            long fromKey, boolean fromInclusive, long toKey, boolean toInclusive) {
+        if (fromKey > toKey) {
+            throw new IllegalArgumentException("inconsistent range");
+        }
+        checkBound(fromKey, fromInclusive);
+        checkBound(toKey, toInclusive);
+        return new NullableLongSortedConcurrentMap<>(
+                core, fromKey, fromInclusive, toKey, toInclusive, false);
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are less than {@code toKey}, including
+     * the `null` key.
+     *
+     * @param toKey high endpoint (exclusive)
+     * @return the view
+     */
+    public NullableLongSortedConcurrentMap<V> headMap(long toKey) {
+        return headMap(toKey, false);
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are less than (or equal to, if {@code
+     * inclusive} is true) {@code toKey}, including the `null` key.
+     *
+     * @param toKey high endpoint
+     * @param inclusive `true` if the high endpoint is to be included
+     * @return the view
+     * @throws IllegalArgumentException if {@code toKey} lies outside the range of this view
+     */
+    public NullableLongSortedConcurrentMap<V> headMap(long toKey, boolean inclusive) {
+        checkBound(toKey, inclusive);
+        return new NullableLongSortedConcurrentMap<>(
+                core, lo, loInclusive, toKey, inclusive, nullIncluded);
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater than or equal to {@code
+     * fromKey}. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint (inclusive)
+     * @return the view
+     */
+    public NullableLongSortedConcurrentMap<V> tailMap(long fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys are greater than (or equal to, if {@code
+     * inclusive} is true) {@code fromKey}. The `null` key is not part of the view.
+     *
+     * @param fromKey low endpoint
+     * @param inclusive `true` if the low endpoint is to be included
+     * @return the view
+     * @throws IllegalArgumentException if {@code fromKey} lies outside the range of this view
+     */
+    public NullableLongSortedConcurrentMap<V> tailMap(long fromKey, boolean inclusive) {
+        checkBound(fromKey, inclusive);
+        return new NullableLongSortedConcurrentMap<>(
+                core, fromKey, inclusive, hi, hiInclusive, false);
+    }
+
+    private void checkBound(long key, boolean inclusive) {
+        if (inclusive ? !inRange(key) : key < lo || key > hi) {
+            throw new IllegalArgumentException("key out of range: " + key);
+        }
+    }
+
+    // Size and iteration
+
+    /**
+     * Returns the number of mappings in this map.
+     *
+     * <p>Like {@link java.util.concurrent.ConcurrentSkipListMap#size()}, this method traverses the
+     * map and is not a constant-time operation.
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        long count = containsNullKey() ? 1 : 0;
+        for (SkipList.Node n = firstNode(); n != null; n = nextNode(n)) {
+            count++;
+        }
+        return count >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count;
+    }
+
+    /**
+     * Returns `true` if this map contains no mappings.
+     *
+     * @return `true` if empty
+     */
+    public boolean isEmpty() {
+        return !containsNullKey() && firstNode() == null;
+    }
+
+    /** Removes all mappings from this map. */
+    public void clear() {
+        removeNullKey();
+        for (SkipList.Node n = firstNode(); n != null; n = nextNode(n)) {
+            core.doRemove(n.key, null);
+        }
+    }
+
+    /**
+     * Returns a weakly consistent iterator over the entries in ascending key order, starting with
+     * the `null` key.
+     */
+    @Override
+    public Iterator<Map.Entry<Long, V>> iterator() {
+        return iterator(longEntries());
+    }
+
+    <E> Iterator<E> iterator(EntryFactory<V, E> entries) {
+        return new EntryIterator<>(entries);
+    }
+
+    // Helper methods and classes
+
+    private <E> E nullEntry(EntryFactory<V, E> entries) {
+        Object v = nullIncluded ? core.nullValue : null;
+        return v == null ? null : entries.nullEntry(unmask(v));
+    }
+
+    private <E> E lowerOrNull(long key, int rel, EntryFactory<V, E> entries) {
+        for (; ; ) {
+            SkipList.Node n = core.findNear(key, rel);
+            if (n == null || tooLow(n.key)) {
+                return nullEntry(entries);
+            }
+            Object v = n.getValidValue();
+            if (v != null) {
+                return entries.entry(n.key, unmask(v));
+            }
+        }
+    }
+
+    private <E> E higherInRange(long key, int rel, EntryFactory<V, E> entries) {
+        for (; ; ) {
+            SkipList.Node n = core.findNear(key, rel);
+            if (n == null || tooHigh(n.key)) {
+                return null;
+            }
+            Object v = n.getValidValue();
+            if (v != null) {
+                return entries.entry(n.key, unmask(v));
+            }
+        }
+    }
+
+    private <E> E firstLongEntry(EntryFactory<V, E> entries) {
+        return higherInRange(lo, loInclusive ? SkipList.GT | SkipList.EQ : SkipList.GT, entries);
+    }
+
+    private SkipList.Node firstNode() {
+        SkipList.Node n = core.findNear(lo, loInclusive ? SkipList.GT | SkipList.EQ : SkipList.GT);
+        return n == null || tooHigh(n.key) ? null : n;
+    }
+
+    private SkipList.Node lastNode() {
+        SkipList.Node n = core.findNear(hi, hiInclusive ? SkipList.LT | SkipList.EQ : SkipList.LT);
+        return n == null || tooLow(n.key) ? null : n;
+    }
+
+    private SkipList.Node nextNode(SkipList.Node n) {
+        for (n = n.next; n != null; n = n.next) {
+            if (n.getValidValue() == null) {
+                continue; // deleted node or marker
+            }
+            return tooHigh(n.key) ? null : n;
+        }
+        return null;
+    }
+
+    private class EntryIterator<E> implements Iterator<E> {
+        private final EntryFactory<V, E> entries;
+        private E next;
+        private SkipList.Node node;
+        private boolean started;
+        private boolean nullNext;
+
+        /** Whether an entry was returned and not yet removed. */
+        private boolean canRemove;
+
+        /** Node of the last returned entry, or `null` for the `null` key. */
+        private SkipList.Node lastReturned;
+
+        EntryIterator(EntryFactory<V, E> entries) {
+            this.entries = entries;
+            this.next = nullEntry(entries);
+            this.nullNext = next != null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E e = next;
+            lastReturned = nullNext ? null : node;
+            canRemove = true;
+            nullNext = false;
+            next = null;
+            return e;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            if (lastReturned == null) {
+                removeNullKey();
+            } else {
+                core.doRemove(lastReturned.key, null);
+            }
+            canRemove = false;
+        }
+
+        private void advance() {
+            for (; ; ) {
+                node = started ? (node == null ? null : nextNode(node)) : firstNode();
+                started = true;
+                if (node == null) {
+                    return;
+                }
+                Object v = node.getValidValue();
+                if (v != null) {
+                    next = entries.entry(node.key, unmask(v));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lock-free skip list over primitive keys, following the algorithm of {@link
+     * java.util.concurrent.ConcurrentSkipListMap}. Values are masked; a `null` value marks a
+     * deleted node.
+     */
+    @SuppressWarnings("serial")
+    private static final class SkipList implements Serializable {
+
+        static final int EQ = 1;
+        static final int LT = 2;
+        static final int GT = 0;
+
+        static final Object BASE_HEADER = new Object();
+
+        static final AtomicReferenceFieldUpdater<SkipList, HeadIndex> HEAD =
+                AtomicReferenceFieldUpdater.newUpdater(SkipList.class, HeadIndex.class, "head");
+
+        static final AtomicReferenceFieldUpdater<SkipList, Object> NULL_VALUE =
+                AtomicReferenceFieldUpdater.newUpdater(SkipList.class, Object.class, "nullValue");
+
+        transient volatile HeadIndex head =
+                new HeadIndex(new Node(0L, BASE_HEADER, null), null, null, 1);
+
+        /** Masked value of the `null` key, or `null` if absent. */
+        volatile Object nullValue;
+
+        static final class Node {
+            static final AtomicReferenceFieldUpdater<Node, Object> VALUE =
+                    AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+            static final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+                    AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+            final long key;
+            volatile Object value;
+            volatile Node next;
+
+            Node(long key, Object value, Node next) {
+                this.key = key;
+                this.value = value;
+                this.next = next;
+            }
+
+            // Marker node, its value points to itself
+            Node(Node next) {
+                this.key = 0L;
+                this.value = this;
+                this.next = next;
+            }
+
+            boolean casValue(Object cmp, Object val) {
+                return VALUE.compareAndSet(this, cmp, val);
+            }
+
+            boolean casNext(Node cmp, Node val) {
+                return NEXT.compareAndSet(this, cmp, val);
+            }
+
+            boolean isBaseHeader() {
+                return value == BASE_HEADER;
+            }
+
+            boolean appendMarker(Node f) {
+                return casNext(f, new Node(f));
+            }
+
+            void helpDelete(Node b, Node f) {
+                if (f == next && this == b.next) {
+                    if (f == null || f.value != f) {
+                        casNext(f, new Node(f));
+                    } else {
+                        b.casNext(this, f.next);
+                    }
+                }
+            }
+
+            Object getValidValue() {
+                Object v = value;
+                if (v == this || v == BASE_HEADER) {
+                    return null;
+                }
+                return v;
+            }
+        }
+
+        static class Index {
+            static final AtomicReferenceFieldUpdater<Index, Index> RIGHT =
+                    AtomicReferenceFieldUpdater.newUpdater(Index.class, Index.class, "right");
+
+            final Node node;
+            final Index down;
+            volatile Index right;
+
+            Index(Node node, Index down, Index right) {
+                this.node = node;
+                this.down = down;
+                this.right = right;
+            }
+
+            boolean indexesDeletedNode() {
+                return node.value == null;
+            }
+
+            boolean link(Index succ, Index newSucc) {
+                newSucc.right = succ;
+                return node.value != null && RIGHT.compareAndSet(this, succ, newSucc);
+            }
+
+            boolean unlink(Index succ) {
+                return node.value != null && RIGHT.compareAndSet(this, succ, succ.right);
+            }
+        }
+
+        static final class HeadIndex extends Index {
+            final int level;
+
+            HeadIndex(Node node, Index down, Index right, int level) {
+                super(node, down, right);
+                this.level = level;
+            }
+        }
+
+        Node findPredecessor(long key) {
+            for (; ; ) {
+                for (Index q = head, r = q.right, d; ; ) {
+                    if (r != null) {
+                        Node n = r.node;
+                        if (n.value == null) {
+                            if (!q.unlink(r)) {
+                                break; // restart
+                            }
+                            r = q.right;
+                            continue;
+                        }
+                        if (key > n.key) {
+                            q = r;
+                            r = r.right;
+                            continue;
+                        }
+                    }
+                    if ((d = q.down) == null) {
+                        return q.node;
+                    }
+                    q = d;
+                    r = d.right;
+                }
+            }
+        }
+
+        Node findNode(long key) {
+            outer:
+            for (; ; ) {
+                for (Node b = findPredecessor(key), n = b.next; ; ) {
+                    if (n == null) {
+                        break outer;
+                    }
+                    Node f = n.next;
+                    if (n != b.next) {
+                        break; // inconsistent read
+                    }
+                    Object v = n.value;
+                    if (v == null) {
+                        n.helpDelete(b, f);
+                        break;
+                    }
+                    if (b.value == null || v == n) {
+                        break; // b is deleted
+                    }
+                    if (key == n.key) {
+                        return n;
+                    }
+                    if (key < n.key) {
+                        break outer;
+                    }
+                    b = n;
+                    n = f;
+                }
+            }
+            return null;
+        }
+
+        Object doGet(long key) {
+            outer:
+            for (; ; ) {
+                for (Node b = findPredecessor(key), n = b.next; ; ) {
+                    if (n == null) {
+                        break outer;
+                    }
+                    Node f = n.next;
+                    if (n != b.next) {
+                        break;
+                    }
+                    Object v = n.value;
+                    if (v == null) {
+                        n.helpDelete(b, f);
+                        break;
+                    }
+                    if (b.value == null || v == n) {
+                        break;
+                    }
+                    if (key == n.key) {
+                        return v;
+                    }
+                    if (key < n.key) {
+                        break outer;
+                    }
+                    b = n;
+                    n = f;
+                }
+            }
+            return null;
+        }
+
+        Object doPut(long key, Object value, boolean onlyIfAbsent) {
+            Node z;
+            outer:
+            for (; ; ) {
+                for (Node b = findPredecessor(key), n = b.next; ; ) {
+                    if (n != null) {
+                        Node f = n.next;
+                        if (n != b.next) {
+                            break;
+                        }
+                        Object v = n.value;
+                        if (v == null) {
+                            n.helpDelete(b, f);
+                            break;
+                        }
+                        if (b.value == null || v == n) {
+                            break;
+                        }
+                        if (key > n.key) {
+                            b = n;
+                            n = f;
+                            continue;
+                        }
+                        if (key == n.key) {
+                            if (onlyIfAbsent || n.casValue(v, value)) {
+                                return v;
+                            }
+                            break; // lost race to replace value
+                        }
+                    }
+                    z = new Node(key, value, n);
+                    if (!b.casNext(n, z)) {
+                        break;
+                    }
+                    break outer;
+                }
+            }
+            int rnd = ThreadLocalRandom.current().nextInt();
+            if ((rnd & 0x80000001) == 0) { // test highest and lowest bits
+                int level = 1;
+                while (((rnd >>>= 1) & 1) != 0) {
+                    ++level;
+                }
+                addIndex(z, level);
+            }
+            return null;
+        }
+
+        private void addIndex(Node z, int level) {
+            Index idx = null;
+            HeadIndex h = head;
+            int max = h.level;
+            if (level <= max) {
+                for (int i = 1; i <= level; ++i) {
+                    idx = new Index(z, idx, null);
+                }
+            } else {
+                level = max + 1;
+                Index[] idxs = new Index[level + 1];
+                for (int i = 1; i <= level; ++i) {
+                    idxs[i] = idx = new Index(z, idx, null);
+                }
+                for (; ; ) {
+                    h = head;
+                    int oldLevel = h.level;
+                    if (level <= oldLevel) {
+                        break; // lost race to add level
+                    }
+                    HeadIndex newh = h;
+                    Node oldbase = h.node;
+                    for (int j = oldLevel + 1; j <= level; ++j) {
+                        newh = new HeadIndex(oldbase, newh, idxs[j], j);
+                    }
+                    if (HEAD.compareAndSet(this, h, newh)) {
+                        h = newh;
+                        idx = idxs[level = oldLevel];
+                        break;
+                    }
+                }
+            }
+            long key = z.key;
+            splice:
+            for (int insertionLevel = level; ; ) {
+                int j = h.level;
+                for (Index q = h, r = q.right, t = idx; ; ) {
+                    if (q == null || t == null) {
+                        break splice;
+                    }
+                    if (r != null) {
+                        Node n = r.node;
+                        if (n.value == null) {
+                            if (!q.unlink(r)) {
+                                break;
+                            }
+                            r = q.right;
+                            continue;
+                        }
+                        if (key > n.key) {
+                            q = r;
+                            r = r.right;
+                            continue;
+                        }
+                    }
+                    if (j == insertionLevel) {
+                        if (!q.link(r, t)) {
+                            break; // restart
+                        }
+                        if (t.node.value == null) {
+                            findNode(key);
+                            break splice;
+                        }
+                        if (--insertionLevel == 0) {
+                            break splice;
+                        }
+                    }
+                    if (--j >= insertionLevel && j < level) {
+                        t = t.down;
+                    }
+                    q = q.down;
+                    r = q.right;
+                }
+            }
+        }
+
+        Object doRemove(long key, Object value) {
+            outer:
+            for (; ; ) {
+                for (Node b = findPredecessor(key), n = b.next; ; ) {
+                    if (n == null) {
+                        break outer;
+                    }
+                    Node f = n.next;
+                    if (n != b.next) {
+                        break;
+                    }
+                    Object v = n.value;
+                    if (v == null) {
+                        n.helpDelete(b, f);
+                        break;
+                    }
+                    if (b.value == null || v == n) {
+                        break;
+                    }
+                    if (key < n.key) {
+                        break outer;
+                    }
+                    if (key > n.key) {
+                        b = n;
+                        n = f;
+                        continue;
+                    }
+                    if (value != null && !Objects.equals(value, v)) {
+                        break outer;
+                    }
+                    if (!n.casValue(v, null)) {
+                        break;
+                    }
+                    if (!n.appendMarker(f) || !b.casNext(n, f)) {
+                        findNode(key); // retry via findNode
+                    } else {
+                        findPredecessor(key); // clean index
+                        if (head.right == null) {
+                            tryReduceLevel();
+                        }
+                    }
+                    return v;
+                }
+            }
+            return null;
+        }
+
+        private void tryReduceLevel() {
+            HeadIndex h = head;
+            HeadIndex d;
+            HeadIndex e;
+            if (h.level > 3
+                    && (d = (HeadIndex) h.down) != null
+                    && (e = (HeadIndex) d.down) != null
+                    && e.right == null
+                    && d.right == null
+                    && h.right == null
+                    && HEAD.compareAndSet(this, h, d)
+                    && h.right != null) { // recheck
+                HEAD.compareAndSet(this, d, h); // try to backout
+            }
+        }
+
+        /** Writes the `null` key slot, then the keys and values of all nodes in ascending order. */
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.defaultWriteObject();
+            for (Node n = head.node.next; n != null; n = n.next) {
+                Object v = n.getValidValue();
+                if (v != null) {
+                    out.writeBoolean(true);
+                    out.writeLong(n.key);
+                    out.writeObject(v);
+                }
+            }
+            out.writeBoolean(false);
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            head = new HeadIndex(new Node(0L, BASE_HEADER, null), null, null, 1);
+            while (in.readBoolean()) {
+                long key = in.readLong();
+                doPut(key, in.readObject(), false);
+            }
+        }
+
+        /**
+         * Returns the node nearest to the given key according to {@code rel}, which is a
+         * combination of {@link #LT}, {@link #GT} and {@link #EQ}.
+         */
+        Node findNear(long key, int rel) {
+            for (; ; ) {
+                for (Node b = findPredecessor(key), n = b.next; ; ) {
+                    if (n == null) {
+                        return ((rel & LT) == 0 || b.isBaseHeader()) ? null : b;
+                    }
+                    Node f = n.next;
+                    if (n != b.next) {
+                        break;
+                    }
+                    Object v = n.value;
+                    if (v == null) {
+                        n.helpDelete(b, f);
+                        break;
+                    }
+                    if (b.value == null || v == n) {
+                        break;
+                    }
+                    if ((key == n.key && (rel & EQ) != 0) || (key < n.key && (rel & LT) == 0)) {
+                        return n;
+                    }
+                    if (key <= n.key && (rel & LT) != 0) {
+                        return b.isBaseHeader() ? null : b;
+                    }
+                    b = n;
+                    n = f;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package de.krawallgraben.nullable;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A queue for any number of producer threads and exactly one consumer thread that allows `null`
+ * elements.
+ *
+ * <p>The queue is either bounded, a ring buffer of fixed capacity, or unbounded, a linked list of
+ * array chunks. Producers claim their position with a single atomic operation: a compare-and-set in
+ * bounded mode, an atomic increment in unbounded mode. The consumer executes no atomic operation at
+ * all; it publishes its progress with ordered stores ({@code lazySet}). Bounded producers cache the
+ * consumer index and read it again only when the cached limit is reached.
+ *
+ * <p>{@link #poll}, {@link #remove}, {@link #clear} and the removal of single elements may only be
+ * called by the consumer thread. All other methods may be called from any thread. {@link #offer}
+ * returns `false` if a bounded queue is full; {@link #poll} returns `null` if the queue is empty.
+ * Use {@link #isEmpty()} to tell an empty queue from a `null` element. An element whose producer
+ * has claimed a position but not yet filled it is not visible to the consumer.
+ *
+ * <p>Removed elements keep their slot until the consumer reaches it; {@link #isEmpty()} and {@link
+ * #size()} do not count removed elements at the head. Iterators are weakly consistent.
+ *
+ * @param <E> the type of elements held in this queue
+ * @see NullableSpscQueue
+ */
+public class NullableMpscQueue<E> extends AbstractQueue<E> implements Queue<E> {
+
+    /** Chunk size of unbounded queues. */
+    private static final int CHUNK_SIZE = 1024;
+
+    /** Distance between the indexes in longs, two cache lines. */
+    private static final int PAD = 16;
+
+    private static final int PRODUCER = PAD;
+    private static final int PRODUCER_LIMIT = PAD + 1;
+    private static final int CONSUMER = 2 * PAD;
+
+    @SuppressWarnings("unchecked")
+    private static final AtomicReferenceFieldUpdater<NullableMpscQueue<?>, Chunk> PRODUCER_CHUNK =
+            AtomicReferenceFieldUpdater.newUpdater(
+                    (Class<NullableMpscQueue<?>>) (Class<?>) NullableMpscQueue.class,
+                    Chunk.class,
+                    "producerChunk");
+
+    private static final AtomicReferenceFieldUpdater<Chunk, Chunk> NEXT =
+            AtomicReferenceFieldUpdater.newUpdater(Chunk.class, Chunk.class, "next");
+
+    /** Producer index, cached producer limit and consumer index, padded against false sharing. */
+    private final AtomicLongArray counters = new AtomicLongArray(3 * PAD);
+
+    private final boolean bounded;
+    private final int mask;
+    private final int shift;
+
+    /** The chunk of a recently claimed position; never ahead of the chunk of the next one. */
+    private volatile Chunk producerChunk;
+
+    private volatile Chunk consumerChunk;
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    /** Marks the slot of a removed element. */
+    private static final Object REMOVED = new Object();
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /** Constructs an empty, unbounded queue. */
+    public NullableMpscQueue() {
+        this(false, CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs an empty, bounded queue.
+     *
+     * @param capacity the minimum capacity, rounded up to a power of two
+     */
+    public NullableMpscQueue(int capacity) {
+        this(true, capacity);
+    }
+
+    private NullableMpscQueue(boolean bounded, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.bounded = bounded;
+        this.mask = size - 1;
+        this.shift = Integer.numberOfTrailingZeros(size);
+        this.producerChunk = new Chunk(0, size);
+        this.consumerChunk = producerChunk;
+    }
+
+    /**
+     * Returns the capacity of this queue.
+     *
+     * @return the capacity, or {@link Integer#MAX_VALUE} if the queue is unbounded
+     */
+    public int capacity() {
+        return bounded ? mask + 1 : Integer.MAX_VALUE;
+    }
+
+    // Queue methods
+
+    /**
+     * Inserts the specified element.
+     *
+     * <p>Unlike standard concurrent queues, this method accepts `null`.
+     *
+     * @return `true` if the element was added, `false` if the queue is bounded and full
+     */
+    @Override
+    public boolean offer(E e) {
+        Object masked = mask(e);
+        if (bounded) {
+            long limit = counters.get(PRODUCER_LIMIT);
+            long p;
+            do {
+                p = counters.get(PRODUCER);
+                if (p >= limit) {
+                    limit = counters.get(CONSUMER) + mask + 1;
+                    if (p >= limit) {
+                        return false;
+                    }
+                    counters.lazySet(PRODUCER_LIMIT, limit);
+                }
+            } while (!counters.compareAndSet(PRODUCER, p, p + 1));
+            producerChunk.lazySet((int) p & mask, masked);
+            return true;
+        }
+        Chunk chunk = producerChunk; // read before claiming, so it cannot be ahead
+        long p = counters.getAndIncrement(PRODUCER);
+        long id = p >>> shift;
+        if (chunk.id < id) {
+            chunk = chunkFor(chunk, id);
+        }
+        chunk.lazySet((int) p & mask, masked);
+        return true;
+    }
+
+    /** Retrieves and removes the head. Must only be called by the consumer thread. */
+    @Override
+    public E poll() {
+        Object e = pollMasked();
+        return e == REMOVED ? null : unmask(e);
+    }
+
+    /**
+     * Returns and removes the head of this queue. Must only be called by the consumer thread.
+     *
+     * @return the head, may be `null`
+     * @throws NoSuchElementException if this queue is empty
+     */
+    @Override
+    public E remove() {
+        Object e = pollMasked();
+        if (e == REMOVED) {
+            throw new NoSuchElementException();
+        }
+        return unmask(e);
+    }
+
+    @Override
+    public E peek() {
+        Itr it = new Itr();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        for (; ; ) {
+            long consumer = counters.get(CONSUMER);
+            long producer = counters.get(PRODUCER);
+            long removed = removedAtHead(consumer, producer);
+            if (counters.get(CONSUMER) == consumer) {
+                long n = producer - consumer - removed;
+                return (int) Math.max(0, Math.min(n, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    /** Removes all elements. Must only be called by the consumer thread. */
+    @Override
+    public void clear() {
+        while (pollMasked() != REMOVED) {
+            // drain
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    // Helper methods and classes
+
+    /** Walks from the given chunk to the one with the given id, appending chunks as needed. */
+    private Chunk chunkFor(Chunk chunk, long id) {
+        Chunk c = chunk;
+        while (c.id < id) {
+            Chunk next = c.next;
+            if (next == null) {
+                next = new Chunk(c.id + 1, mask + 1);
+                if (!NEXT.compareAndSet(c, null, next)) {
+                    next = c.next;
+                }
+            }
+            c = next;
+        }
+        Chunk hint = producerChunk;
+        while (hint.id < id && !PRODUCER_CHUNK.compareAndSet(this, hint, c)) {
+            hint = producerChunk;
+        }
+        return c;
+    }
+
+    /** Removes the head, skipping removed elements. Returns {@link #REMOVED} if empty. */
+    private Object pollMasked() {
+        for (; ; ) {
+            long q = counters.get(CONSUMER);
+            Chunk chunk = consumerChunk;
+            if (!bounded && chunk.id < q >>> shift) {
+                Chunk next = chunk.next;
+                if (next == null) {
+                    return REMOVED; // empty, or the next chunk is not appended yet
+                }
+                consumerChunk = chunk = next;
+            }
+            int index = (int) q & mask;
+            Object e = chunk.get(index);
+            if (e == null) {
+                return REMOVED; // empty, or the producer has not filled the slot yet
+            }
+            chunk.lazySet(index, null);
+            counters.lazySet(CONSUMER, q + 1);
+            if (e != REMOVED) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of removed elements that occupy the slots from the consumer index on. Only
+     * reads the slots, so that any thread may call it.
+     */
+    private long removedAtHead(long consumer, long producer) {
+        Chunk chunk = consumerChunk;
+        long pos = Math.max(consumer, chunk.id << shift);
+        for (; pos < producer; pos++) {
+            while (!bounded && chunk.id < pos >>> shift) {
+                chunk = chunk.next;
+                if (chunk == null) {
+                    return pos - consumer;
+                }
+            }
+            if (chunk.get((int) pos & mask) != REMOVED) {
+                break;
+            }
+        }
+        return pos - consumer;
+    }
+
+    /** An array of slots; the ring of a bounded queue or a link of an unbounded one. */
+    @SuppressWarnings("serial")
+    private static final class Chunk extends AtomicReferenceArray<Object> {
+        final long id;
+        volatile Chunk next;
+
+        Chunk(long id, int size) {
+            super(size);
+            this.id = id;
+        }
+    }
+
+    /** Weakly consistent iterator over the elements between the consumer and producer index. */
+    private class Itr implements Iterator<E> {
+        private Chunk chunk = consumerChunk;
+        private long pos = Math.max(counters.get(CONSUMER), chunk.id << shift);
+        private final long end = counters.get(PRODUCER);
+        private Object next;
+        private Chunk nextChunk;
+        private Object lastReturned;
+        private Chunk lastChunk;
+        private long lastPos;
+
+        Itr() {
+            advance();
+        }
+
+        private void advance() {
+            nextChunk = null;
+            for (; pos < end; pos++) {
+                while (!bounded && chunk.id < pos >>> shift) {
+                    chunk = chunk.next;
+                    if (chunk == null) {
+                        pos = end;
+                        return;
+                    }
+                }
+                Object e = chunk.get((int) pos & mask);
+                if (e != null && e != REMOVED) {
+                    next = e;
+                    nextChunk = chunk;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextChunk != null;
+        }
+
+        @Override
+        public E next() {
+            if (nextChunk == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            lastChunk = nextChunk;
+            lastPos = pos;
+            pos++;
+            advance();
+            return unmask(lastReturned);
+        }
+
+        /**
+         * Removes the last element. Must only be called by the consumer thread.
+         *
+         * <p>Once the consumer has passed the element, its slot may hold an equal element offered
+         * later, so the slot is only marked while the consumer index has not reached past it.
+         */
+        @Override
+        public void remove() {
+            if (lastChunk == null) {
+                throw new IllegalStateException();
+            }
+            if (lastPos >= counters.get(CONSUMER)) {
+                lastChunk.compareAndSet((int) lastPos & mask, lastReturned, REMOVED);
+            }
+            lastChunk = null;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package de.krawallgraben.nullable;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded ring buffer that delivers every element to every subscriber and allows `null` elements.
+ *
+ * <p>In the manner of the LMAX Disruptor, the elements live in a single pre-allocated array and
+ * each {@link Subscriber} tracks its own sequence number in it, so an element is written once, no
+ * matter how many subscribers read it. Any number of threads may publish: they claim slots with one
+ * compare-and-set on the producer cursor, a batch of elements with {@link #offerAll} at once, and
+ * mark each slot as published after writing it. A slot is reused only after all subscribers have
+ * read it; until then {@link #offer} returns `false`. Nothing blocks: a subscriber that finds no
+ * element gets `null` from {@link Subscriber#poll()} and decides itself whether to spin, yield or
+ * park.
+ *
+ * <p>A subscriber sees the elements published after it subscribed. Each subscriber must be used by
+ * one thread at a time. A subscriber that stops reading without {@linkplain Subscriber#close()
+ * closing} holds up all producers. Slots keep their elements until they are overwritten.
+ *
+ * @param <E> the type of elements held in this ring buffer
+ */
+public class NullableMulticastRingBuffer<E> {
+
+    /** Distance between the indexes in longs, two cache lines. */
+    private static final int PAD = 16;
+
+    private static final int CURSOR = PAD;
+    private static final int GATING = 2 * PAD;
+
+    private static final Subscriber<?>[] NO_SUBSCRIBERS = new Subscriber<?>[0];
+
+    /**
+     * Next sequence to claim and cached minimum subscriber sequence, padded against false sharing.
+     */
+    private final AtomicLongArray counters = new AtomicLongArray(3 * PAD);
+
+    private final AtomicReferenceArray<Object> elements;
+
+    /** The sequence last published in each slot, -1 if none. */
+    private final AtomicLongArray published;
+
+    private final int mask;
+
+    private final AtomicReference<Subscriber<?>[]> subscribers =
+            new AtomicReference<>(NO_SUBSCRIBERS);
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /**
+     * Constructs an empty ring buffer without subscribers.
+     *
+     * @param capacity the minimum capacity, rounded up to a power of two
+     */
+    public NullableMulticastRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.lazySet(i, -1);
+        }
+    }
+
+    /**
+     * Returns the capacity of this ring buffer.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Adds a subscriber that receives the elements published from now on.
+     *
+     * @return the new subscriber
+     */
+    public Subscriber<E> subscribe() {
+        Subscriber<E> s = new Subscriber<>(this, counters.get(CURSOR));
+        for (; ; ) {
+            Subscriber<?>[] current = subscribers.get();
+            Subscriber<?>[] updated = new Subscriber<?>[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = s;
+            if (subscribers.compareAndSet(current, updated)) {
+                break;
+            }
+        }
+        // Producers may have claimed slots before they saw the subscriber: start after them
+        s.sequence.set(Subscriber.SEQUENCE, counters.get(CURSOR));
+        return s;
+    }
+
+    // Producer methods
+
+    /**
+     * Publishes the specified element to all subscribers.
+     *
+     * <p>Unlike standard ring buffers, this method accepts `null`.
+     *
+     * @param e the element
+     * @return `true` if the element was published, `false` if a subscriber has not yet read the
+     *     slot it would overwrite
+     */
+    public boolean offer(E e) {
+        long seq = claim(1);
+        if (seq < 0) {
+            return false;
+        }
+        publish(seq, mask(e));
+        return true;
+    }
+
+    /**
+     * Publishes all elements of the specified collection, in iteration order, with a single claim.
+     * Either all elements are published or none.
+     *
+     * @param c the elements
+     * @return `true` if the elements were published, `false` if there is not enough room
+     */
+    public boolean offerAll(Collection<? extends E> c) {
+        Object[] batch = c.toArray();
+        if (batch.length == 0) {
+            return true;
+        }
+        if (batch.length > capacity()) {
+            return false;
+        }
+        long seq = claim(batch.length);
+        if (seq < 0) {
+            return false;
+        }
+        for (Object e : batch) {
+            publish(seq++, mask(e));
+        }
+        return true;
+    }
+
+    // Helper methods and classes
+
+    /** Claims n slots and returns the first sequence, or -1 if a subscriber is too far behind. */
+    private long claim(int n) {
+        for (; ; ) {
+            long c = counters.get(CURSOR);
+            long wrap = c + n - 1 - capacity();
+            if (wrap >= counters.get(GATING)) {
+                long min = minSequence(c);
+                counters.lazySet(GATING, min);
+                if (wrap >= min) {
+                    return -1;
+                }
+            }
+            if (counters.compareAndSet(CURSOR, c, c + n)) {
+                return c;
+            }
+        }
+    }
+
+    private void publish(long seq, Object e) {
+        int index = (int) seq & mask;
+        elements.lazySet(index, e);
+        published.set(index, seq);
+    }
+
+    /** Returns the lowest sequence not yet read by all subscribers. */
+    private long minSequence(long cursor) {
+        long min = cursor;
+        for (Subscriber<?> s : subscribers.get()) {
+            min = Math.min(min, s.sequence.get(Subscriber.SEQUENCE));
+        }
+        return min;
+    }
+
+    private void unsubscribe(Subscriber<?> s) {
+        for (; ; ) {
+            Subscriber<?>[] current = subscribers.get();
+            int i = 0;
+            while (i < current.length && current[i] != s) {
+                i++;
+            }
+            if (i == current.length) {
+                return;
+            }
+            Subscriber<?>[] updated = new Subscriber<?>[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, i);
+            System.arraycopy(current, i + 1, updated, i, updated.length - i);
+            if (subscribers.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A reader of a {@link NullableMulticastRingBuffer}. Each subscriber receives every element
+     * published after it subscribed, in sequence order, and must be used by one thread at a time.
+     *
+     * @param <E> the type of elements
+     */
+    public static final class Subscriber<E> {
+
+        private static final int SEQUENCE = PAD;
+
+        private final NullableMulticastRingBuffer<E> ring;
+
+        /** The next sequence to read, padded against false sharing. */
+        private final AtomicLongArray sequence = new AtomicLongArray(2 * PAD);
+
+        private Subscriber(NullableMulticastRingBuffer<E> ring, long start) {
+            this.ring = ring;
+            sequence.set(SEQUENCE, start);
+        }
+
+        /**
+         * Retrieves and consumes the next element.
+         *
+         * @return the element, or `null` if there is none
+         */
+        public E poll() {
+            long seq = sequence.get(SEQUENCE);
+            int index = (int) seq & ring.mask;
+            if (ring.published.get(index) != seq) {
+                return null;
+            }
+            Object e = ring.elements.get(index);
+            sequence.lazySet(SEQUENCE, seq + 1);
+            return unmask(e);
+        }
+
+        /**
+         * Retrieves the next element without consuming it.
+         *
+         * @return the element, or `null` if there is none
+         */
+        public E peek() {
+            long seq = sequence.get(SEQUENCE);
+            int index = (int) seq & ring.mask;
+            return ring.published.get(index) == seq ? unmask(ring.elements.get(index)) : null;
+        }
+
+        /**
+         * Returns `true` if there is no published element to read.
+         *
+         * @return `true` if empty
+         */
+        public boolean isEmpty() {
+            long seq = sequence.get(SEQUENCE);
+            return ring.published.get((int) seq & ring.mask) != seq;
+        }
+
+        /**
+         * Returns the number of elements claimed by producers but not yet read by this subscriber.
+         * Some of them may not be published yet.
+         *
+         * @return the number of elements
+         */
+        public int size() {
+            long n = ring.counters.get(CURSOR) - sequence.get(SEQUENCE);
+            return (int) Math.max(0, Math.min(n, Integer.MAX_VALUE));
+        }
+
+        /**
+         * Consumes up to {@code limit} published elements and passes them to the given action. The
+         * slots are released to the producers once, after the batch.
+         *
+         * @param action the action to perform on each element
+         * @param limit the maximum number of elements
+         * @return the number of elements consumed
+         */
+        public int drain(Consumer<? super E> action, int limit) {
+            long start = sequence.get(SEQUENCE);
+            long seq = start;
+            try {
+                while (seq - start < limit) {
+                    int index = (int) seq & ring.mask;
+                    if (ring.published.get(index) != seq) {
+                        break;
+                    }
+                    Object e = ring.elements.get(index);
+                    seq++;
+                    action.accept(unmask(e));
+                }
+            } finally {
+                sequence.lazySet(SEQUENCE, seq); // once per batch
+            }
+            return (int) (seq - start);
+        }
+
+        /** Removes this subscriber from the ring buffer, so producers no longer wait for it. */
+        public void close() {
+            ring.unsubscribe(this);
+        }
+    }
+}
@@ -0,0 +1,655 @@
+package de.krawallgraben.nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A thread-safe map with {@link String} keys, backed by a prefix-compressed radix tree, that allows
+ * `null` as key and value.
+ *
+ * <p>The tree consists of immutable nodes. Writers copy the path from the root to the changed node
+ * and publish the new root with a single compare-and-set, so neither readers nor writers block.
+ * Readers and iterators work on a consistent snapshot of the tree.
+ *
+ * <p>Every node stores the number of keys in its subtree. {@link #prefixCount(String)}, {@link
+ * #longestPrefixOf(String)} and lookups therefore cost time proportional to the length of the
+ * argument, independent of the number of keys. Iteration returns keys in {@linkplain
+ * String#compareTo natural order}. The `null` key is held in a dedicated slot and returned first.
+ *
+ * <p>All writers compete for the same root: a writer whose compare-and-set fails copies its path
+ * again and retries, so concurrent writes are effectively serialized. The map suits read-mostly
+ * string keys such as dictionaries or routing tables; for write-heavy use, {@link
+ * NullableSortedConcurrentMap} with its {@link NullableSortedConcurrentMap#prefixMap(String) prefix
+ * views} scales better.
+ *
+ * @param <V> the type of values
+ */
+public class NullableRadixConcurrentMap<V> extends AbstractMap<String, V>
+        implements ConcurrentMap<String, V> {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final Node EMPTY = new Node("", null, NO_CHILDREN);
+
+    /** Shared root and `null` key slot. */
+    private final Tree tree;
+
+    /** Common prefix of all keys in this view, `""` for the whole map. */
+    private final String prefix;
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /** Constructs a new, empty map. */
+    public NullableRadixConcurrentMap() {
+        this(new Tree(), "");
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given map.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     */
+    public NullableRadixConcurrentMap(Map<? extends String, ? extends V> m) {
+        this();
+        putAll(m);
+    }
+
+    // Private constructor for prefix views
+    private NullableRadixConcurrentMap(Tree tree, String prefix) {
+        this.tree = tree;
+        this.prefix = prefix;
+    }
+
+    // Prefix operations
+
+    /**
+     * Returns a view of the mappings whose keys start with the given prefix. The `null` key is not
+     * part of the view. Inserting a key without the prefix into the view throws an {@link
+     * IllegalArgumentException}.
+     *
+     * @param prefix the prefix
+     * @return the view
+     */
+    public NullableRadixConcurrentMap<V> prefixMap(String prefix) {
+        Objects.requireNonNull(prefix);
+        if (!prefix.startsWith(this.prefix)) {
+            throw new IllegalArgumentException("prefix out of range: " + prefix);
+        }
+        return new NullableRadixConcurrentMap<>(tree, prefix);
+    }
+
+    /**
+     * Returns the number of keys starting with the given prefix.
+     *
+     * @param prefix the prefix
+     * @return the number of keys
+     */
+    public int prefixCount(String prefix) {
+        if (!prefix.startsWith(this.prefix)) {
+            return 0;
+        }
+        Node n = locate(tree.root, prefix);
+        return n == null ? 0 : n.size;
+    }
+
+    /**
+     * Returns the longest key that is a prefix of the given string.
+     *
+     * @param query the string
+     * @return the longest matching key, or `null` if no key is a prefix of {@code query}
+     */
+    public String longestPrefixOf(String query) {
+        if (!query.startsWith(prefix)) {
+            return null;
+        }
+        Node n = tree.root;
+        int offset = 0;
+        int matched = n.value != null ? 0 : -1;
+        while (offset < query.length()) {
+            int i = childIndex(n, query.charAt(offset));
+            if (i < 0) {
+                break;
+            }
+            Node child = n.children[i];
+            if (!query.startsWith(child.edge, offset)) {
+                break;
+            }
+            offset += child.edge.length();
+            n = child;
+            if (n.value != null) {
+                matched = offset;
+            }
+        }
+        if (matched < prefix.length()) {
+            return null; // no match or match shorter than the prefix of this view
+        }
+        return query.substring(0, matched);
+    }
+
+    // Map methods
+
+    @Override
+    public int size() {
+        int size = prefixCount(prefix);
+        return isRoot() && tree.nullValue != null ? size + 1 : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return lookup(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        return unmask(lookup(key));
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Object v = lookup(key);
+        return v == null ? defaultValue : unmask(v);
+    }
+
+    @Override
+    public V put(String key, V value) {
+        return unmask(update(key, mask(value), null, false));
+    }
+
+    @Override
+    public V putIfAbsent(String key, V value) {
+        return unmask(update(key, mask(value), null, true));
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (key != null && !(key instanceof String)) {
+            return null;
+        }
+        return unmask(update((String) key, null, null, false));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (key != null && !(key instanceof String)) {
+            return false;
+        }
+        Object expected = mask(value);
+        return Objects.equals(update((String) key, null, expected, false), expected);
+    }
+
+    @Override
+    public boolean replace(String key, V oldValue, V newValue) {
+        Object expected = mask(oldValue);
+        return Objects.equals(update(key, mask(newValue), expected, false), expected);
+    }
+
+    @Override
+    public V replace(String key, V value) {
+        for (; ; ) {
+            Object current = lookup(key);
+            if (current == null) {
+                return null;
+            }
+            if (Objects.equals(update(key, mask(value), current, false), current)) {
+                return unmask(current);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (isRoot()) {
+            Tree.NULL_VALUE.set(tree, null);
+        }
+        for (; ; ) {
+            Node root = tree.root;
+            Node updated = removePrefix(root, prefix, 0);
+            if (updated == root || Tree.ROOT.compareAndSet(tree, root, updated)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new EntrySetView();
+    }
+
+    // Helper methods and classes
+
+    private boolean isRoot() {
+        return prefix.isEmpty();
+    }
+
+    private boolean inRange(String key) {
+        return key == null ? isRoot() : key.startsWith(prefix);
+    }
+
+    /** Returns the masked value for the key, or `null` if absent. */
+    private Object lookup(Object key) {
+        if (key == null) {
+            return isRoot() ? tree.nullValue : null;
+        }
+        if (!(key instanceof String) || !inRange((String) key)) {
+            return null;
+        }
+        return find(tree.root, (String) key);
+    }
+
+    /** Returns the masked value for a non-null key in the given tree, or `null` if absent. */
+    private static Object find(Node root, String k) {
+        Node n = root;
+        int offset = 0;
+        while (offset < k.length()) {
+            int i = childIndex(n, k.charAt(offset));
+            if (i < 0) {
+                return null;
+            }
+            Node child = n.children[i];
+            if (!k.startsWith(child.edge, offset)) {
+                return null;
+            }
+            offset += child.edge.length();
+            n = child;
+        }
+        return n.value;
+    }
+
+    /**
+     * Atomically changes the mapping for a key.
+     *
+     * @param key the key
+     * @param value the new masked value, or `null` to remove the mapping
+     * @param expected the masked value that must be current, or `null` for any
+     * @param onlyIfAbsent whether an existing mapping is kept
+     * @return the previous masked value, or `null` if there was no mapping
+     */
+    private Object update(String key, Object value, Object expected, boolean onlyIfAbsent) {
+        if (!inRange(key)) {
+            if (value == null) {
+                return null;
+            }
+            throw new IllegalArgumentException("key out of range: " + key);
+        }
+        if (key == null) {
+            for (; ; ) {
+                Object current = tree.nullValue;
+                if ((expected != null && !expected.equals(current))
+                        || (onlyIfAbsent && current != null)) {
+                    return current;
+                }
+                if (Tree.NULL_VALUE.compareAndSet(tree, current, value)) {
+                    return current;
+                }
+            }
+        }
+        for (; ; ) {
+            Node root = tree.root;
+            Object current = find(root, key);
+            if ((expected != null && !expected.equals(current))
+                    || (onlyIfAbsent && current != null)
+                    || (value == null && current == null)) {
+                return current;
+            }
+            Node updated = value == null ? remove(root, key, 0) : put(root, key, 0, value);
+            if (Tree.ROOT.compareAndSet(tree, root, updated)) {
+                return current;
+            }
+        }
+    }
+
+    /** Finds the subtree holding all keys with the given prefix. */
+    private static Node locate(Node n, String prefix) {
+        int offset = 0;
+        while (offset < prefix.length()) {
+            int i = childIndex(n, prefix.charAt(offset));
+            if (i < 0) {
+                return null;
+            }
+            Node child = n.children[i];
+            int common = commonPrefixLength(child.edge, prefix, offset);
+            if (offset + common == prefix.length()) {
+                return child; // prefix ends on or inside the edge
+            }
+            if (common < child.edge.length()) {
+                return null;
+            }
+            offset += common;
+            n = child;
+        }
+        return n;
+    }
+
+    private static Node put(Node n, String key, int offset, Object value) {
+        if (offset == key.length()) {
+            return new Node(n.edge, value, n.children);
+        }
+        int i = childIndex(n, key.charAt(offset));
+        if (i < 0) {
+            Node leaf = new Node(key.substring(offset), value, NO_CHILDREN);
+            return n.withChildAdded(-(i + 1), leaf);
+        }
+        Node child = n.children[i];
+        int common = commonPrefixLength(child.edge, key, offset);
+        if (common == child.edge.length()) {
+            return n.withChildReplaced(i, put(child, key, offset + common, value));
+        }
+        // Split the edge of the child
+        Node suffix = new Node(child.edge.substring(common), child.value, child.children);
+        Node split;
+        if (offset + common == key.length()) {
+            split = new Node(child.edge.substring(0, common), value, new Node[] {suffix});
+        } else {
+            Node leaf = new Node(key.substring(offset + common), value, NO_CHILDREN);
+            Node[] children =
+                    leaf.edge.charAt(0) < suffix.edge.charAt(0)
+                            ? new Node[] {leaf, suffix}
+                            : new Node[] {suffix, leaf};
+            split = new Node(child.edge.substring(0, common), null, children);
+        }
+        return n.withChildReplaced(i, split);
+    }
+
+    private static Node remove(Node n, String key, int offset) {
+        if (offset == key.length()) {
+            return n.value == null ? n : new Node(n.edge, null, n.children);
+        }
+        int i = childIndex(n, key.charAt(offset));
+        if (i < 0) {
+            return n;
+        }
+        Node child = n.children[i];
+        if (!key.startsWith(child.edge, offset)) {
+            return n;
+        }
+        Node updated = remove(child, key, offset + child.edge.length());
+        return updated == child ? n : n.withChildReplaced(i, updated);
+    }
+
+    private static Node removePrefix(Node n, String prefix, int offset) {
+        if (offset == prefix.length()) {
+            return EMPTY;
+        }
+        int i = childIndex(n, prefix.charAt(offset));
+        if (i < 0) {
+            return n;
+        }
+        Node child = n.children[i];
+        int common = commonPrefixLength(child.edge, prefix, offset);
+        if (offset + common == prefix.length()) {
+            return n.withChildReplaced(i, EMPTY);
+        }
+        if (common < child.edge.length()) {
+            return n;
+        }
+        Node updated = removePrefix(child, prefix, offset + common);
+        return updated == child ? n : n.withChildReplaced(i, updated);
+    }
+
+    private static int childIndex(Node n, char c) {
+        Node[] children = n.children;
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = children[mid].edge.charAt(0);
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int commonPrefixLength(String edge, String key, int offset) {
+        int max = Math.min(edge.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && edge.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Immutable tree node. */
+    private static final class Node {
+        /** Label of the edge leading to this node. */
+        final String edge;
+
+        /** Masked value, or `null` if no key ends at this node. */
+        final Object value;
+
+        /** Children, sorted by the first character of their edge. */
+        final Node[] children;
+
+        /** Number of keys in this subtree. */
+        final int size;
+
+        Node(String edge, Object value, Node[] children) {
+            this.edge = edge;
+            this.value = value;
+            this.children = children;
+            int s = value != null ? 1 : 0;
+            for (Node child : children) {
+                s += child.size;
+            }
+            this.size = s;
+        }
+
+        Node withChildAdded(int index, Node child) {
+            Node[] updated = new Node[children.length + 1];
+            System.arraycopy(children, 0, updated, 0, index);
+            updated[index] = child;
+            System.arraycopy(children, index, updated, index + 1, children.length - index);
+            return new Node(edge, value, updated);
+        }
+
+        /** Replaces a child, dropping empty subtrees and merging chains without values. */
+        Node withChildReplaced(int index, Node child) {
+            Node[] updated;
+            if (child.size == 0) {
+                updated = new Node[children.length - 1];
+                System.arraycopy(children, 0, updated, 0, index);
+                System.arraycopy(children, index + 1, updated, index, updated.length - index);
+            } else {
+                if (child.value == null && child.children.length == 1) {
+                    Node grandChild = child.children[0];
+                    child =
+                            new Node(
+                                    child.edge + grandChild.edge,
+                                    grandChild.value,
+                                    grandChild.children);
+                }
+                updated = Arrays.copyOf(children, children.length);
+                updated[index] = child;
+            }
+            return new Node(edge, value, updated);
+        }
+    }
+
+    /** Root and `null` key slot shared by a map and its prefix views. */
+    private static final class Tree {
+        static final AtomicReferenceFieldUpdater<Tree, Node> ROOT =
+                AtomicReferenceFieldUpdater.newUpdater(Tree.class, Node.class, "root");
+        static final AtomicReferenceFieldUpdater<Tree, Object> NULL_VALUE =
+                AtomicReferenceFieldUpdater.newUpdater(Tree.class, Object.class, "nullValue");
+
+        volatile Node root = EMPTY;
+
+        /** Masked value of the `null` key, or `null` if absent. */
+        volatile Object nullValue;
+    }
+
+    private class EntrySetView extends AbstractSet<Entry<String, V>> {
+        @Override
+        public Iterator<Entry<String, V>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return NullableRadixConcurrentMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            Object val = lookup(e.getKey());
+            return val != null && Objects.equals(val, mask(e.getValue()));
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return NullableRadixConcurrentMap.this.remove(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public void clear() {
+            NullableRadixConcurrentMap.this.clear();
+        }
+    }
+
+    /** Depth-first iterator over a snapshot of the tree. */
+    private class EntryIterator implements Iterator<Entry<String, V>> {
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        private final StringBuilder path = new StringBuilder();
+        private Entry<String, V> next;
+        private Entry<String, V> lastReturned;
+
+        EntryIterator() {
+            Object nullValue = isRoot() ? tree.nullValue : null;
+            if (nullValue != null) {
+                next = new EntryWrapper(null, unmask(nullValue));
+            }
+            // Find the subtree of the prefix and the offset at which its edge starts
+            Node n = tree.root;
+            int start = 0;
+            int offset = 0;
+            while (n != null && offset < prefix.length()) {
+                int i = childIndex(n, prefix.charAt(offset));
+                Node child = i < 0 ? null : n.children[i];
+                if (child == null) {
+                    n = null;
+                } else {
+                    int common = commonPrefixLength(child.edge, prefix, offset);
+                    boolean matches =
+                            offset + common == prefix.length() || common == child.edge.length();
+                    start = offset;
+                    offset += common;
+                    n = matches ? child : null;
+                }
+            }
+            if (n != null) {
+                path.append(prefix, 0, start);
+                stack.push(new Frame(n, start));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry<String, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = null;
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            NullableRadixConcurrentMap.this.remove(lastReturned.getKey());
+            lastReturned = null;
+        }
+
+        private void advance() {
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                path.setLength(frame.pathLength);
+                if (frame.childIndex < 0) {
+                    frame.childIndex = 0;
+                    path.append(frame.node.edge);
+                    frame.pathLength = path.length();
+                    if (frame.node.value != null) {
+                        next = new EntryWrapper(path.toString(), unmask(frame.node.value));
+                        return;
+                    }
+                } else if (frame.childIndex < frame.node.children.length) {
+                    stack.push(new Frame(frame.node.children[frame.childIndex++], path.length()));
+                } else {
+                    stack.pop();
+                }
+            }
+        }
+    }
+
+    private static final class Frame {
+        final Node node;
+        int pathLength;
+        int childIndex = -1;
+
+        Frame(Node node, int pathLength) {
+            this.node = node;
+            this.pathLength = pathLength;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class EntryWrapper extends SimpleEntry<String, V> {
+        EntryWrapper(String key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            super.setValue(value);
+            return put(getKey(), value);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package de.krawallgraben.nullable;
+
+import java.io.Serializable;
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread-safe queue with relaxed FIFO order that allows `null` elements.
+ *
+ * <p>The queue consists of several independent shards, each a {@link ConcurrentLinkedQueue}. A
+ * thread always offers to and first polls from its own shard, chosen by its thread id, and steals
+ * from the other shards only when its own is empty. Threads on different shards never touch the
+ * same head or tail, so throughput grows with the number of shards instead of being capped by a
+ * single contended head and tail.
+ *
+ * <p>Ordering guarantee: the elements offered by one thread are removed in the order they were
+ * offered. There is no order between elements offered by different threads, and {@link #poll} may
+ * return an element of another shard although an older one is waiting in its own.
+ *
+ * <p>{@link #poll} returns `null` if the queue is empty. Use {@link #isEmpty()} to tell an empty
+ * queue from a `null` element. {@link #size()} is not a constant-time operation. Iterators visit
+ * the shards one after another and are weakly consistent.
+ *
+ * @param <E> the type of elements held in this queue
+ */
+@SuppressWarnings("serial")
+public class NullableShardedQueue<E> extends AbstractQueue<E> implements Serializable {
+
+    private final ConcurrentLinkedQueue<Object>[] shards;
+    private final int mask;
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /** Constructs an empty queue with a shard for each available processor. */
+    public NullableShardedQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param shards the minimum number of shards, rounded up to a power of two; typically the
+     *     number of threads using the queue
+     */
+    @SuppressWarnings("unchecked")
+    public NullableShardedQueue(int shards) {
+        if (shards < 1 || shards > 1 << 16) {
+            throw new IllegalArgumentException("shards: " + shards);
+        }
+        int size = Integer.highestOneBit(shards);
+        if (size < shards) {
+            size <<= 1;
+        }
+        this.shards = (ConcurrentLinkedQueue<Object>[]) new ConcurrentLinkedQueue<?>[size];
+        for (int i = 0; i < size; i++) {
+            this.shards[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int shards() {
+        return shards.length;
+    }
+
+    // Queue methods
+
+    /**
+     * Inserts the specified element into the shard of the current thread.
+     *
+     * <p>Unlike standard concurrent queues, this method accepts `null`.
+     *
+     * @return `true`
+     */
+    @Override
+    public boolean offer(E e) {
+        return shards[home()].offer(mask(e));
+    }
+
+    /**
+     * Retrieves and removes the head of the shard of the current thread, or of the next non-empty
+     * shard if that one is empty.
+     */
+    @Override
+    public E poll() {
+        int home = home();
+        for (int i = 0; i <= mask; i++) {
+            Object e = shards[(home + i) & mask].poll();
+            if (e != null) {
+                return unmask(e);
+            }
+        }
+        return null;
+    }
+
+    /** Returns the element {@link #poll} would return if there were no concurrent modifications. */
+    @Override
+    public E peek() {
+        int home = home();
+        for (int i = 0; i <= mask; i++) {
+            Object e = shards[(home + i) & mask].peek();
+            if (e != null) {
+                return unmask(e);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (ConcurrentLinkedQueue<Object> shard : shards) {
+            if (!shard.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the number of elements. This is not a constant-time operation. */
+    @Override
+    public int size() {
+        long n = 0;
+        for (ConcurrentLinkedQueue<Object> shard : shards) {
+            n += shard.size();
+        }
+        return (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        Object masked = mask(o);
+        for (ConcurrentLinkedQueue<Object> shard : shards) {
+            if (shard.contains(masked)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        Object masked = mask(o);
+        for (ConcurrentLinkedQueue<Object> shard : shards) {
+            if (shard.remove(masked)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        for (ConcurrentLinkedQueue<Object> shard : shards) {
+            shard.clear();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int shard;
+            private Iterator<Object> it = shards[0].iterator();
+            private Iterator<Object> last;
+
+            @Override
+            public boolean hasNext() {
+                while (!it.hasNext() && shard < mask) {
+                    it = shards[++shard].iterator();
+                }
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = it;
+                return unmask(it.next());
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                last.remove();
+                last = null;
+            }
+        };
+    }
+
+    // Helper methods
+
+    /** Returns the shard of the current thread. */
+    @SuppressWarnings("deprecation") // Thread.threadId() requires Java 19
+    private int home() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
@@ -0,0 +1,382 @@
+package de.krawallgraben.nullable;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * A sorted, thread-safe map that allows `null` as keys and values and provides consistent
+ * point-in-time snapshots.
+ *
+ * <p>The map is backed by a persistent balanced tree. Writers copy the path to the changed node and
+ * publish the new root with a single compare-and-set, so neither readers nor writers block. Every
+ * read works on one root: iterators and {@link #scan} see exactly the state at the time they were
+ * created, never a partially applied {@link #update(Consumer) batch}.
+ *
+ * <p>{@link #snapshot()} is a constant-time operation that shares all nodes with this map. Old
+ * versions stay reachable only as long as a snapshot or an iterator refers to them and are then
+ * reclaimed by the garbage collector.
+ *
+ * <p>`null` keys are sorted to the beginning. {@link #size()} is a constant-time operation.
+ *
+ * <p>This map is a separate {@link ConcurrentMap} on its own tree, not a view of a skip list, and
+ * does not implement {@link java.util.SortedMap} or {@link java.util.NavigableMap}. Because all
+ * writes funnel through the compare-and-set on the single root, concurrent writers are effectively
+ * serialized: a writer that loses the race repeats its change, and {@link #update(Consumer)}
+ * repeats the whole batch. The map suits read-mostly data with infrequent writers; for many
+ * concurrent writers, {@link NullableSortedConcurrentMap} scales better.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+@SuppressWarnings("serial")
+public class NullableSnapshotSortedMap<K, V> extends AbstractMap<K, V>
+        implements ConcurrentMap<K, V>, Serializable {
+
+    final PersistentSortedTree tree;
+
+    /**
+     * Constructs a new, empty map, sorted according to the {@linkplain Comparable natural ordering}
+     * of the keys.
+     */
+    public NullableSnapshotSortedMap() {
+        this((Comparator<? super K>) null);
+    }
+
+    /**
+     * Constructs a new, empty map, sorted according to the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order this map. If {@code null}, the
+     *     {@linkplain Comparable natural ordering} of the keys will be used.
+     */
+    public NullableSnapshotSortedMap(Comparator<? super K> comparator) {
+        this(new PersistentSortedTree(PersistentSortedTree.nullsFirst(comparator), null));
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given map, sorted according to the
+     * {@linkplain Comparable natural ordering} of the keys.
+     *
+     * @param m the map whose mappings are to be placed in this map
+     */
+    public NullableSnapshotSortedMap(Map<? extends K, ? extends V> m) {
+        this();
+        putAll(m);
+    }
+
+    NullableSnapshotSortedMap(PersistentSortedTree tree) {
+        this.tree = tree;
+    }
+
+    /** Creates a map of the same kind on the given tree. */
+    NullableSnapshotSortedMap<K, V> newMap(PersistentSortedTree tree) {
+        return new NullableSnapshotSortedMap<>(tree);
+    }
+
+    // Snapshots and batches
+
+    /**
+     * Returns an independent copy of the current state of this map in constant time.
+     *
+     * <p>The copy shares its nodes with this map. Later changes to this map are not visible in the
+     * copy and vice versa.
+     *
+     * @return the snapshot
+     */
+    public NullableSnapshotSortedMap<K, V> snapshot() {
+        return newMap(tree.fork(tree.root()));
+    }
+
+    /**
+     * Applies a batch of changes atomically. The batch receives a private snapshot of this map,
+     * modifies it, and all its changes are published together. Readers see either none or all of
+     * them.
+     *
+     * <p>If another writer changes this map concurrently, the batch is applied again to a new
+     * snapshot. It should therefore have no side effects other than on the map it receives. After a
+     * few failed attempts the batch takes a write lock that makes other writers wait, so a large
+     * batch is not starved by concurrent small writes.
+     *
+     * @param batch the changes to apply
+     */
+    public void update(Consumer<? super NullableSnapshotSortedMap<K, V>> batch) {
+        tree.transform(
+                root -> {
+                    NullableSnapshotSortedMap<K, V> copy = newMap(tree.fork(root));
+                    batch.accept(copy);
+                    return copy.tree.root();
+                });
+    }
+
+    /**
+     * Copies all mappings of the given map into this map in one atomic step.
+     *
+     * @param m the mappings to add
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        tree.transform(
+                root -> {
+                    for (Entry<? extends K, ? extends V> e : m.entrySet()) {
+                        root = tree.put(root, e.getKey(), e.getValue());
+                    }
+                    return root;
+                });
+    }
+
+    /**
+     * Returns the mappings whose keys range from {@code fromKey} to {@code toKey}, in ascending key
+     * order, as of the time of this call.
+     *
+     * @param fromKey low endpoint, may be `null`
+     * @param fromInclusive `true` if the low endpoint is to be included
+     * @param toKey high endpoint, may be `null`
+     * @param toInclusive `true` if the high endpoint is to be included
+     * @return the mappings of the range, stable across iterations
+     */
+    public Iterable<Entry<K, V>> scan(
+            K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        PersistentSortedTree.Node root = tree.root();
+        PersistentSortedTree.Range range =
+                new PersistentSortedTree.Range(
+                        true, fromKey, fromInclusive, true, toKey, toInclusive);
+        return () -> new EntryIterator(tree.iterator(root, range));
+    }
+
+    // Navigation
+
+    /**
+     * Returns the entry with the least key, which is the `null` key if present.
+     *
+     * @return the entry, or `null` if this map is empty
+     */
+    public Entry<K, V> firstEntry() {
+        return snapshotEntry(PersistentSortedTree.first(tree.root()));
+    }
+
+    /**
+     * Returns the entry with the greatest key.
+     *
+     * @return the entry, or `null` if this map is empty
+     */
+    public Entry<K, V> lastEntry() {
+        return snapshotEntry(PersistentSortedTree.last(tree.root()));
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to the given key.
+     *
+     * @param key the key, may be `null`
+     * @return the entry, or `null` if there is no such key
+     */
+    public Entry<K, V> ceilingEntry(K key) {
+        return snapshotEntry(tree.ceiling(tree.root(), key, true));
+    }
+
+    /**
+     * Returns the entry with the least key strictly greater than the given key.
+     *
+     * @param key the key, may be `null`
+     * @return the entry, or `null` if there is no such key
+     */
+    public Entry<K, V> higherEntry(K key) {
+        return snapshotEntry(tree.ceiling(tree.root(), key, false));
+    }
+
+    /**
+     * Returns the entry with the greatest key less than or equal to the given key.
+     *
+     * @param key the key, may be `null`
+     * @return the entry, or `null` if there is no such key
+     */
+    public Entry<K, V> floorEntry(K key) {
+        return snapshotEntry(tree.floor(tree.root(), key, true));
+    }
+
+    /**
+     * Returns the entry with the greatest key strictly less than the given key.
+     *
+     * @param key the key, may be `null`
+     * @return the entry, or `null` if there is no such key
+     */
+    public Entry<K, V> lowerEntry(K key) {
+        return snapshotEntry(tree.floor(tree.root(), key, false));
+    }
+
+    // Map methods
+
+    @Override
+    public int size() {
+        return PersistentSortedTree.size(tree.root());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tree.root() == null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return tree.find(tree.root(), key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        return value(tree.find(tree.root(), key));
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        PersistentSortedTree.Node n = tree.find(tree.root(), key);
+        return n == null ? defaultValue : value(n);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return value(tree.update(key, n -> value));
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return value(tree.update(key, n -> n == null ? value : PersistentSortedTree.KEEP));
+    }
+
+    @Override
+    public V remove(Object key) {
+        return value(tree.update(key, n -> PersistentSortedTree.REMOVE));
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        PersistentSortedTree.Node n =
+                tree.update(
+                        key,
+                        c ->
+                                c != null && Objects.equals(c.value, value)
+                                        ? PersistentSortedTree.REMOVE
+                                        : PersistentSortedTree.KEEP);
+        return n != null && Objects.equals(n.value, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        PersistentSortedTree.Node n =
+                tree.update(
+                        key,
+                        c ->
+                                c != null && Objects.equals(c.value, oldValue)
+                                        ? newValue
+                                        : PersistentSortedTree.KEEP);
+        return n != null && Objects.equals(n.value, oldValue);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        return value(tree.update(key, n -> n != null ? value : PersistentSortedTree.KEEP));
+    }
+
+    @Override
+    public void clear() {
+        tree.setRoot(null);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new EntrySetView();
+    }
+
+    // Helper methods and classes
+
+    @SuppressWarnings("unchecked")
+    private V value(PersistentSortedTree.Node n) {
+        return n == null ? null : (V) n.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> snapshotEntry(PersistentSortedTree.Node n) {
+        return n == null ? null : new SimpleImmutableEntry<>((K) n.key, (V) n.value);
+    }
+
+    private class EntrySetView extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new EntryIterator(tree.iterator(tree.root(), PersistentSortedTree.Range.ALL));
+        }
+
+        @Override
+        public int size() {
+            return NullableSnapshotSortedMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            PersistentSortedTree.Node n = tree.find(tree.root(), e.getKey());
+            return n != null && Objects.equals(n.value, e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return NullableSnapshotSortedMap.this.remove(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public void clear() {
+            NullableSnapshotSortedMap.this.clear();
+        }
+    }
+
+    /** Iterator over the nodes of one root. */
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+        private final Iterator<PersistentSortedTree.Node> it;
+        private PersistentSortedTree.Node lastReturned;
+
+        EntryIterator(Iterator<PersistentSortedTree.Node> it) {
+            this.it = it;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            lastReturned = it.next();
+            return new EntryWrapper(lastReturned);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            NullableSnapshotSortedMap.this.remove(lastReturned.key);
+            lastReturned = null;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class EntryWrapper extends SimpleEntry<K, V> {
+        @SuppressWarnings("unchecked")
+        EntryWrapper(PersistentSortedTree.Node n) {
+            super((K) n.key, (V) n.value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            super.setValue(value);
+            return put(getKey(), value);
+        }
+    }
+}
@@ -2,20 +2,28 @@ package de.krawallgraben.nullable;
 
 import java.io.Serializable;
 import java.util.AbstractCollection;
+import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.StreamSupport;
 
 /**
  * A sorted, thread-safe map that allows `null` as keys and values.
@@ -25,6 +33,10 @@ import java.util.function.Function;
  *
  * <p>It behaves like a standard {@link ConcurrentNavigableMap} but supports nulls.
  *
+ * <p>Optionally, keys can be stored in a byte-comparable form (see {@link ByteKeyEncoder}). Each
+ * key is then encoded once and all lookups and range scans compare unsigned bytes instead of
+ * calling a comparator.
+ *
  * @param <K> the type of keys
  * @param <V> the type of values
  */
@@ -35,8 +47,24 @@ public class NullableSortedConcurrentMap<K, V>
     /** Internal map that stores masked keys and values. */
     private final ConcurrentNavigableMap<Object, Object> internalMap;
 
-    /** Placeholder for `null`. */
-    private enum NullPlaceholder {
+    /** Skip list behind this map and all its views, used to split ranges along its index levels. */
+    private final ConcurrentSkipListMap<Object, Object> skipList;
+
+    /** Encoder for byte-comparable keys, or `null` if keys are stored as they are. */
+    private final ByteKeyEncoder<? super K> keyEncoder;
+
+    /**
+     * Bounds of this view as internal keys in the order of the skip list, also for descending
+     * views; `null` if unbounded. A sub-map of the skip list does not expose its bounds.
+     */
+    private final Object lo;
+
+    private final boolean loInclusive;
+    private final Object hi;
+    private final boolean hiInclusive;
+
+    /** Placeholder for `null`, also used by {@link NullableCappedSortedConcurrentMap}. */
+    enum NullPlaceholder {
         INSTANCE;
 
         @Override
@@ -45,17 +73,17 @@ public class NullableSortedConcurrentMap<K, V>
         }
     }
 
-    private static Object mask(Object value) {
+    static Object mask(Object value) {
         return value == null ? NullPlaceholder.INSTANCE : value;
     }
 
     @SuppressWarnings("unchecked")
-    private static <T> T unmask(Object value) {
+    static <T> T unmask(Object value) {
         return value == NullPlaceholder.INSTANCE ? null : (T) value;
     }
 
     // Comparator wrapper to handle NullPlaceholder
-    private static class NullSafeComparator<K> implements Comparator<Object>, Serializable {
+    static class NullSafeComparator<K> implements Comparator<Object>, Serializable {
         private final Comparator<? super K> delegate;
 
         NullSafeComparator(Comparator<? super K> delegate) {
@@ -77,6 +105,69 @@ public class NullableSortedConcurrentMap<K, V>
                 return ((Comparable<? super K>) o1).compareTo((K) o2);
             }
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NullSafeComparator
+                    && Objects.equals(delegate, ((NullSafeComparator<?>) o).delegate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(delegate);
+        }
+    }
+
+    /** Internal key in byte-comparable mode. The `null` key is encoded as the empty array. */
+    private static final class EncodedKey implements Serializable {
+        static final EncodedKey NULL = new EncodedKey(new byte[0], null);
+
+        final byte[] bytes;
+        final Object key;
+
+        EncodedKey(byte[] bytes, Object key) {
+            this.bytes = bytes;
+            this.key = key;
+        }
+
+        private Object readResolve() {
+            return bytes.length == 0 ? NULL : this;
+        }
+    }
+
+    // Comparator for byte-comparable keys
+    private enum EncodedKeyComparator implements Comparator<Object> {
+        INSTANCE;
+
+        @Override
+        public int compare(Object o1, Object o2) {
+            return ByteArrays.compareUnsigned(((EncodedKey) o1).bytes, ((EncodedKey) o2).bytes);
+        }
+    }
+
+    private Object maskKey(Object key) {
+        return maskKey(keyEncoder, key);
+    }
+
+    private static Object maskKey(ByteKeyEncoder<?> keyEncoder, Object key) {
+        return keyEncoder == null ? mask(key) : encodeKey(keyEncoder, key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private K unmaskKey(Object key) {
+        return keyEncoder == null ? unmask(key) : (K) ((EncodedKey) key).key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EncodedKey encodeKey(ByteKeyEncoder<?> keyEncoder, Object key) {
+        if (key == null) {
+            return EncodedKey.NULL;
+        }
+        byte[] bytes = ((ByteKeyEncoder<Object>) keyEncoder).encode(key);
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Empty encoding for key " + key);
+        }
+        return new EncodedKey(bytes, key);
     }
 
     /**
@@ -84,7 +175,7 @@ public class NullableSortedConcurrentMap<K, V>
      * of the keys.
      */
     public NullableSortedConcurrentMap() {
-        this.internalMap = new ConcurrentSkipListMap<>(new NullSafeComparator<>(null));
+        this(new ConcurrentSkipListMap<>(new NullSafeComparator<>(null)), null);
     }
 
     /**
@@ -94,79 +185,150 @@ public class NullableSortedConcurrentMap<K, V>
      *     {@linkplain Comparable natural ordering} of the keys will be used.
      */
     public NullableSortedConcurrentMap(Comparator<? super K> comparator) {
-        this.internalMap = new ConcurrentSkipListMap<>(new NullSafeComparator<>(comparator));
+        this(new ConcurrentSkipListMap<>(new NullSafeComparator<>(comparator)), null);
+    }
+
+    /**
+     * Constructs a new, empty map that stores keys in byte-comparable form. The map is sorted by
+     * the unsigned lexicographic order of the encoded keys, the `null` key first.
+     *
+     * @param keyEncoder the encoder that turns each non-null key into an order-preserving byte
+     *     sequence
+     */
+    public NullableSortedConcurrentMap(ByteKeyEncoder<? super K> keyEncoder) {
+        this(
+                new ConcurrentSkipListMap<>(EncodedKeyComparator.INSTANCE),
+                Objects.requireNonNull(keyEncoder));
     }
 
     /**
      * Constructs a new map containing the same mappings as the given map, sorted according to the
      * {@linkplain Comparable natural ordering} of the keys.
      *
+     * <p>The mappings are sorted once and linked into the skip list in linear time.
+     *
      * @param m the map whose mappings are to be placed in this map
      */
     public NullableSortedConcurrentMap(Map<? extends K, ? extends V> m) {
-        this();
-        this.putAll(m);
+        this(new Builder<K, V>().putAll(m));
     }
 
     /**
      * Constructs a new map containing the same mappings and using the same ordering as the
      * specified sorted map.
      *
+     * <p>If the iteration order of the given map matches the order of this map, the mappings need
+     * no sorting: each key is compared once with its predecessor to confirm the order, and the
+     * mappings are linked into the skip list in linear time.
+     *
      * @param m the sorted map whose mappings are to be placed in this map, and whose comparator is
      *     to be used to sort this map
      */
     public NullableSortedConcurrentMap(SortedMap<K, ? extends V> m) {
-        this(m.comparator());
-        this.putAll(m);
+        this(new Builder<K, V>(m.comparator()).putAll(m));
+    }
+
+    // Private constructor for bulk construction
+    private NullableSortedConcurrentMap(Builder<K, V> builder) {
+        this(builder.buildInternalMap(), builder.keyEncoder);
+    }
+
+    // Private constructor for new skip lists
+    private NullableSortedConcurrentMap(
+            ConcurrentSkipListMap<Object, Object> skipList, ByteKeyEncoder<? super K> keyEncoder) {
+        this(skipList, skipList, keyEncoder, null, false, null, false);
     }
 
     // Private constructor for wrapping sub-maps
-    private NullableSortedConcurrentMap(ConcurrentNavigableMap<Object, Object> internalMap) {
+    private NullableSortedConcurrentMap(
+            ConcurrentSkipListMap<Object, Object> skipList,
+            ConcurrentNavigableMap<Object, Object> internalMap,
+            ByteKeyEncoder<? super K> keyEncoder,
+            Object lo,
+            boolean loInclusive,
+            Object hi,
+            boolean hiInclusive) {
+        this.skipList = skipList;
         this.internalMap = internalMap;
+        this.keyEncoder = keyEncoder;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+    }
+
+    /**
+     * Wraps a sub-map of {@link #internalMap} whose bounds are given in the order of the skip list.
+     */
+    private NullableSortedConcurrentMap<K, V> view(
+            ConcurrentNavigableMap<Object, Object> map,
+            Object lo,
+            boolean loInclusive,
+            Object hi,
+            boolean hiInclusive) {
+        return new NullableSortedConcurrentMap<>(
+                skipList, map, keyEncoder, lo, loInclusive, hi, hiInclusive);
+    }
+
+    private boolean isDescending() {
+        return internalMap.comparator() != skipList.comparator();
     }
 
     // ConcurrentNavigableMap methods
 
     @Override
-    public ConcurrentNavigableMap<K, V> subMap(
+    public NullableSortedConcurrentMap<K, V> subMap(
             K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
-        return new NullableSortedConcurrentMap<>(
-                internalMap.subMap(mask(fromKey), fromInclusive, mask(toKey), toInclusive));
+        Object from = maskKey(fromKey);
+        Object to = maskKey(toKey);
+        ConcurrentNavigableMap<Object, Object> map =
+                internalMap.subMap(from, fromInclusive, to, toInclusive);
+        return isDescending()
+                ? view(map, to, toInclusive, from, fromInclusive)
+                : view(map, from, fromInclusive, to, toInclusive);
     }
 
     @Override
-    public ConcurrentNavigableMap<K, V> headMap(K toKey, boolean inclusive) {
-        return new NullableSortedConcurrentMap<>(internalMap.headMap(mask(toKey), inclusive));
+    public NullableSortedConcurrentMap<K, V> headMap(K toKey, boolean inclusive) {
+        Object to = maskKey(toKey);
+        ConcurrentNavigableMap<Object, Object> map = internalMap.headMap(to, inclusive);
+        return isDescending()
+                ? view(map, to, inclusive, hi, hiInclusive)
+                : view(map, lo, loInclusive, to, inclusive);
     }
 
     @Override
-    public ConcurrentNavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
-        return new NullableSortedConcurrentMap<>(internalMap.tailMap(mask(fromKey), inclusive));
+    public NullableSortedConcurrentMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        Object from = maskKey(fromKey);
+        ConcurrentNavigableMap<Object, Object> map = internalMap.tailMap(from, inclusive);
+        return isDescending()
+                ? view(map, lo, loInclusive, from, inclusive)
+                : view(map, from, inclusive, hi, hiInclusive);
     }
 
     @Override
-    public ConcurrentNavigableMap<K, V> subMap(K fromKey, K toKey) {
+    public NullableSortedConcurrentMap<K, V> subMap(K fromKey, K toKey) {
         return subMap(fromKey, true, toKey, false);
     }
 
     @Override
-    public ConcurrentNavigableMap<K, V> headMap(K toKey) {
+    public NullableSortedConcurrentMap<K, V> headMap(K toKey) {
         return headMap(toKey, false);
     }
 
     @Override
-    public ConcurrentNavigableMap<K, V> tailMap(K fromKey) {
+    public NullableSortedConcurrentMap<K, V> tailMap(K fromKey) {
         return tailMap(fromKey, true);
     }
 
     @Override
-    public ConcurrentNavigableMap<K, V> descendingMap() {
-        return new NullableSortedConcurrentMap<>(internalMap.descendingMap());
+    public NullableSortedConcurrentMap<K, V> descendingMap() {
+        return view(internalMap.descendingMap(), lo, loInclusive, hi, hiInclusive);
     }
 
     @Override
     public NavigableSet<K> navigableKeySet() {
-        return new KeySetView(internalMap.navigableKeySet());
+        return new KeySetView();
     }
 
     @Override
@@ -176,49 +338,124 @@ public class NullableSortedConcurrentMap<K, V>
 
     @Override
     public NavigableSet<K> descendingKeySet() {
-        return new KeySetView(internalMap.descendingKeySet());
+        return descendingMap().navigableKeySet();
+    }
+
+    /**
+     * Returns a view of the portion of this map whose keys start with the given prefix. The `null`
+     * key is not part of the view. On a sub-map view, the prefix range is intersected with the
+     * range of the view.
+     *
+     * <p>Requires {@link String} keys in {@linkplain String#compareTo natural order}, either with
+     * the default constructor or with {@link ByteKeyEncoder#strings()}. On a descending view the
+     * prefix view is descending as well.
+     *
+     * @param prefix the prefix
+     * @return the view
+     * @throws IllegalStateException if this map uses a comparator or another key encoder
+     */
+    @SuppressWarnings("unchecked")
+    public NullableSortedConcurrentMap<K, V> prefixMap(String prefix) {
+        Comparator<? super Object> order = skipList.comparator();
+        boolean natural =
+                keyEncoder == null
+                        ? ((NullSafeComparator<?>) order).delegate == null
+                                || ((NullSafeComparator<?>) order).delegate
+                                        == Comparator.naturalOrder()
+                        : keyEncoder == StringKeyCodec.INSTANCE;
+        if (!natural) {
+            throw new IllegalStateException(
+                    "prefixMap requires String keys in natural order or ByteKeyEncoder.strings()");
+        }
+        // Intersect [prefix, successor) with the bounds of this view
+        Object from = maskKey((K) prefix);
+        boolean fromInclusive = true;
+        if (lo != null) {
+            int c = order.compare(lo, from);
+            if (c > 0 || (c == 0 && !loInclusive)) {
+                from = lo;
+                fromInclusive = loInclusive;
+            }
+        }
+        String upper = prefixSuccessor(prefix);
+        Object to = upper == null ? null : maskKey((K) upper);
+        boolean toInclusive = false;
+        if (hi != null && (to == null || order.compare(hi, to) < 0)) {
+            to = hi;
+            toInclusive = hiInclusive;
+        }
+        ConcurrentNavigableMap<Object, Object> map;
+        if (to == null) {
+            map = skipList.tailMap(from, fromInclusive);
+        } else {
+            int c = order.compare(from, to);
+            if (c > 0 || (c == 0 && !(fromInclusive && toInclusive))) {
+                // No overlap
+                to = from;
+                fromInclusive = false;
+                toInclusive = false;
+            }
+            map = skipList.subMap(from, fromInclusive, to, toInclusive);
+        }
+        return view(
+                isDescending() ? map.descendingMap() : map, from, fromInclusive, to, toInclusive);
+    }
+
+    /**
+     * Returns the least string greater than all strings starting with the prefix, or `null` if
+     * there is none.
+     */
+    private static String prefixSuccessor(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
     }
 
     // Entry accessors
 
     @Override
     public Entry<K, V> ceilingEntry(K key) {
-        return unmaskEntry(internalMap.ceilingEntry(mask(key)));
+        return unmaskEntry(internalMap.ceilingEntry(maskKey(key)));
     }
 
     @Override
     public K ceilingKey(K key) {
-        return unmask(internalMap.ceilingKey(mask(key)));
+        return unmaskKey(internalMap.ceilingKey(maskKey(key)));
     }
 
     @Override
     public Entry<K, V> floorEntry(K key) {
-        return unmaskEntry(internalMap.floorEntry(mask(key)));
+        return unmaskEntry(internalMap.floorEntry(maskKey(key)));
     }
 
     @Override
     public K floorKey(K key) {
-        return unmask(internalMap.floorKey(mask(key)));
+        return unmaskKey(internalMap.floorKey(maskKey(key)));
     }
 
     @Override
     public Entry<K, V> higherEntry(K key) {
-        return unmaskEntry(internalMap.higherEntry(mask(key)));
+        return unmaskEntry(internalMap.higherEntry(maskKey(key)));
     }
 
     @Override
     public K higherKey(K key) {
-        return unmask(internalMap.higherKey(mask(key)));
+        return unmaskKey(internalMap.higherKey(maskKey(key)));
     }
 
     @Override
     public Entry<K, V> lowerEntry(K key) {
-        return unmaskEntry(internalMap.lowerEntry(mask(key)));
+        return unmaskEntry(internalMap.lowerEntry(maskKey(key)));
     }
 
     @Override
     public K lowerKey(K key) {
-        return unmask(internalMap.lowerKey(mask(key)));
+        return unmaskKey(internalMap.lowerKey(maskKey(key)));
     }
 
     @Override
@@ -255,7 +492,7 @@ public class NullableSortedConcurrentMap<K, V>
 
     @Override
     public boolean containsKey(Object key) {
-        return internalMap.containsKey(mask(key));
+        return internalMap.containsKey(maskKey(key));
     }
 
     @Override
@@ -265,17 +502,17 @@ public class NullableSortedConcurrentMap<K, V>
 
     @Override
     public V get(Object key) {
-        return unmask(internalMap.get(mask(key)));
+        return unmask(internalMap.get(maskKey(key)));
     }
 
     @Override
     public V put(K key, V value) {
-        return unmask(internalMap.put(mask(key), mask(value)));
+        return unmask(internalMap.put(maskKey(key), mask(value)));
     }
 
     @Override
     public V remove(Object key) {
-        return unmask(internalMap.remove(mask(key)));
+        return unmask(internalMap.remove(maskKey(key)));
     }
 
     @Override
@@ -294,22 +531,22 @@ public class NullableSortedConcurrentMap<K, V>
 
     @Override
     public V putIfAbsent(K key, V value) {
-        return unmask(internalMap.putIfAbsent(mask(key), mask(value)));
+        return unmask(internalMap.putIfAbsent(maskKey(key), mask(value)));
     }
 
     @Override
     public boolean remove(Object key, Object value) {
-        return internalMap.remove(mask(key), mask(value));
+        return internalMap.remove(maskKey(key), mask(value));
     }
 
     @Override
     public boolean replace(K key, V oldValue, V newValue) {
-        return internalMap.replace(mask(key), mask(oldValue), mask(newValue));
+        return internalMap.replace(maskKey(key), mask(oldValue), mask(newValue));
     }
 
     @Override
     public V replace(K key, V value) {
-        return unmask(internalMap.replace(mask(key), mask(value)));
+        return unmask(internalMap.replace(maskKey(key), mask(value)));
     }
 
     // SortedMap methods
@@ -317,6 +554,15 @@ public class NullableSortedConcurrentMap<K, V>
     @Override
     @SuppressWarnings("unchecked")
     public Comparator<? super K> comparator() {
+        if (keyEncoder != null) {
+            Comparator<Object> order = EncodedKeyComparator.INSTANCE;
+            if (internalMap.comparator() != order) {
+                order = order.reversed(); // descending view
+            }
+            Comparator<Object> encodedOrder = order;
+            return (k1, k2) ->
+                    encodedOrder.compare(encodeKey(keyEncoder, k1), encodeKey(keyEncoder, k2));
+        }
         Comparator<?> internal = internalMap.comparator();
         if (internal instanceof NullSafeComparator) {
             return ((NullSafeComparator<K>) internal).delegate;
@@ -326,12 +572,12 @@ public class NullableSortedConcurrentMap<K, V>
 
     @Override
     public K firstKey() {
-        return unmask(internalMap.firstKey());
+        return unmaskKey(internalMap.firstKey());
     }
 
     @Override
     public K lastKey() {
-        return unmask(internalMap.lastKey());
+        return unmaskKey(internalMap.lastKey());
     }
 
     @Override
@@ -348,27 +594,27 @@ public class NullableSortedConcurrentMap<K, V>
 
     @Override
     public V getOrDefault(Object key, V defaultValue) {
-        Object val = internalMap.get(mask(key));
+        Object val = internalMap.get(maskKey(key));
         return val == null ? defaultValue : unmask(val);
     }
 
     @Override
     public void forEach(BiConsumer<? super K, ? super V> action) {
-        internalMap.forEach((k, v) -> action.accept(unmask(k), unmask(v)));
+        internalMap.forEach((k, v) -> action.accept(unmaskKey(k), unmask(v)));
     }
 
     @Override
     public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
-        internalMap.replaceAll((k, v) -> mask(function.apply(unmask(k), unmask(v))));
+        internalMap.replaceAll((k, v) -> mask(function.apply(unmaskKey(k), unmask(v))));
     }
 
     @Override
     public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
         return unmask(
                 internalMap.computeIfAbsent(
-                        mask(key),
+                        maskKey(key),
                         k -> {
-                            V result = mappingFunction.apply(unmask(k));
+                            V result = mappingFunction.apply(unmaskKey(k));
                             return result == null ? null : mask(result);
                         }));
     }
@@ -378,9 +624,9 @@ public class NullableSortedConcurrentMap<K, V>
             K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         return unmask(
                 internalMap.computeIfPresent(
-                        mask(key),
+                        maskKey(key),
                         (k, v) -> {
-                            V result = remappingFunction.apply(unmask(k), unmask(v));
+                            V result = remappingFunction.apply(unmaskKey(k), unmask(v));
                             return result == null ? null : mask(result);
                         }));
     }
@@ -389,9 +635,9 @@ public class NullableSortedConcurrentMap<K, V>
     public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
         return unmask(
                 internalMap.compute(
-                        mask(key),
+                        maskKey(key),
                         (k, v) -> {
-                            V result = remappingFunction.apply(unmask(k), unmask(v));
+                            V result = remappingFunction.apply(unmaskKey(k), unmask(v));
                             return result == null ? null : mask(result);
                         }));
     }
@@ -401,7 +647,7 @@ public class NullableSortedConcurrentMap<K, V>
             K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
         return unmask(
                 internalMap.compute(
-                        mask(key),
+                        maskKey(key),
                         (k, oldVal) -> {
                             V oldValue = unmask(oldVal);
                             if (oldValue == null) {
@@ -412,109 +658,1013 @@ public class NullableSortedConcurrentMap<K, V>
                         }));
     }
 
-    // Helper methods and classes
+    // Merge operations
 
-    private Entry<K, V> unmaskEntry(Entry<Object, Object> entry) {
-        if (entry == null) return null;
-        return new EntryWrapper(entry);
+    /**
+     * Returns a merge join of this map with the given map. The join visits every key of either map
+     * once, in the order of this map, and tells whether the key is present in each of them.
+     *
+     * <p>If the other map is a {@code NullableSortedConcurrentMap} with the same ordering, both
+     * skip lists are walked in lockstep in O(n + m). Any other map is first copied into a sorted
+     * run, which takes linear time if it already iterates in the order of this map.
+     *
+     * <p>Like the iterators of this map, the join is weakly consistent.
+     *
+     * @param other the other map
+     * @param <W> the type of values of the other map
+     * @return the join, initially not positioned
+     */
+    public <W> MergeJoin<W> mergeJoin(Map<? extends K, ? extends W> other) {
+        return new MergeJoin<>(sortedLike(other));
+    }
+
+    /**
+     * Returns a new map with the mappings of this map and the given map. For keys present in both,
+     * the value is computed by the merge function from the value in this map and the value in the
+     * other map. The result is built in O(n + m) from a {@linkplain #mergeJoin merge join}.
+     *
+     * @param other the other map
+     * @param merge the function for keys present in both maps, may return `null`
+     * @return the union, ordered like this map
+     */
+    public NullableSortedConcurrentMap<K, V> union(
+            Map<? extends K, ? extends V> other,
+            BiFunction<? super V, ? super V, ? extends V> merge) {
+        Builder<K, V> result = newBuilder();
+        MergeJoin<? extends V> join = mergeJoin(other);
+        while (join.next()) {
+            Object value;
+            if (!join.inOther()) {
+                value = join.value;
+            } else if (!join.inThis()) {
+                value = join.otherValue;
+            } else {
+                value = mask(merge.apply(join.value(), join.otherValue()));
+            }
+            result.putMasked(join.key, value);
+        }
+        return result.build();
     }
 
-    private class KeySetView extends AbstractSet<K> implements NavigableSet<K> {
-        private final NavigableSet<Object> base;
+    /**
+     * Returns a new map with the keys present in both this map and the given map. The values are
+     * computed by the merge function from the value in this map and the value in the other map. The
+     * result is built in O(n + m) from a {@linkplain #mergeJoin merge join}.
+     *
+     * @param other the other map
+     * @param merge the function that computes the value of each common key, may return `null`
+     * @param <W> the type of values of the other map
+     * @return the intersection, ordered like this map
+     */
+    public <W> NullableSortedConcurrentMap<K, V> intersect(
+            Map<? extends K, ? extends W> other,
+            BiFunction<? super V, ? super W, ? extends V> merge) {
+        Builder<K, V> result = newBuilder();
+        MergeJoin<W> join = mergeJoin(other);
+        while (join.next()) {
+            if (join.inThis() && join.inOther()) {
+                result.putMasked(join.key, mask(merge.apply(join.value(), join.otherValue())));
+            }
+        }
+        return result.build();
+    }
 
-        KeySetView(NavigableSet<Object> base) {
-            this.base = base;
+    /**
+     * Returns a new map with the mappings of this map whose keys are not present in the given map.
+     * The result is built in O(n + m) from a {@linkplain #mergeJoin merge join}.
+     *
+     * @param other the map whose keys are excluded
+     * @return the difference, ordered like this map
+     */
+    public NullableSortedConcurrentMap<K, V> difference(Map<? extends K, ?> other) {
+        Builder<K, V> result = newBuilder();
+        MergeJoin<?> join = mergeJoin(other);
+        while (join.next()) {
+            if (!join.inOther()) {
+                result.putMasked(join.key, join.value);
+            }
         }
+        return result.build();
+    }
 
-        @Override
-        public Iterator<K> iterator() {
-            Iterator<Object> it = base.iterator();
-            return new Iterator<K>() {
-                @Override
-                public boolean hasNext() {
-                    return it.hasNext();
+    /**
+     * Adds all mappings of this map to the target map. For keys present in both, the target value
+     * is replaced atomically by the result of the merge function applied to the target value and
+     * the value in this map.
+     *
+     * <p>Unlike the other merge operations this one is not a lockstep walk: a skip list offers no
+     * way to insert at or update a known position, so each mapping of this map costs one atomic
+     * update of the target in O(log n), where n is the size of the target. Keys are only re-encoded
+     * if the target stores them differently. To combine two maps in linear time, use {@link #union}
+     * and replace the reference to the target instead.
+     *
+     * @param target the map to add the mappings to
+     * @param merge the function for keys present in both maps, may return `null`
+     */
+    public void unionInto(
+            NullableSortedConcurrentMap<K, V> target,
+            BiFunction<? super V, ? super V, ? extends V> merge) {
+        boolean sameKeys = target.keyEncoder == keyEncoder;
+        for (Entry<Object, Object> e : internalMap.entrySet()) {
+            Object key = sameKeys ? e.getKey() : target.maskKey(unmaskKey(e.getKey()));
+            target.internalMap.merge(
+                    key,
+                    e.getValue(),
+                    (current, value) -> mask(merge.apply(unmask(current), unmask(value))));
+        }
+    }
+
+    /** Returns a builder for maps ordered like this map. */
+    private Builder<K, V> newBuilder() {
+        return new Builder<>(internalMap.comparator(), keyEncoder);
+    }
+
+    /** Returns the given map, or a copy of it, as a map with the same internal ordering. */
+    @SuppressWarnings("unchecked")
+    private <W> NullableSortedConcurrentMap<K, W> sortedLike(Map<? extends K, ? extends W> other) {
+        if (other instanceof NullableSortedConcurrentMap) {
+            NullableSortedConcurrentMap<K, W> map = (NullableSortedConcurrentMap<K, W>) other;
+            if (Objects.equals(keyEncoder, map.keyEncoder)
+                    && internalMap.comparator().equals(map.internalMap.comparator())) {
+                return map;
+            }
+        }
+        Builder<K, W> builder = new Builder<>(internalMap.comparator(), keyEncoder);
+        return builder.putAll(other).build();
+    }
+
+    /**
+     * A lockstep walk over two maps with the same ordering.
+     *
+     * <p>Each call to {@link #next()} moves to the next key present in this map, the other map, or
+     * both. The join reads the entries of both skip lists through their entry iterators, which
+     * return a snapshot entry per mapping, and exposes keys and values directly without wrapping
+     * them again. A join is not thread-safe and should be confined to one thread.
+     *
+     * @param <W> the type of values of the other map
+     */
+    public final class MergeJoin<W> {
+        private final Comparator<? super Object> order = internalMap.comparator();
+        private final Iterator<Entry<Object, Object>> left = internalMap.entrySet().iterator();
+        private final Iterator<Entry<Object, Object>> right;
+
+        /** Next entries of both maps, or `null` if exhausted. */
+        private Entry<Object, Object> nextLeft;
+
+        private Entry<Object, Object> nextRight;
+
+        /** Masked key and values of the current position. A value is `null` if absent. */
+        private Object key;
+
+        private Object value;
+        private Object otherValue;
+        private boolean positioned;
+
+        private MergeJoin(NullableSortedConcurrentMap<K, W> other) {
+            this.right = other.internalMap.entrySet().iterator();
+            this.nextLeft = left.hasNext() ? left.next() : null;
+            this.nextRight = right.hasNext() ? right.next() : null;
+        }
+
+        /**
+         * Moves to the next key.
+         *
+         * @return `true` if there is a next key, otherwise the join is no longer positioned
+         */
+        public boolean next() {
+            if (nextLeft == null && nextRight == null) {
+                key = value = otherValue = null;
+                positioned = false;
+                return false;
+            }
+            int c;
+            if (nextLeft == null) {
+                c = 1;
+            } else if (nextRight == null) {
+                c = -1;
+            } else {
+                c = order.compare(nextLeft.getKey(), nextRight.getKey());
+            }
+            value = otherValue = null;
+            if (c >= 0) {
+                key = nextRight.getKey();
+                otherValue = nextRight.getValue();
+                nextRight = right.hasNext() ? right.next() : null;
+            }
+            if (c <= 0) {
+                key = nextLeft.getKey();
+                value = nextLeft.getValue();
+                nextLeft = left.hasNext() ? left.next() : null;
+            }
+            positioned = true;
+            return true;
+        }
+
+        /**
+         * Returns the current key.
+         *
+         * @return the key, may be `null`
+         * @throws NoSuchElementException if the join is not positioned
+         */
+        public K key() {
+            checkPositioned();
+            return unmaskKey(key);
+        }
+
+        /**
+         * Returns `true` if the current key is present in this map.
+         *
+         * @return `true` if present
+         */
+        public boolean inThis() {
+            return value != null;
+        }
+
+        /**
+         * Returns `true` if the current key is present in the other map.
+         *
+         * @return `true` if present
+         */
+        public boolean inOther() {
+            return otherValue != null;
+        }
+
+        /**
+         * Returns the value of the current key in this map.
+         *
+         * @return the value, or `null` if absent
+         * @throws NoSuchElementException if the join is not positioned
+         */
+        public V value() {
+            checkPositioned();
+            return unmask(value);
+        }
+
+        /**
+         * Returns the value of the current key in the other map.
+         *
+         * @return the value, or `null` if absent
+         * @throws NoSuchElementException if the join is not positioned
+         */
+        public W otherValue() {
+            checkPositioned();
+            return unmask(otherValue);
+        }
+
+        private void checkPositioned() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    // Parallel processing
+
+    /**
+     * Performs the given action for each mapping of this map in parallel, in no particular order.
+     *
+     * <p>The key range of this map is split along the index levels of the underlying skip list, and
+     * the pieces are processed in the {@linkplain java.util.concurrent.ForkJoinPool#commonPool()
+     * common pool}. To process a key range, call this method on a {@link #subMap} view. Like
+     * iteration, this is weakly consistent.
+     *
+     * @param action the action
+     */
+    public void parallelForEach(BiConsumer<? super K, ? super V> action) {
+        StreamSupport.stream(new RangeSpliterator<>(internalMap, e -> e, ENTRIES), true)
+                .forEach(e -> action.accept(unmaskKey(e.getKey()), unmask(e.getValue())));
+    }
+
+    /**
+     * Transforms each mapping of this map in parallel and passes the results to the given action in
+     * ascending key order (descending for descending views), one at a time.
+     *
+     * @param transformer the function applied to each mapping in parallel
+     * @param action the action receiving the results in key order
+     * @param <U> the type of the results
+     */
+    public <U> void parallelForEachOrdered(
+            BiFunction<? super K, ? super V, ? extends U> transformer, Consumer<? super U> action) {
+        StreamSupport.stream(new RangeSpliterator<>(internalMap, e -> e, ENTRIES), true)
+                .<U>map(e -> transformer.apply(unmaskKey(e.getKey()), unmask(e.getValue())))
+                .forEachOrdered(action);
+    }
+
+    /**
+     * Transforms each mapping of this map and combines the results in parallel. Results of adjacent
+     * key ranges are combined in key order, so the combiner need only be associative, not
+     * commutative.
+     *
+     * @param identity the result for an empty map, an identity of the combiner
+     * @param transformer the function applied to each mapping
+     * @param combiner the associative function that combines two results
+     * @param <U> the type of the results
+     * @return the combined result
+     */
+    public <U> U parallelReduce(
+            U identity,
+            BiFunction<? super K, ? super V, ? extends U> transformer,
+            BinaryOperator<U> combiner) {
+        return StreamSupport.stream(new RangeSpliterator<>(internalMap, e -> e, ENTRIES), true)
+                .<U>map(e -> transformer.apply(unmaskKey(e.getKey()), unmask(e.getValue())))
+                .reduce(identity, combiner);
+    }
+
+    // Cursor
+
+    /**
+     * Returns a new cursor over this map. The cursor is initially not positioned.
+     *
+     * @return the cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * A reusable position in the map for sequential access.
+     *
+     * <p>The cursor keeps a live iterator from its current position. Moving to an adjacent entry
+     * and seeking to a key shortly ahead of the current position step along this iterator instead
+     * of searching from the head of the skip list. A seek that cannot step there searches once from
+     * the head and creates no iterator; the next move creates it. Key and value come from the entry
+     * that the skip list returns for the node, so reading them does not search again.
+     *
+     * <p>Like the iterators of this map, a cursor is weakly consistent: it tolerates concurrent
+     * modification and may or may not reflect changes made after it was positioned. A cursor itself
+     * is not thread-safe and should be confined to one thread.
+     */
+    public final class Cursor {
+
+        /** Maximum number of entries stepped over before a seek starts a new search. */
+        private static final int FINGER_STEPS = 8;
+
+        private final Comparator<? super Object> order = internalMap.comparator();
+
+        /** Current entry with masked key and value, or `null` if not positioned. */
+        private Entry<Object, Object> entry;
+
+        /**
+         * Iterator over the entries after the current one in the direction of the last move, or
+         * `null` if not yet created.
+         */
+        private Iterator<Entry<Object, Object>> steps;
+
+        private boolean ascending;
+
+        private Cursor() {}
+
+        /**
+         * Returns `true` if the cursor is positioned at an entry.
+         *
+         * @return `true` if positioned
+         */
+        public boolean isPositioned() {
+            return entry != null;
+        }
+
+        /**
+         * Returns the key of the current entry.
+         *
+         * @return the key, may be `null`
+         * @throws NoSuchElementException if the cursor is not positioned
+         */
+        public K key() {
+            checkPositioned();
+            return unmaskKey(entry.getKey());
+        }
+
+        /**
+         * Returns the value of the current entry as of the move to it.
+         *
+         * @return the value, may be `null`
+         * @throws NoSuchElementException if the cursor is not positioned
+         */
+        public V value() {
+            checkPositioned();
+            return unmask(entry.getValue());
+        }
+
+        /**
+         * Moves to the entry with the least key.
+         *
+         * @return `true` if the map is not empty
+         */
+        public boolean first() {
+            return open(internalMap.entrySet().iterator(), true);
+        }
+
+        /**
+         * Moves to the entry with the greatest key.
+         *
+         * @return `true` if the map is not empty
+         */
+        public boolean last() {
+            return open(internalMap.descendingMap().entrySet().iterator(), false);
+        }
+
+        /**
+         * Moves to the entry with the least key greater than or equal to the given key.
+         *
+         * @param key the key, may be `null`
+         * @return `true` if there is such an entry
+         */
+        public boolean seek(K key) {
+            return seek(maskKey(key), true);
+        }
+
+        /**
+         * Moves to the entry with the greatest key less than or equal to the given key.
+         *
+         * @param key the key, may be `null`
+         * @return `true` if there is such an entry
+         */
+        public boolean seekFloor(K key) {
+            return seek(maskKey(key), false);
+        }
+
+        /**
+         * Moves to the next entry. An unpositioned cursor moves to the first entry.
+         *
+         * @return `true` if there is a next entry, otherwise the cursor is no longer positioned
+         */
+        public boolean next() {
+            if (entry == null) {
+                return first();
+            }
+            if (steps == null || !ascending) {
+                steps = internalMap.tailMap(entry.getKey(), false).entrySet().iterator();
+                ascending = true;
+            }
+            return advance();
+        }
+
+        /**
+         * Moves to the previous entry. An unpositioned cursor moves to the last entry.
+         *
+         * @return `true` if there is a previous entry, otherwise the cursor is no longer positioned
+         */
+        public boolean prev() {
+            if (entry == null) {
+                return last();
+            }
+            if (steps == null || ascending) {
+                steps =
+                        internalMap
+                                .headMap(entry.getKey(), false)
+                                .descendingMap()
+                                .entrySet()
+                                .iterator();
+                ascending = false;
+            }
+            return advance();
+        }
+
+        private boolean seek(Object target, boolean forward) {
+            if (entry != null && steps != null && ascending == forward) {
+                int c = order.compare(entry.getKey(), target);
+                if (forward ? c < 0 : c > 0) {
+                    // Target lies ahead: try a few steps from the current position first
+                    for (int i = 0; i < FINGER_STEPS; i++) {
+                        if (!advance()) {
+                            return false;
+                        }
+                        c = order.compare(entry.getKey(), target);
+                        if (forward ? c >= 0 : c <= 0) {
+                            return true;
+                        }
+                    }
                 }
+            }
+            entry = forward ? internalMap.ceilingEntry(target) : internalMap.floorEntry(target);
+            steps = null;
+            ascending = forward;
+            return entry != null;
+        }
 
-                @Override
-                public K next() {
-                    return unmask(it.next());
+        private boolean open(Iterator<Entry<Object, Object>> it, boolean forward) {
+            steps = it;
+            ascending = forward;
+            return advance();
+        }
+
+        private boolean advance() {
+            if (steps.hasNext()) {
+                entry = steps.next();
+                return true;
+            }
+            entry = null;
+            steps = null;
+            return false;
+        }
+
+        private void checkPositioned() {
+            if (entry == null) {
+                throw new NoSuchElementException();
+            }
+        }
+    }
+
+    // Bulk construction
+
+    /**
+     * Collects mappings and builds a {@link NullableSortedConcurrentMap} from them in one pass.
+     *
+     * <p>Instead of inserting the mappings one by one, {@link #build()} links them into a new skip
+     * list in linear time. Mappings that are added in ascending key order need no sorting.
+     * Otherwise they are sorted once with a parallel merge sort that moves keys and values in their
+     * arrays, without an object per mapping. If a key is added more than once, the last value wins.
+     *
+     * <p>A builder is not thread-safe.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    public static final class Builder<K, V> {
+
+        private final Comparator<Object> comparator;
+        private final ByteKeyEncoder<? super K> keyEncoder;
+
+        private Object[] keys = new Object[16];
+        private Object[] values = new Object[16];
+        private int size;
+
+        /** Whether the mappings added so far are strictly ascending. */
+        private boolean sorted = true;
+
+        /**
+         * Creates a builder for a map sorted according to the {@linkplain Comparable natural
+         * ordering} of the keys.
+         */
+        public Builder() {
+            this((Comparator<? super K>) null);
+        }
+
+        /**
+         * Creates a builder for a map sorted according to the specified comparator.
+         *
+         * @param comparator the comparator. If {@code null}, the {@linkplain Comparable natural
+         *     ordering} of the keys will be used.
+         */
+        public Builder(Comparator<? super K> comparator) {
+            this.comparator = new NullSafeComparator<>(comparator);
+            this.keyEncoder = null;
+        }
+
+        /**
+         * Creates a builder for a map that stores keys in byte-comparable form.
+         *
+         * @param keyEncoder the encoder that turns each non-null key into an order-preserving byte
+         *     sequence
+         */
+        public Builder(ByteKeyEncoder<? super K> keyEncoder) {
+            this.comparator = EncodedKeyComparator.INSTANCE;
+            this.keyEncoder = Objects.requireNonNull(keyEncoder);
+        }
+
+        // Private constructor for maps ordered like an existing map
+        private Builder(Comparator<Object> comparator, ByteKeyEncoder<? super K> keyEncoder) {
+            this.comparator = comparator;
+            this.keyEncoder = keyEncoder;
+        }
+
+        /**
+         * Adds a mapping.
+         *
+         * @param key the key, may be `null`
+         * @param value the value, may be `null`
+         * @return this builder
+         */
+        public Builder<K, V> put(K key, V value) {
+            return putMasked(maskKey(keyEncoder, key), mask(value));
+        }
+
+        private Builder<K, V> putMasked(Object maskedKey, Object maskedValue) {
+            if (sorted && size > 0 && comparator.compare(keys[size - 1], maskedKey) >= 0) {
+                sorted = false;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            keys[size] = maskedKey;
+            values[size] = maskedValue;
+            size++;
+            return this;
+        }
+
+        /**
+         * Adds all mappings of the given map.
+         *
+         * @param m the mappings to add
+         * @return this builder
+         */
+        public Builder<K, V> putAll(Map<? extends K, ? extends V> m) {
+            int required = size + m.size();
+            if (required > keys.length) {
+                keys = Arrays.copyOf(keys, required);
+                values = Arrays.copyOf(values, required);
+            }
+            for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Builds a new map with the mappings added so far. Afterwards this builder is empty.
+         *
+         * @return the new map
+         */
+        public NullableSortedConcurrentMap<K, V> build() {
+            return new NullableSortedConcurrentMap<>(this);
+        }
+
+        private ConcurrentSkipListMap<Object, Object> buildInternalMap() {
+            if (!sorted) {
+                sortAndDeduplicate();
+            }
+            ConcurrentSkipListMap<Object, Object> map =
+                    new ConcurrentSkipListMap<>(new SortedRun(comparator, keys, values, 0, size));
+            keys = new Object[16];
+            values = new Object[16];
+            size = 0;
+            sorted = true;
+            return map;
+        }
+
+        private void sortAndDeduplicate() {
+            // Stable, so the last value added for a key stays last among its duplicates
+            new PairSort(comparator, keys, values, new Object[size], new Object[size], 0, size)
+                    .invoke();
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (n > 0 && comparator.compare(keys[n - 1], keys[i]) == 0) {
+                    n--;
                 }
+                keys[n] = keys[i];
+                values[n] = values[i];
+                n++;
+            }
+            Arrays.fill(keys, n, size, null);
+            Arrays.fill(values, n, size, null);
+            size = n;
+        }
+    }
 
-                @Override
-                public void remove() {
-                    it.remove();
+    /**
+     * Stable merge sort of keys together with their values, forking the halves of large ranges into
+     * the common pool.
+     */
+    @SuppressWarnings("serial")
+    private static final class PairSort extends RecursiveAction {
+        private static final int PARALLEL_THRESHOLD = 1 << 13;
+        private static final int INSERTION_THRESHOLD = 32;
+
+        private final Comparator<Object> comparator;
+        private final Object[] keys;
+        private final Object[] values;
+        private final Object[] keyBuffer;
+        private final Object[] valueBuffer;
+        private final int from;
+        private final int to;
+
+        PairSort(
+                Comparator<Object> comparator,
+                Object[] keys,
+                Object[] values,
+                Object[] keyBuffer,
+                Object[] valueBuffer,
+                int from,
+                int to) {
+            this.comparator = comparator;
+            this.keys = keys;
+            this.values = values;
+            this.keyBuffer = keyBuffer;
+            this.valueBuffer = valueBuffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                sort(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(half(from, mid), half(mid, to));
+            merge(from, mid, to);
+        }
+
+        private PairSort half(int lo, int hi) {
+            return new PairSort(comparator, keys, values, keyBuffer, valueBuffer, lo, hi);
+        }
+
+        private void sort(int lo, int hi) {
+            if (hi - lo <= INSERTION_THRESHOLD) {
+                for (int i = lo + 1; i < hi; i++) {
+                    Object key = keys[i];
+                    Object value = values[i];
+                    int j = i;
+                    for (; j > lo && comparator.compare(keys[j - 1], key) > 0; j--) {
+                        keys[j] = keys[j - 1];
+                        values[j] = values[j - 1];
+                    }
+                    keys[j] = key;
+                    values[j] = value;
                 }
-            };
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            sort(lo, mid);
+            sort(mid, hi);
+            merge(lo, mid, hi);
+        }
+
+        /** Merges two sorted neighboring ranges; on equal keys the left one comes first. */
+        private void merge(int lo, int mid, int hi) {
+            if (comparator.compare(keys[mid - 1], keys[mid]) <= 0) {
+                return; // already in order
+            }
+            System.arraycopy(keys, lo, keyBuffer, lo, mid - lo);
+            System.arraycopy(values, lo, valueBuffer, lo, mid - lo);
+            int i = lo;
+            int j = mid;
+            int k = lo;
+            while (i < mid && j < hi) {
+                if (comparator.compare(keys[j], keyBuffer[i]) < 0) {
+                    keys[k] = keys[j];
+                    values[k++] = values[j++];
+                } else {
+                    keys[k] = keyBuffer[i];
+                    values[k++] = valueBuffer[i++];
+                }
+            }
+            while (i < mid) {
+                keys[k] = keyBuffer[i];
+                values[k++] = valueBuffer[i++];
+            }
+            Arrays.fill(keyBuffer, lo, mid, null);
+            Arrays.fill(valueBuffer, lo, mid, null);
+        }
+    }
+
+    /**
+     * Read-only sorted map over a slice of sorted arrays. Passed to the {@link
+     * ConcurrentSkipListMap} constructor, which links sorted input in linear time.
+     */
+    private static final class SortedRun extends AbstractMap<Object, Object>
+            implements SortedMap<Object, Object> {
+        private final Comparator<Object> comparator;
+        private final Object[] keys;
+        private final Object[] values;
+        private final int from;
+        private final int to;
+
+        SortedRun(Comparator<Object> comparator, Object[] keys, Object[] values, int from, int to) {
+            this.comparator = comparator;
+            this.keys = keys;
+            this.values = values;
+            this.from = from;
+            this.to = to;
         }
 
         @Override
-        public int size() {
-            return base.size();
+        public Comparator<? super Object> comparator() {
+            return comparator;
         }
 
         @Override
-        public boolean contains(Object o) {
-            return base.contains(mask(o));
+        public SortedMap<Object, Object> subMap(Object fromKey, Object toKey) {
+            int start = indexOf(fromKey);
+            return new SortedRun(comparator, keys, values, start, Math.max(start, indexOf(toKey)));
         }
 
         @Override
-        public boolean remove(Object o) {
-            return base.remove(mask(o));
+        public SortedMap<Object, Object> headMap(Object toKey) {
+            return new SortedRun(comparator, keys, values, from, indexOf(toKey));
         }
 
         @Override
-        public K lower(K k) {
-            return unmask(base.lower(mask(k)));
+        public SortedMap<Object, Object> tailMap(Object fromKey) {
+            return new SortedRun(comparator, keys, values, indexOf(fromKey), to);
+        }
+
+        /** Returns the index of the first key not less than the given key. */
+        private int indexOf(Object key) {
+            int low = from;
+            int high = to;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (comparator.compare(keys[mid], key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
         }
 
         @Override
-        public K floor(K k) {
-            return unmask(base.floor(mask(k)));
+        public Object firstKey() {
+            if (from == to) throw new NoSuchElementException();
+            return keys[from];
         }
 
         @Override
-        public K ceiling(K k) {
-            return unmask(base.ceiling(mask(k)));
+        public Object lastKey() {
+            if (from == to) throw new NoSuchElementException();
+            return keys[to - 1];
         }
 
         @Override
-        public K higher(K k) {
-            return unmask(base.higher(mask(k)));
+        public Set<Entry<Object, Object>> entrySet() {
+            return new AbstractSet<Entry<Object, Object>>() {
+                @Override
+                public Iterator<Entry<Object, Object>> iterator() {
+                    return new Iterator<Entry<Object, Object>>() {
+                        private int index = from;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < to;
+                        }
+
+                        @Override
+                        public Entry<Object, Object> next() {
+                            if (index >= to) throw new NoSuchElementException();
+                            int i = index++;
+                            return new AbstractMap.SimpleImmutableEntry<>(keys[i], values[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return to - from;
+                }
+            };
+        }
+    }
+
+    // Helper methods and classes
+
+    private Entry<K, V> unmaskEntry(Entry<Object, Object> entry) {
+        if (entry == null) return null;
+        return new EntryWrapper(entry);
+    }
+
+    /** Spliterator characteristics of the entry set. */
+    private static final int ENTRIES =
+            Spliterator.ORDERED
+                    | Spliterator.DISTINCT
+                    | Spliterator.CONCURRENT
+                    | Spliterator.NONNULL;
+
+    /** Maximum number of skip-list splits tried to find a split key for a range. */
+    private static final int MAX_SPLIT_STEPS = 64;
+
+    /**
+     * Spliterator over a range of the internal map in its encounter order.
+     *
+     * <p>A range is split at a key of the highest index level of the skip list that lies inside it,
+     * found by splitting a spliterator of the whole skip list until a split point falls into the
+     * range. The pieces therefore have roughly equal sizes without any counting, and views of a
+     * small part of a large map split as well as the whole map.
+     *
+     * <p>This relies on how the key set spliterator of {@link ConcurrentSkipListMap} splits, which
+     * is not specified: in OpenJDK 8 through 21 it cuts at the first key to the right of its
+     * position on the highest index level that has one, then level by level further down. A key
+     * found this way is only used if it lies strictly inside the range, so a different behavior can
+     * make the pieces uneven but never wrong. If no such key turns up within {@code
+     * MAX_SPLIT_STEPS} splits, the range is not split and is processed sequentially.
+     *
+     * <p>The size of a range is not known without counting, so {@link #estimateSize()} starts at
+     * {@link Long#MAX_VALUE}, as {@link Spliterator#estimateSize()} prescribes for unknown sizes,
+     * and is halved with each split.
+     */
+    private final class RangeSpliterator<T> implements Spliterator<T> {
+        private ConcurrentNavigableMap<Object, Object> range;
+        private final Function<Entry<Object, Object>, T> mapper;
+        private final int characteristics;
+        private long estimate = Long.MAX_VALUE;
+        private Iterator<Entry<Object, Object>> it;
+
+        RangeSpliterator(
+                ConcurrentNavigableMap<Object, Object> range,
+                Function<Entry<Object, Object>, T> mapper,
+                int characteristics) {
+            this.range = range;
+            this.mapper = mapper;
+            this.characteristics = characteristics;
         }
 
         @Override
-        public K pollFirst() {
-            return unmask(base.pollFirst());
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (it == null) {
+                it = range.entrySet().iterator();
+            }
+            if (!it.hasNext()) {
+                return false;
+            }
+            action.accept(mapper.apply(it.next()));
+            return true;
         }
 
         @Override
-        public K pollLast() {
-            return unmask(base.pollLast());
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (it == null) {
+                it = range.entrySet().iterator();
+            }
+            while (it.hasNext()) {
+                action.accept(mapper.apply(it.next()));
+            }
         }
 
         @Override
-        public Comparator<? super K> comparator() {
-            return NullableSortedConcurrentMap.this.comparator();
+        public Spliterator<T> trySplit() {
+            if (it != null) {
+                return null;
+            }
+            Object key = splitKey();
+            if (key == null) {
+                return null;
+            }
+            RangeSpliterator<T> prefix =
+                    new RangeSpliterator<>(range.headMap(key, false), mapper, characteristics);
+            range = range.tailMap(key, true);
+            estimate >>>= 1;
+            prefix.estimate = estimate;
+            return prefix;
+        }
+
+        /** Returns a key that splits the range into two non-empty parts, or `null`. */
+        private Object splitKey() {
+            Entry<Object, Object> first = range.firstEntry();
+            Entry<Object, Object> last = range.lastEntry();
+            if (first == null || last == null) {
+                return null;
+            }
+            Comparator<? super Object> order = range.comparator();
+            Comparator<? super Object> ascending = skipList.comparator();
+            Object low = first.getKey();
+            if (ascending.compare(low, last.getKey()) > 0) {
+                low = last.getKey();
+            }
+            // Each split of the skip list spliterator leaves the part from an index node on in
+            // upper, whose first key is then the probe
+            Object[] probe = new Object[1];
+            Spliterator<Object> upper = skipList.keySet().spliterator();
+            // A fresh spliterator starts at the base header, whose key is null, and cannot split
+            // until it has consumed the first key
+            upper.tryAdvance(k -> {});
+            for (int i = 0; i < MAX_SPLIT_STEPS; i++) {
+                Spliterator<Object> lower = upper.trySplit();
+                if (lower == null || !upper.tryAdvance(k -> probe[0] = k)) {
+                    return null;
+                }
+                Object key = probe[0];
+                if (order.compare(key, first.getKey()) > 0
+                        && order.compare(key, last.getKey()) <= 0) {
+                    return key;
+                }
+                if (ascending.compare(key, low) > 0) {
+                    upper = lower; // the range lies below the split point
+                }
+            }
+            return null;
         }
 
         @Override
-        public K first() {
-            return unmask(base.first());
+        public long estimateSize() {
+            return estimate;
         }
 
         @Override
-        public K last() {
-            return unmask(base.last());
+        public int characteristics() {
+            return characteristics;
+        }
+    }
+
+    private class KeySetView extends NavigableKeySetView<K> {
+        private final NavigableSet<Object> base = internalMap.navigableKeySet();
+
+        KeySetView() {
+            super(NullableSortedConcurrentMap.this);
         }
 
         @Override
-        public NavigableSet<K> descendingSet() {
-            return new KeySetView(base.descendingSet());
+        public Iterator<K> iterator() {
+            return keys(base.iterator());
         }
 
         @Override
         public Iterator<K> descendingIterator() {
-            Iterator<Object> it = base.descendingIterator();
+            return keys(base.descendingIterator());
+        }
+
+        private Iterator<K> keys(Iterator<Object> it) {
             return new Iterator<K>() {
                 @Override
                 public boolean hasNext() {
@@ -523,7 +1673,7 @@ public class NullableSortedConcurrentMap<K, V>
 
                 @Override
                 public K next() {
-                    return unmask(it.next());
+                    return unmaskKey(it.next());
                 }
 
                 @Override
@@ -534,35 +1684,16 @@ public class NullableSortedConcurrentMap<K, V>
         }
 
         @Override
-        public NavigableSet<K> subSet(
-                K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
-            return new KeySetView(
-                    base.subSet(mask(fromElement), fromInclusive, mask(toElement), toInclusive));
-        }
-
-        @Override
-        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
-            return new KeySetView(base.headSet(mask(toElement), inclusive));
-        }
-
-        @Override
-        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
-            return new KeySetView(base.tailSet(mask(fromElement), inclusive));
+        public Spliterator<K> spliterator() {
+            return new RangeSpliterator<>(
+                    internalMap,
+                    e -> unmaskKey(e.getKey()),
+                    Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.CONCURRENT);
         }
 
         @Override
-        public java.util.SortedSet<K> subSet(K fromElement, K toElement) {
-            return subSet(fromElement, true, toElement, false);
-        }
-
-        @Override
-        public java.util.SortedSet<K> headSet(K toElement) {
-            return headSet(toElement, false);
-        }
-
-        @Override
-        public java.util.SortedSet<K> tailSet(K fromElement) {
-            return tailSet(fromElement, true);
+        public boolean remove(Object o) {
+            return base.remove(maskKey(o));
         }
     }
 
@@ -590,6 +1721,14 @@ public class NullableSortedConcurrentMap<K, V>
             };
         }
 
+        @Override
+        public Spliterator<V> spliterator() {
+            return new RangeSpliterator<>(
+                    internalMap,
+                    e -> unmask(e.getValue()),
+                    Spliterator.ORDERED | Spliterator.CONCURRENT);
+        }
+
         @Override
         public int size() {
             return base.size();
@@ -630,6 +1769,11 @@ public class NullableSortedConcurrentMap<K, V>
             };
         }
 
+        @Override
+        public Spliterator<Entry<K, V>> spliterator() {
+            return new RangeSpliterator<>(internalMap, EntryWrapper::new, ENTRIES);
+        }
+
         @Override
         public int size() {
             return base.size();
@@ -639,7 +1783,7 @@ public class NullableSortedConcurrentMap<K, V>
         public boolean contains(Object o) {
             if (!(o instanceof Map.Entry)) return false;
             Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
-            Object val = internalMap.get(mask(e.getKey()));
+            Object val = internalMap.get(maskKey(e.getKey()));
             return val != null && Objects.equals(val, mask(e.getValue()));
         }
 
@@ -647,7 +1791,7 @@ public class NullableSortedConcurrentMap<K, V>
         public boolean remove(Object o) {
             if (!(o instanceof Map.Entry)) return false;
             Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
-            return internalMap.remove(mask(e.getKey()), mask(e.getValue()));
+            return internalMap.remove(maskKey(e.getKey()), mask(e.getValue()));
         }
 
         @Override
@@ -665,7 +1809,7 @@ public class NullableSortedConcurrentMap<K, V>
 
         @Override
         public K getKey() {
-            return unmask(entry.getKey());
+            return unmaskKey(entry.getKey());
         }
 
         @Override
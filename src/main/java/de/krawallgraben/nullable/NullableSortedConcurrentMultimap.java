@@ -0,0 +1,307 @@
+package de.krawallgraben.nullable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A sorted, thread-safe multimap that allows duplicate keys and `null` as keys and values.
+ *
+ * <p>Every mapping is a separate entry of a {@link ConcurrentSkipListMap}. Entries with equal keys
+ * are told apart by a sequence number assigned on insertion, so the values of a key are kept in
+ * insertion order and each insertion or removal is a single atomic skip-list operation. No
+ * collection is allocated per key.
+ *
+ * <p>`null` keys are sorted to the beginning. Iterators and range scans are weakly consistent.
+ *
+ * <p>The multimap is deliberately not {@link java.io.Serializable}. It does not stand in for a JDK
+ * collection, and its sequence numbers are an internal detail that should not become part of a
+ * serialized form. To persist it, write out its {@link #iterator() entries} and {@link #put} them
+ * back in order.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class NullableSortedConcurrentMultimap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+    /** Internal map from slots to masked values. */
+    private final ConcurrentNavigableMap<Slot, Object> internalMap;
+
+    private final SlotComparator<? super K> comparator;
+
+    /** Source of sequence numbers for new entries. */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /** Internal key: a masked key and a tiebreaker sequence number. */
+    private static final class Slot {
+        final Object key;
+        final long seq;
+
+        Slot(Object key, long seq) {
+            this.key = key;
+            this.seq = seq;
+        }
+    }
+
+    // Comparator for slots, ordering `null` keys first and equal keys by sequence number
+    private static final class SlotComparator<K> implements Comparator<Slot> {
+        private final Comparator<? super K> delegate;
+
+        SlotComparator(Comparator<? super K> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int compare(Slot s1, Slot s2) {
+            int c = compareKeys(s1.key, s2.key);
+            return c != 0 ? c : Long.compare(s1.seq, s2.seq);
+        }
+
+        @SuppressWarnings("unchecked")
+        int compareKeys(Object o1, Object o2) {
+            if (o1 == NullPlaceholder.INSTANCE) {
+                return o2 == NullPlaceholder.INSTANCE ? 0 : -1;
+            }
+            if (o2 == NullPlaceholder.INSTANCE) {
+                return 1;
+            }
+            if (delegate != null) {
+                return delegate.compare((K) o1, (K) o2);
+            }
+            return ((Comparable<? super K>) o1).compareTo((K) o2);
+        }
+    }
+
+    /**
+     * Constructs a new, empty multimap, sorted according to the {@linkplain Comparable natural
+     * ordering} of the keys.
+     */
+    public NullableSortedConcurrentMultimap() {
+        this(null);
+    }
+
+    /**
+     * Constructs a new, empty multimap, sorted according to the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order the keys. If {@code null}, the
+     *     {@linkplain Comparable natural ordering} of the keys will be used.
+     */
+    public NullableSortedConcurrentMultimap(Comparator<? super K> comparator) {
+        this.comparator = new SlotComparator<>(comparator);
+        this.internalMap = new ConcurrentSkipListMap<>(this.comparator);
+    }
+
+    // Multimap methods
+
+    /**
+     * Adds a mapping. Existing mappings of the key, including equal ones, are kept.
+     *
+     * @param key the key, may be `null`
+     * @param value the value, may be `null`
+     */
+    public void put(K key, V value) {
+        internalMap.put(new Slot(mask(key), sequence.getAndIncrement()), mask(value));
+    }
+
+    /**
+     * Returns the values of the specified key in insertion order.
+     *
+     * @param key the key
+     * @return a new list of the values, empty if there are none
+     */
+    public List<V> get(Object key) {
+        List<V> values = new ArrayList<>();
+        for (Object v : range(key).values()) {
+            values.add(unmask(v));
+        }
+        return values;
+    }
+
+    /**
+     * Returns `true` if this multimap contains at least one mapping for the specified key.
+     *
+     * @param key the key
+     * @return `true` if a mapping exists
+     */
+    public boolean containsKey(Object key) {
+        return !range(key).isEmpty();
+    }
+
+    /**
+     * Returns `true` if this multimap contains the specified mapping.
+     *
+     * @param key the key
+     * @param value the value
+     * @return `true` if the mapping exists
+     */
+    public boolean containsEntry(Object key, Object value) {
+        return range(key).containsValue(mask(value));
+    }
+
+    /**
+     * Returns the number of values of the specified key. This is not a constant-time operation.
+     *
+     * @param key the key
+     * @return the number of values
+     */
+    public int count(Object key) {
+        return range(key).size();
+    }
+
+    /**
+     * Removes the oldest mapping of the specified key to the specified value.
+     *
+     * @param key the key
+     * @param value the value
+     * @return `true` if a mapping was removed
+     */
+    public boolean remove(Object key, Object value) {
+        Object masked = mask(value);
+        for (Map.Entry<Slot, Object> e : range(key).entrySet()) {
+            if (Objects.equals(e.getValue(), masked)
+                    && internalMap.remove(e.getKey(), e.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all mappings of the specified key. Each mapping is removed atomically, mappings added
+     * concurrently may or may not be removed.
+     *
+     * @param key the key
+     * @return the removed values in insertion order
+     */
+    public List<V> removeAll(Object key) {
+        List<V> removed = new ArrayList<>();
+        ConcurrentNavigableMap<Slot, Object> range = range(key);
+        for (Map.Entry<Slot, Object> e = range.pollFirstEntry();
+                e != null;
+                e = range.pollFirstEntry()) {
+            removed.add(unmask(e.getValue()));
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of mappings in this multimap. This is not a constant-time operation.
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        return internalMap.size();
+    }
+
+    /**
+     * Returns `true` if this multimap contains no mappings.
+     *
+     * @return `true` if empty
+     */
+    public boolean isEmpty() {
+        return internalMap.isEmpty();
+    }
+
+    /** Removes all mappings from this multimap. */
+    public void clear() {
+        internalMap.clear();
+    }
+
+    // Range scans
+
+    /**
+     * Returns the mappings whose keys range from {@code fromKey} to {@code toKey}, in ascending key
+     * order and, for equal keys, in insertion order.
+     *
+     * @param fromKey low endpoint, may be `null`
+     * @param fromInclusive `true` if the low endpoint is to be included
+     * @param toKey high endpoint, may be `null`
+     * @param toInclusive `true` if the high endpoint is to be included
+     * @return a weakly consistent view of the mappings in the range
+     */
+    public Iterable<Map.Entry<K, V>> entries(
+            K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        Slot from = new Slot(mask(fromKey), fromInclusive ? Long.MIN_VALUE : Long.MAX_VALUE);
+        Slot to = new Slot(mask(toKey), toInclusive ? Long.MAX_VALUE : Long.MIN_VALUE);
+        if (from.seq > to.seq && comparator.compareKeys(from.key, to.key) == 0) {
+            return Collections.emptyList(); // empty range around a single key
+        }
+        ConcurrentNavigableMap<Slot, Object> range = internalMap.subMap(from, true, to, true);
+        return () -> new EntryIterator(range);
+    }
+
+    /**
+     * Returns a weakly consistent iterator over all mappings in ascending key order and, for equal
+     * keys, in insertion order.
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator(internalMap);
+    }
+
+    // Helper methods and classes
+
+    /** Returns the slots of a key. */
+    private ConcurrentNavigableMap<Slot, Object> range(Object key) {
+        Object masked = mask(key);
+        return internalMap.subMap(
+                new Slot(masked, Long.MIN_VALUE), true, new Slot(masked, Long.MAX_VALUE), true);
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final Iterator<Map.Entry<Slot, Object>> it;
+        private Map.Entry<Slot, Object> lastReturned;
+
+        EntryIterator(ConcurrentNavigableMap<Slot, Object> map) {
+            this.it = map.entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return it.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            lastReturned = it.next();
+            return new AbstractMap.SimpleImmutableEntry<>(
+                    unmask(lastReturned.getKey().key), unmask(lastReturned.getValue()));
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            internalMap.remove(lastReturned.getKey(), lastReturned.getValue());
+            lastReturned = null;
+        }
+    }
+}
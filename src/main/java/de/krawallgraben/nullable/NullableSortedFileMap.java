@@ -0,0 +1,702 @@
+package de.krawallgraben.nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A sorted map that serves its entries from an immutable, memory-mapped file and allows `null` as
+ * keys and values.
+ *
+ * <p>{@link #write} exports a map, typically a {@link NullableSortedConcurrentMap}, to a file of
+ * blocks of about 4 KiB with prefix-compressed keys and a sparse index of the first key of every
+ * block. Opening the file maps it into memory and loads only that index onto the heap. Lookups and
+ * navigation binary-search the index and decode a single block; iteration decodes the blocks
+ * sequentially. Historical data thus stays off the heap and is paged in by the operating system as
+ * needed.
+ *
+ * <p>Keys are ordered by their encodings (see {@link ByteKeyCodec}), `null` first. The map is
+ * read-only like {@link java.util.Collections#unmodifiableNavigableMap}: all methods that would
+ * modify it, including those of its views, iterators and entries, throw {@link
+ * UnsupportedOperationException}. To change the data, copy it into a writable map, modify that and
+ * {@link #write} it to a new file. All methods are thread-safe.
+ *
+ * <p>Views returned by {@link #subMap}, {@link #headMap}, {@link #tailMap} and {@link
+ * #descendingMap} share the file. {@link #size()} is a constant-time operation only for the
+ * unbounded map.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class NullableSortedFileMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    /** Encoding of the `null` key, less than every other encoding. */
+    private static final byte[] NULL_KEY = new byte[0];
+
+    private final SortedFile file;
+
+    private final ByteKeyCodec<K> keyCodec;
+    private final ByteKeyCodec<V> valueCodec;
+
+    /** Bounds of this view in ascending order, `null` if unbounded. */
+    private final byte[] low;
+
+    private final boolean lowInclusive;
+    private final byte[] high;
+    private final boolean highInclusive;
+
+    private final boolean descending;
+
+    /**
+     * Opens a file written by {@link #write}.
+     *
+     * @param file the file
+     * @param keyCodec the codec the keys were written with
+     * @param valueCodec the codec the values were written with
+     * @throws IOException if the file cannot be read or has an invalid format
+     */
+    public NullableSortedFileMap(Path file, ByteKeyCodec<K> keyCodec, ByteKeyCodec<V> valueCodec)
+            throws IOException {
+        this(
+                new SortedFile(file),
+                Objects.requireNonNull(keyCodec),
+                Objects.requireNonNull(valueCodec),
+                null,
+                false,
+                null,
+                false,
+                false);
+    }
+
+    // Private constructor for views
+    private NullableSortedFileMap(
+            SortedFile file,
+            ByteKeyCodec<K> keyCodec,
+            ByteKeyCodec<V> valueCodec,
+            byte[] low,
+            boolean lowInclusive,
+            byte[] high,
+            boolean highInclusive,
+            boolean descending) {
+        this.file = file;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.low = low;
+        this.lowInclusive = lowInclusive;
+        this.high = high;
+        this.highInclusive = highInclusive;
+        this.descending = descending;
+    }
+
+    /**
+     * Writes the entries of a map to an immutable sorted file, replacing the file if it exists.
+     *
+     * <p>The map must iterate its entries in strictly ascending order of their key encodings, for
+     * example a {@link NullableSortedConcurrentMap} created with the same encoder or with the
+     * natural ordering of the keys for the built-in codecs. Concurrent changes to the map may or
+     * may not be written. The key codec must not return an empty encoding, which is reserved for
+     * the `null` key.
+     *
+     * <p>The entries are first written to a temporary file in the same directory, which then
+     * atomically replaces the target. If writing fails, an existing file is left untouched.
+     *
+     * @param map the map to write
+     * @param file the file
+     * @param keyCodec the codec for the keys
+     * @param valueCodec the codec for the values
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @throws IllegalArgumentException if the map is not iterated in ascending key order or a
+     *     non-null key has an empty encoding
+     * @throws IOException if the file cannot be written or would exceed 2 GiB
+     */
+    public static <K, V> void write(
+            Map<? extends K, ? extends V> map,
+            Path file,
+            ByteKeyCodec<? super K> keyCodec,
+            ByteKeyCodec<? super V> valueCodec)
+            throws IOException {
+        SortedFile.write(map, file, keyCodec, valueCodec);
+    }
+
+    // Map methods
+
+    @Override
+    public V get(Object key) {
+        return fileValue(find(key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public int size() {
+        if (low == null && high == null) {
+            return (int) Math.min(file.size(), Integer.MAX_VALUE);
+        }
+        int size = 0;
+        for (Iterator<Entry<K, V>> it = entryIterator(); it.hasNext(); it.next()) {
+            size++;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return firstEntry() == null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new EntrySetView();
+    }
+
+    @Override
+    public NavigableSet<K> keySet() {
+        return navigableKeySet();
+    }
+
+    // Navigation
+
+    @Override
+    public Comparator<? super K> comparator() {
+        Comparator<K> order = (k1, k2) -> ByteArrays.compareUnsigned(encode(k1), encode(k2));
+        return descending ? order.reversed() : order;
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return descending ? ceiling(encode(key), false) : floor(encode(key), false);
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOf(lowerEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return descending ? ceiling(encode(key), true) : floor(encode(key), true);
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOf(floorEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return descending ? floor(encode(key), true) : ceiling(encode(key), true);
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOf(ceilingEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return descending ? floor(encode(key), false) : ceiling(encode(key), false);
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOf(higherEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return descending ? floor(null, true) : ceiling(null, true);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return descending ? ceiling(null, true) : floor(null, true);
+    }
+
+    @Override
+    public K firstKey() {
+        return existingKey(firstEntry());
+    }
+
+    @Override
+    public K lastKey() {
+        return existingKey(lastEntry());
+    }
+
+    // Unsupported modifications
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V computeIfPresent(
+            K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V merge(
+            K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        throw new UnsupportedOperationException();
+    }
+
+    // Views
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new NullableSortedFileMap<>(
+                file, keyCodec, valueCodec, low, lowInclusive, high, highInclusive, !descending);
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySetView();
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(
+            K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        byte[] from = encode(fromKey);
+        byte[] to = encode(toKey);
+        if (ByteArrays.compareUnsigned(from, to) * (descending ? -1 : 1) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return descending
+                ? view(to, toInclusive, from, fromInclusive)
+                : view(from, fromInclusive, to, toInclusive);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        byte[] to = encode(toKey);
+        return descending ? view(to, inclusive, null, false) : view(null, false, to, inclusive);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        byte[] from = encode(fromKey);
+        return descending ? view(null, false, from, inclusive) : view(from, inclusive, null, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    // Helper methods and classes
+
+    @SuppressWarnings("unchecked")
+    private byte[] encode(Object key) {
+        return key == null ? NULL_KEY : keyCodec.encode((K) key);
+    }
+
+    private K decodeKey(byte[] encoded) {
+        return encoded.length == 0 ? null : keyCodec.decode(encoded);
+    }
+
+    private V fileValue(SortedFile.Cursor c) {
+        return c == null || !c.hasValue() ? null : valueCodec.decode(c.value());
+    }
+
+    private static <K> K keyOf(Entry<K, ?> e) {
+        return e == null ? null : e.getKey();
+    }
+
+    private static <K> K existingKey(Entry<K, ?> e) {
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+        return e.getKey();
+    }
+
+    /** Returns the cursor at the given key, or `null` if the key is absent from this view. */
+    private SortedFile.Cursor find(Object key) {
+        byte[] encoded = encode(key);
+        return inRange(encoded) ? file.find(encoded) : null;
+    }
+
+    private boolean tooLow(byte[] key) {
+        if (low == null) return false;
+        int c = ByteArrays.compareUnsigned(key, low);
+        return c < 0 || (c == 0 && !lowInclusive);
+    }
+
+    private boolean tooHigh(byte[] key) {
+        if (high == null) return false;
+        int c = ByteArrays.compareUnsigned(key, high);
+        return c > 0 || (c == 0 && !highInclusive);
+    }
+
+    private boolean inRange(byte[] key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    /**
+     * Returns a view with narrower bounds in ascending order. A `null` bound keeps the current one.
+     */
+    private NullableSortedFileMap<K, V> view(
+            byte[] from, boolean fromInclusive, byte[] to, boolean toInclusive) {
+        if (from == null) {
+            from = low;
+            fromInclusive = lowInclusive;
+        } else if (tooLow(from) && !(Objects.deepEquals(from, low) && !fromInclusive)) {
+            throw new IllegalArgumentException("fromKey out of range");
+        }
+        if (to == null) {
+            to = high;
+            toInclusive = highInclusive;
+        } else if (tooHigh(to) && !(Objects.deepEquals(to, high) && !toInclusive)) {
+            throw new IllegalArgumentException("toKey out of range");
+        }
+        return new NullableSortedFileMap<>(
+                file, keyCodec, valueCodec, from, fromInclusive, to, toInclusive, descending);
+    }
+
+    /**
+     * Returns the least entry of this view in ascending order that is greater than (or equal to)
+     * the given key, or the least entry if the key is `null`.
+     */
+    private Found ceiling(byte[] key, boolean inclusive) {
+        if (key == null || tooLow(key)) {
+            key = low == null ? NULL_KEY : low;
+            inclusive = low == null || lowInclusive;
+        }
+        SortedFile.Cursor c = file.ceiling(key, inclusive);
+        if (c == null) {
+            return null;
+        }
+        byte[] found = c.key();
+        return tooHigh(found) ? null : new Found(found, c);
+    }
+
+    /**
+     * Returns the greatest entry of this view in ascending order that is less than (or equal to)
+     * the given key, or the greatest entry if the key is `null`.
+     */
+    private Found floor(byte[] key, boolean inclusive) {
+        if (key == null || tooHigh(key)) {
+            key = high;
+            inclusive = high == null || highInclusive;
+        }
+        SortedFile.Cursor c = key == null ? file.last() : file.floor(key, inclusive);
+        if (c == null) {
+            return null;
+        }
+        byte[] found = c.key();
+        return tooLow(found) ? null : new Found(found, c);
+    }
+
+    private Iterator<Entry<K, V>> entryIterator() {
+        return descending ? new DescendingEntryIterator() : new EntryIterator();
+    }
+
+    /** An immutable entry that also remembers the encoded key. */
+    @SuppressWarnings("serial")
+    private final class Found extends SimpleImmutableEntry<K, V> {
+        final byte[] encoded;
+
+        Found(byte[] encoded, SortedFile.Cursor c) {
+            super(decodeKey(encoded), fileValue(c));
+            this.encoded = encoded;
+        }
+    }
+
+    /** Reads the blocks of the file sequentially. */
+    private final class EntryIterator implements Iterator<Entry<K, V>> {
+        private final SortedFile.Cursor base;
+        private Found next;
+
+        EntryIterator() {
+            base = low == null ? file.first() : file.ceiling(low, lowInclusive);
+            next = base == null ? null : found();
+        }
+
+        /** Returns the entry at the cursor, or `null` if it lies beyond this view. */
+        private Found found() {
+            byte[] key = base.key();
+            return tooHigh(key) ? null : new Found(key, base);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Found result = next;
+            next = base.advance() ? found() : null;
+            return result;
+        }
+    }
+
+    /** Steps backwards with one binary search per entry. */
+    private final class DescendingEntryIterator implements Iterator<Entry<K, V>> {
+        private Found next = floor(null, true);
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Found result = next;
+            next = floor(result.encoded, false);
+            return result;
+        }
+    }
+
+    private class EntrySetView extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return entryIterator();
+        }
+
+        @Override
+        public int size() {
+            return NullableSortedFileMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return NullableSortedFileMap.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            SortedFile.Cursor c = find(e.getKey());
+            return c != null && Objects.equals(fileValue(c), e.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class KeySetView extends AbstractSet<K> implements NavigableSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            Iterator<Entry<K, V>> it = entryIterator();
+            return new Iterator<K>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    return it.next().getKey();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return NullableSortedFileMap.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return NullableSortedFileMap.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public K lower(K k) {
+            return lowerKey(k);
+        }
+
+        @Override
+        public K floor(K k) {
+            return floorKey(k);
+        }
+
+        @Override
+        public K ceiling(K k) {
+            return ceilingKey(k);
+        }
+
+        @Override
+        public K higher(K k) {
+            return higherKey(k);
+        }
+
+        @Override
+        public K pollFirst() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public K pollLast() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return NullableSortedFileMap.this.comparator();
+        }
+
+        @Override
+        public K first() {
+            return firstKey();
+        }
+
+        @Override
+        public K last() {
+            return lastKey();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return descendingKeySet();
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingKeySet().iterator();
+        }
+
+        @Override
+        public NavigableSet<K> subSet(
+                K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return subMap(fromElement, fromInclusive, toElement, toInclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return headMap(toElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return tailMap(fromElement, inclusive).navigableKeySet();
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package de.krawallgraben.nullable;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A queue for exactly one producer thread and one consumer thread that allows `null` elements.
+ *
+ * <p>The queue is either bounded, a ring buffer of fixed capacity, or unbounded, a linked list of
+ * array chunks. Neither producer nor consumer executes a compare-and-set: elements and indexes are
+ * published with ordered stores ({@code lazySet}), and a slot is free exactly when it holds no
+ * element, so the producer only looks at the consumer's progress through the slots. In bounded mode
+ * the producer checks a slot a quarter of the capacity ahead and caches the result, so it touches
+ * the cache lines written by the consumer only once per batch of offers.
+ *
+ * <p>{@link #offer}, {@link #add} and {@link #addAll} may only be called by the producer thread;
+ * {@link #poll}, {@link #remove}, {@link #clear} and the removal of single elements only by the
+ * consumer thread. All other methods may be called from any thread. {@link #offer} returns `false`
+ * if a bounded queue is full; {@link #poll} returns `null` if the queue is empty. Use {@link
+ * #isEmpty()} to tell an empty queue from a `null` element.
+ *
+ * <p>Removed elements keep their slot until the consumer reaches it; {@link #isEmpty()} and {@link
+ * #size()} do not count removed elements at the head. Iterators are weakly consistent.
+ *
+ * @param <E> the type of elements held in this queue
+ * @see NullableMpscQueue
+ */
+public class NullableSpscQueue<E> extends AbstractQueue<E> implements Queue<E> {
+
+    /** Chunk size of unbounded queues. */
+    private static final int CHUNK_SIZE = 1024;
+
+    /** Distance between the indexes in longs, two cache lines. */
+    private static final int PAD = 16;
+
+    private static final int PRODUCER = PAD;
+    private static final int PRODUCER_LIMIT = PAD + 1;
+    private static final int CONSUMER = 2 * PAD;
+
+    /** Producer index, cached producer limit and consumer index, padded against false sharing. */
+    private final AtomicLongArray counters = new AtomicLongArray(3 * PAD);
+
+    private final boolean bounded;
+    private final int mask;
+    private final int shift;
+    private final int lookAhead;
+
+    private Chunk producerChunk;
+    private volatile Chunk consumerChunk;
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    /** Marks the slot of a removed element. */
+    private static final Object REMOVED = new Object();
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE ? null : (T) value;
+    }
+
+    /** Constructs an empty, unbounded queue. */
+    public NullableSpscQueue() {
+        this(false, CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs an empty, bounded queue.
+     *
+     * @param capacity the minimum capacity, rounded up to a power of two
+     */
+    public NullableSpscQueue(int capacity) {
+        this(true, capacity);
+    }
+
+    private NullableSpscQueue(boolean bounded, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.bounded = bounded;
+        this.mask = size - 1;
+        this.shift = Integer.numberOfTrailingZeros(size);
+        this.lookAhead = Math.min(size / 4, 4096);
+        this.producerChunk = new Chunk(0, size);
+        this.consumerChunk = producerChunk;
+    }
+
+    /**
+     * Returns the capacity of this queue.
+     *
+     * @return the capacity, or {@link Integer#MAX_VALUE} if the queue is unbounded
+     */
+    public int capacity() {
+        return bounded ? mask + 1 : Integer.MAX_VALUE;
+    }
+
+    // Queue methods
+
+    /**
+     * Inserts the specified element. Must only be called by the producer thread.
+     *
+     * <p>Unlike standard concurrent queues, this method accepts `null`.
+     *
+     * @return `true` if the element was added, `false` if the queue is bounded and full
+     */
+    @Override
+    public boolean offer(E e) {
+        long p = counters.get(PRODUCER);
+        Chunk chunk = producerChunk;
+        int index = (int) p & mask;
+        if (bounded) {
+            if (p >= counters.get(PRODUCER_LIMIT)) {
+                long ahead = p + lookAhead;
+                if (lookAhead > 0 && chunk.get((int) ahead & mask) == null) {
+                    counters.lazySet(PRODUCER_LIMIT, ahead);
+                } else if (chunk.get(index) != null) {
+                    return false;
+                }
+            }
+        } else if (index == 0 && p != 0) {
+            Chunk next = new Chunk(chunk.id + 1, mask + 1);
+            chunk.next = next;
+            producerChunk = chunk = next;
+        }
+        chunk.lazySet(index, mask(e));
+        counters.lazySet(PRODUCER, p + 1);
+        return true;
+    }
+
+    /** Retrieves and removes the head. Must only be called by the consumer thread. */
+    @Override
+    public E poll() {
+        Object e = pollMasked();
+        return e == REMOVED ? null : unmask(e);
+    }
+
+    /**
+     * Returns and removes the head of this queue. Must only be called by the consumer thread.
+     *
+     * @return the head, may be `null`
+     * @throws NoSuchElementException if this queue is empty
+     */
+    @Override
+    public E remove() {
+        Object e = pollMasked();
+        if (e == REMOVED) {
+            throw new NoSuchElementException();
+        }
+        return unmask(e);
+    }
+
+    @Override
+    public E peek() {
+        Itr it = new Itr();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        for (; ; ) {
+            long consumer = counters.get(CONSUMER);
+            long producer = counters.get(PRODUCER);
+            long removed = removedAtHead(consumer, producer);
+            if (counters.get(CONSUMER) == consumer) {
+                long n = producer - consumer - removed;
+                return (int) Math.max(0, Math.min(n, Integer.MAX_VALUE));
+            }
+        }
+    }
+
+    /** Removes all elements. Must only be called by the consumer thread. */
+    @Override
+    public void clear() {
+        while (pollMasked() != REMOVED) {
+            // drain
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    // Helper methods and classes
+
+    /** Removes the head, skipping removed elements. Returns {@link #REMOVED} if empty. */
+    private Object pollMasked() {
+        for (; ; ) {
+            long q = counters.get(CONSUMER);
+            Chunk chunk = consumerChunk;
+            if (!bounded && chunk.id < q >>> shift) {
+                Chunk next = chunk.next;
+                if (next == null) {
+                    return REMOVED; // empty
+                }
+                consumerChunk = chunk = next;
+            }
+            int index = (int) q & mask;
+            Object e = chunk.get(index);
+            if (e == null) {
+                return REMOVED; // empty
+            }
+            chunk.lazySet(index, null);
+            counters.lazySet(CONSUMER, q + 1);
+            if (e != REMOVED) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of removed elements that occupy the slots from the consumer index on. Only
+     * reads the slots, so that any thread may call it.
+     */
+    private long removedAtHead(long consumer, long producer) {
+        Chunk chunk = consumerChunk;
+        long pos = Math.max(consumer, chunk.id << shift);
+        for (; pos < producer; pos++) {
+            while (!bounded && chunk.id < pos >>> shift) {
+                chunk = chunk.next;
+                if (chunk == null) {
+                    return pos - consumer;
+                }
+            }
+            if (chunk.get((int) pos & mask) != REMOVED) {
+                break;
+            }
+        }
+        return pos - consumer;
+    }
+
+    /** An array of slots; the ring of a bounded queue or a link of an unbounded one. */
+    @SuppressWarnings("serial")
+    private static final class Chunk extends AtomicReferenceArray<Object> {
+        final long id;
+        volatile Chunk next;
+
+        Chunk(long id, int size) {
+            super(size);
+            this.id = id;
+        }
+    }
+
+    /** Weakly consistent iterator over the elements between the consumer and producer index. */
+    private class Itr implements Iterator<E> {
+        private Chunk chunk = consumerChunk;
+        private long pos = Math.max(counters.get(CONSUMER), chunk.id << shift);
+        private final long end = counters.get(PRODUCER);
+        private Object next;
+        private Chunk nextChunk;
+        private Object lastReturned;
+        private Chunk lastChunk;
+        private long lastPos;
+
+        Itr() {
+            advance();
+        }
+
+        private void advance() {
+            nextChunk = null;
+            for (; pos < end; pos++) {
+                while (!bounded && chunk.id < pos >>> shift) {
+                    chunk = chunk.next;
+                    if (chunk == null) {
+                        pos = end;
+                        return;
+                    }
+                }
+                Object e = chunk.get((int) pos & mask);
+                if (e != null && e != REMOVED) {
+                    next = e;
+                    nextChunk = chunk;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextChunk != null;
+        }
+
+        @Override
+        public E next() {
+            if (nextChunk == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            lastChunk = nextChunk;
+            lastPos = pos;
+            pos++;
+            advance();
+            return unmask(lastReturned);
+        }
+
+        /**
+         * Removes the last element. Must only be called by the consumer thread.
+         *
+         * <p>Once the consumer has passed the element, its slot may hold an equal element offered
+         * later, so the slot is only marked while the consumer index has not reached past it.
+         */
+        @Override
+        public void remove() {
+            if (lastChunk == null) {
+                throw new IllegalStateException();
+            }
+            if (lastPos >= counters.get(CONSUMER)) {
+                lastChunk.compareAndSet((int) lastPos & mask, lastReturned, REMOVED);
+            }
+            lastChunk = null;
+        }
+    }
+}
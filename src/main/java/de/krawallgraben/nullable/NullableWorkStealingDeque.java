@@ -0,0 +1,193 @@
+package de.krawallgraben.nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A work-stealing deque that allows `null` elements.
+ *
+ * <p>The deque belongs to one owner thread, which pushes and pops elements at the bottom in LIFO
+ * order. Any other thread may steal elements from the top in FIFO order. This is the deque of Chase
+ * and Lev: a circular array that grows when it is full. The owner's {@link #push} and {@link #pop}
+ * need no compare-and-set unless a single element is left and the owner races a thief for it;
+ * {@link #steal} takes an element with one compare-and-set on the top index.
+ *
+ * <p>{@link #push} and {@link #pop} may only be called by the owner thread; all other methods may
+ * be called from any thread. {@link #pop} and {@link #steal} return `null` if the deque is empty.
+ * Use {@link #isEmpty()} to tell an empty deque from a `null` element.
+ *
+ * <p>The array never shrinks, and removed elements stay referenced until their slot is reused.
+ *
+ * @param <E> the type of elements held in this deque
+ */
+public class NullableWorkStealingDeque<E> {
+
+    /** Index of the next element to steal. */
+    private final AtomicLong top = new AtomicLong();
+
+    /** Index of the next slot to push into; written by the owner only. */
+    private final AtomicLong bottom = new AtomicLong();
+
+    private volatile Buffer buffer;
+
+    /** Placeholder for `null`. */
+    private enum NullPlaceholder {
+        INSTANCE;
+
+        @Override
+        public String toString() {
+            return "null";
+        }
+    }
+
+    /** Returned internally if there is nothing to take. */
+    private static final Object EMPTY = new Object();
+
+    private static Object mask(Object value) {
+        return value == null ? NullPlaceholder.INSTANCE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unmask(Object value) {
+        return value == NullPlaceholder.INSTANCE || value == EMPTY ? null : (T) value;
+    }
+
+    /** Constructs an empty deque with an initial capacity of 64 elements. */
+    public NullableWorkStealingDeque() {
+        this(64);
+    }
+
+    /**
+     * Constructs an empty deque.
+     *
+     * @param initialCapacity the initial capacity, rounded up to a power of two
+     */
+    public NullableWorkStealingDeque(int initialCapacity) {
+        if (initialCapacity < 1 || initialCapacity > 1 << 30) {
+            throw new IllegalArgumentException("initialCapacity: " + initialCapacity);
+        }
+        int size = Integer.highestOneBit(initialCapacity);
+        if (size < initialCapacity) {
+            size <<= 1;
+        }
+        this.buffer = new Buffer(size);
+    }
+
+    // Owner methods
+
+    /**
+     * Pushes an element onto the bottom. Must only be called by the owner thread.
+     *
+     * <p>Unlike standard deques, this method accepts `null`.
+     *
+     * @param e the element
+     */
+    public void push(E e) {
+        long b = bottom.get();
+        long t = top.get();
+        Buffer a = buffer;
+        if (b - t >= a.length()) {
+            a = a.grow(t, b);
+            buffer = a;
+        }
+        a.put(b, mask(e));
+        bottom.lazySet(b + 1);
+    }
+
+    /**
+     * Removes and returns the element at the bottom, the one pushed last. Must only be called by
+     * the owner thread.
+     *
+     * @return the element, or `null` if the deque is empty
+     */
+    public E pop() {
+        long b = bottom.get() - 1;
+        Buffer a = buffer;
+        bottom.set(b); // the volatile write orders it before the read of top
+        long t = top.get();
+        if (t > b) {
+            bottom.lazySet(b + 1); // empty
+            return null;
+        }
+        Object x = a.get(b);
+        if (t == b) {
+            // The last element: race the thieves for it
+            if (!top.compareAndSet(t, t + 1)) {
+                x = EMPTY;
+            }
+            bottom.lazySet(b + 1);
+        }
+        return unmask(x);
+    }
+
+    // Thief methods
+
+    /**
+     * Removes and returns the element at the top, the one pushed first.
+     *
+     * @return the element, or `null` if the deque is empty
+     */
+    public E steal() {
+        for (; ; ) {
+            long t = top.get();
+            long b = bottom.get();
+            if (t >= b) {
+                return null;
+            }
+            Object x = buffer.get(t);
+            if (top.compareAndSet(t, t + 1)) {
+                return unmask(x);
+            }
+            // Lost against another thief or the owner, try the next element
+        }
+    }
+
+    /**
+     * Returns the number of elements.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        long n = bottom.get() - top.get();
+        return (int) Math.max(0, Math.min(n, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns `true` if there are no elements.
+     *
+     * @return `true` if empty
+     */
+    public boolean isEmpty() {
+        return bottom.get() - top.get() <= 0;
+    }
+
+    // Helper classes
+
+    /** A circular array indexed by the unbounded top and bottom indexes. */
+    @SuppressWarnings("serial")
+    private static final class Buffer extends AtomicReferenceArray<Object> {
+        private final int mask;
+
+        Buffer(int size) {
+            super(size);
+            this.mask = size - 1;
+        }
+
+        Object get(long i) {
+            return get((int) i & mask);
+        }
+
+        void put(long i, Object e) {
+            lazySet((int) i & mask, e);
+        }
+
+        /** Returns a buffer of twice the size holding the elements from top to bottom. */
+        Buffer grow(long top, long bottom) {
+            Buffer grown = new Buffer(2 * length());
+            for (long i = top; i < bottom; i++) {
+                grown.put(i, get(i));
+            }
+            return grown;
+        }
+    }
+}
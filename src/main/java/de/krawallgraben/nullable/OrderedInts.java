@@ -0,0 +1,186 @@
+package de.krawallgraben.nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Release stores and acquire loads of big-endian ints in a direct byte buffer, such as a
+ * memory-mapped file read by other threads or processes. Indices must be multiples of four.
+ *
+ * <p>Java 11+ loads an overlay from {@code META-INF/versions} that uses a byte buffer view {@code
+ * VarHandle} directly. This version looks that handle up by reflection on Java 9 and 10 and
+ * otherwise calls {@code Unsafe.putOrderedInt} and {@code Unsafe.getIntVolatile} on the address of
+ * the buffer. If neither is available, no instance can be created.
+ */
+final class OrderedInts {
+
+    /** {@code VarHandle.setRelease} of a big-endian byte buffer view, or null. */
+    private static final MethodHandle SET_RELEASE;
+
+    /** {@code VarHandle.getAcquire} of a big-endian byte buffer view, or null. */
+    private static final MethodHandle GET_ACQUIRE;
+
+    /** {@code Unsafe.putOrderedInt(Object, long, int)} bound to the instance, or null. */
+    private static final MethodHandle PUT_ORDERED;
+
+    /** {@code Unsafe.getIntVolatile(Object, long)} bound to the instance, or null. */
+    private static final MethodHandle GET_VOLATILE;
+
+    /** The private {@code Buffer.address} field, or null. */
+    private static final Field ADDRESS;
+
+    private static final boolean SWAP = ByteOrder.nativeOrder() != ByteOrder.BIG_ENDIAN;
+
+    static {
+        MethodHandle setRelease = null;
+        MethodHandle getAcquire = null;
+        MethodHandle put = null;
+        MethodHandle get = null;
+        Field address = null;
+        try {
+            Class<?> type = Class.forName("java.lang.invoke.VarHandle");
+            Object handle =
+                    MethodHandles.class
+                            .getMethod("byteBufferViewVarHandle", Class.class, ByteOrder.class)
+                            .invoke(null, int[].class, ByteOrder.BIG_ENDIAN);
+            Class<?> modes = Class.forName("java.lang.invoke.VarHandle$AccessMode");
+            Method toMethodHandle = type.getMethod("toMethodHandle", modes);
+            setRelease =
+                    (MethodHandle) toMethodHandle.invoke(handle, accessMode(modes, "SET_RELEASE"));
+            getAcquire =
+                    (MethodHandle) toMethodHandle.invoke(handle, accessMode(modes, "GET_ACQUIRE"));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            setRelease = null;
+            getAcquire = null;
+        }
+        if (setRelease == null) {
+            try {
+                Class<?> type = Class.forName("sun.misc.Unsafe");
+                Field instance = type.getDeclaredField("theUnsafe");
+                instance.setAccessible(true);
+                Object unsafe = instance.get(null);
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                put =
+                        lookup.unreflect(
+                                        type.getMethod(
+                                                "putOrderedInt",
+                                                Object.class,
+                                                long.class,
+                                                int.class))
+                                .bindTo(unsafe);
+                get =
+                        lookup.unreflect(type.getMethod("getIntVolatile", Object.class, long.class))
+                                .bindTo(unsafe);
+                address = Buffer.class.getDeclaredField("address");
+                address.setAccessible(true);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                put = null;
+                get = null;
+                address = null;
+            }
+        }
+        SET_RELEASE = setRelease;
+        GET_ACQUIRE = getAcquire;
+        PUT_ORDERED = put;
+        GET_VOLATILE = get;
+        ADDRESS = address;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object accessMode(Class<?> modes, String name) {
+        return Enum.valueOf((Class) modes, name);
+    }
+
+    private final ByteBuffer buffer;
+    private final long address;
+
+    /**
+     * Creates ordered access to the given buffer, which must be direct.
+     *
+     * @param buffer the buffer; kept reachable so that its memory stays mapped
+     */
+    OrderedInts(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer is not direct");
+        }
+        this.buffer = buffer;
+        long base = 0;
+        if (SET_RELEASE == null) {
+            if (ADDRESS == null) {
+                throw new UnsupportedOperationException(
+                        "neither VarHandle nor Unsafe is available for ordered access");
+            }
+            try {
+                base = ADDRESS.getLong(buffer);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        this.address = base;
+    }
+
+    /**
+     * Stores an int so that no earlier store becomes visible after it.
+     *
+     * @param index the byte index
+     * @param value the value
+     */
+    void putRelease(int index, int value) {
+        if (SET_RELEASE != null) {
+            try {
+                SET_RELEASE.invokeExact(buffer, index, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+        long at = address + check(index);
+        try {
+            PUT_ORDERED.invokeExact((Object) null, at, swap(value));
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Loads an int so that no later load happens before it.
+     *
+     * @param index the byte index
+     * @return the value
+     */
+    int getAcquire(int index) {
+        if (GET_ACQUIRE != null) {
+            try {
+                return (int) GET_ACQUIRE.invokeExact(buffer, index);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        long at = address + check(index);
+        try {
+            return swap((int) GET_VOLATILE.invokeExact((Object) null, at));
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int check(int index) {
+        if (index < 0 || index > buffer.capacity() - Integer.BYTES) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return index;
+    }
+
+    private static int swap(int value) {
+        return SWAP ? Integer.reverseBytes(value) : value;
+    }
+}
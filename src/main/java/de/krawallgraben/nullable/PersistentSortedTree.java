@@ -0,0 +1,481 @@
+package de.krawallgraben.nullable;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A persistent AVL tree with a compare-and-set root, shared by the sorted maps that need consistent
+ * snapshots or subtree aggregates.
+ *
+ * <p>Nodes are immutable. A write copies the path from the root to the changed node, rebalances it
+ * and publishes the new root with a single compare-and-set. Readers take the current root and work
+ * on it as a consistent snapshot without any synchronization. Nodes that are no longer reachable
+ * from a root held by anyone are reclaimed by the garbage collector.
+ *
+ * <p>Keys and values are stored as they are, including `null`. The comparator must order `null`
+ * keys. Every node caches the size of its subtree and, if an {@link Aggregator} is given, the
+ * aggregate of its subtree.
+ *
+ * <p>A tree is serializable if its comparator, aggregator, keys and values are.
+ */
+@SuppressWarnings("serial")
+final class PersistentSortedTree implements Serializable {
+
+    /** Return value of an update function that keeps the current mapping. */
+    static final Object KEEP = new Object();
+
+    /** Return value of an update function that removes the current mapping. */
+    static final Object REMOVE = new Object();
+
+    private static final AtomicReferenceFieldUpdater<PersistentSortedTree, Node> ROOT =
+            AtomicReferenceFieldUpdater.newUpdater(PersistentSortedTree.class, Node.class, "root");
+
+    /** Compare-and-set attempts a writer makes before it falls back to the write lock. */
+    static final int OPTIMISTIC_ATTEMPTS = 8;
+
+    final Comparator<Object> comparator;
+
+    /** Aggregator for subtree aggregates, or `null` if none are maintained. */
+    final Aggregator aggregator;
+
+    /** Current root, `null` if the tree is empty. */
+    private volatile Node root;
+
+    /** Serializes writers that failed {@link #OPTIMISTIC_ATTEMPTS} times in a row. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    PersistentSortedTree(Comparator<Object> comparator, Aggregator aggregator) {
+        this(comparator, aggregator, null);
+    }
+
+    private PersistentSortedTree(Comparator<Object> comparator, Aggregator aggregator, Node root) {
+        this.comparator = comparator;
+        this.aggregator = aggregator;
+        this.root = root;
+    }
+
+    /**
+     * Returns a comparator that sorts `null` first and other keys by the given comparator or, if it
+     * is `null`, by their natural ordering.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Comparator<Object> nullsFirst(Comparator<?> comparator) {
+        Comparator<Object> order =
+                comparator != null
+                        ? (Comparator<Object>) comparator
+                        : (Comparator) Comparator.naturalOrder(); // serializable
+        return Comparator.nullsFirst(order);
+    }
+
+    /** Computes subtree aggregates. The combine function must be associative. */
+    interface Aggregator {
+
+        /** Returns the aggregate of no mappings. */
+        Object identity();
+
+        /** Returns the aggregate of a single mapping. */
+        Object lift(Object key, Object value);
+
+        /** Combines the aggregates of two adjacent key ranges, the lower one first. */
+        Object combine(Object lower, Object upper);
+    }
+
+    /** Immutable tree node. */
+    @SuppressWarnings("serial")
+    static final class Node implements Serializable {
+        final Object key;
+        final Object value;
+        final Node left;
+        final Node right;
+        final int height;
+        final int size;
+        final Object aggregate;
+
+        Node(Object key, Object value, Node left, Node right, Object aggregate) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+            this.aggregate = aggregate;
+        }
+    }
+
+    /** Key range with optional bounds. A `null` bound is a key like any other. */
+    static final class Range {
+        static final Range ALL = new Range(false, null, false, false, null, false);
+
+        final boolean hasLow;
+        final Object low;
+        final boolean lowInclusive;
+        final boolean hasHigh;
+        final Object high;
+        final boolean highInclusive;
+
+        Range(
+                boolean hasLow,
+                Object low,
+                boolean lowInclusive,
+                boolean hasHigh,
+                Object high,
+                boolean highInclusive) {
+            this.hasLow = hasLow;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.hasHigh = hasHigh;
+            this.high = high;
+            this.highInclusive = highInclusive;
+        }
+
+        boolean tooLow(Comparator<Object> comparator, Object key) {
+            if (!hasLow) return false;
+            int c = comparator.compare(key, low);
+            return c < 0 || (c == 0 && !lowInclusive);
+        }
+
+        boolean tooHigh(Comparator<Object> comparator, Object key) {
+            if (!hasHigh) return false;
+            int c = comparator.compare(key, high);
+            return c > 0 || (c == 0 && !highInclusive);
+        }
+    }
+
+    static int height(Node n) {
+        return n == null ? 0 : n.height;
+    }
+
+    static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+
+    // Root access
+
+    Node root() {
+        return root;
+    }
+
+    /** Returns a new tree with the same configuration that starts from the given root. */
+    PersistentSortedTree fork(Node root) {
+        return new PersistentSortedTree(comparator, aggregator, root);
+    }
+
+    /** Replaces the root unconditionally. */
+    void setRoot(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Atomically replaces the root with the result of the given function, retrying on contention.
+     * The function may be called more than once.
+     *
+     * <p>After {@link #OPTIMISTIC_ATTEMPTS} failed attempts the writer takes {@link #writeLock}.
+     * While it is held, other writers queue on it instead of retrying optimistically, so a slow
+     * function cannot be starved by a stream of short writes.
+     *
+     * @return the root the function was applied to successfully
+     */
+    Node transform(UnaryOperator<Node> function) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS && !writeLock.isLocked(); attempt++) {
+            Node current = root;
+            Node updated = function.apply(current);
+            if (updated == current || ROOT.compareAndSet(this, current, updated)) {
+                return current;
+            }
+        }
+        writeLock.lock();
+        try {
+            for (; ; ) {
+                Node current = root;
+                Node updated = function.apply(current);
+                if (updated == current || ROOT.compareAndSet(this, current, updated)) {
+                    return current;
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Atomically updates the mapping for a key. The function receives the current node or `null`
+     * and returns the new value, {@link #KEEP} or {@link #REMOVE}. It may be called more than once.
+     *
+     * @return the node the successful decision was based on, or `null` if the key was absent
+     */
+    Node update(Object key, Function<Node, Object> decision) {
+        Node[] decided = new Node[1];
+        transform(
+                current -> {
+                    Node node = find(current, key);
+                    decided[0] = node;
+                    Object value = decision.apply(node);
+                    if (value == KEEP || (value == REMOVE && node == null)) {
+                        return current;
+                    } else if (value == REMOVE) {
+                        return remove(current, key);
+                    } else {
+                        return put(current, key, value);
+                    }
+                });
+        return decided[0];
+    }
+
+    // Queries on a root
+
+    Node find(Node n, Object key) {
+        while (n != null) {
+            int c = comparator.compare(key, n.key);
+            if (c == 0) {
+                return n;
+            }
+            n = c < 0 ? n.left : n.right;
+        }
+        return null;
+    }
+
+    static Node first(Node n) {
+        if (n == null) return null;
+        while (n.left != null) n = n.left;
+        return n;
+    }
+
+    static Node last(Node n) {
+        if (n == null) return null;
+        while (n.right != null) n = n.right;
+        return n;
+    }
+
+    /** Returns the node with the least key greater than (or equal to) the given key. */
+    Node ceiling(Node n, Object key, boolean inclusive) {
+        Node result = null;
+        while (n != null) {
+            int c = comparator.compare(key, n.key);
+            if (c < 0 || (c == 0 && inclusive)) {
+                result = n;
+                if (c == 0) break;
+                n = n.left;
+            } else {
+                n = n.right;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the node with the greatest key less than (or equal to) the given key. */
+    Node floor(Node n, Object key, boolean inclusive) {
+        Node result = null;
+        while (n != null) {
+            int c = comparator.compare(key, n.key);
+            if (c > 0 || (c == 0 && inclusive)) {
+                result = n;
+                if (c == 0) break;
+                n = n.right;
+            } else {
+                n = n.left;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of keys in the range, in O(log n). */
+    int count(Node n, Range range) {
+        n = split(n, range);
+        if (n == null) return 0;
+        int count = 1;
+        for (Node l = n.left; l != null; ) {
+            if (range.tooLow(comparator, l.key)) {
+                l = l.right;
+            } else {
+                count += 1 + size(l.right);
+                l = l.left;
+            }
+        }
+        for (Node r = n.right; r != null; ) {
+            if (range.tooHigh(comparator, r.key)) {
+                r = r.left;
+            } else {
+                count += 1 + size(r.left);
+                r = r.right;
+            }
+        }
+        return count;
+    }
+
+    /** Returns the aggregate of all mappings in the range, in O(log n). */
+    Object aggregate(Node n, Range range) {
+        n = split(n, range);
+        if (n == null) return aggregator.identity();
+        // Mappings below the split node, collected from right to left
+        Object lower = aggregator.identity();
+        for (Node l = n.left; l != null; ) {
+            if (range.tooLow(comparator, l.key)) {
+                l = l.right;
+            } else {
+                Object part = lift(l);
+                if (l.right != null) part = aggregator.combine(part, l.right.aggregate);
+                lower = aggregator.combine(part, lower);
+                l = l.left;
+            }
+        }
+        // Mappings above the split node, collected from left to right
+        Object upper = aggregator.identity();
+        for (Node r = n.right; r != null; ) {
+            if (range.tooHigh(comparator, r.key)) {
+                r = r.left;
+            } else {
+                Object part = lift(r);
+                if (r.left != null) part = aggregator.combine(r.left.aggregate, part);
+                upper = aggregator.combine(upper, part);
+                r = r.right;
+            }
+        }
+        return aggregator.combine(aggregator.combine(lower, lift(n)), upper);
+    }
+
+    /** Returns the highest node whose key lies in the range, or `null`. */
+    private Node split(Node n, Range range) {
+        while (n != null) {
+            if (range.tooLow(comparator, n.key)) {
+                n = n.right;
+            } else if (range.tooHigh(comparator, n.key)) {
+                n = n.left;
+            } else {
+                return n;
+            }
+        }
+        return null;
+    }
+
+    private Object lift(Node n) {
+        return aggregator.lift(n.key, n.value);
+    }
+
+    /** Returns an iterator over the nodes of the range in ascending key order. */
+    Iterator<Node> iterator(Node root, Range range) {
+        return new NodeIterator(root, range);
+    }
+
+    // Structural updates, returning new roots
+
+    Node put(Node n, Object key, Object value) {
+        if (n == null) {
+            return node(key, value, null, null);
+        }
+        int c = comparator.compare(key, n.key);
+        if (c == 0) {
+            return node(n.key, value, n.left, n.right);
+        }
+        if (c < 0) {
+            return balance(n.key, n.value, put(n.left, key, value), n.right);
+        }
+        return balance(n.key, n.value, n.left, put(n.right, key, value));
+    }
+
+    Node remove(Node n, Object key) {
+        if (n == null) {
+            return null;
+        }
+        int c = comparator.compare(key, n.key);
+        if (c < 0) {
+            Node left = remove(n.left, key);
+            return left == n.left ? n : balance(n.key, n.value, left, n.right);
+        }
+        if (c > 0) {
+            Node right = remove(n.right, key);
+            return right == n.right ? n : balance(n.key, n.value, n.left, right);
+        }
+        if (n.left == null) return n.right;
+        if (n.right == null) return n.left;
+        Node successor = first(n.right);
+        return balance(successor.key, successor.value, n.left, removeFirst(n.right));
+    }
+
+    private Node removeFirst(Node n) {
+        if (n.left == null) {
+            return n.right;
+        }
+        return balance(n.key, n.value, removeFirst(n.left), n.right);
+    }
+
+    private Node node(Object key, Object value, Node left, Node right) {
+        Object aggregate = null;
+        if (aggregator != null) {
+            aggregate = aggregator.lift(key, value);
+            if (left != null) aggregate = aggregator.combine(left.aggregate, aggregate);
+            if (right != null) aggregate = aggregator.combine(aggregate, right.aggregate);
+        }
+        return new Node(key, value, left, right, aggregate);
+    }
+
+    private Node balance(Object key, Object value, Node left, Node right) {
+        int hl = height(left);
+        int hr = height(right);
+        if (hl > hr + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return node(left.key, left.value, left.left, node(key, value, left.right, right));
+            }
+            Node lr = left.right;
+            return node(
+                    lr.key,
+                    lr.value,
+                    node(left.key, left.value, left.left, lr.left),
+                    node(key, value, lr.right, right));
+        }
+        if (hr > hl + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return node(
+                        right.key, right.value, node(key, value, left, right.left), right.right);
+            }
+            Node rl = right.left;
+            return node(
+                    rl.key,
+                    rl.value,
+                    node(key, value, left, rl.left),
+                    node(right.key, right.value, rl.right, right.right));
+        }
+        return node(key, value, left, right);
+    }
+
+    /** In-order iterator over a range of a fixed root. */
+    private final class NodeIterator implements Iterator<Node> {
+        private final ArrayDeque<Node> stack = new ArrayDeque<>();
+        private final Range range;
+
+        NodeIterator(Node n, Range range) {
+            this.range = range;
+            while (n != null) {
+                if (range.tooLow(comparator, n.key)) {
+                    n = n.right;
+                } else {
+                    stack.push(n);
+                    n = n.left;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && !range.tooHigh(comparator, stack.peek().key);
+        }
+
+        @Override
+        public Node next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node n = stack.pop();
+            for (Node c = n.right; c != null; c = c.left) {
+                stack.push(c);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package de.krawallgraben.nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, memory-mapped file of entries sorted by their encoded keys.
+ *
+ * <p>Layout, all numbers big-endian:
+ *
+ * <pre>
+ * magic (int)
+ * blocks of entries, each about {@link #BLOCK_SIZE} bytes:
+ *   shared key prefix length (varint), suffix length (varint), suffix bytes,
+ *   flag (byte, 0 = null value, 1 = value), [value length (varint), value bytes]
+ * index, one record per block:
+ *   block offset (int), first key length (int), first key bytes
+ * footer: index offset (long), entry count (long), block count (int), magic (int)
+ * </pre>
+ *
+ * <p>Keys are prefix-compressed against the previous key of the same block. The first key of every
+ * block is stored in full, so a block can be decoded on its own. Only the sparse index is loaded
+ * onto the heap; a lookup binary-searches it and decodes a single block.
+ *
+ * <p>The `null` key is stored as the empty byte sequence.
+ */
+final class SortedFile {
+
+    static final int BLOCK_SIZE = 4096;
+
+    private static final int MAGIC = 0x4E534631; // "NSF1"
+    private static final int FOOTER_SIZE = 24;
+    private static final byte NULL_VALUE = 0;
+    private static final byte VALUE = 1;
+    private static final byte[] NULL_KEY = new byte[0];
+
+    private final ByteBuffer buffer;
+
+    /** Offsets of the blocks, followed by the offset of the index. */
+    private final int[] blockOffsets;
+
+    private final byte[][] firstKeys;
+    private final long entryCount;
+
+    /**
+     * Maps a file written by {@link #write}.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be read or has an invalid format
+     */
+    SortedFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("file exceeds 2 GiB: " + file);
+            }
+            if (size < 4 + FOOTER_SIZE) {
+                throw new IOException("not a sorted file: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int footer = buffer.capacity() - FOOTER_SIZE;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(footer + 20) != MAGIC) {
+            throw new IOException("not a sorted file: " + file);
+        }
+        int indexOffset = (int) buffer.getLong(footer);
+        entryCount = buffer.getLong(footer + 8);
+        int blockCount = buffer.getInt(footer + 16);
+        blockOffsets = new int[blockCount + 1];
+        firstKeys = new byte[blockCount][];
+        int p = indexOffset;
+        for (int i = 0; i < blockCount; i++) {
+            blockOffsets[i] = buffer.getInt(p);
+            firstKeys[i] = bytes(p + 8, buffer.getInt(p + 4));
+            p += 8 + firstKeys[i].length;
+        }
+        blockOffsets[blockCount] = indexOffset;
+    }
+
+    /**
+     * Writes the entries of a map, which must be iterated in strictly ascending order of their
+     * encoded keys. The encoding of a non-null key must not be empty, since the empty encoding is
+     * reserved for the `null` key.
+     *
+     * <p>The entries are written to a temporary file in the same directory, which then atomically
+     * replaces the target. If writing fails, an existing target is left untouched.
+     *
+     * @throws IllegalArgumentException if the keys are not in ascending order or a non-null key has
+     *     an empty encoding
+     * @throws IOException if the file cannot be written or would exceed 2 GiB
+     */
+    static <K, V> void write(
+            Map<? extends K, ? extends V> map,
+            Path file,
+            ByteKeyEncoder<? super K> keyCodec,
+            ByteKeyEncoder<? super V> valueCodec)
+            throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        boolean written = false;
+        try {
+            writeTo(map, temp, keyCodec, valueCodec);
+            try {
+                Files.move(
+                        temp,
+                        file,
+                        StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private static <K, V> void writeTo(
+            Map<? extends K, ? extends V> map,
+            Path file,
+            ByteKeyEncoder<? super K> keyCodec,
+            ByteKeyEncoder<? super V> valueCodec)
+            throws IOException {
+        List<Integer> offsets = new ArrayList<>();
+        List<byte[]> keys = new ArrayList<>();
+        long count = 0;
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            byte[] previous = null;
+            int blockStart = 0;
+            for (Map.Entry<? extends K, ? extends V> e : map.entrySet()) {
+                K k = e.getKey();
+                byte[] key = k == null ? NULL_KEY : keyCodec.encode(k);
+                if (k != null && key.length == 0) {
+                    throw new IllegalArgumentException("empty encoding of a non-null key: " + k);
+                }
+                int shared = 0;
+                if (previous != null) {
+                    if (ByteArrays.compareUnsigned(previous, key) >= 0) {
+                        throw new IllegalArgumentException(
+                                "keys are not in ascending order of their encodings");
+                    }
+                    shared = commonPrefix(previous, key);
+                }
+                if (previous == null || out.size() - blockStart >= BLOCK_SIZE) {
+                    blockStart = out.size();
+                    offsets.add(blockStart);
+                    keys.add(key);
+                    shared = 0;
+                }
+                writeVarInt(out, shared);
+                writeVarInt(out, key.length - shared);
+                out.write(key, shared, key.length - shared);
+                V v = e.getValue();
+                if (v == null) {
+                    out.writeByte(NULL_VALUE);
+                } else {
+                    byte[] value = valueCodec.encode(v);
+                    out.writeByte(VALUE);
+                    writeVarInt(out, value.length);
+                    out.write(value);
+                }
+                previous = key;
+                count++;
+            }
+            int indexOffset = out.size();
+            for (int i = 0; i < offsets.size(); i++) {
+                out.writeInt(offsets.get(i));
+                out.writeInt(keys.get(i).length);
+                out.write(keys.get(i));
+            }
+            out.writeLong(indexOffset);
+            out.writeLong(count);
+            out.writeInt(offsets.size());
+            out.writeInt(MAGIC);
+            if (out.size() == Integer.MAX_VALUE) { // size() saturates
+                throw new IOException("file exceeds 2 GiB: " + file);
+            }
+        }
+    }
+
+    /** Returns the number of entries. */
+    long size() {
+        return entryCount;
+    }
+
+    // Lookups
+
+    /** Returns a cursor on the first entry, or `null` if the file is empty. */
+    Cursor first() {
+        return ceiling(NULL_KEY, true);
+    }
+
+    /** Returns a cursor on the last entry, or `null` if the file is empty. */
+    Cursor last() {
+        return firstKeys.length == 0 ? null : scanBlock(firstKeys.length - 1, null, true);
+    }
+
+    /** Returns a cursor on the entry with the given key, or `null`. */
+    Cursor find(byte[] key) {
+        Cursor c = floor(key, true);
+        return c != null && c.compareKey(key) == 0 ? c : null;
+    }
+
+    /** Returns a cursor on the least entry greater than (or equal to) the key, or `null`. */
+    Cursor ceiling(byte[] key, boolean inclusive) {
+        if (firstKeys.length == 0) {
+            return null;
+        }
+        Cursor c = new Cursor(Math.max(block(key, true), 0));
+        while (c.advance()) {
+            int cmp = c.compareKey(key);
+            if (cmp > 0 || (cmp == 0 && inclusive)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /** Returns a cursor on the greatest entry less than (or equal to) the key, or `null`. */
+    Cursor floor(byte[] key, boolean inclusive) {
+        int block = block(key, inclusive);
+        return block < 0 ? null : scanBlock(block, key, inclusive);
+    }
+
+    /**
+     * Returns the last entry of a block that is less than (or equal to) the key, or the last entry
+     * of the block if the key is `null`. The first entry of the block must qualify.
+     */
+    private Cursor scanBlock(int block, byte[] key, boolean inclusive) {
+        // The result trails the probe by one entry
+        Cursor result = new Cursor(block);
+        Cursor probe = new Cursor(block);
+        result.advance();
+        probe.advance();
+        while (probe.advance() && probe.block == block) {
+            if (key != null) {
+                int cmp = probe.compareKey(key);
+                if (cmp > 0 || (cmp == 0 && !inclusive)) {
+                    break;
+                }
+            }
+            result.advance();
+        }
+        return result;
+    }
+
+    /** Returns the last block whose first key is less than (or equal to) the key, or -1. */
+    private int block(byte[] key, boolean inclusive) {
+        int low = 0;
+        int high = firstKeys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = ByteArrays.compareUnsigned(firstKeys[mid], key);
+            if (cmp < 0 || (cmp == 0 && inclusive)) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    // Helper methods and classes
+
+    private byte[] bytes(int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return bytes;
+    }
+
+    private static int commonPrefix(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < length && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Forward cursor over the entries, starting before the first entry of a block and continuing
+     * into the following blocks.
+     */
+    final class Cursor {
+        private int block;
+        private int next;
+        private byte[] key = new byte[32];
+        private int keyLength;
+        private int valueOffset;
+        private int valueLength;
+
+        private Cursor(int block) {
+            this.block = block;
+            this.next = blockOffsets[block];
+        }
+
+        /** Moves to the next entry, returning `false` at the end of the file. */
+        boolean advance() {
+            if (next == blockOffsets[block + 1]) {
+                if (block + 1 == firstKeys.length) {
+                    return false;
+                }
+                block++;
+            }
+            int shared = readVarInt();
+            int suffix = readVarInt();
+            keyLength = shared + suffix;
+            if (keyLength > key.length) {
+                key = Arrays.copyOf(key, Math.max(key.length * 2, keyLength));
+            }
+            for (int i = shared; i < keyLength; i++) {
+                key[i] = buffer.get(next++);
+            }
+            if (buffer.get(next++) == NULL_VALUE) {
+                valueLength = -1;
+            } else {
+                valueLength = readVarInt();
+                valueOffset = next;
+                next += valueLength;
+            }
+            return true;
+        }
+
+        /** Compares the current key with the given one as unsigned bytes. */
+        int compareKey(byte[] other) {
+            int length = Math.min(keyLength, other.length);
+            for (int i = 0; i < length; i++) {
+                if (key[i] != other[i]) {
+                    return (key[i] & 0xFF) - (other[i] & 0xFF);
+                }
+            }
+            return keyLength - other.length;
+        }
+
+        /** Returns a copy of the current key. */
+        byte[] key() {
+            return Arrays.copyOf(key, keyLength);
+        }
+
+        /** Returns `true` if the current value is not `null`. */
+        boolean hasValue() {
+            return valueLength >= 0;
+        }
+
+        /** Returns a copy of the current value encoding. */
+        byte[] value() {
+            return bytes(valueOffset, valueLength);
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(next++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
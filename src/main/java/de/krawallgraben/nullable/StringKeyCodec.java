@@ -0,0 +1,33 @@
+package de.krawallgraben.nullable;
+
+/**
+ * The codec returned by {@link ByteKeyEncoder#strings()} and {@link ByteKeyCodec#strings()}. A
+ * single instance lets maps recognize the string encoding.
+ */
+enum StringKeyCodec implements ByteKeyCodec<String> {
+    INSTANCE;
+
+    @Override
+    public byte[] encode(String key) {
+        return new ByteKeyEncoder.Builder(key.length() + 2).add(key).toByteArray();
+    }
+
+    @Override
+    public String decode(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length);
+        for (int i = 1; bytes[i] != 0; i++) {
+            int b = bytes[i] & 0xFF;
+            if (b < 0x80) {
+                sb.append((char) (b - 1));
+            } else if (b < 0xC0) {
+                int d = (b - 0x80) * 255 + (bytes[++i] & 0xFF) - 1;
+                sb.append((char) (d + 0x7F));
+            } else {
+                int d = ((bytes[++i] & 0xFF) - 1) * 255;
+                d += (bytes[++i] & 0xFF) - 1;
+                sb.append((char) (d + 0x7F + 64 * 255));
+            }
+        }
+        return sb.toString();
+    }
+}
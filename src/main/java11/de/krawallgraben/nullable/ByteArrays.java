@@ -0,0 +1,25 @@
+package de.krawallgraben.nullable;
+
+import java.util.Arrays;
+
+/**
+ * Unsigned lexicographic comparison of byte arrays.
+ *
+ * <p>Java 11+ overlay, delegates to the vectorized {@link Arrays#compareUnsigned(byte[], byte[])}.
+ */
+final class ByteArrays {
+
+    private ByteArrays() {}
+
+    /**
+     * Compares two byte arrays lexicographically, treating elements as unsigned. A proper prefix is
+     * less than the longer array.
+     *
+     * @param a the first array
+     * @param b the second array
+     * @return a negative value, zero, or a positive value
+     */
+    static int compareUnsigned(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+}
@@ -0,0 +1,52 @@
+package de.krawallgraben.nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Release stores and acquire loads of big-endian ints in a direct byte buffer, such as a
+ * memory-mapped file read by other threads or processes. Indices must be multiples of four.
+ *
+ * <p>Java 11+ overlay, uses a byte buffer view {@link VarHandle}.
+ */
+final class OrderedInts {
+
+    private static final VarHandle INT =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates ordered access to the given buffer, which must be direct.
+     *
+     * @param buffer the buffer; kept reachable so that its memory stays mapped
+     */
+    OrderedInts(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer is not direct");
+        }
+        this.buffer = buffer;
+    }
+
+    /**
+     * Stores an int so that no earlier store becomes visible after it.
+     *
+     * @param index the byte index
+     * @param value the value
+     */
+    void putRelease(int index, int value) {
+        INT.setRelease(buffer, index, value);
+    }
+
+    /**
+     * Loads an int so that no later load happens before it.
+     *
+     * @param index the byte index
+     * @return the value
+     */
+    int getAcquire(int index) {
+        return (int) INT.getAcquire(buffer, index);
+    }
+}
@@ -0,0 +1,71 @@
+package de.krawallgraben.nullable.benchmark;
+
+import de.krawallgraben.nullable.NullableAggregatingSortedMap;
+import de.krawallgraben.nullable.NullableSortedConcurrentMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 1)
+public class AggregationBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    private NullableSortedConcurrentMap<Long, Long> sortedMap;
+    private NullableAggregatingSortedMap<Long, Long> aggregatingMap;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        sortedMap = new NullableSortedConcurrentMap<>();
+        aggregatingMap = new NullableAggregatingSortedMap<>(0L, Long::sum);
+        for (long i = 0; i < size; i++) {
+            sortedMap.put(i, i);
+            aggregatingMap.put(i, i);
+        }
+    }
+
+    // Range sum over half of the keys
+    @Benchmark
+    public void sumBySubMapScan(org.openjdk.jmh.infra.Blackhole bh) {
+        long sum = 0;
+        for (Long value : sortedMap.subMap(size / 4L, size * 3L / 4).values()) {
+            sum += value;
+        }
+        bh.consume(sum);
+    }
+
+    @Benchmark
+    public void sumByAggregate(org.openjdk.jmh.infra.Blackhole bh) {
+        bh.consume(aggregatingMap.aggregate(size / 4L, size * 3L / 4));
+    }
+
+    // Full sum, sequential vs. split along the skip-list index levels
+    @Benchmark
+    public void sumByForEach(org.openjdk.jmh.infra.Blackhole bh) {
+        long[] sum = new long[1];
+        sortedMap.forEach((k, v) -> sum[0] += v);
+        bh.consume(sum[0]);
+    }
+
+    @Benchmark
+    public void sumByParallelReduce(org.openjdk.jmh.infra.Blackhole bh) {
+        bh.consume(sortedMap.parallelReduce(0L, (k, v) -> v, Long::sum));
+    }
+
+    // Write (Put)
+    @Benchmark
+    public void putSortedMap(org.openjdk.jmh.infra.Blackhole bh) {
+        bh.consume(sortedMap.put(size / 2L, 1L));
+    }
+
+    @Benchmark
+    public void putAggregatingMap(org.openjdk.jmh.infra.Blackhole bh) {
+        bh.consume(aggregatingMap.put(size / 2L, 1L));
+    }
+}
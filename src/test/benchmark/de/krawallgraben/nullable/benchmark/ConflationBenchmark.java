@@ -0,0 +1,53 @@
+package de.krawallgraben.nullable.benchmark;
+
+import de.krawallgraben.nullable.NullableConcurrentQueue;
+import de.krawallgraben.nullable.NullableConflatingQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** A consumer that falls behind: 1000 updates over 16 keys, then the consumer catches up. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 1)
+public class ConflationBenchmark {
+
+    private static final int KEYS = 16;
+    private static final int UPDATES = 1000;
+
+    private NullableConcurrentQueue<Map.Entry<Integer, Integer>> queue;
+    private NullableConflatingQueue<Integer, Integer> conflatingQueue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        queue = new NullableConcurrentQueue<>();
+        conflatingQueue = new NullableConflatingQueue<>();
+    }
+
+    @Benchmark
+    public void burstQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        for (int i = 0; i < UPDATES; i++) {
+            queue.offer(new AbstractMap.SimpleImmutableEntry<>(i % KEYS, i));
+        }
+        Map.Entry<Integer, Integer> e;
+        while ((e = queue.poll()) != null) {
+            bh.consume(e);
+        }
+    }
+
+    @Benchmark
+    public void burstConflatingQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        for (int i = 0; i < UPDATES; i++) {
+            conflatingQueue.offer(i % KEYS, i);
+        }
+        Map.Entry<Integer, Integer> e;
+        while ((e = conflatingQueue.poll()) != null) {
+            bh.consume(e);
+        }
+    }
+}
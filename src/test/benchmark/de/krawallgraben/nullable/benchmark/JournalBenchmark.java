@@ -0,0 +1,53 @@
+package de.krawallgraben.nullable.benchmark;
+
+import de.krawallgraben.nullable.ByteKeyCodec;
+import de.krawallgraben.nullable.NullableJournalQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 1)
+public class JournalBenchmark {
+
+    private Path dir;
+    private NullableJournalQueue<Long> queue;
+    private NullableJournalQueue<Long>.Tailer tailer;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("journal");
+        queue = new NullableJournalQueue<>(dir, ByteKeyCodec.longs());
+        tailer = queue.tailer("benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        queue.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void offerPollJournal(org.openjdk.jmh.infra.Blackhole bh) {
+        queue.offer(next++);
+        bh.consume(tailer.poll());
+    }
+
+    @Benchmark
+    public void offerPollNullJournal(org.openjdk.jmh.infra.Blackhole bh) {
+        queue.offer(null);
+        bh.consume(tailer.poll());
+    }
+}
@@ -0,0 +1,83 @@
+package de.krawallgraben.nullable.benchmark;
+
+import de.krawallgraben.nullable.NullableLongSortedConcurrentMap;
+import de.krawallgraben.nullable.NullableSortedConcurrentMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 1)
+public class LongSortedMapBenchmark {
+
+    @Param({"1000"})
+    private int size;
+
+    private ConcurrentSkipListMap<Long, String> concurrentMap;
+    private NullableSortedConcurrentMap<Long, String> projectMap;
+    private NullableLongSortedConcurrentMap<String> primitiveMap;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        concurrentMap = new ConcurrentSkipListMap<>();
+        projectMap = new NullableSortedConcurrentMap<>();
+        primitiveMap = new NullableLongSortedConcurrentMap<>();
+
+        for (int i = 0; i < size; i++) {
+            long key = i * 10L;
+            String val = "value" + i;
+            concurrentMap.put(key, val);
+            projectMap.put(key, val);
+            primitiveMap.put(key, val);
+        }
+    }
+
+    // Read (Get)
+    @Benchmark
+    public void getConcurrentMap(org.openjdk.jmh.infra.Blackhole bh) {
+        for (long i = 0; i < size; i++) {
+            bh.consume(concurrentMap.get(i * 10L));
+        }
+    }
+
+    @Benchmark
+    public void getProjectMap(org.openjdk.jmh.infra.Blackhole bh) {
+        for (long i = 0; i < size; i++) {
+            bh.consume(projectMap.get(i * 10L));
+        }
+    }
+
+    @Benchmark
+    public void getPrimitiveMap(org.openjdk.jmh.infra.Blackhole bh) {
+        for (long i = 0; i < size; i++) {
+            bh.consume(primitiveMap.get(i * 10L));
+        }
+    }
+
+    // Navigation (Floor)
+    @Benchmark
+    public void floorConcurrentMap(org.openjdk.jmh.infra.Blackhole bh) {
+        for (long i = 0; i < size; i++) {
+            bh.consume(concurrentMap.floorEntry(i * 10L + 5));
+        }
+    }
+
+    @Benchmark
+    public void floorProjectMap(org.openjdk.jmh.infra.Blackhole bh) {
+        for (long i = 0; i < size; i++) {
+            bh.consume(projectMap.floorEntry(i * 10L + 5));
+        }
+    }
+
+    @Benchmark
+    public void floorPrimitiveMap(org.openjdk.jmh.infra.Blackhole bh) {
+        for (long i = 0; i < size; i++) {
+            bh.consume(primitiveMap.floorEntry(i * 10L + 5));
+        }
+    }
+}
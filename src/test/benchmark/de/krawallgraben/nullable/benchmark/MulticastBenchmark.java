@@ -0,0 +1,54 @@
+package de.krawallgraben.nullable.benchmark;
+
+import de.krawallgraben.nullable.NullableConcurrentQueue;
+import de.krawallgraben.nullable.NullableMulticastRingBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Fan-out of one event to four consumers: one queue copy per consumer against one shared ring. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 1)
+public class MulticastBenchmark {
+
+    private static final int CONSUMERS = 4;
+
+    private List<NullableConcurrentQueue<String>> queues;
+    private NullableMulticastRingBuffer<String> ring;
+    private List<NullableMulticastRingBuffer.Subscriber<String>> subscribers;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        queues = new ArrayList<>();
+        ring = new NullableMulticastRingBuffer<>(1024);
+        subscribers = new ArrayList<>();
+        for (int i = 0; i < CONSUMERS; i++) {
+            queues.add(new NullableConcurrentQueue<>());
+            subscribers.add(ring.subscribe());
+        }
+    }
+
+    @Benchmark
+    public void fanOutQueues(org.openjdk.jmh.infra.Blackhole bh) {
+        for (NullableConcurrentQueue<String> q : queues) {
+            q.offer("event");
+        }
+        for (NullableConcurrentQueue<String> q : queues) {
+            bh.consume(q.poll());
+        }
+    }
+
+    @Benchmark
+    public void fanOutRing(org.openjdk.jmh.infra.Blackhole bh) {
+        ring.offer("event");
+        for (NullableMulticastRingBuffer.Subscriber<String> s : subscribers) {
+            bh.consume(s.poll());
+        }
+    }
+}
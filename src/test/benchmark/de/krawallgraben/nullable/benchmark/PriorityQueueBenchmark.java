@@ -0,0 +1,65 @@
+package de.krawallgraben.nullable.benchmark;
+
+import de.krawallgraben.nullable.NullableConcurrentPriorityQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 1)
+public class PriorityQueueBenchmark {
+
+    @Param({"1000"})
+    private int size;
+
+    private PriorityQueue<Integer> stdQueue;
+    private PriorityBlockingQueue<Integer> concurrentQueue;
+    private NullableConcurrentPriorityQueue<Integer> projectQueue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        stdQueue = new PriorityQueue<>();
+        concurrentQueue = new PriorityBlockingQueue<>();
+        projectQueue = new NullableConcurrentPriorityQueue<>();
+
+        for (int i = 0; i < size; i++) {
+            stdQueue.offer(i);
+            concurrentQueue.offer(i);
+            projectQueue.offer(i);
+        }
+    }
+
+    // Offer/Poll, the thread-safe variants with 4 threads
+    @Benchmark
+    public void offerPollStdQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        stdQueue.offer(size / 2);
+        bh.consume(stdQueue.poll());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void offerPollConcurrentQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        concurrentQueue.offer(size / 2);
+        bh.consume(concurrentQueue.poll());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void offerPollProjectQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        projectQueue.offer(size / 2);
+        bh.consume(projectQueue.poll());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void offerPollRelaxedProjectQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        projectQueue.offer(size / 2);
+        bh.consume(projectQueue.pollRelaxed());
+    }
+}
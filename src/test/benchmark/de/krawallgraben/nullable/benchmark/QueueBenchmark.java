@@ -1,9 +1,14 @@
 package de.krawallgraben.nullable.benchmark;
 
+import de.krawallgraben.nullable.NullableConcurrentArrayQueue;
 import de.krawallgraben.nullable.NullableConcurrentQueue;
+import de.krawallgraben.nullable.NullableMpscQueue;
+import de.krawallgraben.nullable.NullableSpscQueue;
 import org.openjdk.jmh.annotations.*;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
@@ -22,18 +27,37 @@ public class QueueBenchmark {
     private Queue<String> stdQueue;
     private Queue<String> concurrentQueue;
     private Queue<String> projectQueue;
+    private Queue<String> arrayQueue;
+    private NullableConcurrentQueue<String> trackedQueue;
+    private NullableConcurrentQueue<String> batchQueue;
+    private List<String> batch;
+    private Queue<String> spscQueue;
+    private Queue<String> mpscQueue;
 
     @Setup(Level.Trial)
     public void setup() {
         stdQueue = new LinkedList<>();
         concurrentQueue = new ConcurrentLinkedQueue<>();
         projectQueue = new NullableConcurrentQueue<>(new ConcurrentLinkedQueue<>());
+        arrayQueue = new NullableConcurrentArrayQueue<>(2 * size);
+        trackedQueue = new NullableConcurrentQueue<>(true);
+        batchQueue = new NullableConcurrentQueue<>();
+        batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(i % 10 == 0 ? null : "batch" + i);
+        }
+        spscQueue = new NullableSpscQueue<>(2 * size);
+        mpscQueue = new NullableMpscQueue<>();
 
         for (int i = 0; i < size; i++) {
             String val = "value" + i;
             stdQueue.offer(val);
             concurrentQueue.offer(val);
             projectQueue.offer(val);
+            arrayQueue.offer(val);
+            trackedQueue.offer(val);
+            spscQueue.offer(val);
+            mpscQueue.offer(val);
         }
     }
 
@@ -59,6 +83,13 @@ public class QueueBenchmark {
         }
     }
 
+    @Benchmark
+    public void iterateArrayQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        for (String s : arrayQueue) {
+            bh.consume(s);
+        }
+    }
+
     // Read/Write (Offer/Poll) simulation
     @Benchmark
     public void offerPollStdQueue(org.openjdk.jmh.infra.Blackhole bh) {
@@ -78,6 +109,58 @@ public class QueueBenchmark {
         bh.consume(projectQueue.poll());
     }
 
+    @Benchmark
+    public void offerPollArrayQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        arrayQueue.offer("new");
+        bh.consume(arrayQueue.poll());
+    }
+
+    @Benchmark
+    public void offerPollSpscQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        spscQueue.offer("new");
+        bh.consume(spscQueue.poll());
+    }
+
+    @Benchmark
+    public void offerPollMpscQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        mpscQueue.offer("new");
+        bh.consume(mpscQueue.poll());
+    }
+
+    // Size
+    @Benchmark
+    public int sizeProjectQueue() {
+        return projectQueue.size();
+    }
+
+    @Benchmark
+    public int sizeTrackedQueue() {
+        return trackedQueue.size();
+    }
+
+    @Benchmark
+    public void offerPollTrackedQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        trackedQueue.offer("new");
+        bh.consume(trackedQueue.poll());
+    }
+
+    // Batches of 100 elements
+    @Benchmark
+    public void offerPollBatchProjectQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        for (String s : batch) {
+            batchQueue.offer(s);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            bh.consume(batchQueue.poll());
+        }
+    }
+
+    @Benchmark
+    public void offerAllDrainBatchProjectQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        batchQueue.offerAll(batch);
+        batchQueue.drain(bh::consume, batch.size());
+    }
+
     // Delete (Remove Object)
     @Benchmark
     public void removeStdQueue(org.openjdk.jmh.infra.Blackhole bh) {
@@ -0,0 +1,52 @@
+package de.krawallgraben.nullable.benchmark;
+
+import de.krawallgraben.nullable.NullableConcurrentQueue;
+import de.krawallgraben.nullable.NullableShardedQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Throughput of a shared queue; run with {@code -t 1} up to {@code -t 64} to compare scaling. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 1)
+public class ShardedQueueBenchmark {
+
+    private NullableConcurrentQueue<String> projectQueue;
+    private NullableShardedQueue<String> shardedQueue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        projectQueue = new NullableConcurrentQueue<>();
+        shardedQueue = new NullableShardedQueue<>(64);
+    }
+
+    @Benchmark
+    public void offerPollProjectQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        projectQueue.offer("new");
+        bh.consume(projectQueue.poll());
+    }
+
+    @Benchmark
+    public void offerPollShardedQueue(org.openjdk.jmh.infra.Blackhole bh) {
+        shardedQueue.offer("new");
+        bh.consume(shardedQueue.poll());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void offerPollProjectQueue16(org.openjdk.jmh.infra.Blackhole bh) {
+        projectQueue.offer("new");
+        bh.consume(projectQueue.poll());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void offerPollShardedQueue16(org.openjdk.jmh.infra.Blackhole bh) {
+        shardedQueue.offer("new");
+        bh.consume(shardedQueue.poll());
+    }
+}
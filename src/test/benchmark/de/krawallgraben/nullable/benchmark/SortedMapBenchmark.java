@@ -1,5 +1,6 @@
 package de.krawallgraben.nullable.benchmark;
 
+import de.krawallgraben.nullable.ByteKeyEncoder;
 import de.krawallgraben.nullable.NullableSortedConcurrentMap;
 import org.openjdk.jmh.annotations.*;
 
@@ -23,6 +24,7 @@ public class SortedMapBenchmark {
     private SortedMap<String, String> stdMap;
     private SortedMap<String, String> concurrentMap;
     private SortedMap<String, String> projectMap;
+    private SortedMap<String, String> encodedMap;
 
     private String[] keys;
     private String[] values;
@@ -32,6 +34,7 @@ public class SortedMapBenchmark {
         stdMap = new TreeMap<>();
         concurrentMap = new ConcurrentSkipListMap<>();
         projectMap = new NullableSortedConcurrentMap<>(new ConcurrentSkipListMap<>());
+        encodedMap = new NullableSortedConcurrentMap<>(ByteKeyEncoder.strings());
 
         keys = new String[size];
         values = new String[size];
@@ -42,6 +45,7 @@ public class SortedMapBenchmark {
             stdMap.put(keys[i], values[i]);
             concurrentMap.put(keys[i], values[i]);
             projectMap.put(keys[i], values[i]);
+            encodedMap.put(keys[i], values[i]);
         }
     }
 
@@ -92,6 +96,13 @@ public class SortedMapBenchmark {
         }
     }
 
+    @Benchmark
+    public void getEncodedMap(org.openjdk.jmh.infra.Blackhole bh) {
+        for (int i = 0; i < size; i++) {
+            bh.consume(encodedMap.get(keys[i]));
+        }
+    }
+
     // Write (Put)
     @Benchmark
     public void putStdMap(org.openjdk.jmh.infra.Blackhole bh) {
@@ -132,4 +143,71 @@ public class SortedMapBenchmark {
         bh.consume(projectMap.remove(keys[0]));
         bh.consume(projectMap.put(keys[0], values[0]));
     }
+
+    // Bulk construction
+    @Benchmark
+    public void buildByPutProjectMap(org.openjdk.jmh.infra.Blackhole bh) {
+        NullableSortedConcurrentMap<String, String> map = new NullableSortedConcurrentMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i], values[i]);
+        }
+        bh.consume(map);
+    }
+
+    @Benchmark
+    public void buildFromSortedProjectMap(org.openjdk.jmh.infra.Blackhole bh) {
+        bh.consume(new NullableSortedConcurrentMap<>(stdMap));
+    }
+
+    @Benchmark
+    public void buildFromUnsortedProjectMap(org.openjdk.jmh.infra.Blackhole bh) {
+        NullableSortedConcurrentMap.Builder<String, String> builder =
+                new NullableSortedConcurrentMap.Builder<>();
+        for (int i = size - 1; i >= 0; i--) {
+            builder.put(keys[i], values[i]);
+        }
+        bh.consume(builder.build());
+    }
+
+    // Sequential navigation with nearby keys
+    @Benchmark
+    public void seekNearbyCeilingEntry(org.openjdk.jmh.infra.Blackhole bh) {
+        NullableSortedConcurrentMap<String, String> map =
+                (NullableSortedConcurrentMap<String, String>) projectMap;
+        for (int i = 0; i < size; i += 2) {
+            Map.Entry<String, String> entry = map.ceilingEntry(keys[i]);
+            bh.consume(entry.getKey());
+            bh.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void seekNearbyCursor(org.openjdk.jmh.infra.Blackhole bh) {
+        NullableSortedConcurrentMap<String, String>.Cursor cursor =
+                ((NullableSortedConcurrentMap<String, String>) projectMap).cursor();
+        for (int i = 0; i < size; i += 2) {
+            cursor.seek(keys[i]);
+            bh.consume(cursor.key());
+            bh.consume(cursor.value());
+        }
+    }
+
+    // Merge operations
+    @Benchmark
+    public void intersectByLookup(org.openjdk.jmh.infra.Blackhole bh) {
+        NullableSortedConcurrentMap<String, String> result = new NullableSortedConcurrentMap<>();
+        for (Map.Entry<String, String> entry : projectMap.entrySet()) {
+            if (encodedMap.containsKey(entry.getKey())) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+        bh.consume(result);
+    }
+
+    @Benchmark
+    public void intersectByMergeJoin(org.openjdk.jmh.infra.Blackhole bh) {
+        NullableSortedConcurrentMap<String, String> map =
+                (NullableSortedConcurrentMap<String, String>) projectMap;
+        bh.consume(map.intersect(map, (a, b) -> a));
+    }
 }
@@ -0,0 +1,58 @@
+package de.krawallgraben.nullable.benchmark;
+
+import de.krawallgraben.nullable.NullableConcurrentDeque;
+import de.krawallgraben.nullable.NullableConcurrentStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a shared stack; run with {@code -t 1}, {@code -t 4}, {@code -t 16}, {@code -t 64}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 1)
+public class StackBenchmark {
+
+    private NullableConcurrentDeque<String> deque;
+    private NullableConcurrentStack<String> stack;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        deque = new NullableConcurrentDeque<>();
+        stack = new NullableConcurrentStack<>();
+        for (int i = 0; i < 100; i++) {
+            deque.push("value" + i);
+            stack.push("value" + i);
+        }
+    }
+
+    @Benchmark
+    public void pushPopDeque(org.openjdk.jmh.infra.Blackhole bh) {
+        deque.push("new");
+        bh.consume(deque.pollFirst());
+    }
+
+    @Benchmark
+    public void pushPopStack(org.openjdk.jmh.infra.Blackhole bh) {
+        stack.push("new");
+        bh.consume(stack.pop());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void pushPopDeque64(org.openjdk.jmh.infra.Blackhole bh) {
+        deque.push("new");
+        bh.consume(deque.pollFirst());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void pushPopStack64(org.openjdk.jmh.infra.Blackhole bh) {
+        stack.push("new");
+        bh.consume(stack.pop());
+    }
+}
@@ -0,0 +1,83 @@
+package de.krawallgraben.nullable.benchmark;
+
+import de.krawallgraben.nullable.NullableConcurrentDeque;
+import de.krawallgraben.nullable.NullableWorkStealingDeque;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Fork(value = 1, warmups = 0)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 1, time = 1)
+public class WorkStealingBenchmark {
+
+    @Param({"100"})
+    private int batch;
+
+    private ArrayDeque<String> stdDeque;
+    private NullableConcurrentDeque<String> concurrentDeque;
+    private NullableWorkStealingDeque<String> workStealingDeque;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        stdDeque = new ArrayDeque<>();
+        concurrentDeque = new NullableConcurrentDeque<>();
+        workStealingDeque = new NullableWorkStealingDeque<>();
+    }
+
+    // Owner: push a batch of tasks, then pop them all (LIFO)
+    @Benchmark
+    public void pushPopStdDeque(org.openjdk.jmh.infra.Blackhole bh) {
+        for (int i = 0; i < batch; i++) {
+            stdDeque.push("task");
+        }
+        for (int i = 0; i < batch; i++) {
+            bh.consume(stdDeque.pop());
+        }
+    }
+
+    @Benchmark
+    public void pushPopConcurrentDeque(org.openjdk.jmh.infra.Blackhole bh) {
+        for (int i = 0; i < batch; i++) {
+            concurrentDeque.push("task");
+        }
+        for (int i = 0; i < batch; i++) {
+            bh.consume(concurrentDeque.pop());
+        }
+    }
+
+    @Benchmark
+    public void pushPopWorkStealingDeque(org.openjdk.jmh.infra.Blackhole bh) {
+        for (int i = 0; i < batch; i++) {
+            workStealingDeque.push("task");
+        }
+        for (int i = 0; i < batch; i++) {
+            bh.consume(workStealingDeque.pop());
+        }
+    }
+
+    // Thief: take from the other end
+    @Benchmark
+    public void pushStealConcurrentDeque(org.openjdk.jmh.infra.Blackhole bh) {
+        for (int i = 0; i < batch; i++) {
+            concurrentDeque.push("task");
+        }
+        for (int i = 0; i < batch; i++) {
+            bh.consume(concurrentDeque.pollLast());
+        }
+    }
+
+    @Benchmark
+    public void pushStealWorkStealingDeque(org.openjdk.jmh.infra.Blackhole bh) {
+        for (int i = 0; i < batch; i++) {
+            workStealingDeque.push("task");
+        }
+        for (int i = 0; i < batch; i++) {
+            bh.consume(workStealingDeque.steal());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+
+class ByteKeyEncoderTest {
+
+    @Test
+    void testStringOrderMatchesCompareTo() {
+        ByteKeyEncoder<String> encoder = ByteKeyEncoder.strings();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        char[] alphabet = {'\u0000', 'a', 'b', '~', '\u007f', 'Ā', '䀾', '䀿', '\ud800', '￿'};
+        for (int i = 0; i < 10_000; i++) {
+            String a = randomString(rnd, alphabet);
+            String b = randomString(rnd, alphabet);
+            assertEquals(
+                    Integer.signum(a.compareTo(b)),
+                    Integer.signum(
+                            ByteArrays.compareUnsigned(encoder.encode(a), encoder.encode(b))),
+                    () -> a + " vs " + b);
+        }
+    }
+
+    @Test
+    void testNumberOrder() {
+        long[] longs = {Long.MIN_VALUE, -1L, 0L, 1L, Long.MAX_VALUE};
+        for (int i = 1; i < longs.length; i++) {
+            assertTrue(
+                    ByteArrays.compareUnsigned(
+                                    ByteKeyEncoder.longs().encode(longs[i - 1]),
+                                    ByteKeyEncoder.longs().encode(longs[i]))
+                            < 0);
+        }
+        double[] doubles = {Double.NEGATIVE_INFINITY, -1.5, -0.0, 0.0, 2.0, Double.NaN};
+        for (int i = 1; i < doubles.length; i++) {
+            assertTrue(
+                    ByteArrays.compareUnsigned(
+                                    ByteKeyEncoder.doubles().encode(doubles[i - 1]),
+                                    ByteKeyEncoder.doubles().encode(doubles[i]))
+                            < 0);
+        }
+        assertTrue(
+                ByteArrays.compareUnsigned(
+                                ByteKeyEncoder.ints().encode(-7), ByteKeyEncoder.ints().encode(3))
+                        < 0);
+    }
+
+    @Test
+    void testCompositeKeys() {
+        byte[] nullFirst = new ByteKeyEncoder.Builder().add((String) null).add(5L).toByteArray();
+        byte[] shortName = new ByteKeyEncoder.Builder().add("ab").add(Long.MAX_VALUE).toByteArray();
+        byte[] longName = new ByteKeyEncoder.Builder().add("abc").add(Long.MIN_VALUE).toByteArray();
+        byte[] sameNameLow = new ByteKeyEncoder.Builder().add("ab").add(1L).toByteArray();
+
+        assertTrue(ByteArrays.compareUnsigned(nullFirst, shortName) < 0);
+        assertTrue(ByteArrays.compareUnsigned(shortName, longName) < 0);
+        assertTrue(ByteArrays.compareUnsigned(sameNameLow, shortName) < 0);
+    }
+
+    private static String randomString(ThreadLocalRandom rnd, char[] alphabet) {
+        char[] chars = new char[rnd.nextInt(5)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = alphabet[rnd.nextInt(alphabet.length)];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,135 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import org.junit.jupiter.api.Test;
+
+class NullableAggregatingSortedMapTest {
+
+    @Test
+    void testSumAndMax() {
+        NullableAggregatingSortedMap<Long, Long> sums =
+                new NullableAggregatingSortedMap<>(0L, Long::sum);
+        NullableAggregatingSortedMap<Long, Long> maxima =
+                new NullableAggregatingSortedMap<>(Long.MIN_VALUE, Math::max);
+        for (long i = 1; i <= 10; i++) {
+            sums.put(i, i);
+            maxima.put(i, i * 10 % 7);
+        }
+        sums.put(null, 100L);
+        sums.put(5L, null);
+
+        assertEquals(Long.valueOf(150), sums.aggregate());
+        assertEquals(Long.valueOf(2 + 3 + 4), sums.aggregate(2L, 5L));
+        assertEquals(Long.valueOf(2 + 3 + 4 + 6), sums.aggregate(2L, true, 6L, true));
+        assertEquals(Long.valueOf(103), sums.headAggregate(2L, true));
+        assertEquals(Long.valueOf(100), sums.aggregate(null, true, 1L, false));
+        assertEquals(Long.valueOf(19), sums.tailAggregate(9L, true));
+        assertEquals(Long.valueOf(0), sums.aggregate(11L, 20L));
+        assertEquals(Long.valueOf(6), maxima.aggregate());
+        assertEquals(Long.valueOf(Long.MIN_VALUE), maxima.aggregate(3L, 3L));
+        NullableAggregatingSortedMap<Long, Long> snapshot = sums.snapshot();
+        sums.put(1L, 1_000L);
+        assertEquals(Long.valueOf(150), snapshot.aggregate());
+        assertEquals(Long.valueOf(1149), sums.aggregate());
+        sums.put(1L, 1L);
+        assertEquals(11, sums.size());
+        assertNull(sums.get(5L));
+        assertTrue(sums.containsKey(5L));
+    }
+
+    @Test
+    void testNonCommutativeCombineKeepsKeyOrder() {
+        NullableAggregatingSortedMap<Integer, String> map =
+                new NullableAggregatingSortedMap<>(Comparator.reverseOrder(), "", String::concat);
+        for (int i = 0; i < 26; i++) {
+            map.put(i, String.valueOf((char) ('a' + i)));
+        }
+        map.put(null, "<");
+        assertEquals("<zyxwvutsrqponmlkjihgfedcba", map.aggregate());
+        assertEquals("edc", map.aggregate(4, true, 2, true));
+        assertEquals(Arrays.asList(null, 25, 24), new ArrayList<>(map.keySet()).subList(0, 3));
+    }
+
+    @Test
+    void testMatchesScanUnderRandomOperations() {
+        NullableAggregatingSortedMap<Integer, Long> map =
+                new NullableAggregatingSortedMap<>(0L, Long::sum);
+        TreeMap<Integer, Long> reference = new TreeMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            int key = random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                assertEquals(reference.remove(key), map.remove(key));
+            } else {
+                long value = random.nextInt(1000);
+                assertEquals(reference.put(key, value), map.put(key, value));
+            }
+            if (i % 100 == 0) {
+                int from = random.nextInt(500);
+                int to = from + random.nextInt(500 - from + 1);
+                long expected = 0;
+                for (long v : reference.subMap(from, to).values()) {
+                    expected += v;
+                }
+                assertEquals(Long.valueOf(expected), map.aggregate(from, to));
+            }
+        }
+        assertEquals(reference, map);
+        assertEquals(new ArrayList<>(reference.keySet()), new ArrayList<>(map.keySet()));
+    }
+
+    @Test
+    void testConcurrentWriters() throws InterruptedException {
+        NullableAggregatingSortedMap<Integer, Long> map =
+                new NullableAggregatingSortedMap<>(0L, Long::sum);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] =
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < 1_000; i++) {
+                                    map.put(id * 1_000 + i, 1L);
+                                    map.merge(-1, 1L, Long::sum);
+                                }
+                            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4_001, map.size());
+        assertEquals(Long.valueOf(4_000), map.get(-1));
+        assertEquals(Long.valueOf(8_000), map.aggregate());
+        assertEquals(Long.valueOf(1_000), map.aggregate(1_000, 2_000));
+        for (Map.Entry<Integer, Long> e : map.entrySet()) {
+            assertNotNull(e.getValue());
+        }
+    }
+
+    @Test
+    void testSerialization() throws Exception {
+        NullableAggregatingSortedMap<Integer, Long> map =
+                new NullableAggregatingSortedMap<>(
+                        0L, (BinaryOperator<Long> & Serializable) Long::sum);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, (long) i);
+        }
+        map.put(null, null);
+        NullableAggregatingSortedMap<Integer, Long> copy = TestSerialization.roundTrip(map);
+        assertEquals(map, copy);
+        assertEquals(4950L, copy.aggregate());
+        assertEquals(45L, copy.aggregate(null, 10));
+        copy.put(100, 100L);
+        assertEquals(5050L, copy.aggregate());
+    }
+}
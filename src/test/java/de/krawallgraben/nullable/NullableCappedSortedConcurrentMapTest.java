@@ -0,0 +1,212 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class NullableCappedSortedConcurrentMapTest {
+
+    private static <K> List<K> keys(NullableCappedSortedConcurrentMap<K, ?> map) {
+        return new ArrayList<>(map.keySet());
+    }
+
+    @Test
+    void testMaxSizeEvictsLowest() {
+        NullableCappedSortedConcurrentMap<Integer, String> map =
+                new NullableCappedSortedConcurrentMap<>(
+                        3, NullableCappedSortedConcurrentMap.End.LOWEST);
+        map.put(null, "n");
+        map.put(1, null);
+        map.put(2, "b");
+        assertEquals(3, map.size());
+        map.put(3, "c");
+        assertEquals(Arrays.asList(1, 2, 3), keys(map));
+        assertEquals("b", map.put(2, "B"));
+        assertEquals(3, map.size());
+        map.put(0, "low");
+        assertEquals(Arrays.asList(1, 2, 3), keys(map));
+        assertTrue(map.containsKey(1));
+        assertNull(map.get(1));
+        assertNull(map.remove(1));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void testMaxSizeEvictsHighest() {
+        NullableCappedSortedConcurrentMap<Integer, String> map =
+                new NullableCappedSortedConcurrentMap<>(
+                        2, NullableCappedSortedConcurrentMap.End.HIGHEST);
+        map.put(5, "e");
+        map.put(3, "c");
+        map.put(null, "n");
+        assertEquals(Arrays.asList(null, 3), keys(map));
+        assertEquals(Integer.valueOf(3), map.lastEntry().getKey());
+        assertNull(map.firstEntry().getKey());
+    }
+
+    @Test
+    void testWindow() {
+        NullableCappedSortedConcurrentMap<Long, String> map =
+                new NullableCappedSortedConcurrentMap<>(
+                        newest -> newest - 100, NullableCappedSortedConcurrentMap.End.LOWEST);
+        map.put(0L, "a");
+        map.put(50L, "b");
+        map.put(100L, "c");
+        assertEquals(3, map.size());
+        map.put(120L, "d");
+        assertEquals(Arrays.asList(50L, 100L, 120L), keys(map));
+        map.put(60L, "old but inside");
+        map.put(10L, "outside");
+        assertEquals(Arrays.asList(50L, 60L, 100L, 120L), keys(map));
+        assertEquals(4, map.size());
+
+        NullableCappedSortedConcurrentMap<Long, String> highest =
+                new NullableCappedSortedConcurrentMap<>(
+                        null,
+                        10,
+                        oldest -> oldest + 5,
+                        NullableCappedSortedConcurrentMap.End.HIGHEST);
+        highest.put(null, "n");
+        highest.put(10L, "a");
+        highest.put(20L, "b");
+        highest.put(15L, "c");
+        assertEquals(Arrays.asList(null, 10L, 15L), keys(highest));
+    }
+
+    @Test
+    void testSizeCounterUnderConcurrentInserts() throws InterruptedException {
+        NullableCappedSortedConcurrentMap<Integer, Integer> map =
+                new NullableCappedSortedConcurrentMap<>(
+                        100, NullableCappedSortedConcurrentMap.End.LOWEST);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] =
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < 5_000; i++) {
+                                    map.put(i * threads.length + id, i);
+                                    if (i % 10 == 0) {
+                                        map.remove(i * threads.length + id);
+                                    }
+                                }
+                            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, map.size());
+        assertEquals(100, keys(map).size());
+        assertEquals(Integer.valueOf(19_999), map.lastEntry().getKey());
+
+        Iterator<Map.Entry<Integer, Integer>> it = map.entrySet().iterator();
+        it.next();
+        it.remove();
+        assertEquals(99, map.size());
+        assertEquals(Integer.valueOf(19_999), map.pollLastEntry().getKey());
+        assertEquals(98, map.size());
+        map.clear();
+        assertEquals(0, map.size());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testViewsKeepCounter() {
+        NullableCappedSortedConcurrentMap<Integer, String> map =
+                new NullableCappedSortedConcurrentMap<>(
+                        5, NullableCappedSortedConcurrentMap.End.LOWEST);
+        map.put(null, "n");
+        for (int i = 1; i <= 4; i++) {
+            map.put(i, "v" + i);
+        }
+        assertEquals(Arrays.asList(null, 1, 2, 3, 4), keys(map));
+
+        NullableCappedSortedConcurrentMap<Integer, String> tail = map.tailMap(2);
+        assertEquals(3, tail.size());
+        assertEquals("v2", tail.remove(2));
+        assertEquals(4, map.size());
+        assertThrows(IllegalArgumentException.class, () -> tail.put(0, "out of range"));
+
+        // Insertions through a view evict from the whole map
+        tail.put(5, "v5");
+        tail.put(6, "v6");
+        assertEquals(Arrays.asList(1, 3, 4, 5, 6), keys(map));
+        assertEquals(5, map.size());
+
+        assertTrue(map.headMap(4).keySet().remove(1));
+        assertTrue(map.keySet().remove(3));
+        assertFalse(map.keySet().remove(3));
+        assertEquals(3, map.size());
+
+        Iterator<Integer> keys = map.descendingKeySet().iterator();
+        assertEquals(Integer.valueOf(6), keys.next());
+        keys.remove();
+        assertEquals(2, map.size());
+        assertTrue(map.entrySet().remove(new AbstractMap.SimpleEntry<>(5, "v5")));
+        assertFalse(map.entrySet().remove(new AbstractMap.SimpleEntry<>(4, "other")));
+        assertEquals(1, map.size());
+        assertTrue(map.values().remove("v4"));
+        assertEquals(0, map.size());
+        assertTrue(map.isEmpty());
+
+        map.put(1, null);
+        map.put(2, "b");
+        map.put(3, "c");
+        NullableCappedSortedConcurrentMap<Integer, String> descending = map.descendingMap();
+        assertEquals(Arrays.asList(3, 2, 1), keys(descending));
+        assertEquals(Integer.valueOf(3), descending.pollFirstEntry().getKey());
+        assertEquals(Integer.valueOf(2), descending.firstKey());
+        assertTrue(descending.comparator().compare(1, 2) > 0);
+        map.subMap(1, true, 2, true).clear();
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void testComputeKeepsCounter() {
+        NullableCappedSortedConcurrentMap<Integer, String> map =
+                new NullableCappedSortedConcurrentMap<>(
+                        2, NullableCappedSortedConcurrentMap.End.LOWEST);
+        assertEquals("a", map.computeIfAbsent(1, k -> "a"));
+        assertEquals("a", map.computeIfAbsent(1, k -> "x"));
+        assertNull(map.merge(2, null, (a, b) -> a + b));
+        assertTrue(map.containsKey(2));
+        assertEquals("b", map.merge(2, "b", (a, b) -> a + b));
+        assertEquals("bc", map.merge(2, "c", (a, b) -> a + b));
+        assertEquals(2, map.size());
+
+        // Insertion beyond the limit evicts the lowest key
+        assertEquals("c", map.compute(3, (k, v) -> v == null ? "c" : v));
+        assertEquals(Arrays.asList(2, 3), keys(map));
+        assertEquals(2, map.size());
+
+        assertNull(map.computeIfPresent(2, (k, v) -> null));
+        assertNull(map.compute(3, (k, v) -> null));
+        assertEquals("d", map.merge(4, "d", (a, b) -> null));
+        assertNull(map.merge(4, "e", (a, b) -> null));
+        assertEquals(0, map.size());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testSerialization() throws Exception {
+        NullableCappedSortedConcurrentMap<Integer, String> map =
+                new NullableCappedSortedConcurrentMap<>(
+                        3, NullableCappedSortedConcurrentMap.End.LOWEST);
+        map.put(null, "n");
+        map.put(1, null);
+        map.put(2, "b");
+        NullableCappedSortedConcurrentMap<Integer, String> copy = TestSerialization.roundTrip(map);
+        assertEquals(map, copy);
+        assertEquals(3, copy.size());
+        copy.put(3, "c"); // evicts the null key
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(copy.keySet()));
+        assertEquals(3, copy.size());
+    }
+}
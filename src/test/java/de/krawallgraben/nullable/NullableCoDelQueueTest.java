@@ -0,0 +1,121 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class NullableCoDelQueueTest {
+
+    /** Records the callbacks. */
+    private static class Recorder implements NullableCoDelQueue.Listener<String> {
+        final List<String> events = new ArrayList<>();
+        final List<String> dropped = new ArrayList<>();
+
+        @Override
+        public void overloaded(long minSojournNanos) {
+            events.add("overloaded " + minSojournNanos);
+        }
+
+        @Override
+        public void recovered() {
+            events.add("recovered");
+        }
+
+        @Override
+        public void dropped(String element, long sojournNanos) {
+            dropped.add(element);
+        }
+    }
+
+    @Test
+    void testOfferPollNull() {
+        NullableCoDelQueue<String> queue = new NullableCoDelQueue<>();
+        assertTrue(queue.offer(null));
+        assertTrue(queue.offer("test"));
+        assertEquals(2, queue.size());
+        assertTrue(queue.contains(null));
+        assertEquals(Arrays.asList(null, "test"), new ArrayList<>(queue));
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+        assertEquals("test", queue.poll());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        assertFalse(queue.isOverloaded());
+    }
+
+    @Test
+    void testOverloadAndRecovery() {
+        AtomicLong now = new AtomicLong();
+        Recorder recorder = new Recorder();
+        NullableCoDelQueue<String> queue =
+                new NullableCoDelQueue<>(15, 100, TimeUnit.NANOSECONDS, false, recorder, now::get);
+
+        // Elements wait 20 ns, more than the target of 15 ns, for a whole interval
+        for (int i = 0; i < 10; i++) {
+            queue.offer("a" + i);
+            now.addAndGet(20);
+            assertEquals("a" + i, queue.poll()); // Not dropped, 20 ns is below twice the target
+            assertEquals(i >= 4, queue.isOverloaded());
+        }
+        assertEquals(Arrays.asList("overloaded 20"), recorder.events);
+
+        // While overloaded, stale heads are dropped and fresh ones returned
+        queue.offer("b");
+        queue.offer(null);
+        queue.offer("c");
+        now.addAndGet(31);
+        queue.offer("d");
+        assertEquals("d", queue.poll());
+        assertEquals(Arrays.asList("b", null, "c"), recorder.dropped);
+        assertTrue(queue.isEmpty());
+
+        // The interval in which the queue ran empty ends the overload
+        queue.offer("e");
+        now.addAndGet(100);
+        queue.offer("f");
+        assertFalse(queue.isOverloaded());
+        assertEquals(Arrays.asList("overloaded 20", "recovered"), recorder.events);
+        assertEquals("e", queue.poll());
+        assertEquals("f", queue.poll());
+    }
+
+    @Test
+    void testRejectWhenOverloaded() {
+        AtomicLong now = new AtomicLong();
+        Recorder recorder = new Recorder();
+        NullableCoDelQueue<String> queue =
+                new NullableCoDelQueue<>(5, 100, TimeUnit.NANOSECONDS, true, recorder, now::get);
+
+        // Consumers are stalled: the age of the head signals the overload
+        assertTrue(queue.offer("a"));
+        now.addAndGet(100);
+        assertFalse(queue.offer("b"));
+        assertTrue(queue.isOverloaded());
+        assertEquals(1, queue.size());
+
+        // Once the queue is drained, the next interval recovers
+        assertNull(queue.poll());
+        assertEquals(Arrays.asList("a"), recorder.dropped);
+        now.addAndGet(100);
+        assertTrue(queue.offer("c"));
+        assertFalse(queue.isOverloaded());
+        assertEquals("c", queue.poll());
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new NullableCoDelQueue<String>(
+                                0, 1, TimeUnit.SECONDS, false, new Recorder()));
+        assertThrows(
+                NullPointerException.class,
+                () -> new NullableCoDelQueue<String>(1, 1, TimeUnit.SECONDS, false, null));
+    }
+}
@@ -0,0 +1,189 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class NullableConcurrentArrayQueueTest {
+
+    @Test
+    void testOfferPollNull() {
+        NullableConcurrentArrayQueue<String> queue = new NullableConcurrentArrayQueue<>(4);
+        assertTrue(queue.offer(null));
+        assertTrue(queue.offer("test"));
+        assertTrue(queue.offer(null));
+
+        assertEquals(3, queue.size());
+        assertNull(queue.poll());
+        assertEquals("test", queue.poll());
+        assertFalse(queue.isEmpty());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll()); // Empty now
+        assertThrows(NoSuchElementException.class, queue::remove);
+    }
+
+    @Test
+    void testCapacity() {
+        NullableConcurrentArrayQueue<Integer> queue = new NullableConcurrentArrayQueue<>(3);
+        assertEquals(4, queue.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4)); // Full
+        assertThrows(IllegalStateException.class, () -> queue.add(4));
+        assertEquals(4, queue.size());
+
+        // Wrap around several times
+        for (int i = 4; i < 100; i++) {
+            assertEquals(i - 4, queue.poll());
+            assertTrue(queue.offer(i));
+        }
+        assertEquals(Arrays.asList(96, 97, 98, 99), new ArrayList<>(queue));
+        assertThrows(IllegalArgumentException.class, () -> new NullableConcurrentArrayQueue<>(0));
+    }
+
+    @Test
+    void testPeek() {
+        NullableConcurrentArrayQueue<Integer> queue = new NullableConcurrentArrayQueue<>(8);
+        assertNull(queue.peek());
+        queue.add(1);
+        assertEquals(1, queue.peek());
+        queue.add(null);
+        queue.poll();
+        assertNull(queue.peek()); // Should be the null element
+        assertEquals(1, queue.size());
+        assertNull(queue.remove());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testIteratorAndRemove() {
+        NullableConcurrentArrayQueue<String> queue = new NullableConcurrentArrayQueue<>(8);
+        queue.add("A");
+        queue.add(null);
+        queue.add("B");
+        queue.add("C");
+
+        assertTrue(queue.contains(null));
+        assertTrue(queue.remove("A"));
+        assertFalse(queue.remove("X"));
+        assertEquals("[null, B, C]", queue.toString());
+        assertNull(queue.peek());
+
+        Iterator<String> it = queue.iterator();
+        assertNull(it.next());
+        it.remove();
+        assertEquals("B", it.next());
+        assertEquals("C", it.next());
+        assertFalse(it.hasNext());
+        assertThrows(NoSuchElementException.class, it::next);
+
+        // Removed elements are skipped
+        assertEquals("B", queue.peek());
+        assertEquals("B", queue.poll());
+        assertEquals("C", queue.poll());
+        assertNull(queue.poll());
+
+        queue.add(null);
+        queue.add("D");
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testRemovedSlotsDoNotCount() {
+        NullableConcurrentArrayQueue<String> queue = new NullableConcurrentArrayQueue<>(4);
+        queue.offer("x");
+        assertTrue(queue.remove("x"));
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+
+        queue.offer(null);
+        queue.offer("y");
+        queue.offer(null);
+        assertTrue(queue.remove(null));
+        assertEquals(2, queue.size());
+        assertEquals("y", queue.poll());
+        assertTrue(queue.remove(null));
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.offer("z"));
+        assertEquals(1, queue.size());
+        assertEquals("z", queue.peek());
+    }
+
+    @Test
+    void testIteratorRemoveAfterSlotReuse() {
+        NullableConcurrentArrayQueue<String> queue = new NullableConcurrentArrayQueue<>(1);
+        queue.offer(null);
+        Iterator<String> it = queue.iterator();
+        assertNull(it.next());
+
+        // The slot is consumed and refilled with an equal element before the iterator removes
+        assertNull(queue.poll());
+        assertTrue(queue.offer(null));
+        it.remove();
+        assertFalse(queue.isEmpty());
+        assertEquals(1, queue.size());
+        assertTrue(queue.contains(null));
+        assertNull(queue.remove());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testConcurrentProducersAndConsumers() throws InterruptedException {
+        NullableConcurrentArrayQueue<Integer> queue = new NullableConcurrentArrayQueue<>(64);
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 20_000;
+        int expected = producers * perProducer * 9 / 10; // every tenth element is null
+        ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < perProducer; i++) {
+                                    Integer e = i % 10 == 0 ? null : base + i;
+                                    while (!queue.offer(e)) {
+                                        Thread.yield();
+                                    }
+                                }
+                            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            threads.add(
+                    new Thread(
+                            () -> {
+                                while (seen.size() < expected) {
+                                    Integer e = queue.poll();
+                                    if (e != null && seen.put(e, Boolean.TRUE) != null) {
+                                        duplicates.incrementAndGet();
+                                    }
+                                }
+                            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(expected, seen.size());
+        for (Integer e : queue) {
+            assertNull(e); // Only nulls may be left
+        }
+    }
+}
@@ -3,9 +3,14 @@ package de.krawallgraben.nullable;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class NullableConcurrentDequeTest {
@@ -76,4 +81,105 @@ class NullableConcurrentDequeTest {
         assertNull(it.next());
         assertEquals("A", it.next());
     }
+
+    @Test
+    void testBatchMethods() {
+        NullableConcurrentDeque<String> deque = new NullableConcurrentDeque<>();
+        assertTrue(deque.offerAll(Arrays.asList("A", null, "B")));
+        assertFalse(deque.offerAll(Collections.emptyList()));
+        assertTrue(deque.addAll(Arrays.asList(null, "C")));
+        assertEquals(5, deque.size());
+        assertThrows(IllegalArgumentException.class, () -> deque.offerAll(deque));
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(2, deque.drain(drained::add, 2));
+        assertEquals(Arrays.asList("A", null), drained);
+
+        drained.clear();
+        assertEquals(3, deque.drainTo(drained, 10));
+        assertEquals(Arrays.asList("B", null, "C"), drained);
+        assertTrue(deque.isEmpty());
+        assertEquals(0, deque.drainTo(drained, 10));
+        assertThrows(IllegalArgumentException.class, () -> deque.drainTo(deque, 1));
+    }
+
+    @Test
+    void testSizeTracking() throws InterruptedException {
+        NullableConcurrentDeque<String> deque = new NullableConcurrentDeque<>(true);
+        assertEquals(0, deque.size());
+        deque.add("A");
+        deque.offer(null);
+        deque.offerAll(Arrays.asList("B", null, "C"));
+        assertEquals(5, deque.size());
+        assertEquals(5, deque.depth());
+
+        assertTrue(deque.remove("C"));
+        assertFalse(deque.remove("X"));
+        assertEquals("A", deque.poll());
+        assertEquals(3, deque.size());
+        deque.push(null);
+        deque.addLast("Z");
+        assertEquals("Z", deque.pollLast());
+        assertNull(deque.pop());
+        assertTrue(deque.removeLastOccurrence("B"));
+        assertEquals(2, deque.size());
+        deque.add("B");
+
+        Iterator<String> it = deque.iterator();
+        assertNull(it.next());
+        it.remove();
+        assertEquals(2, deque.size());
+        assertEquals(1, deque.drain(e -> {}, 1));
+        assertEquals(1, deque.size());
+        deque.clear();
+        assertEquals(0, deque.size());
+        assertTrue(deque.isEmpty());
+
+        // Concurrent producers and consumers
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < 10_000; i++) {
+                                    deque.offer(i % 2 == 0 ? null : "x");
+                                    if (i % 3 == 0) {
+                                        deque.poll();
+                                    }
+                                }
+                            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(deque.stream().count(), deque.depth());
+        assertEquals(deque.depth(), deque.size());
+        assertEquals(new NullableConcurrentDeque<>(deque).size(), deque.size());
+    }
+
+    @Test
+    void testIteratorRemovesReturnedElement() {
+        NullableConcurrentDeque<String> deque = new NullableConcurrentDeque<>(true);
+        deque.addAll(Arrays.asList("a", "b", "a"));
+        Iterator<String> it = deque.iterator();
+        it.next();
+        it.next();
+        assertEquals("a", it.next());
+        it.remove();
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(deque));
+        assertEquals(2, deque.size());
+
+        deque.addFirst("b");
+        Iterator<String> descending = deque.descendingIterator();
+        assertEquals("b", descending.next());
+        descending.remove();
+        assertEquals(Arrays.asList("b", "a"), new ArrayList<>(deque));
+        assertEquals(2, deque.size());
+        assertTrue(deque.removeLastOccurrence("a"));
+        assertFalse(deque.contains("a"));
+        assertEquals(1, deque.size());
+    }
 }
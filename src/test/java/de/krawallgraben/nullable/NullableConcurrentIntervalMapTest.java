@@ -0,0 +1,81 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class NullableConcurrentIntervalMapTest {
+
+    private static List<String> strings(
+            Iterable<NullableConcurrentRangeMap.RangeEntry<Integer, String>> intervals) {
+        List<String> result = new ArrayList<>();
+        for (NullableConcurrentRangeMap.RangeEntry<Integer, String> e : intervals) {
+            result.add(e.toString());
+        }
+        return result;
+    }
+
+    @Test
+    void testStabbingQueries() {
+        NullableConcurrentIntervalMap<Integer, String> map = new NullableConcurrentIntervalMap<>();
+        map.add(0, 10, "a");
+        map.add(5, 15, "b");
+        map.add(5, 15, null);
+        map.add(12, 20, "c");
+        map.add(null, 1, "n");
+
+        assertEquals(5, map.size());
+        assertEquals(Arrays.asList("[null, 1)=n", "[0, 10)=a"), strings(map.stab(0)));
+        assertEquals(Arrays.asList("[0, 10)=a", "[5, 15)=b", "[5, 15)=null"), strings(map.stab(5)));
+        assertEquals(Arrays.asList("[5, 15)=b", "[5, 15)=null"), strings(map.stab(10)));
+        assertEquals(Arrays.asList("[12, 20)=c"), strings(map.stab(15)));
+        assertEquals(Arrays.asList(), strings(map.stab(20)));
+        assertEquals(Arrays.asList("[null, 1)=n"), strings(map.stab(null)));
+
+        assertEquals(
+                Arrays.asList("[0, 10)=a", "[5, 15)=b", "[5, 15)=null"),
+                strings(map.overlapping(9, 12)));
+        assertEquals(Arrays.asList(), strings(map.overlapping(12, 12)));
+
+        assertTrue(map.remove(5, 15, null));
+        assertFalse(map.remove(5, 15, null));
+        assertEquals(Arrays.asList("[0, 10)=a", "[5, 15)=b"), strings(map.stab(5)));
+
+        Iterator<NullableConcurrentRangeMap.RangeEntry<Integer, String>> it = map.iterator();
+        it.next();
+        it.remove();
+        assertEquals(3, map.size());
+        assertThrows(IllegalArgumentException.class, () -> map.add(4, 4, "x"));
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testMatchesScan() {
+        Random random = new Random(7);
+        NullableConcurrentIntervalMap<Integer, String> map = new NullableConcurrentIntervalMap<>();
+        List<int[]> intervals = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(1000);
+            int to = from + 1 + random.nextInt(50);
+            map.add(from, to, from + "-" + to);
+            intervals.add(new int[] {from, to});
+        }
+        for (int p = 0; p < 1100; p += 7) {
+            int expected = 0;
+            for (int[] interval : intervals) {
+                if (interval[0] <= p && p < interval[1]) expected++;
+            }
+            List<NullableConcurrentRangeMap.RangeEntry<Integer, String>> stabbed = map.stab(p);
+            assertEquals(expected, stabbed.size());
+            for (NullableConcurrentRangeMap.RangeEntry<Integer, String> e : stabbed) {
+                assertTrue(e.getFrom() <= p && p < e.getTo());
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class NullableConcurrentPriorityQueueTest {
+
+    @Test
+    void testOrderWithNullAndDuplicates() {
+        NullableConcurrentPriorityQueue<Integer> queue = new NullableConcurrentPriorityQueue<>();
+        queue.addAll(Arrays.asList(5, 1, null, 3, 1, null));
+        assertEquals(6, queue.size());
+        assertEquals(Arrays.asList(null, null, 1, 1, 3, 5), new ArrayList<>(queue));
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+        assertNull(queue.poll());
+        assertEquals(1, queue.peek());
+        assertEquals(1, queue.poll());
+        assertEquals(1, queue.poll());
+        assertEquals(3, queue.poll());
+        assertEquals(5, queue.poll());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void testComparatorAndFifoAmongEqualPriorities() {
+        // Orders by length only, so equal-length strings have equal priority
+        NullableConcurrentPriorityQueue<String> queue =
+                new NullableConcurrentPriorityQueue<>(
+                        Comparator.comparingInt(String::length).reversed());
+        queue.add("bb");
+        queue.add("a");
+        queue.add("ccc");
+        queue.add(null);
+        queue.add("dd");
+        queue.add("e");
+        assertEquals(Arrays.asList(null, "ccc", "bb", "dd", "a", "e"), new ArrayList<>(queue));
+        assertNotNull(queue.comparator());
+    }
+
+    @Test
+    void testContainsAndRemove() {
+        NullableConcurrentPriorityQueue<String> queue =
+                new NullableConcurrentPriorityQueue<>(Comparator.comparingInt(String::length));
+        queue.addAll(Arrays.asList("aa", "bb", null, "cc", "bb"));
+        assertTrue(queue.contains(null));
+        assertTrue(queue.contains("cc"));
+        assertFalse(queue.contains("dd"));
+        assertFalse(queue.contains(42));
+
+        assertTrue(queue.remove("bb"));
+        assertTrue(queue.remove(null));
+        assertFalse(queue.remove(null));
+        assertEquals(Arrays.asList("aa", "cc", "bb"), new ArrayList<>(queue));
+
+        queue.removeIf("cc"::equals);
+        assertEquals(Arrays.asList("aa", "bb"), new ArrayList<>(queue));
+        queue.clear();
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testPollRelaxed() {
+        NullableConcurrentPriorityQueue<Integer> queue =
+                new NullableConcurrentPriorityQueue<>(null, 4);
+        assertNull(queue.pollRelaxed());
+        for (int i = 0; i < 100; i++) {
+            queue.add(i);
+        }
+        queue.add(null);
+        // Every element comes from the first four
+        List<Integer> polled = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            List<Integer> head = new ArrayList<>(queue);
+            head = head.subList(0, Math.min(4, head.size()));
+            Integer e = queue.pollRelaxed();
+            assertTrue(head.contains(e));
+            polled.add(e);
+        }
+        assertTrue(queue.isEmpty());
+        assertEquals(101, polled.size());
+        assertTrue(polled.contains(null));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new NullableConcurrentPriorityQueue<>(null, 0));
+    }
+
+    @Test
+    void testConcurrentOfferAndPoll() throws InterruptedException {
+        NullableConcurrentPriorityQueue<Integer> queue = new NullableConcurrentPriorityQueue<>();
+        int threads = 4;
+        int perThread = 10_000;
+        ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            boolean relaxed = t % 2 == 0;
+            workers.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < perThread; i++) {
+                                    queue.offer(base + i);
+                                    Integer e = relaxed ? queue.pollRelaxed() : queue.poll();
+                                    if (e != null && seen.put(e, Boolean.TRUE) != null) {
+                                        duplicates.incrementAndGet();
+                                    }
+                                }
+                            }));
+        }
+        for (Thread t : workers) {
+            t.start();
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(threads * perThread, seen.size() + queue.size());
+    }
+
+    @Test
+    void testSerialization() throws Exception {
+        NullableConcurrentPriorityQueue<Integer> queue = new NullableConcurrentPriorityQueue<>();
+        queue.addAll(Arrays.asList(3, null, 1, 3));
+        NullableConcurrentPriorityQueue<Integer> copy = TestSerialization.roundTrip(queue);
+        copy.offer(2);
+        List<Integer> polled = new ArrayList<>();
+        while (!copy.isEmpty()) {
+            polled.add(copy.poll());
+        }
+        assertEquals(Arrays.asList(null, 1, 2, 3, 3), polled);
+        assertEquals(4, queue.size());
+    }
+}
@@ -3,9 +3,14 @@ package de.krawallgraben.nullable;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 
 class NullableConcurrentQueueTest {
@@ -70,4 +75,93 @@ class NullableConcurrentQueueTest {
         assertEquals("A", it.next());
         assertEquals("B", it.next());
     }
+
+    @Test
+    void testBatchMethods() {
+        NullableConcurrentQueue<String> queue = new NullableConcurrentQueue<>();
+        assertTrue(queue.offerAll(Arrays.asList("A", null, "B")));
+        assertFalse(queue.offerAll(Collections.emptyList()));
+        assertTrue(queue.addAll(Arrays.asList(null, "C")));
+        assertEquals(5, queue.size());
+        assertThrows(IllegalArgumentException.class, () -> queue.offerAll(queue));
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(2, queue.drain(drained::add, 2));
+        assertEquals(Arrays.asList("A", null), drained);
+
+        drained.clear();
+        assertEquals(3, queue.drainTo(drained, 10));
+        assertEquals(Arrays.asList("B", null, "C"), drained);
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.drainTo(drained, 10));
+        assertThrows(IllegalArgumentException.class, () -> queue.drainTo(queue, 1));
+    }
+
+    @Test
+    void testSizeTracking() throws InterruptedException {
+        NullableConcurrentQueue<String> queue = new NullableConcurrentQueue<>(true);
+        assertEquals(0, queue.size());
+        queue.add("A");
+        queue.offer(null);
+        queue.offerAll(Arrays.asList("B", null, "C"));
+        assertEquals(5, queue.size());
+        assertEquals(5, queue.depth());
+
+        assertTrue(queue.remove("C"));
+        assertFalse(queue.remove("X"));
+        assertEquals("A", queue.poll());
+        assertEquals(3, queue.size());
+
+        Iterator<String> it = queue.iterator();
+        assertNull(it.next());
+        it.remove();
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.drain(e -> {}, 1));
+        assertEquals(1, queue.size());
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertTrue(queue.isEmpty());
+
+        // Concurrent producers and consumers
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < 10_000; i++) {
+                                    queue.offer(i % 2 == 0 ? null : "x");
+                                    if (i % 3 == 0) {
+                                        queue.poll();
+                                    }
+                                }
+                            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(queue.stream().count(), queue.depth());
+        assertEquals(queue.depth(), queue.size());
+        assertEquals(new NullableConcurrentQueue<>(queue).size(), queue.size());
+    }
+
+    @Test
+    void testIteratorRemovesReturnedElement() {
+        NullableConcurrentQueue<String> queue = new NullableConcurrentQueue<>(true);
+        queue.addAll(Arrays.asList("a", "b", "a", null));
+        Iterator<String> it = queue.iterator();
+        it.next();
+        it.next();
+        assertEquals("a", it.next());
+        it.remove();
+        assertThrows(IllegalStateException.class, it::remove);
+        assertNull(it.next());
+        it.remove();
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(queue));
+        assertEquals(2, queue.size());
+        assertTrue(queue.contains("a"));
+        assertFalse(queue.contains(null));
+    }
 }
@@ -0,0 +1,131 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class NullableConcurrentRangeMapTest {
+
+    private static List<String> ranges(NullableConcurrentRangeMap<Integer, String> map) {
+        List<String> result = new ArrayList<>();
+        for (NullableConcurrentRangeMap.RangeEntry<Integer, String> e : map) {
+            result.add(e.toString());
+        }
+        return result;
+    }
+
+    @Test
+    void testPutSplitsAndCoalesces() {
+        NullableConcurrentRangeMap<Integer, String> map = new NullableConcurrentRangeMap<>();
+        map.put(0, 10, "a");
+        map.put(3, 5, "b");
+        assertEquals(Arrays.asList("[0, 3)=a", "[3, 5)=b", "[5, 10)=a"), ranges(map));
+        assertEquals("a", map.get(0));
+        assertEquals("b", map.get(4));
+        assertEquals("a", map.get(5));
+        assertNull(map.get(10));
+        assertFalse(map.contains(-1));
+
+        map.put(3, 5, "a");
+        assertEquals(Arrays.asList("[0, 10)=a"), ranges(map));
+
+        map.put(10, 12, "a");
+        map.put(-2, 0, "a");
+        assertEquals(Arrays.asList("[-2, 12)=a"), ranges(map));
+
+        map.put(5, 20, "c");
+        map.put(1, 7, null);
+        assertEquals(Arrays.asList("[-2, 1)=a", "[1, 7)=null", "[7, 20)=c"), ranges(map));
+        assertTrue(map.contains(3));
+        assertNull(map.get(3));
+        assertEquals(7, map.getEntry(10).getFrom());
+    }
+
+    @Test
+    void testRemove() {
+        NullableConcurrentRangeMap<Integer, String> map = new NullableConcurrentRangeMap<>();
+        map.put(0, 10, "a");
+        map.put(10, 20, "b");
+        map.remove(5, 15);
+        assertEquals(Arrays.asList("[0, 5)=a", "[15, 20)=b"), ranges(map));
+        map.remove(2, 3);
+        assertEquals(Arrays.asList("[0, 2)=a", "[3, 5)=a", "[15, 20)=b"), ranges(map));
+        map.remove(-100, 100);
+        assertTrue(map.isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> map.put(3, 3, "x"));
+        assertThrows(IllegalArgumentException.class, () -> map.remove(3, null));
+    }
+
+    @Test
+    void testNullKey() {
+        NullableConcurrentRangeMap<Integer, String> map = new NullableConcurrentRangeMap<>();
+        map.put(null, 0, "neg");
+        assertEquals("neg", map.get(null));
+        assertEquals("neg", map.get(-5));
+        assertNull(map.get(0));
+        map.put(null, 1, "neg");
+        assertEquals(Arrays.asList("[null, 1)=neg"), ranges(map));
+    }
+
+    @Test
+    void testMatchesModel() {
+        Random random = new Random(42);
+        NullableConcurrentRangeMap<Integer, String> map = new NullableConcurrentRangeMap<>();
+        String[] model = new String[100];
+        boolean[] covered = new boolean[100];
+        for (int i = 0; i < 2000; i++) {
+            int from = random.nextInt(99);
+            int to = from + 1 + random.nextInt(Math.min(20, 99 - from));
+            if (random.nextInt(4) == 0) {
+                map.remove(from, to);
+                Arrays.fill(covered, from, to, false);
+            } else {
+                String value = random.nextInt(5) == 0 ? null : "v" + random.nextInt(3);
+                map.put(from, to, value);
+                Arrays.fill(model, from, to, value);
+                Arrays.fill(covered, from, to, true);
+            }
+            for (int p = 0; p < 100; p++) {
+                assertEquals(covered[p], map.contains(p));
+                if (covered[p]) {
+                    assertEquals(model[p], map.get(p));
+                }
+            }
+            // Adjacent ranges always differ in value
+            NullableConcurrentRangeMap.RangeEntry<Integer, String> previous = null;
+            for (NullableConcurrentRangeMap.RangeEntry<Integer, String> e : map) {
+                if (previous != null && previous.getTo().equals(e.getFrom())) {
+                    assertNotEquals(previous.getValue(), e.getValue());
+                }
+                previous = e;
+            }
+        }
+    }
+
+    @Test
+    void testReadersSeeNoGaps() throws InterruptedException {
+        NullableConcurrentRangeMap<Integer, Integer> map = new NullableConcurrentRangeMap<>();
+        map.put(0, 1000, 0);
+        Thread writer =
+                new Thread(
+                        () -> {
+                            Random random = new Random(1);
+                            for (int i = 0; i < 20000; i++) {
+                                int from = random.nextInt(999);
+                                int to = from + 1 + random.nextInt(999 - from);
+                                map.put(from, to, random.nextInt(3));
+                            }
+                        });
+        writer.start();
+        Random random = new Random(2);
+        while (writer.isAlive()) {
+            assertTrue(map.contains(random.nextInt(1000)));
+        }
+        writer.join();
+    }
+}
@@ -0,0 +1,71 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class NullableConcurrentStackTest {
+
+    @Test
+    void testPushPopNull() {
+        NullableConcurrentStack<String> stack = new NullableConcurrentStack<>();
+        assertTrue(stack.isEmpty());
+        assertNull(stack.pop());
+
+        stack.push("A");
+        stack.push(null);
+        stack.push("B");
+        assertEquals(3, stack.size());
+        assertEquals("B", stack.peek());
+        assertEquals("B", stack.pop());
+        assertNull(stack.peek()); // The null element
+        assertNull(stack.pop());
+        assertFalse(stack.isEmpty());
+        assertEquals("A", stack.pop());
+        assertTrue(stack.isEmpty());
+        assertEquals(0, stack.size());
+
+        stack.push("C");
+        stack.clear();
+        assertTrue(stack.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new NullableConcurrentStack<>(0));
+    }
+
+    @Test
+    void testConcurrentPushPop() throws InterruptedException {
+        // A single slot makes eliminations frequent
+        NullableConcurrentStack<Integer> stack = new NullableConcurrentStack<>(1);
+        int threads = 8;
+        int perThread = 20_000;
+        ConcurrentHashMap<Integer, Boolean> popped = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            workers.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < perThread; i++) {
+                                    stack.push(base + i);
+                                    Integer e = stack.pop();
+                                    if (e != null && popped.put(e, Boolean.TRUE) != null) {
+                                        duplicates.incrementAndGet();
+                                    }
+                                }
+                            }));
+        }
+        for (Thread t : workers) {
+            t.start();
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(threads * perThread, popped.size()); // Every push was matched by a pop
+        assertTrue(stack.isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class NullableConflatingQueueTest {
+
+    @Test
+    void testConflation() {
+        NullableConflatingQueue<String, Integer> queue = new NullableConflatingQueue<>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        assertTrue(queue.offer("A", 1));
+        assertTrue(queue.offer(null, 2));
+        assertTrue(queue.offer("B", 3));
+        assertFalse(queue.offer("A", 4)); // Replaced, keeps its position
+        assertFalse(queue.offer("B", null)); // Cleared
+        assertEquals(3, queue.size());
+
+        Map.Entry<String, Integer> e = queue.poll();
+        assertEquals("A", e.getKey());
+        assertEquals(4, e.getValue());
+        e = queue.poll();
+        assertNull(e.getKey()); // The null key
+        assertEquals(2, e.getValue());
+
+        // A polled key starts a new pair at the tail
+        assertTrue(queue.offer("A", 5));
+        e = queue.poll();
+        assertEquals("B", e.getKey());
+        assertNull(e.getValue()); // The null value
+        assertEquals("A", queue.poll().getKey());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+
+        queue.offer("C", 6);
+        queue.offer("D", 7);
+        List<String> keys = new ArrayList<>();
+        assertEquals(1, queue.drain(p -> keys.add(p.getKey()), 1));
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertEquals(1, keys.size());
+    }
+
+    @Test
+    void testLatestValueWins() throws InterruptedException {
+        NullableConflatingQueue<Integer, Integer> queue = new NullableConflatingQueue<>();
+        int keys = 16;
+        int updates = 50_000;
+        List<Thread> producers = new ArrayList<>();
+        for (int k = 0; k < keys; k++) {
+            int key = k;
+            producers.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i <= updates; i++) {
+                                    queue.offer(key, i);
+                                }
+                            }));
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        Map<Integer, Integer> latest = new HashMap<>();
+        Thread consumer =
+                new Thread(
+                        () -> {
+                            while (!done.get() || !queue.isEmpty()) {
+                                Map.Entry<Integer, Integer> e = queue.poll();
+                                if (e != null) {
+                                    Integer previous = latest.put(e.getKey(), e.getValue());
+                                    // Values of a key never go backwards
+                                    assertTrue(previous == null || previous < e.getValue());
+                                }
+                            }
+                        });
+        consumer.start();
+        for (Thread t : producers) {
+            t.start();
+        }
+        for (Thread t : producers) {
+            t.join();
+        }
+        done.set(true);
+        consumer.join();
+
+        assertEquals(keys, latest.size());
+        for (int value : latest.values()) {
+            assertEquals(updates, value);
+        }
+    }
+}
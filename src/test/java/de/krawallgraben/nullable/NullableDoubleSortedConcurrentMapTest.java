@@ -0,0 +1,154 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class NullableDoubleSortedConcurrentMapTest {
+
+    @Test
+    void testOrderMatchesDoubleCompare() {
+        NullableDoubleSortedConcurrentMap<String> map = new NullableDoubleSortedConcurrentMap<>();
+        double[] keys = {Double.NaN, 1.5, -0.0, 0.0, Double.NEGATIVE_INFINITY, -2.5, 1e300};
+        for (double key : keys) {
+            map.put(key, String.valueOf(key));
+        }
+        map.putNullKey(null);
+
+        Iterator<Map.Entry<Double, String>> it = map.iterator();
+        assertNull(it.next().getKey());
+        Double previous = null;
+        while (it.hasNext()) {
+            Double key = it.next().getKey();
+            if (previous != null) {
+                assertTrue(Double.compare(previous, key) < 0);
+            }
+            previous = key;
+        }
+        assertEquals(keys.length + 1, map.size());
+    }
+
+    @Test
+    void testNavigation() {
+        NullableDoubleSortedConcurrentMap<String> map = new NullableDoubleSortedConcurrentMap<>();
+        map.put(-1.0, "a");
+        map.put(2.0, "b");
+        map.put(3.5, null);
+
+        assertEquals(-1.0, map.floorEntry(1.9).getKey());
+        assertEquals(2.0, map.ceilingEntry(1.9).getKey());
+        assertTrue(map.containsKey(3.5));
+        assertNull(map.get(3.5));
+        assertEquals(1, map.subMap(0.0, 3.0).size());
+        assertNull(map.lowerEntry(-1.0));
+    }
+
+    @Test
+    void testSpecialValues() {
+        NullableDoubleSortedConcurrentMap<String> map = new NullableDoubleSortedConcurrentMap<>();
+        double[] ordered = {
+            Double.NEGATIVE_INFINITY,
+            -Double.MAX_VALUE,
+            -Double.MIN_VALUE,
+            -0.0,
+            0.0,
+            Double.MIN_VALUE,
+            Double.MAX_VALUE,
+            Double.POSITIVE_INFINITY,
+            Double.NaN
+        };
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            map.put(ordered[i], String.valueOf(ordered[i]));
+        }
+
+        // -0.0 and 0.0 are distinct keys, NaN is the greatest
+        assertEquals(ordered.length, map.size());
+        assertEquals("-0.0", map.get(-0.0));
+        assertEquals("0.0", map.get(0.0));
+        assertEquals("NaN", map.get(Double.longBitsToDouble(0x7ff8000000000001L))); // Other NaN
+        Iterator<Map.Entry<Double, String>> it = map.iterator();
+        for (double key : ordered) {
+            assertEquals(0, Double.compare(key, it.next().getKey()));
+        }
+        assertFalse(it.hasNext());
+
+        assertEquals(0, Double.compare(-0.0, map.lowerEntry(0.0).getKey()));
+        assertEquals(0, Double.compare(0.0, map.higherEntry(-0.0).getKey()));
+        assertEquals(
+                0, Double.compare(Double.POSITIVE_INFINITY, map.lowerEntry(Double.NaN).getKey()));
+        assertNull(map.higherEntry(Double.NaN));
+        assertNull(map.lowerEntry(Double.NEGATIVE_INFINITY));
+        assertEquals(Double.NaN, map.lastEntry().getKey());
+        assertEquals(Double.NEGATIVE_INFINITY, map.firstEntry().getKey());
+    }
+
+    @Test
+    void testNullValueSlot() {
+        NullableDoubleSortedConcurrentMap<String> map = new NullableDoubleSortedConcurrentMap<>();
+        assertNull(map.putNullKey(null));
+        assertTrue(map.containsNullKey());
+        assertNull(map.getNullKey());
+        assertNull(map.firstEntry().getKey());
+        assertNull(map.lowerEntry(Double.NEGATIVE_INFINITY).getKey());
+        assertNull(map.putIfAbsent(0.0, null));
+        assertTrue(map.containsKey(0.0));
+        assertFalse(map.containsKey(-0.0));
+        assertEquals(2, map.size());
+        assertNull(map.removeNullKey());
+        assertFalse(map.containsNullKey());
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void testViews() {
+        NullableDoubleSortedConcurrentMap<String> map = new NullableDoubleSortedConcurrentMap<>();
+        double[] keys = {Double.NEGATIVE_INFINITY, -1.0, -0.0, 0.0, 1.0, Double.NaN};
+        for (double key : keys) {
+            map.put(key, String.valueOf(key));
+        }
+        map.putNullKey("null");
+
+        NullableDoubleSortedConcurrentMap<String> head = map.headMap(0.0);
+        assertEquals(4, head.size()); // null, -Infinity, -1.0, -0.0
+        assertTrue(head.containsNullKey());
+        assertEquals(0, Double.compare(-0.0, head.lastEntry().getKey()));
+        NullableDoubleSortedConcurrentMap<String> tail = map.tailMap(0.0);
+        assertEquals(3, tail.size()); // 0.0, 1.0, NaN
+        assertFalse(tail.containsNullKey());
+        assertEquals(2, map.tailMap(0.0, false).size());
+        assertEquals(2, map.subMap(-0.0, true, 0.0, true).size());
+        assertEquals(0, map.subMap(-0.0, false, 0.0, false).size());
+
+        // Descending walk over a view
+        NullableDoubleSortedConcurrentMap<String> range = map.subMap(-1.0, true, Double.NaN, true);
+        int i = keys.length - 1;
+        for (Map.Entry<Double, String> e = range.lastEntry();
+                e != null;
+                e = range.lowerEntry(e.getKey())) {
+            assertEquals(0, Double.compare(keys[i--], e.getKey()));
+        }
+        assertEquals(0, i);
+
+        range.remove(Double.NaN);
+        assertFalse(map.containsKey(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> range.put(-2.0, "x"));
+        assertThrows(IllegalArgumentException.class, () -> tail.putNullKey("x"));
+    }
+
+    @Test
+    void testSerialization() throws Exception {
+        NullableDoubleSortedConcurrentMap<String> map = new NullableDoubleSortedConcurrentMap<>();
+        map.put(-0.0, "-0");
+        map.put(Double.NaN, null);
+        map.putNullKey("null");
+
+        NullableDoubleSortedConcurrentMap<String> copy = TestSerialization.roundTrip(map);
+        assertEquals(3, copy.size());
+        assertEquals("null", copy.getNullKey());
+        assertEquals(0, Double.compare(-0.0, copy.higherEntry(-1.0).getKey()));
+        assertTrue(copy.containsKey(Double.NaN));
+        assertNull(copy.get(0.0));
+    }
+}
@@ -0,0 +1,151 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class NullableIntSortedConcurrentMapTest {
+
+    @Test
+    void testNavigationAndNullKey() {
+        NullableIntSortedConcurrentMap<String> map = new NullableIntSortedConcurrentMap<>();
+        map.put(Integer.MAX_VALUE, "max");
+        map.put(Integer.MIN_VALUE, null);
+        map.putNullKey("null");
+
+        assertEquals(3, map.size());
+        assertNull(map.get(Integer.MIN_VALUE));
+        assertTrue(map.containsKey(Integer.MIN_VALUE));
+        assertEquals(Integer.MIN_VALUE, map.floorEntry(0).getKey());
+        assertEquals(Integer.MAX_VALUE, map.ceilingEntry(0).getKey());
+
+        Iterator<Map.Entry<Integer, String>> it = map.iterator();
+        assertNull(it.next().getKey());
+        assertEquals(Integer.MIN_VALUE, it.next().getKey());
+        assertEquals(Integer.MAX_VALUE, it.next().getKey());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    void testSubMap() {
+        NullableIntSortedConcurrentMap<Integer> map = new NullableIntSortedConcurrentMap<>();
+        for (int i = -5; i < 5; i++) {
+            map.put(i, i);
+        }
+        NullableIntSortedConcurrentMap<Integer> sub = map.subMap(-2, 2);
+        assertEquals(4, sub.size());
+        assertEquals(-2, sub.firstEntry().getKey());
+        assertEquals(1, sub.lastEntry().getKey());
+    }
+
+    @Test
+    void testBoundaries() {
+        NullableIntSortedConcurrentMap<String> map = new NullableIntSortedConcurrentMap<>();
+        map.put(Integer.MIN_VALUE, "min");
+        map.put(Integer.MAX_VALUE, "max");
+        map.put(-1, "-1");
+        map.put(0, "0");
+
+        assertEquals(Integer.MIN_VALUE, map.firstEntry().getKey());
+        assertEquals(Integer.MAX_VALUE, map.lastEntry().getKey());
+        assertNull(map.lowerEntry(Integer.MIN_VALUE));
+        assertNull(map.higherEntry(Integer.MAX_VALUE));
+        assertEquals(Integer.MIN_VALUE, map.floorEntry(Integer.MIN_VALUE).getKey());
+        assertEquals(Integer.MAX_VALUE, map.ceilingEntry(Integer.MAX_VALUE).getKey());
+        assertEquals(-1, map.lowerEntry(0).getKey());
+        assertEquals(0, map.higherEntry(-1).getKey());
+        assertEquals(Integer.MAX_VALUE, map.higherEntry(0).getKey());
+
+        // The null key sorts before Integer.MIN_VALUE
+        map.putNullKey("null");
+        assertNull(map.lowerEntry(Integer.MIN_VALUE).getKey());
+        assertNull(map.firstEntry().getKey());
+        assertNull(map.pollFirstEntry().getKey());
+        assertFalse(map.containsNullKey());
+        assertEquals(Integer.MAX_VALUE, map.pollLastEntry().getKey());
+        assertEquals(Integer.MIN_VALUE, map.pollFirstEntry().getKey());
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void testNullValueSlot() {
+        NullableIntSortedConcurrentMap<String> map = new NullableIntSortedConcurrentMap<>();
+        assertFalse(map.containsNullKey());
+        assertNull(map.putNullKey(null));
+        assertTrue(map.containsNullKey()); // Mapped to null, but present
+        assertNull(map.getNullKey());
+        assertNull(map.putIfAbsent(1, null));
+        assertTrue(map.containsKey(1));
+        assertNull(map.putIfAbsent(1, "ignored"));
+        assertNull(map.get(1));
+        assertEquals(2, map.size());
+        assertNull(map.removeNullKey());
+        assertFalse(map.containsNullKey());
+        assertNull(map.remove(1));
+        assertFalse(map.containsKey(1));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testViews() {
+        NullableIntSortedConcurrentMap<Integer> map = new NullableIntSortedConcurrentMap<>();
+        for (int i = -3; i <= 3; i++) {
+            map.put(i, i);
+        }
+        map.put(Integer.MIN_VALUE, Integer.MIN_VALUE);
+        map.put(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        map.putNullKey(null);
+
+        // Only head maps contain the null key
+        NullableIntSortedConcurrentMap<Integer> head = map.headMap(0);
+        assertEquals(5, head.size());
+        assertTrue(head.containsNullKey());
+        assertEquals(-1, head.lastEntry().getKey());
+        assertEquals(6, map.headMap(0, true).size());
+        NullableIntSortedConcurrentMap<Integer> tail = map.tailMap(0);
+        assertEquals(5, tail.size());
+        assertFalse(tail.containsNullKey());
+        assertEquals(4, map.tailMap(0, false).size());
+        assertEquals(Integer.MAX_VALUE, tail.lastEntry().getKey());
+        NullableIntSortedConcurrentMap<Integer> sub =
+                map.subMap(Integer.MIN_VALUE, true, Integer.MAX_VALUE, true);
+        assertEquals(9, sub.size());
+        assertFalse(sub.containsNullKey());
+        assertEquals(7, map.subMap(Integer.MIN_VALUE, false, Integer.MAX_VALUE, false).size());
+
+        // Descending walk over a view
+        NullableIntSortedConcurrentMap<Integer> range = map.subMap(-2, true, 2, true);
+        int expected = 2;
+        for (Map.Entry<Integer, Integer> e = range.lastEntry();
+                e != null;
+                e = range.lowerEntry(e.getKey())) {
+            assertEquals(expected--, e.getKey());
+        }
+        assertEquals(-3, expected);
+
+        // Views write through and reject keys outside their range
+        range.put(1, 100);
+        assertEquals(100, map.get(1));
+        assertThrows(IllegalArgumentException.class, () -> range.put(3, 3));
+        assertThrows(IllegalArgumentException.class, () -> range.putNullKey(0));
+        assertThrows(IllegalArgumentException.class, () -> range.subMap(-5, 0));
+        range.clear();
+        assertEquals(5, map.size()); // null, MIN_VALUE, -3, 3, MAX_VALUE
+        assertTrue(map.containsNullKey());
+    }
+
+    @Test
+    void testSerialization() throws Exception {
+        NullableIntSortedConcurrentMap<String> map = new NullableIntSortedConcurrentMap<>();
+        map.put(Integer.MIN_VALUE, "min");
+        map.put(Integer.MAX_VALUE, null);
+
+        NullableIntSortedConcurrentMap<String> copy = TestSerialization.roundTrip(map);
+        assertEquals(2, copy.size());
+        assertEquals(Integer.MIN_VALUE, copy.firstEntry().getKey());
+        assertTrue(copy.containsKey(Integer.MAX_VALUE));
+        assertFalse(copy.containsNullKey());
+    }
+}
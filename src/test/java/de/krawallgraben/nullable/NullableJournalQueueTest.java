@@ -0,0 +1,151 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NullableJournalQueueTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void testOfferPollNull() throws IOException {
+        try (NullableJournalQueue<String> queue =
+                new NullableJournalQueue<>(dir, ByteKeyCodec.strings())) {
+            NullableJournalQueue<String>.Tailer tailer = queue.tailer("reader");
+            assertTrue(tailer.isEmpty());
+            assertNull(tailer.poll());
+
+            assertTrue(queue.offer("A"));
+            assertTrue(queue.offer(null));
+            assertTrue(queue.offer(""));
+            assertFalse(tailer.isEmpty());
+            assertEquals("A", tailer.poll());
+            assertNull(tailer.poll()); // The null element
+            assertFalse(tailer.isEmpty());
+            assertEquals("", tailer.poll());
+            assertTrue(tailer.isEmpty());
+
+            // A second tailer reads independently from the start
+            NullableJournalQueue<String>.Tailer other = queue.tailer("other");
+            assertEquals("A", other.poll());
+        }
+    }
+
+    @Test
+    void testRollingAndRestart() throws IOException {
+        int count = 500;
+        try (NullableJournalQueue<Long> queue =
+                new NullableJournalQueue<>(dir, ByteKeyCodec.longs(), 256)) {
+            NullableJournalQueue<Long>.Tailer tailer = queue.tailer("reader");
+            for (long i = 0; i < count; i++) {
+                queue.offer(i % 10 == 0 ? null : i);
+            }
+            for (long i = 0; i < count / 2; i++) {
+                assertEquals(i % 10 == 0 ? null : i, tailer.poll());
+            }
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.filter(f -> f.toString().endsWith(".journal")).count() > 1);
+        }
+
+        // Reopen: the appender continues at the end, the tailer where it stopped
+        try (NullableJournalQueue<Long> queue =
+                new NullableJournalQueue<>(dir, ByteKeyCodec.longs(), 256)) {
+            queue.offer((long) count);
+            NullableJournalQueue<Long>.Tailer tailer = queue.tailer("reader");
+            for (long i = count / 2; i < count; i++) {
+                assertEquals(i % 10 == 0 ? null : i, tailer.poll());
+            }
+            assertEquals(count, tailer.poll());
+            assertTrue(tailer.isEmpty());
+        }
+        assertThrows(
+                IOException.class,
+                () -> new NullableJournalQueue<>(dir, ByteKeyCodec.longs(), 512));
+    }
+
+    @Test
+    void testCrashDuringRoll() throws IOException {
+        try (NullableJournalQueue<Long> queue =
+                new NullableJournalQueue<>(dir, ByteKeyCodec.longs(), 256)) {
+            queue.offer(1L);
+            queue.offer(null);
+        }
+        // The next segment was created, but the end marker was not yet written
+        Files.write(dir.resolve(String.format("%020d.journal", 1)), new byte[256]);
+
+        try (NullableJournalQueue<Long> queue =
+                new NullableJournalQueue<>(dir, ByteKeyCodec.longs(), 256)) {
+            queue.offer(2L);
+            NullableJournalQueue<Long>.Tailer tailer = queue.tailer("reader");
+            assertEquals(1L, tailer.poll());
+            assertNull(tailer.poll());
+            assertFalse(tailer.isEmpty());
+            assertEquals(2L, tailer.poll());
+            assertTrue(tailer.isEmpty());
+            assertEquals(1, tailer.position() / 256); // In the second segment
+        }
+    }
+
+    @Test
+    void testCrashBeforeHeader() throws IOException {
+        StringBuilder longElement = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            longElement.append((char) ('a' + i % 26));
+        }
+        try (NullableJournalQueue<String> queue =
+                new NullableJournalQueue<>(dir, ByteKeyCodec.strings(), 4096)) {
+            queue.offer("x");
+            queue.offer(longElement.toString());
+        }
+        // The bytes of the second record reached the file, but its header did not
+        int header = 4 + 8; // magic, then the 8-byte record of "x"
+        try (FileChannel channel =
+                FileChannel.open(
+                        dir.resolve(String.format("%020d.journal", 0)), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), header);
+        }
+
+        try (NullableJournalQueue<String> queue =
+                new NullableJournalQueue<>(dir, ByteKeyCodec.strings(), 4096)) {
+            queue.offer("y");
+            NullableJournalQueue<String>.Tailer tailer = queue.tailer("reader");
+            assertEquals("x", tailer.poll());
+            assertEquals("y", tailer.poll());
+            assertTrue(tailer.isEmpty());
+        }
+    }
+
+    @Test
+    void testConcurrentTailer() throws Exception {
+        int count = 100_000;
+        try (NullableJournalQueue<Integer> queue =
+                new NullableJournalQueue<>(dir, ByteKeyCodec.ints(), 1 << 16)) {
+            NullableJournalQueue<Integer>.Tailer tailer = queue.tailer("reader");
+            Thread producer =
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < count; i++) {
+                                    queue.offer(i);
+                                }
+                            });
+            producer.start();
+            for (int i = 0; i < count; i++) {
+                while (tailer.isEmpty()) {
+                    Thread.yield();
+                }
+                assertEquals(i, tailer.poll());
+            }
+            producer.join();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+
+class NullableLongSortedConcurrentMapTest {
+
+    @Test
+    void testPutGetRemove() {
+        NullableLongSortedConcurrentMap<String> map = new NullableLongSortedConcurrentMap<>();
+        assertNull(map.put(2L, "two"));
+        assertNull(map.put(1L, null));
+        assertEquals("two", map.put(2L, "zwei"));
+
+        assertEquals("zwei", map.get(2L));
+        assertNull(map.get(1L));
+        assertTrue(map.containsKey(1L));
+        assertFalse(map.containsKey(3L));
+        assertEquals(2, map.size());
+
+        assertEquals("zwei", map.remove(2L));
+        assertFalse(map.containsKey(2L));
+        assertFalse(map.remove(1L, "other"));
+        assertTrue(map.remove(1L, null));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void testNullKeySlot() {
+        NullableLongSortedConcurrentMap<String> map = new NullableLongSortedConcurrentMap<>();
+        map.put(Long.MIN_VALUE, "min");
+        assertFalse(map.containsNullKey());
+        assertNull(map.putNullKey(null));
+        assertTrue(map.containsNullKey());
+        assertNull(map.getNullKey());
+
+        // null key is sorted before Long.MIN_VALUE
+        Map.Entry<Long, String> first = map.firstEntry();
+        assertNull(first.getKey());
+        assertNull(first.getValue());
+        assertNull(map.lowerEntry(Long.MIN_VALUE).getKey());
+        assertEquals(2, map.size());
+
+        assertNull(map.removeNullKey());
+        assertFalse(map.containsNullKey());
+        assertEquals(Long.MIN_VALUE, map.firstEntry().getKey());
+    }
+
+    @Test
+    void testNavigation() {
+        NullableLongSortedConcurrentMap<String> map = new NullableLongSortedConcurrentMap<>();
+        map.put(10L, "10");
+        map.put(20L, "20");
+        map.put(-5L, "-5");
+        map.putNullKey("null");
+
+        assertEquals(10L, map.floorEntry(15L).getKey());
+        assertEquals(10L, map.floorEntry(10L).getKey());
+        assertEquals(-5L, map.lowerEntry(10L).getKey());
+        assertNull(map.floorEntry(-6L).getKey());
+        assertEquals("null", map.floorEntry(-6L).getValue());
+        assertEquals(20L, map.ceilingEntry(11L).getKey());
+        assertEquals(20L, map.higherEntry(10L).getKey());
+        assertNull(map.higherEntry(20L));
+        assertEquals(20L, map.lastEntry().getKey());
+
+        assertNull(map.pollFirstEntry().getKey());
+        assertEquals(20L, map.pollLastEntry().getKey());
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void testSubMapViews() {
+        NullableLongSortedConcurrentMap<String> map = new NullableLongSortedConcurrentMap<>();
+        for (long i = 0; i < 10; i++) {
+            map.put(i, "v" + i);
+        }
+        map.putNullKey("null");
+
+        NullableLongSortedConcurrentMap<String> sub = map.subMap(3L, 6L);
+        assertEquals(3, sub.size());
+        assertFalse(sub.containsNullKey());
+        assertNull(sub.get(6L));
+        assertEquals(3L, sub.firstEntry().getKey());
+        assertEquals(5L, sub.lastEntry().getKey());
+        assertEquals(5L, sub.floorEntry(100L).getKey());
+        assertNull(sub.floorEntry(2L));
+        assertEquals(3L, sub.ceilingEntry(-100L).getKey());
+        assertThrows(IllegalArgumentException.class, () -> sub.put(7L, "x"));
+
+        NullableLongSortedConcurrentMap<String> head = map.headMap(2L);
+        assertEquals(3, head.size());
+        Iterator<Map.Entry<Long, String>> it = head.iterator();
+        assertNull(it.next().getKey());
+        assertEquals(0L, it.next().getKey());
+        assertEquals(1L, it.next().getKey());
+        assertFalse(it.hasNext());
+
+        map.tailMap(8L).clear();
+        assertEquals(9, map.size());
+        assertEquals(7L, map.lastEntry().getKey());
+    }
+
+    @Test
+    void testIteratorRemoveAndPolling() {
+        NullableLongSortedConcurrentMap<String> map = new NullableLongSortedConcurrentMap<>();
+        map.putNullKey(null);
+        map.put(1L, "1");
+        map.put(2L, "2");
+        Iterator<Map.Entry<Long, String>> it = map.iterator();
+        assertThrows(IllegalStateException.class, it::remove);
+        assertNull(it.next().getKey());
+        it.remove();
+        assertThrows(IllegalStateException.class, it::remove);
+        assertEquals(1L, it.next().getKey());
+        it.remove();
+        assertEquals(2L, it.next().getKey());
+        assertFalse(map.containsNullKey());
+        assertEquals(1, map.size());
+
+        map.putNullKey("null");
+        assertEquals(2L, map.pollLastEntry().getKey());
+        Map.Entry<Long, String> last = map.pollLastEntry();
+        assertNull(last.getKey());
+        assertEquals("null", last.getValue());
+        assertNull(map.pollLastEntry());
+        assertNull(map.pollFirstEntry());
+    }
+
+    @Test
+    void testSerialization() throws Exception {
+        NullableLongSortedConcurrentMap<String> map = new NullableLongSortedConcurrentMap<>();
+        for (long i = 0; i < 100; i++) {
+            map.put(i, i % 10 == 0 ? null : "v" + i);
+        }
+        map.remove(50L);
+        map.putNullKey(null);
+
+        NullableLongSortedConcurrentMap<String> copy = TestSerialization.roundTrip(map);
+        assertEquals(100, copy.size());
+        assertTrue(copy.containsNullKey());
+        assertTrue(copy.containsKey(10L));
+        assertNull(copy.get(10L));
+        assertFalse(copy.containsKey(50L));
+        assertEquals("v99", copy.lastEntry().getValue());
+        copy.put(100L, "v100");
+        assertEquals(100L, copy.floorEntry(200L).getKey());
+
+        NullableLongSortedConcurrentMap<String> view =
+                TestSerialization.roundTrip(map.subMap(5L, 8L));
+        assertEquals(3, view.size());
+        assertThrows(IllegalArgumentException.class, () -> view.put(9L, "x"));
+    }
+
+    @Test
+    void testMatchesTreeMapUnderRandomOperations() {
+        NullableLongSortedConcurrentMap<Long> map = new NullableLongSortedConcurrentMap<>();
+        TreeMap<Long, Long> reference = new TreeMap<>();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < 20_000; i++) {
+            long key = rnd.nextLong(-500, 500);
+            if (rnd.nextBoolean()) {
+                assertEquals(reference.put(key, key), map.put(key, key));
+            } else {
+                assertEquals(reference.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(reference.size(), map.size());
+        Iterator<Map.Entry<Long, Long>> it = map.iterator();
+        for (Map.Entry<Long, Long> e : reference.entrySet()) {
+            assertEquals(e, it.next());
+        }
+        assertFalse(it.hasNext());
+        for (long key = -510; key < 510; key++) {
+            assertEquals(reference.floorEntry(key), map.floorEntry(key));
+            assertEquals(reference.higherEntry(key), map.higherEntry(key));
+        }
+    }
+
+    @Test
+    void testConcurrentPuts() throws InterruptedException {
+        NullableLongSortedConcurrentMap<Long> map = new NullableLongSortedConcurrentMap<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long offset = t;
+            threads[t] =
+                    new Thread(
+                            () -> {
+                                for (long i = 0; i < 5_000; i++) {
+                                    long key = i * threads.length + offset;
+                                    map.put(key, key);
+                                    if (key % 3 == 0) {
+                                        map.remove(key);
+                                    }
+                                }
+                            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long expected = 0;
+        Long previous = null;
+        for (Map.Entry<Long, Long> e : map) {
+            assertNotEquals(0, e.getKey() % 3);
+            assertEquals(e.getKey(), e.getValue());
+            if (previous != null) {
+                assertTrue(previous < e.getKey());
+            }
+            previous = e.getKey();
+            expected++;
+        }
+        assertEquals(20_000 - 6_667, expected);
+    }
+}
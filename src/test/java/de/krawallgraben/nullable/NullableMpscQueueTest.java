@@ -0,0 +1,210 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class NullableMpscQueueTest {
+
+    @Test
+    void testOfferPollNull() {
+        for (NullableMpscQueue<String> queue :
+                Arrays.asList(new NullableMpscQueue<String>(), new NullableMpscQueue<String>(4))) {
+            assertTrue(queue.offer(null));
+            assertTrue(queue.offer("test"));
+            assertTrue(queue.offer(null));
+
+            assertEquals(3, queue.size());
+            assertNull(queue.peek());
+            assertNull(queue.poll());
+            assertEquals("test", queue.peek());
+            assertEquals("test", queue.poll());
+            assertFalse(queue.isEmpty());
+            assertNull(queue.remove());
+            assertTrue(queue.isEmpty());
+            assertNull(queue.poll()); // Empty now
+            assertThrows(NoSuchElementException.class, queue::remove);
+        }
+    }
+
+    @Test
+    void testBounded() {
+        NullableMpscQueue<Integer> queue = new NullableMpscQueue<>(5);
+        assertEquals(8, queue.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(8)); // Full
+        assertEquals(8, queue.size());
+
+        // Wrap around several times
+        for (int i = 8; i < 100; i++) {
+            assertEquals(i - 8, queue.poll());
+            assertTrue(queue.offer(i));
+            assertFalse(queue.offer(-1));
+        }
+        assertEquals(Arrays.asList(92, 93, 94, 95, 96, 97, 98, 99), new ArrayList<>(queue));
+
+        NullableMpscQueue<Integer> single = new NullableMpscQueue<>(1);
+        assertTrue(single.offer(null));
+        assertFalse(single.offer(1));
+        assertNull(single.poll());
+        assertTrue(single.offer(1));
+        assertThrows(IllegalArgumentException.class, () -> new NullableMpscQueue<>(0));
+    }
+
+    @Test
+    void testUnboundedChunks() {
+        NullableMpscQueue<Integer> queue = new NullableMpscQueue<>();
+        assertEquals(Integer.MAX_VALUE, queue.capacity());
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(queue.offer(i % 7 == 0 ? null : i));
+        }
+        assertEquals(5000, queue.size());
+        int i = 0;
+        for (Integer e : queue) {
+            assertEquals(i % 7 == 0 ? null : i, e);
+            i++;
+        }
+        assertEquals(5000, i);
+        for (i = 0; i < 5000; i++) {
+            assertEquals(i % 7 == 0 ? null : i, queue.remove());
+        }
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.offer(1));
+        assertEquals(1, queue.poll());
+    }
+
+    @Test
+    void testIteratorAndRemove() {
+        NullableMpscQueue<String> queue = new NullableMpscQueue<>(8);
+        queue.add("A");
+        queue.add(null);
+        queue.add("B");
+        queue.add("C");
+
+        assertTrue(queue.contains(null));
+        assertTrue(queue.remove("A"));
+        assertFalse(queue.remove("X"));
+        assertEquals("[null, B, C]", queue.toString());
+
+        Iterator<String> it = queue.iterator();
+        assertNull(it.next());
+        it.remove();
+        assertThrows(IllegalStateException.class, it::remove);
+        assertEquals("B", it.next());
+        assertEquals("C", it.next());
+        assertFalse(it.hasNext());
+
+        // Removed elements are skipped
+        assertEquals("B", queue.peek());
+        assertEquals("B", queue.poll());
+        assertEquals("C", queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+
+        queue.add(null);
+        queue.add("D");
+        queue.clear();
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testRemovedSlotsDoNotCount() {
+        for (NullableMpscQueue<String> queue :
+                Arrays.asList(new NullableMpscQueue<String>(), new NullableMpscQueue<String>(4))) {
+            queue.offer("x");
+            assertTrue(queue.remove("x"));
+            assertTrue(queue.isEmpty());
+            assertEquals(0, queue.size());
+            assertNull(queue.poll());
+
+            queue.offer(null);
+            queue.offer("y");
+            Iterator<String> it = queue.iterator();
+            it.next();
+            it.remove();
+            assertEquals(1, queue.size());
+            assertEquals("y", queue.peek());
+            assertEquals("y", queue.poll());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    void testIteratorRemoveAfterSlotReuse() {
+        NullableMpscQueue<String> queue = new NullableMpscQueue<>(1);
+        queue.offer(null);
+        Iterator<String> it = queue.iterator();
+        assertNull(it.next());
+
+        // The slot is consumed and refilled with an equal element before the iterator removes
+        assertNull(queue.poll());
+        assertTrue(queue.offer(null));
+        it.remove();
+        assertEquals(1, queue.size());
+        assertNull(queue.remove());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testProducersAndConsumer() throws InterruptedException {
+        for (NullableMpscQueue<Integer> queue :
+                Arrays.asList(
+                        new NullableMpscQueue<Integer>(), new NullableMpscQueue<Integer>(64))) {
+            int producers = 4;
+            int perProducer = 50_000;
+            List<Thread> threads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int base = p * perProducer;
+                threads.add(
+                        new Thread(
+                                () -> {
+                                    for (int i = 0; i < perProducer; i++) {
+                                        while (!queue.offer(i % 10 == 0 ? null : base + i)) {
+                                            Thread.yield();
+                                        }
+                                    }
+                                }));
+            }
+            AtomicReference<String> error = new AtomicReference<>();
+            int[] last = new int[producers];
+            Arrays.fill(last, -1);
+            threads.add(
+                    new Thread(
+                            () -> {
+                                int received = 0; // every tenth element is null
+                                while (received < producers * perProducer * 9 / 10) {
+                                    Integer e = queue.poll();
+                                    if (e != null) {
+                                        received++;
+                                        int p = e / perProducer;
+                                        if (e <= last[p]) {
+                                            error.compareAndSet(null, e + " after " + last[p]);
+                                        }
+                                        last[p] = e;
+                                    }
+                                }
+                            }));
+            for (Thread t : threads) {
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertNull(error.get());
+            for (Integer e : queue) {
+                assertNull(e); // Only nulls may be left
+            }
+            for (int p = 0; p < producers; p++) {
+                assertEquals((p + 1) * perProducer - 1, last[p]);
+            }
+        }
+    }
+}
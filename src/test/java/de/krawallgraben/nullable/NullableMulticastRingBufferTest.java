@@ -0,0 +1,117 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class NullableMulticastRingBufferTest {
+
+    @Test
+    void testMulticastWithNull() {
+        NullableMulticastRingBuffer<String> ring = new NullableMulticastRingBuffer<>(3);
+        assertEquals(4, ring.capacity());
+        assertTrue(ring.offer("lost")); // No subscribers yet
+
+        NullableMulticastRingBuffer.Subscriber<String> a = ring.subscribe();
+        NullableMulticastRingBuffer.Subscriber<String> b = ring.subscribe();
+        assertTrue(a.isEmpty());
+        assertNull(a.poll());
+
+        assertTrue(ring.offer("A"));
+        assertTrue(ring.offer(null));
+        assertEquals(2, a.size());
+        assertEquals("A", a.peek());
+        assertEquals("A", a.poll());
+        assertNull(a.poll()); // The null element
+        assertTrue(a.isEmpty());
+
+        // b has not read anything: two slots left
+        assertTrue(ring.offerAll(Arrays.asList("B", "C")));
+        assertFalse(ring.offer("D"));
+        assertFalse(ring.offerAll(Arrays.asList("D", "E", "F", "G", "H")));
+
+        List<String> seen = new ArrayList<>();
+        assertEquals(4, b.drain(seen::add, 10));
+        assertEquals(Arrays.asList("A", null, "B", "C"), seen);
+        assertTrue(ring.offer("D"));
+        assertTrue(ring.offer("E"));
+        assertFalse(ring.offer("F")); // a is behind now
+
+        a.close();
+        assertTrue(ring.offer("F"));
+        assertEquals("D", b.poll());
+    }
+
+    @Test
+    void testConcurrentProducersAndSubscribers() throws InterruptedException {
+        NullableMulticastRingBuffer<Integer> ring = new NullableMulticastRingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 20_000;
+        int total = producers * perProducer;
+        List<NullableMulticastRingBuffer.Subscriber<Integer>> subscribers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            subscribers.add(ring.subscribe());
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        long[] sums = new long[subscribers.size()];
+        for (int i = 0; i < subscribers.size(); i++) {
+            NullableMulticastRingBuffer.Subscriber<Integer> s = subscribers.get(i);
+            int slot = i;
+            threads.add(
+                    new Thread(
+                            () -> {
+                                int received = 0;
+                                long[] lastPerProducer = new long[producers];
+                                Arrays.fill(lastPerProducer, -1);
+                                while (received < total) {
+                                    if (s.isEmpty()) {
+                                        Thread.yield();
+                                        continue;
+                                    }
+                                    Integer e = s.poll();
+                                    received++;
+                                    if (e != null) {
+                                        // Elements of one producer arrive in order
+                                        int p = e / perProducer;
+                                        assertTrue(e > lastPerProducer[p]);
+                                        lastPerProducer[p] = e;
+                                        sums[slot] += e;
+                                    }
+                                }
+                            }));
+        }
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < perProducer; i++) {
+                                    Integer e = i % 100 == 0 ? null : base + i;
+                                    while (!ring.offer(e)) {
+                                        Thread.yield();
+                                    }
+                                }
+                            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        long expected = 0;
+        for (int i = 0; i < total; i++) {
+            if (i % perProducer % 100 != 0) {
+                expected += i;
+            }
+        }
+        for (long sum : sums) {
+            assertEquals(expected, sum);
+        }
+    }
+}
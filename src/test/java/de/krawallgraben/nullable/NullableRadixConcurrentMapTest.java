@@ -0,0 +1,134 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+
+class NullableRadixConcurrentMapTest {
+
+    @Test
+    void testPutGetRemove() {
+        NullableRadixConcurrentMap<String> map = new NullableRadixConcurrentMap<>();
+        assertNull(map.put("team", "1"));
+        assertNull(map.put("tea", null));
+        assertNull(map.put("", "empty"));
+        assertNull(map.put(null, "nullKey"));
+        assertEquals("1", map.put("team", "2"));
+
+        assertEquals(4, map.size());
+        assertEquals("2", map.get("team"));
+        assertTrue(map.containsKey("tea"));
+        assertNull(map.get("tea"));
+        assertFalse(map.containsKey("te"));
+        assertEquals("empty", map.get(""));
+        assertEquals("nullKey", map.get(null));
+
+        assertNull(map.putIfAbsent("tea", "x"));
+        assertNull(map.get("tea"));
+        assertTrue(map.remove("tea", null));
+        assertFalse(map.containsKey("tea"));
+        assertEquals("2", map.get("team"));
+        assertEquals("nullKey", map.remove(null));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void testIterationOrder() {
+        NullableRadixConcurrentMap<Integer> map = new NullableRadixConcurrentMap<>();
+        List<String> keys = Arrays.asList("b", "abc", "ab", "a", "", "abd", "ba");
+        for (String key : keys) {
+            map.put(key, key.length());
+        }
+        map.put(null, null);
+
+        Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
+        Map.Entry<String, Integer> first = it.next();
+        assertNull(first.getKey());
+        assertNull(first.getValue());
+        List<String> iterated = new ArrayList<>();
+        it.forEachRemaining(e -> iterated.add(e.getKey()));
+        assertEquals(Arrays.asList("", "a", "ab", "abc", "abd", "b", "ba"), iterated);
+    }
+
+    @Test
+    void testPrefixOperations() {
+        NullableRadixConcurrentMap<String> map = new NullableRadixConcurrentMap<>();
+        for (String key : Arrays.asList("car", "card", "care", "cart", "cat", "dog")) {
+            map.put(key, key.toUpperCase());
+        }
+
+        assertEquals(5, map.prefixCount("ca"));
+        assertEquals(4, map.prefixCount("car"));
+        assertEquals(0, map.prefixCount("cow"));
+        assertEquals(6, map.prefixCount(""));
+
+        assertEquals("card", map.longestPrefixOf("cardigan"));
+        assertEquals("car", map.longestPrefixOf("carbon"));
+        assertNull(map.longestPrefixOf("ca"));
+
+        NullableRadixConcurrentMap<String> view = map.prefixMap("car");
+        assertEquals(4, view.size());
+        assertEquals(Arrays.asList("car", "card", "care", "cart"), new ArrayList<>(view.keySet()));
+        assertNull(view.get("cat"));
+        assertThrows(IllegalArgumentException.class, () -> view.put("cow", "x"));
+
+        NullableRadixConcurrentMap<String> insideEdge = map.prefixMap("ca");
+        assertEquals(5, insideEdge.size());
+        assertEquals("car", insideEdge.keySet().iterator().next());
+
+        view.clear();
+        assertEquals(2, map.size());
+        assertEquals("CAT", map.get("cat"));
+    }
+
+    @Test
+    void testMatchesTreeMapUnderRandomOperations() {
+        NullableRadixConcurrentMap<Integer> map = new NullableRadixConcurrentMap<>();
+        TreeMap<String, Integer> reference = new TreeMap<>();
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < 20_000; i++) {
+            char[] chars = new char[rnd.nextInt(5)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) ('a' + rnd.nextInt(3));
+            }
+            String key = new String(chars);
+            if (rnd.nextInt(3) > 0) {
+                assertEquals(reference.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(reference.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(reference, map);
+        assertEquals(new ArrayList<>(reference.keySet()), new ArrayList<>(map.keySet()));
+        assertEquals(reference.subMap("ab", "ac").size(), map.prefixCount("ab"));
+    }
+
+    @Test
+    void testConcurrentWriters() throws InterruptedException {
+        NullableRadixConcurrentMap<Integer> map = new NullableRadixConcurrentMap<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] =
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < 2_000; i++) {
+                                    map.put("k" + id + "-" + i, i);
+                                }
+                            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8_000, map.size());
+        assertEquals(2_000, map.prefixCount("k2-"));
+    }
+}
@@ -0,0 +1,104 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class NullableShardedQueueTest {
+
+    @Test
+    void testQueueMethodsWithNull() {
+        NullableShardedQueue<String> queue = new NullableShardedQueue<>(3);
+        assertEquals(4, queue.shards());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        // One thread: its own shard, so FIFO
+        queue.offer("A");
+        queue.offer(null);
+        queue.offer("B");
+        assertEquals(3, queue.size());
+        assertTrue(queue.contains(null));
+        assertEquals("A", queue.peek());
+        assertEquals("A", queue.poll());
+        assertNull(queue.poll()); // The null element
+        assertFalse(queue.isEmpty());
+        assertEquals("B", queue.poll());
+        assertTrue(queue.isEmpty());
+
+        queue.addAll(Arrays.asList("C", null, "D"));
+        assertTrue(queue.remove(null));
+        Iterator<String> it = queue.iterator();
+        assertEquals("C", it.next());
+        it.remove();
+        assertEquals(Arrays.asList("D"), new ArrayList<>(queue));
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new NullableShardedQueue<>(0));
+    }
+
+    @Test
+    void testStealingAndPerProducerOrder() throws InterruptedException {
+        NullableShardedQueue<Integer> queue = new NullableShardedQueue<>(8);
+        int producers = 4;
+        int perProducer = 20_000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads.add(
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < perProducer; i++) {
+                                    queue.offer(base + i);
+                                }
+                            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        // A single consumer on another shard steals everything, each producer in order
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        Thread consumer =
+                new Thread(
+                        () -> {
+                            Integer e;
+                            while ((e = queue.poll()) != null) {
+                                int p = e / perProducer;
+                                if (e <= last[p]) {
+                                    outOfOrder.incrementAndGet();
+                                }
+                                last[p] = e;
+                                seen.put(e, Boolean.TRUE);
+                            }
+                        });
+        consumer.start();
+        consumer.join();
+        assertEquals(0, outOfOrder.get());
+        assertEquals(producers * perProducer, seen.size());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void testSerialization() throws Exception {
+        NullableShardedQueue<String> queue = new NullableShardedQueue<>(4);
+        queue.addAll(Arrays.asList("a", null, "b"));
+        NullableShardedQueue<String> copy = TestSerialization.roundTrip(queue);
+        assertEquals(4, copy.shards());
+        assertEquals(Arrays.asList("a", null, "b"), new ArrayList<>(copy));
+        assertEquals("a", copy.poll());
+        assertEquals(3, queue.size());
+    }
+}
@@ -0,0 +1,184 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class NullableSnapshotSortedMapTest {
+
+    @Test
+    void testBasicOperations() {
+        NullableSnapshotSortedMap<String, String> map = new NullableSnapshotSortedMap<>();
+        assertNull(map.put("b", "B"));
+        assertNull(map.put(null, "N"));
+        assertNull(map.put("a", null));
+        assertEquals("B", map.put("b", "B2"));
+
+        assertEquals(3, map.size());
+        assertTrue(map.containsKey("a"));
+        assertNull(map.get("a"));
+        assertEquals("N", map.get(null));
+        assertEquals(Arrays.asList(null, "a", "b"), new ArrayList<>(map.keySet()));
+
+        assertNull(map.firstEntry().getKey());
+        assertEquals("b", map.lastEntry().getKey());
+        assertEquals("a", map.ceilingEntry("a").getKey());
+        assertEquals("b", map.higherEntry("a").getKey());
+        assertEquals("a", map.floorEntry("aa").getKey());
+        assertNull(map.lowerEntry("a").getKey());
+        assertNull(map.lowerEntry(null));
+
+        assertFalse(map.remove("a", "x"));
+        assertTrue(map.remove("a", null));
+        assertEquals("N", map.remove(null));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void testSnapshotIsolation() {
+        NullableSnapshotSortedMap<Integer, String> map = new NullableSnapshotSortedMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "v" + i);
+        }
+        NullableSnapshotSortedMap<Integer, String> snapshot = map.snapshot();
+        map.remove(5);
+        map.put(200, "new");
+        snapshot.put(5, "changed");
+
+        assertEquals(100, snapshot.size());
+        assertEquals("changed", snapshot.get(5));
+        assertFalse(snapshot.containsKey(200));
+        assertFalse(map.containsKey(5));
+        assertEquals(100, map.size());
+
+        Iterable<Map.Entry<Integer, String>> scan = map.scan(10, true, 13, false);
+        map.remove(11);
+        List<Integer> keys = new ArrayList<>();
+        for (Map.Entry<Integer, String> e : scan) {
+            keys.add(e.getKey());
+        }
+        assertEquals(Arrays.asList(10, 11, 12), keys);
+    }
+
+    @Test
+    void testBatchUpdatesAreAtomic() throws InterruptedException {
+        NullableSnapshotSortedMap<Integer, Integer> map = new NullableSnapshotSortedMap<>();
+        for (int i = 0; i < 10; i++) {
+            map.put(i, 100);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicBoolean torn = new AtomicBoolean();
+        Thread reader =
+                new Thread(
+                        () -> {
+                            while (!done.get()) {
+                                int sum = 0;
+                                for (int value : map.values()) {
+                                    sum += value;
+                                }
+                                if (sum != 1000) {
+                                    torn.set(true);
+                                }
+                            }
+                        });
+        reader.start();
+        Thread[] writers = new Thread[2];
+        for (int t = 0; t < writers.length; t++) {
+            int seed = t;
+            writers[t] =
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < 2_000; i++) {
+                                    int from = (i + seed) % 10;
+                                    int to = (i * 7 + seed + 1) % 10;
+                                    map.update(
+                                            batch -> {
+                                                batch.put(from, batch.get(from) - 1);
+                                                batch.put(to, batch.get(to) + 1);
+                                            });
+                                }
+                            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        reader.join();
+
+        assertFalse(torn.get());
+        int sum = 0;
+        for (int value : map.values()) {
+            sum += value;
+        }
+        assertEquals(1000, sum);
+    }
+
+    @Test
+    void testLargeBatchIsNotStarved() throws InterruptedException {
+        NullableSnapshotSortedMap<Integer, Integer> map = new NullableSnapshotSortedMap<>();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int key = -1 - t;
+            writers[t] =
+                    new Thread(
+                            () -> {
+                                for (int i = 0; !done.get(); i++) {
+                                    map.put(key, i);
+                                }
+                            });
+            writers[t].start();
+        }
+        AtomicInteger attempts = new AtomicInteger();
+        try {
+            map.update(
+                    batch -> {
+                        attempts.incrementAndGet();
+                        for (int i = 0; i < 20_000; i++) {
+                            batch.put(i, i);
+                        }
+                    });
+        } finally {
+            done.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+
+        assertTrue(attempts.get() <= PersistentSortedTree.OPTIMISTIC_ATTEMPTS + 1 + writers.length);
+        assertEquals(20_000 + writers.length, map.size());
+    }
+
+    @Test
+    void testPutAllIsAtomic() {
+        NullableSnapshotSortedMap<Integer, Integer> map = new NullableSnapshotSortedMap<>();
+        Map<Integer, Integer> batch = new java.util.TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            batch.put(i, i);
+        }
+        map.putAll(batch);
+        assertEquals(batch, map);
+        assertEquals(1000, map.snapshot().size());
+    }
+
+    @Test
+    void testSerialization() throws Exception {
+        NullableSnapshotSortedMap<String, String> map = new NullableSnapshotSortedMap<>();
+        map.put("b", "B");
+        map.put(null, "N");
+        map.put("a", null);
+        NullableSnapshotSortedMap<String, String> copy = TestSerialization.roundTrip(map);
+        assertEquals(map, copy);
+        assertEquals(Arrays.asList(null, "a", "b"), new ArrayList<>(copy.keySet()));
+        copy.put("c", "C");
+        assertEquals(4, copy.size());
+        assertEquals(3, map.size());
+    }
+}
@@ -2,11 +2,20 @@ package de.krawallgraben.nullable;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 
 class NullableSortedConcurrentMapTest {
@@ -138,4 +147,409 @@ class NullableSortedConcurrentMapTest {
         // Verify views are wrapped correctly (not exposing placeholders)
         assertNull(head.keySet().iterator().next()); // First key should be null
     }
+
+    @Test
+    void testByteComparableKeys() {
+        NullableSortedConcurrentMap<String, String> map =
+                new NullableSortedConcurrentMap<>(ByteKeyEncoder.strings());
+        map.put("b", "valB");
+        map.put("", "valEmpty");
+        map.put(null, "valNull");
+        map.put("ab", null);
+
+        assertEquals(4, map.size());
+        assertEquals("valNull", map.get(null));
+        assertTrue(map.containsKey("ab"));
+        assertNull(map.get("ab"));
+
+        // null first, then natural String order
+        Iterator<String> it = map.keySet().iterator();
+        assertNull(it.next());
+        assertEquals("", it.next());
+        assertEquals("ab", it.next());
+        assertEquals("b", it.next());
+
+        assertEquals("ab", map.ceilingKey("aa"));
+        assertEquals("ab", map.floorKey("az"));
+        assertEquals(2, map.subMap("", "b").size());
+        assertEquals("b", map.descendingMap().firstKey());
+        assertTrue(map.comparator().compare(null, "") < 0);
+        assertTrue(map.descendingMap().comparator().compare("a", "b") > 0);
+    }
+
+    @Test
+    void testByteComparableSerialization() throws Exception {
+        NullableSortedConcurrentMap<Long, String> map =
+                new NullableSortedConcurrentMap<>(ByteKeyEncoder.longs());
+        map.put(-1L, "minus");
+        map.put(null, "null");
+        map.put(2L, null);
+
+        NullableSortedConcurrentMap<Long, String> copy = TestSerialization.roundTrip(map);
+        assertEquals(3, copy.size());
+        assertNull(copy.firstKey());
+        assertTrue(copy.containsKey(2L));
+        assertEquals("null", copy.get(null));
+        copy.put(0L, "zero");
+        assertEquals(Long.valueOf(0), copy.higherKey(-1L));
+        assertEquals(Long.valueOf(2), copy.lastKey());
+
+        for (ByteKeyEncoder<?> encoder :
+                Arrays.asList(
+                        ByteKeyEncoder.strings(),
+                        ByteKeyEncoder.ints(),
+                        ByteKeyEncoder.doubles(),
+                        (ByteKeyEncoder<String>)
+                                k -> new ByteKeyEncoder.Builder().add(k).toByteArray())) {
+            assertNotNull(TestSerialization.roundTrip(new NullableSortedConcurrentMap<>(encoder)));
+        }
+    }
+
+    @Test
+    void testPrefixMap() {
+        NullableSortedConcurrentMap<String, Integer> map = new NullableSortedConcurrentMap<>();
+        map.put(null, 0);
+        map.put("ab", 1);
+        map.put("abc", 2);
+        map.put("ab\uffff", 3);
+        map.put("ac", 4);
+        map.put("a", 5);
+
+        assertEquals(3, map.prefixMap("ab").size());
+        assertEquals("ab", map.prefixMap("ab").firstKey());
+        assertEquals("ab\uffff", map.prefixMap("ab").lastKey());
+        assertEquals(1, map.prefixMap("ab\uffff").size());
+        assertEquals(5, map.prefixMap("").size());
+        assertFalse(map.prefixMap("").containsKey(null));
+        assertTrue(map.prefixMap("b").isEmpty());
+
+        // Descending views give descending prefix views
+        NullableSortedConcurrentMap<String, Integer> descending =
+                map.descendingMap().prefixMap("ab");
+        assertEquals(3, descending.size());
+        assertEquals("ab\uffff", descending.firstKey());
+        assertEquals("ab", descending.lastKey());
+        assertEquals(5, map.descendingMap().prefixMap("").size());
+
+        NullableSortedConcurrentMap<String, Integer> encoded =
+                new NullableSortedConcurrentMap<>(ByteKeyEncoder.strings());
+        encoded.putAll(map);
+        assertEquals(3, encoded.prefixMap("ab").size());
+
+        // Other orders cannot be mapped to a key range
+        assertThrows(
+                IllegalStateException.class,
+                () ->
+                        new NullableSortedConcurrentMap<String, Integer>(Comparator.reverseOrder())
+                                .prefixMap("ab"));
+        assertThrows(
+                IllegalStateException.class,
+                () ->
+                        new NullableSortedConcurrentMap<String, Integer>(
+                                        (ByteKeyEncoder<String>) k -> new byte[] {1})
+                                .prefixMap("ab"));
+    }
+
+    @Test
+    void testPrefixMapOnSubViews() {
+        for (NullableSortedConcurrentMap<String, Integer> map :
+                Arrays.asList(
+                        new NullableSortedConcurrentMap<String, Integer>(),
+                        new NullableSortedConcurrentMap<String, Integer>(
+                                ByteKeyEncoder.strings()))) {
+            map.put(null, 0);
+            map.put("a", 1);
+            map.put("ab", 2);
+            map.put("abc", 3);
+            map.put("ac", 4);
+            map.put("b", 5);
+
+            // The prefix range reaches beyond the view
+            NullableSortedConcurrentMap<String, Integer> head = map.headMap("ac").prefixMap("a");
+            assertEquals(Arrays.asList("a", "ab", "abc"), new ArrayList<>(head.keySet()));
+            assertThrows(IllegalArgumentException.class, () -> head.put("ad", 9));
+            NullableSortedConcurrentMap<String, Integer> sub =
+                    map.subMap("ab", false, "b", true).prefixMap("ab");
+            assertEquals(Arrays.asList("abc"), new ArrayList<>(sub.keySet()));
+            assertEquals(
+                    Arrays.asList("abc", "ab"),
+                    new ArrayList<>(map.descendingMap().headMap("aa").prefixMap("ab").keySet()));
+
+            // No overlap
+            NullableSortedConcurrentMap<String, Integer> tail = map.tailMap("b").prefixMap("a");
+            assertTrue(tail.isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> tail.put("a", 9));
+            assertTrue(map.headMap("a").prefixMap("a").isEmpty());
+            assertTrue(map.headMap("a", true).prefixMap("ab").isEmpty());
+            assertEquals(1, map.headMap("a", true).prefixMap("a").size());
+            assertTrue(map.tailMap("ac", false).prefixMap("ab").isEmpty());
+
+            // Views of the prefix view keep the intersected bounds
+            assertEquals(2, map.tailMap("ab").prefixMap("a").tailMap("abc").size());
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> map.tailMap("ab").prefixMap("a").tailMap("a"));
+        }
+    }
+
+    @Test
+    void testBulkConstruction() {
+        TreeMap<Integer, String> sorted = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            sorted.put(i, "v" + i);
+        }
+        NullableSortedConcurrentMap<Integer, String> fromSorted =
+                new NullableSortedConcurrentMap<>(sorted);
+        assertEquals(sorted, fromSorted);
+        assertEquals(Integer.valueOf(0), fromSorted.firstKey());
+        assertEquals(Integer.valueOf(999), fromSorted.lastKey());
+        fromSorted.put(null, "n");
+        fromSorted.put(1000, "v1000");
+        assertEquals(1002, fromSorted.size());
+
+        // Iteration order of the source map differs from the null-first order
+        TreeMap<Integer, String> nullsLast =
+                new TreeMap<>(Comparator.nullsLast(Comparator.reverseOrder()));
+        nullsLast.put(null, "n");
+        nullsLast.put(1, "a");
+        nullsLast.put(2, "b");
+        NullableSortedConcurrentMap<Integer, String> reordered =
+                new NullableSortedConcurrentMap<>(nullsLast);
+        assertEquals(Arrays.asList(null, 2, 1), new ArrayList<>(reordered.keySet()));
+
+        NullableSortedConcurrentMap.Builder<String, Integer> builder =
+                new NullableSortedConcurrentMap.Builder<>();
+        builder.put("c", 1).put("a", 2).put(null, 3).put("c", 4).put("b", null);
+        NullableSortedConcurrentMap<String, Integer> built = builder.build();
+        assertEquals(Arrays.asList(null, "a", "b", "c"), new ArrayList<>(built.keySet()));
+        assertEquals(Integer.valueOf(4), built.get("c"));
+        assertTrue(built.containsKey("b"));
+        assertTrue(builder.build().isEmpty());
+
+        NullableSortedConcurrentMap<String, Integer> encoded =
+                new NullableSortedConcurrentMap.Builder<String, Integer>(ByteKeyEncoder.strings())
+                        .put("b", 1)
+                        .put("a", 2)
+                        .put(null, 3)
+                        .build();
+        assertEquals(Arrays.asList(null, "a", "b"), new ArrayList<>(encoded.keySet()));
+        assertEquals(Integer.valueOf(2), encoded.get("a"));
+
+        // Large unsorted input is sorted in parallel; the last value of each key wins
+        NullableSortedConcurrentMap.Builder<Integer, Integer> large =
+                new NullableSortedConcurrentMap.Builder<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(20_000);
+            large.put(key, i);
+            expected.put(key, i);
+        }
+        assertEquals(expected, large.build());
+    }
+
+    @Test
+    void testCursor() {
+        NullableSortedConcurrentMap<Integer, String> map = new NullableSortedConcurrentMap<>();
+        map.put(null, "n");
+        for (int i = 0; i < 100; i += 10) {
+            map.put(i, "v" + i);
+        }
+        map.put(50, null);
+
+        NullableSortedConcurrentMap<Integer, String>.Cursor cursor = map.cursor();
+        assertFalse(cursor.isPositioned());
+        assertThrows(NoSuchElementException.class, cursor::key);
+
+        assertTrue(cursor.next());
+        assertNull(cursor.key());
+        assertEquals("n", cursor.value());
+        assertTrue(cursor.next());
+        assertEquals(Integer.valueOf(0), cursor.key());
+
+        assertTrue(cursor.seek(35));
+        assertEquals(Integer.valueOf(40), cursor.key());
+        assertTrue(cursor.seek(50));
+        assertEquals(Integer.valueOf(50), cursor.key());
+        assertNull(cursor.value());
+        assertTrue(cursor.prev());
+        assertEquals(Integer.valueOf(40), cursor.key());
+        assertTrue(cursor.seekFloor(15));
+        assertEquals(Integer.valueOf(10), cursor.key());
+        assertFalse(cursor.seek(91));
+        assertFalse(cursor.isPositioned());
+
+        assertTrue(cursor.last());
+        assertEquals(Integer.valueOf(90), cursor.key());
+        assertFalse(cursor.next());
+        assertTrue(cursor.prev());
+        assertEquals(Integer.valueOf(90), cursor.key());
+
+        // Removing the current entry does not invalidate the cursor
+        assertTrue(cursor.seek(20));
+        map.remove(20);
+        assertEquals("v20", cursor.value());
+        assertTrue(cursor.next());
+        assertEquals("v30", cursor.value());
+        map.put(30, "w30");
+        assertEquals("v30", cursor.value());
+        assertEquals(Integer.valueOf(30), cursor.key());
+        assertTrue(cursor.prev());
+        assertEquals(Integer.valueOf(10), cursor.key());
+
+        NullableSortedConcurrentMap<Integer, String>.Cursor descending =
+                map.descendingMap().cursor();
+        assertTrue(descending.seek(45));
+        assertEquals(Integer.valueOf(40), descending.key());
+        assertTrue(descending.next());
+        assertEquals(Integer.valueOf(30), descending.key());
+    }
+
+    @Test
+    void testCursorMatchesNavigationMethods() {
+        NullableSortedConcurrentMap<Integer, Integer> map = new NullableSortedConcurrentMap<>();
+        for (int i = 0; i < 1000; i += 3) {
+            map.put(i, i);
+        }
+        NullableSortedConcurrentMap<Integer, Integer>.Cursor cursor = map.cursor();
+        Random random = new Random(42);
+        int probe = 0;
+        for (int i = 0; i < 2000; i++) {
+            probe = Math.floorMod(probe + random.nextInt(40) - 10, 1010);
+            if (random.nextBoolean()) {
+                assertEquals(map.ceilingKey(probe) != null, cursor.seek(probe));
+                if (cursor.isPositioned()) assertEquals(map.ceilingKey(probe), cursor.key());
+            } else {
+                assertEquals(map.floorKey(probe) != null, cursor.seekFloor(probe));
+                if (cursor.isPositioned()) assertEquals(map.floorKey(probe), cursor.key());
+            }
+        }
+    }
+
+    @Test
+    void testMergeOperations() {
+        NullableSortedConcurrentMap<Integer, String> yesterday =
+                new NullableSortedConcurrentMap<>();
+        yesterday.put(null, "n1");
+        yesterday.put(1, "a1");
+        yesterday.put(2, null);
+        yesterday.put(4, "d1");
+        NullableSortedConcurrentMap<Integer, String> today = new NullableSortedConcurrentMap<>();
+        today.put(null, null);
+        today.put(2, "b2");
+        today.put(3, "c2");
+        today.put(4, "d2");
+
+        NullableSortedConcurrentMap<Integer, String>.MergeJoin<String> join =
+                yesterday.mergeJoin(today);
+        List<String> visited = new ArrayList<>();
+        while (join.next()) {
+            visited.add(
+                    join.key()
+                            + ":"
+                            + (join.inThis() ? join.value() : "-")
+                            + "/"
+                            + (join.inOther() ? join.otherValue() : "-"));
+        }
+        assertEquals(
+                Arrays.asList("null:n1/null", "1:a1/-", "2:null/b2", "3:-/c2", "4:d1/d2"), visited);
+        assertFalse(join.next());
+
+        NullableSortedConcurrentMap<Integer, String> union =
+                yesterday.union(today, (a, b) -> a + "+" + b);
+        assertEquals(Arrays.asList(null, 1, 2, 3, 4), new ArrayList<>(union.keySet()));
+        assertEquals("n1+null", union.get(null));
+        assertEquals("null+b2", union.get(2));
+        assertEquals("c2", union.get(3));
+
+        NullableSortedConcurrentMap<Integer, String> intersection =
+                yesterday.intersect(today, (a, b) -> b);
+        assertEquals(Arrays.asList(null, 2, 4), new ArrayList<>(intersection.keySet()));
+        assertTrue(intersection.containsKey(null));
+        assertNull(intersection.get(null));
+        assertEquals("d2", intersection.get(4));
+
+        NullableSortedConcurrentMap<Integer, String> difference = yesterday.difference(today);
+        assertEquals(Arrays.asList(1), new ArrayList<>(difference.keySet()));
+
+        // Maps in a different order are sorted first
+        Map<Integer, Integer> unsorted = new java.util.HashMap<>();
+        unsorted.put(4, 40);
+        unsorted.put(null, 0);
+        unsorted.put(9, 90);
+        assertEquals(
+                Arrays.asList(null, 4),
+                new ArrayList<>(yesterday.intersect(unsorted, (a, b) -> a).keySet()));
+        NullableSortedConcurrentMap<Integer, String> reversed =
+                new NullableSortedConcurrentMap<>(Comparator.reverseOrder());
+        reversed.put(1, "r");
+        reversed.put(5, "r");
+        NullableSortedConcurrentMap<Integer, String> range = yesterday.subMap(2, 5);
+        assertEquals(
+                Arrays.asList(2, 4, 5),
+                new ArrayList<>(range.union(reversed.headMap(3), (a, b) -> a).keySet()));
+
+        NullableSortedConcurrentMap<Integer, String> target = new NullableSortedConcurrentMap<>();
+        target.put(1, "t1");
+        target.put(7, null);
+        yesterday.unionInto(target, (t, y) -> t + "|" + y);
+        assertEquals(Arrays.asList(null, 1, 2, 4, 7), new ArrayList<>(target.keySet()));
+        assertEquals("t1|a1", target.get(1));
+        assertNull(target.get(2));
+        assertTrue(target.containsKey(7));
+    }
+
+    @Test
+    void testParallelProcessing() {
+        NullableSortedConcurrentMap<Integer, Integer> map = new NullableSortedConcurrentMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            map.put(i, i % 10);
+        }
+        map.put(null, null);
+
+        assertEquals(map.size(), map.keySet().parallelStream().count());
+        assertEquals(
+                map.values().stream().filter(v -> v != null).mapToLong(v -> v).sum(),
+                map.values().parallelStream().filter(v -> v != null).mapToLong(v -> v).sum());
+        assertEquals(
+                new ArrayList<>(map.entrySet()),
+                map.entrySet().parallelStream().collect(Collectors.toList()));
+
+        NullableSortedConcurrentMap<Integer, Integer> range = map.subMap(100, 60_000);
+        List<Integer> keys = range.keySet().parallelStream().collect(Collectors.toList());
+        assertEquals(new ArrayList<>(range.keySet()), keys);
+        assertEquals(59_900, keys.size());
+
+        // The range splits into non-empty, adjacent pieces
+        Spliterator<Integer> upper = range.keySet().spliterator();
+        Spliterator<Integer> lower = upper.trySplit();
+        assertNotNull(lower);
+        List<Integer> split = new ArrayList<>();
+        lower.forEachRemaining(split::add);
+        int boundary = split.size();
+        upper.forEachRemaining(split::add);
+        assertTrue(boundary > 0 && boundary < keys.size());
+        assertEquals(keys, split);
+
+        // Combined in key order, also for descending views
+        String expected =
+                range.descendingMap().keySet().stream()
+                        .map(String::valueOf)
+                        .collect(Collectors.joining(","));
+        assertEquals(
+                expected,
+                range.descendingMap()
+                        .parallelReduce(
+                                "",
+                                (k, v) -> String.valueOf(k),
+                                (a, b) -> a.isEmpty() ? b : b.isEmpty() ? a : a + "," + b));
+        List<String> ordered = new ArrayList<>();
+        range.descendingMap().parallelForEachOrdered((k, v) -> String.valueOf(k), ordered::add);
+        assertEquals(expected, String.join(",", ordered));
+
+        LongAdder count = new LongAdder();
+        map.parallelForEach((k, v) -> count.increment());
+        assertEquals(map.size(), count.sum());
+        assertEquals(0, map.subMap(5, 5).parallelReduce(0, (k, v) -> 1, Integer::sum));
+    }
 }
@@ -0,0 +1,103 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class NullableSortedConcurrentMultimapTest {
+
+    @Test
+    void testDuplicateKeysAndNulls() {
+        NullableSortedConcurrentMultimap<Long, String> map =
+                new NullableSortedConcurrentMultimap<>();
+        map.put(2L, "b1");
+        map.put(null, "n1");
+        map.put(2L, null);
+        map.put(1L, "a");
+        map.put(2L, "b1");
+        map.put(null, null);
+
+        assertEquals(6, map.size());
+        assertEquals(Arrays.asList("b1", null, "b1"), map.get(2L));
+        assertEquals(Arrays.asList("n1", null), map.get(null));
+        assertEquals(Collections.emptyList(), map.get(3L));
+        assertEquals(3, map.count(2L));
+        assertTrue(map.containsKey(null));
+        assertTrue(map.containsEntry(2L, null));
+        assertFalse(map.containsEntry(1L, null));
+
+        List<String> order = new ArrayList<>();
+        for (Map.Entry<Long, String> e : map) {
+            order.add(e.getKey() + "=" + e.getValue());
+        }
+        assertEquals(Arrays.asList("null=n1", "null=null", "1=a", "2=b1", "2=null", "2=b1"), order);
+
+        assertTrue(map.remove(2L, "b1"));
+        assertEquals(Arrays.asList(null, "b1"), map.get(2L));
+        assertFalse(map.remove(1L, "x"));
+        assertEquals(Arrays.asList(null, "b1"), map.removeAll(2L));
+        assertFalse(map.containsKey(2L));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    void testRangeScans() {
+        NullableSortedConcurrentMultimap<Integer, Integer> map =
+                new NullableSortedConcurrentMultimap<>();
+        for (int i = 0; i < 10; i++) {
+            map.put(i, i);
+            map.put(i, -i);
+        }
+        map.put(null, 0);
+
+        List<Integer> values = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> e : map.entries(3, true, 5, false)) {
+            values.add(e.getValue());
+        }
+        assertEquals(Arrays.asList(3, -3, 4, -4), values);
+
+        values.clear();
+        for (Map.Entry<Integer, Integer> e : map.entries(null, true, 0, true)) {
+            values.add(e.getKey());
+        }
+        assertEquals(Arrays.asList(null, 0, 0), values);
+        assertFalse(map.entries(4, false, 4, true).iterator().hasNext());
+        assertFalse(map.entries(4, true, 4, false).iterator().hasNext());
+
+        Iterator<Map.Entry<Integer, Integer>> it = map.entries(9, true, 9, true).iterator();
+        it.next();
+        it.remove();
+        assertEquals(Arrays.asList(-9), map.get(9));
+    }
+
+    @Test
+    void testConcurrentPuts() throws InterruptedException {
+        NullableSortedConcurrentMultimap<Integer, Integer> map =
+                new NullableSortedConcurrentMultimap<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] =
+                    new Thread(
+                            () -> {
+                                for (int i = 0; i < 1_000; i++) {
+                                    map.put(i % 10, id);
+                                }
+                            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4_000, map.size());
+        assertEquals(400, map.count(7));
+        assertEquals(400, map.removeAll(7).size());
+        assertEquals(3_600, map.size());
+    }
+}
@@ -0,0 +1,190 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NullableSortedFileMapTest {
+
+    @TempDir Path dir;
+
+    private NullableSortedFileMap<Long, String> export(Map<Long, String> map) throws IOException {
+        Path file = dir.resolve("map.nsf");
+        NullableSortedFileMap.write(map, file, ByteKeyCodec.longs(), ByteKeyCodec.strings());
+        return new NullableSortedFileMap<>(file, ByteKeyCodec.longs(), ByteKeyCodec.strings());
+    }
+
+    @Test
+    void testCodecs() {
+        for (String s : Arrays.asList("", "abc", "ä€", "￿\u0000x")) {
+            assertEquals(s, ByteKeyCodec.strings().decode(ByteKeyCodec.strings().encode(s)));
+        }
+        for (long l : new long[] {Long.MIN_VALUE, -1, 0, 42, Long.MAX_VALUE}) {
+            assertEquals(l, ByteKeyCodec.longs().decode(ByteKeyCodec.longs().encode(l)));
+        }
+        for (int i : new int[] {Integer.MIN_VALUE, -1, 0, 42, Integer.MAX_VALUE}) {
+            assertEquals(i, ByteKeyCodec.ints().decode(ByteKeyCodec.ints().encode(i)));
+        }
+        for (double d : new double[] {Double.NEGATIVE_INFINITY, -1.5, -0.0, 0.0, 3.25}) {
+            assertEquals(d, ByteKeyCodec.doubles().decode(ByteKeyCodec.doubles().encode(d)));
+        }
+    }
+
+    @Test
+    void testReadsMatchSource() throws IOException {
+        NullableSortedConcurrentMap<Long, String> source = new NullableSortedConcurrentMap<>();
+        TreeMap<Long, String> expected = new TreeMap<>();
+        for (long i = -5000; i < 5000; i += 3) {
+            String value = i % 7 == 0 ? null : "value-" + i;
+            source.put(i, value);
+            expected.put(i, value);
+        }
+        source.put(null, "null key");
+        NullableSortedFileMap<Long, String> map = export(source);
+
+        assertEquals(source.size(), map.size());
+        assertEquals("null key", map.get(null));
+        assertEquals("value-1", map.get(1L));
+        assertTrue(map.containsKey(7L));
+        assertNull(map.get(7L));
+        assertFalse(map.containsKey(2L));
+        assertNull(map.firstKey());
+        assertEquals(4999L, map.lastKey());
+
+        for (long probe = -5010; probe < 5010; probe += 17) {
+            assertEquals(expected.floorKey(probe), map.floorKey(probe));
+            assertEquals(expected.lowerKey(probe), orNull(map.lowerEntry(probe)));
+            assertEquals(expected.ceilingKey(probe), map.ceilingKey(probe));
+            assertEquals(expected.higherKey(probe), map.higherKey(probe));
+        }
+
+        NavigableMap<Long, String> sub = map.subMap(-10L, true, 20L, false);
+        assertEquals(expected.subMap(-10L, true, 20L, false), sub);
+        assertEquals(
+                new ArrayList<>(expected.subMap(-10L, true, 20L, false).descendingKeySet()),
+                new ArrayList<>(sub.descendingKeySet()));
+        assertEquals(expected.headMap(-4000L), map.tailMap(-5000L).headMap(-4000L));
+        assertThrows(IllegalArgumentException.class, () -> sub.subMap(-20L, 0L));
+    }
+
+    private static Long orNull(Map.Entry<Long, String> e) {
+        return e == null ? null : e.getKey();
+    }
+
+    @Test
+    void testReadOnly() throws IOException {
+        TreeMap<Long, String> source = new TreeMap<>();
+        for (long i = 0; i < 100; i++) {
+            source.put(i, "v" + i);
+        }
+        NullableSortedFileMap<Long, String> map = export(source);
+        NavigableMap<Long, String> head = map.headMap(10L, false);
+
+        assertThrows(UnsupportedOperationException.class, () -> map.put(5L, "changed"));
+        assertThrows(UnsupportedOperationException.class, () -> map.put(1000L, "new"));
+        assertThrows(UnsupportedOperationException.class, () -> map.remove(6L));
+        assertThrows(UnsupportedOperationException.class, () -> map.remove(2000L));
+        assertThrows(UnsupportedOperationException.class, () -> map.remove(7L, "v7"));
+        assertThrows(UnsupportedOperationException.class, () -> map.putIfAbsent(7L, "x"));
+        assertThrows(UnsupportedOperationException.class, () -> map.merge(7L, "x", (a, b) -> b));
+        assertThrows(UnsupportedOperationException.class, map::pollFirstEntry);
+        assertThrows(UnsupportedOperationException.class, () -> head.pollLastEntry());
+        assertThrows(UnsupportedOperationException.class, head::clear);
+        assertThrows(UnsupportedOperationException.class, () -> head.keySet().remove(1L));
+        assertThrows(UnsupportedOperationException.class, () -> map.descendingKeySet().pollFirst());
+
+        Iterator<Map.Entry<Long, String>> it = map.entrySet().iterator();
+        Map.Entry<Long, String> first = it.next();
+        assertThrows(UnsupportedOperationException.class, () -> first.setValue("zero"));
+        assertThrows(UnsupportedOperationException.class, it::remove);
+        Iterator<Long> keys = head.descendingKeySet().iterator();
+        assertEquals(9L, keys.next());
+        assertThrows(UnsupportedOperationException.class, keys::remove);
+
+        assertEquals(source, map);
+        assertEquals(10, head.size());
+        assertEquals(source.headMap(10L), head);
+
+        // A modified copy can be exported to a new file
+        TreeMap<Long, String> changed = new TreeMap<>(map);
+        changed.remove(0L);
+        changed.put(1000L, null);
+        Path copy = dir.resolve("copy.nsf");
+        NullableSortedFileMap.write(changed, copy, ByteKeyCodec.longs(), ByteKeyCodec.strings());
+        NullableSortedFileMap<Long, String> reopened =
+                new NullableSortedFileMap<>(copy, ByteKeyCodec.longs(), ByteKeyCodec.strings());
+        assertEquals(changed, reopened);
+        assertEquals(1L, reopened.firstKey());
+        assertTrue(reopened.containsKey(1000L));
+    }
+
+    @Test
+    void testEmptyAndInvalidFiles() throws IOException {
+        NullableSortedFileMap<Long, String> map = export(new TreeMap<>());
+        assertTrue(map.isEmpty());
+        assertNull(map.firstEntry());
+        assertNull(map.floorEntry(1L));
+        assertEquals(0, map.size());
+        assertThrows(UnsupportedOperationException.class, () -> map.put(1L, "a"));
+
+        Path invalid = dir.resolve("invalid");
+        Files.write(invalid, new byte[100]);
+        assertThrows(
+                IOException.class,
+                () ->
+                        new NullableSortedFileMap<>(
+                                invalid, ByteKeyCodec.longs(), ByteKeyCodec.strings()));
+
+        TreeMap<Long, String> reversed = new TreeMap<>((a, b) -> Long.compare(b, a));
+        reversed.put(1L, "a");
+        reversed.put(2L, "b");
+        assertThrows(IllegalArgumentException.class, () -> export(reversed));
+    }
+
+    @Test
+    void testFailedWriteKeepsExistingFile() throws IOException {
+        TreeMap<Long, String> source = new TreeMap<>();
+        source.put(1L, "a");
+        source.put(2L, "b");
+        export(source);
+
+        TreeMap<Long, String> reversed = new TreeMap<>((a, b) -> Long.compare(b, a));
+        reversed.putAll(source);
+        assertThrows(IllegalArgumentException.class, () -> export(reversed));
+
+        Path file = dir.resolve("map.nsf");
+        ByteKeyCodec<Long> empty =
+                new ByteKeyCodec<Long>() {
+                    @Override
+                    public byte[] encode(Long key) {
+                        return new byte[0];
+                    }
+
+                    @Override
+                    public Long decode(byte[] bytes) {
+                        return 0L;
+                    }
+                };
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> NullableSortedFileMap.write(source, file, empty, ByteKeyCodec.strings()));
+
+        assertEquals(
+                source,
+                new NullableSortedFileMap<>(file, ByteKeyCodec.longs(), ByteKeyCodec.strings()));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package de.krawallgraben.nullable;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class NullableWorkStealingDequeTest {
+
+    @Test
+    void testPushPopSteal() {
+        NullableWorkStealingDeque<String> deque = new NullableWorkStealingDeque<>(2);
+        assertTrue(deque.isEmpty());
+        assertNull(deque.pop());
+        assertNull(deque.steal());
+
+        deque.push("A");
+        deque.push(null);
+        deque.push("B");
+        deque.push("C"); // Grows
+        deque.push("D");
+        assertEquals(5, deque.size());
+
+        assertEquals("D", deque.pop()); // LIFO for the owner
+        assertEquals("A", deque.steal()); // FIFO for thieves
+        assertNull(deque.steal());
+        assertEquals(2, deque.size());
+        assertEquals("C", deque.pop());
+        assertEquals("B", deque.pop());
+        assertTrue(deque.isEmpty());
+        assertNull(deque.pop());
+        assertNull(deque.steal());
+        assertEquals(0, deque.size());
+
+        // Wrap around the array
+        for (int i = 0; i < 100; i++) {
+            deque.push("x" + i);
+            assertEquals("x" + i, deque.steal());
+        }
+        assertTrue(deque.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new NullableWorkStealingDeque<>(0));
+    }
+
+    @Test
+    void testOwnerAndThieves() throws InterruptedException {
+        NullableWorkStealingDeque<Integer> deque = new NullableWorkStealingDeque<>(8);
+        int count = 200_000;
+        ConcurrentHashMap<Integer, Boolean> taken = new ConcurrentHashMap<>();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> thieves = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            thieves.add(
+                    new Thread(
+                            () -> {
+                                while (!done.get() || !deque.isEmpty()) {
+                                    Integer e = deque.steal();
+                                    if (e != null && taken.put(e, Boolean.TRUE) != null) {
+                                        duplicates.incrementAndGet();
+                                    }
+                                }
+                            }));
+        }
+        for (Thread t : thieves) {
+            t.start();
+        }
+        for (int i = 0; i < count; i++) {
+            deque.push(i);
+            if (i % 3 == 0) {
+                Integer e = deque.pop();
+                if (e != null && taken.put(e, Boolean.TRUE) != null) {
+                    duplicates.incrementAndGet();
+                }
+            }
+        }
+        done.set(true);
+        for (Thread t : thieves) {
+            t.join();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(count, taken.size());
+    }
+}